@@ -2,14 +2,43 @@ package com.adambarreiro.monitor;
 
 import com.adambarreiro.monitor.alert.AlertConfig;
 import com.adambarreiro.monitor.alert.AlertManager;
+import com.adambarreiro.monitor.capture.BackpressurePolicy;
 import com.adambarreiro.monitor.capture.FileObserver;
+import com.adambarreiro.monitor.capture.FileObserverConfig;
+import com.adambarreiro.monitor.capture.MultiFileObserver;
+import com.adambarreiro.monitor.capture.Observer;
+import com.adambarreiro.monitor.capture.TailMode;
 import com.adambarreiro.monitor.config.ConfigurationContainer;
+import com.adambarreiro.monitor.export.Exporter;
+import com.adambarreiro.monitor.export.PeerExporter;
+import com.adambarreiro.monitor.export.StoreExporter;
+import com.adambarreiro.monitor.pipeline.PipelineConfig;
+import com.adambarreiro.monitor.pipeline.WaitStrategy;
 import com.adambarreiro.monitor.process.log.CommonLogFormatLogProcessor;
+import com.adambarreiro.monitor.process.log.CustomLogProcessor;
+import com.adambarreiro.monitor.peer.AggregatorServer;
+import com.adambarreiro.monitor.peer.PeerClient;
+import com.adambarreiro.monitor.process.log.LogProcessor;
 import com.adambarreiro.monitor.service.LogMonitorService;
+import com.adambarreiro.monitor.stats.MergedStats;
 import com.adambarreiro.monitor.stats.ScheduledStats;
+import com.adambarreiro.monitor.stats.ShardedStats;
 import com.adambarreiro.monitor.stats.Stats;
+import com.adambarreiro.monitor.stats.StatsConfig;
+import com.adambarreiro.monitor.stats.TimeMode;
+import com.adambarreiro.monitor.stats.vo.Dimension;
+import com.adambarreiro.monitor.store.RollupTier;
+import com.adambarreiro.monitor.store.TieredSnapshotStore;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Main class, where all dependencies are injected and the application
@@ -27,19 +56,184 @@ final class App {
 	public static void main(String... args) {
 		ConfigurationContainer.getInstance().add(args);
 		try {
+			if (!ConfigurationContainer.getInstance().getAggregator().isBlank()) {
+				startAggregator();
+				return;
+			}
 			// Dependencies
-			Stats stats = new ScheduledStats(ConfigurationContainer.getInstance().getScheduleIntervalSeconds());
+			Stats stats = createStats();
 			LogMonitorService logMonitorService = new LogMonitorService(
-					FileObserver.of(ConfigurationContainer.getInstance().getLogfile()),
-					new CommonLogFormatLogProcessor(), stats,
+					createObserver(),
+					createLogProcessor(), stats,
 					new AlertManager(stats, new AlertConfig(ConfigurationContainer.getInstance().getRequestRateAlertThreshold()),
-							ConfigurationContainer.getInstance().getAlertIntervalSeconds()));
+							ConfigurationContainer.getInstance().getAlertIntervalSeconds()),
+					createExporters(),
+					createPipelineConfig());
 
 			logMonitorService.start();
 
-		} catch (FileNotFoundException e) {
+		} catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * Starts the aggregator mode: instead of reading log files, the metrics that other monitors push are merged and
+	 * exposed as the ones of this monitor, alerts included.
+	 *
+	 * @throws IOException if the address of the aggregator cannot be bound.
+	 */
+	private static void startAggregator() throws IOException {
+		ConfigurationContainer configuration = ConfigurationContainer.getInstance();
+		MergedStats stats = new MergedStats(configuration.getScheduleIntervalSeconds(), configuration.getTopSites());
+		AggregatorServer server = AggregatorServer.start(addressOf(configuration.getAggregator()), stats);
+		Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+		new LogMonitorService(
+				onBatch -> { },
+				createLogProcessor(), stats,
+				new AlertManager(stats, new AlertConfig(configuration.getRequestRateAlertThreshold()),
+						configuration.getAlertIntervalSeconds())).start();
+	}
+
+	/**
+	 * Creates the statistics, with a sliding window for every configured one and another one for the alerts, sharded
+	 * if there's more than a shard.
+	 *
+	 * @return the statistics.
+	 */
+	private static Stats createStats() {
+		ConfigurationContainer configuration = ConfigurationContainer.getInstance();
+		List<Integer> windowsSeconds = new ArrayList<>(configuration.getWindowsSeconds());
+		windowsSeconds.add(configuration.getAlertIntervalSeconds());
+		Set<Dimension> groupBy = EnumSet.noneOf(Dimension.class);
+		configuration.getGroupBy().forEach(dimension -> groupBy.add(Dimension.of(dimension)));
+		StatsConfig config = StatsConfig.builder()
+				.topSites(configuration.getTopSites())
+				.topSitesError(configuration.getTopSitesError())
+				.groupBy(groupBy)
+				.timeMode(TimeMode.of(configuration.getTimeMode()))
+				.allowedLatenessSeconds(configuration.getAllowedLatenessSeconds())
+				.build();
+		if (configuration.getShards() > 1) {
+			return new ShardedStats(configuration.getScheduleIntervalSeconds(), windowsSeconds, config, configuration.getShards());
+		}
+		return new ScheduledStats(configuration.getScheduleIntervalSeconds(), windowsSeconds, config);
+	}
+
+	/**
+	 * Creates the exporters besides the console one, like the store of the metrics of every interval and rollup tier
+	 * if there's a directory for it.
+	 *
+	 * @return the exporters.
+	 * @throws IOException if the store cannot be opened.
+	 */
+	private static List<Exporter> createExporters() throws IOException {
+		ConfigurationContainer configuration = ConfigurationContainer.getInstance();
+		List<Exporter> exporters = new ArrayList<>();
+		if (!configuration.getStoreDirectory().isBlank()) {
+			TieredSnapshotStore store = TieredSnapshotStore.of(Path.of(configuration.getStoreDirectory()),
+					new RollupTier(configuration.getScheduleIntervalSeconds(), TimeUnit.HOURS.toSeconds(configuration.getStoreRetentionHours())),
+					createRollupTiers());
+			Runtime.getRuntime().addShutdownHook(new Thread(store::close));
+			exporters.add(new StoreExporter(store));
+		}
+		if (!configuration.getPeerAggregator().isBlank()) {
+			PeerClient client = new PeerClient(addressOf(configuration.getPeerAggregator()));
+			Runtime.getRuntime().addShutdownHook(new Thread(client::close));
+			String peerName = configuration.getPeerName().isBlank()
+					? InetAddress.getLocalHost().getHostName() + ":" + ProcessHandle.current().pid()
+					: configuration.getPeerName();
+			exporters.add(new PeerExporter(client, peerName));
+		}
+		return exporters;
+	}
+
+	/**
+	 * Parses a host:port address, like 127.0.0.1:7070.
+	 *
+	 * @param address the address.
+	 * @return the socket address.
+	 */
+	private static InetSocketAddress addressOf(String address) {
+		int colon = address.lastIndexOf(':');
+		if (colon < 0) {
+			throw new IllegalArgumentException("Invalid address, expected host:port: " + address);
+		}
+		return new InetSocketAddress(address.substring(0, colon).trim(), Integer.parseInt(address.substring(colon + 1).trim()));
+	}
+
+	/**
+	 * Creates the rollup tiers of the store, given as resolution:retention pairs, like 60:720 for a snapshot per minute
+	 * kept for 720 hours.
+	 *
+	 * @return the rollup tiers.
+	 */
+	private static List<RollupTier> createRollupTiers() {
+		List<RollupTier> tiers = new ArrayList<>();
+		for (String tier : ConfigurationContainer.getInstance().getStoreRollups()) {
+			String[] resolutionAndRetention = tier.split(":");
+			if (resolutionAndRetention.length != 2) {
+				throw new IllegalArgumentException("Invalid rollup tier, expected resolution:retention: " + tier);
+			}
+			tiers.add(new RollupTier(Integer.parseInt(resolutionAndRetention[0].trim()),
+					TimeUnit.HOURS.toSeconds(Long.parseLong(resolutionAndRetention[1].trim()))));
+		}
+		return tiers;
+	}
+
+	/**
+	 * Creates the configuration of the pipeline between the observer and the statistics.
+	 *
+	 * @return the configuration of the pipeline.
+	 */
+	private static PipelineConfig createPipelineConfig() {
+		ConfigurationContainer configuration = ConfigurationContainer.getInstance();
+		return PipelineConfig.builder()
+				.parseThreads(configuration.getParseThreads())
+				.ringSize(configuration.getRingSize())
+				.waitStrategy(WaitStrategy.of(configuration.getWaitStrategy()))
+				.build();
+	}
+
+	/**
+	 * Creates the processor of the log lines, compiling the configured log format if there's any.
+	 *
+	 * @return the log processor.
+	 */
+	private static LogProcessor createLogProcessor() {
+		String logFormat = ConfigurationContainer.getInstance().getLogFormat();
+		if (logFormat.isBlank()) {
+			return new CommonLogFormatLogProcessor();
+		}
+		return CustomLogProcessor.of(logFormat);
+	}
+
+	/**
+	 * Creates the observer of the log file or, if the log file option is a directory or a glob pattern, of all the
+	 * matching log files.
+	 *
+	 * @return the observer.
+	 * @throws IOException if the log files cannot be read.
+	 */
+	private static Observer createObserver() throws IOException {
+		ConfigurationContainer configuration = ConfigurationContainer.getInstance();
+		FileObserverConfig config = FileObserverConfig.builder()
+				.bufferSize(configuration.getReadBufferSize())
+				.memoryMapped(configuration.isMemoryMapped())
+				.tailMode(TailMode.of(configuration.getTailMode()))
+				.maxIdleTimeMillis(configuration.getMaxIdleTimeMillis())
+				.checkpointFile(configuration.getCheckpointFile())
+				.checkpointIntervalMillis(TimeUnit.SECONDS.toMillis(configuration.getCheckpointIntervalSeconds()))
+				.batchSize(configuration.getBatchSize())
+				.batchDelayMillis(configuration.getBatchDelayMillis())
+				.backpressurePolicy(BackpressurePolicy.of(configuration.getBackpressure()))
+				.queueCapacity(configuration.getQueueCapacity())
+				.sampleRate(configuration.getSampleRate())
+				.build();
+		if (MultiFileObserver.isMultiFile(configuration.getLogfile())) {
+			return MultiFileObserver.of(configuration.getLogfile(), config, configuration.getReaderThreads());
+		}
+		return FileObserver.of(configuration.getLogfile(), config);
+	}
+
 }
@@ -1,9 +1,11 @@
 package com.adambarreiro.monitor.alert;
 
 import com.adambarreiro.monitor.export.Exporter;
+import com.adambarreiro.monitor.process.log.vo.LogField;
 import com.adambarreiro.monitor.stats.Stats;
 
 import java.time.Instant;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Optional;
@@ -33,6 +35,15 @@ public final class AlertManager {
 		this.intervalSeconds = intervalSeconds;
 	}
 
+	/**
+	 * Gets the fields of the log lines the alerts read. None, as they only read the stats.
+	 *
+	 * @return the read fields.
+	 */
+	public Set<LogField> getRequiredFields() {
+		return EnumSet.noneOf(LogField.class);
+	}
+
 	/**
 	 * Gets the alerts that are currently open and unsolved.
 	 *
@@ -68,12 +79,16 @@ public final class AlertManager {
 	}
 
 	/**
-	 * Processes the request rate and generates an alert if the threshold is surpassed.
+	 * Processes the request rate of the last interval and generates an alert if the threshold is surpassed. The
+	 * sliding window of the interval is read if the stats have it, as it's more up to date than the last stats update.
 	 * If we're not under any alert situation, it's time to clean up and expire alerts.
 	 */
 	private void processAlerts() {
 		synchronized (this) {
-			if (this.stats.getRequestsRate() > config.getRequestRateAlertThreshold()) {
+			float requestsRate = this.stats.getWindowsSeconds().contains(this.intervalSeconds)
+					? this.stats.getRequestsRate(this.intervalSeconds)
+					: this.stats.getRequestsRate();
+			if (requestsRate > config.getRequestRateAlertThreshold()) {
 				Optional<Alert> alert = this.alerts.stream().filter(a -> a instanceof HighRequestRateAlert).findFirst();
 				alert.ifPresentOrElse(Alert::addHit, () -> this.alerts.add(new HighRequestRateAlert()));
 			} else {
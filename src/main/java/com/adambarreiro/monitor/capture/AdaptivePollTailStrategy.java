@@ -0,0 +1,55 @@
+package com.adambarreiro.monitor.capture;
+
+/**
+ * Polls the observed file adaptively. While the file is busy, it's checked again almost immediately, spinning
+ * for a few rounds. When it becomes idle, the waiting time doubles on every empty read, up to a maximum.
+ */
+final class AdaptivePollTailStrategy implements TailStrategy {
+
+	private static final int SPIN_ROUNDS = 64;
+	private static final long MIN_IDLE_TIME_MILLIS = 1L;
+	private static final int MAX_BACKOFF_SHIFT = 20;
+
+	private final long maxIdleTimeMillis;
+	private int idleRounds;
+
+	AdaptivePollTailStrategy(long maxIdleTimeMillis) {
+		this.maxIdleTimeMillis = maxIdleTimeMillis;
+		this.idleRounds = 0;
+	}
+
+	@Override
+	public void await(boolean dataFound) throws InterruptedException {
+		long idleTimeMillis = nextIdleTimeMillis(dataFound);
+		if (idleTimeMillis == 0) {
+			Thread.onSpinWait();
+		} else {
+			Thread.sleep(idleTimeMillis);
+		}
+	}
+
+	/**
+	 * Calculates how long to wait before the next read, without waiting.
+	 *
+	 * @param dataFound true if the last read found new data in the file.
+	 * @return the time to wait in milliseconds, zero to read again straight away.
+	 */
+	long nextIdleTimeMillis(boolean dataFound) {
+		if (dataFound) {
+			this.idleRounds = 0;
+			return 0L;
+		}
+		if (this.idleRounds < SPIN_ROUNDS) {
+			this.idleRounds++;
+			return 0L;
+		}
+		int shift = Math.min(this.idleRounds - SPIN_ROUNDS, MAX_BACKOFF_SHIFT);
+		this.idleRounds++;
+		return Math.min(MIN_IDLE_TIME_MILLIS << shift, this.maxIdleTimeMillis);
+	}
+
+	@Override
+	public void close() {
+		this.idleRounds = 0;
+	}
+}
@@ -0,0 +1,34 @@
+package com.adambarreiro.monitor.capture;
+
+/**
+ * What an observer does with the lines it reads when the consumer of its queue cannot keep up and the queue is full.
+ * Whatever the policy, the queue never holds more lines than its capacity.
+ */
+public enum BackpressurePolicy {
+
+	/**
+	 * Stops reading until there's room in the queue. Nothing is lost, as the lines wait in the observed files.
+	 */
+	BLOCK,
+
+	/**
+	 * Discards the oldest batches of the queue to make room for the new ones.
+	 */
+	DROP_OLDEST,
+
+	/**
+	 * Keeps one of every N lines of the batches that don't fit in the queue, and weights them by N so the rates
+	 * can be corrected. If even the sampled batch doesn't fit, the oldest batches are discarded.
+	 */
+	SAMPLE;
+
+	/**
+	 * Gets the backpressure policy with the given name, ignoring the case.
+	 *
+	 * @param name the name of the backpressure policy.
+	 * @return the backpressure policy.
+	 */
+	public static BackpressurePolicy of(String name) {
+		return BackpressurePolicy.valueOf(name.trim().toUpperCase());
+	}
+}
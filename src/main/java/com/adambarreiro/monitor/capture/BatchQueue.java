@@ -0,0 +1,214 @@
+package com.adambarreiro.monitor.capture;
+
+import com.adambarreiro.monitor.capture.vo.LineBatch;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.functions.Consumer;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue of {@link LineBatch}es between the threads that read the observed files and the thread that consumes
+ * the lines. Its capacity is measured in lines, not in batches, and it's never exceeded: when the queue is full, the
+ * {@link BackpressurePolicy} decides whether the readers wait, the oldest batches are dropped or the new ones are
+ * sampled. The only exception is a single batch bigger than the whole capacity, which is accepted in an empty queue.
+ */
+final class BatchQueue implements CaptureMetrics {
+
+	private final int capacity;
+	private final BackpressurePolicy policy;
+	private final int sampleRate;
+	private final Deque<LineBatch> batches;
+	private final ReentrantLock lock;
+	private final Condition notEmpty;
+	private final Condition notFull;
+
+	private int depth;
+	private long sampleCounter;
+	private volatile long droppedLines;
+	private volatile long sampledLines;
+	private volatile boolean closed;
+
+	BatchQueue(int capacity, BackpressurePolicy policy, int sampleRate) {
+		this.capacity = capacity;
+		this.policy = policy;
+		this.sampleRate = sampleRate;
+		this.batches = new ArrayDeque<>();
+		this.lock = new ReentrantLock();
+		this.notEmpty = this.lock.newCondition();
+		this.notFull = this.lock.newCondition();
+	}
+
+	/**
+	 * Creates the queue configured for an observer.
+	 *
+	 * @param config the configuration of the observer.
+	 * @return the queue.
+	 */
+	static BatchQueue of(FileObserverConfig config) {
+		return new BatchQueue(config.getQueueCapacity(), config.getBackpressurePolicy(), config.getSampleRate());
+	}
+
+	/**
+	 * Delivers the queued batches to the given function in a separated thread, until the queue is closed and empty.
+	 *
+	 * @param onBatch a function called on every batch.
+	 */
+	void subscribe(Consumer<? super LineBatch> onBatch) {
+		Flowable.<LineBatch>generate(emitter -> {
+			LineBatch batch = this.take();
+			if (batch == null) {
+				emitter.onComplete();
+			} else {
+				emitter.onNext(batch);
+			}
+		})
+				.subscribeOn(Schedulers.newThread())
+				.subscribe(onBatch);
+	}
+
+	/**
+	 * Enqueues a batch, applying the backpressure policy if it doesn't fit. With {@link BackpressurePolicy#BLOCK}
+	 * the calling thread waits until there's room or the queue is closed.
+	 *
+	 * @param batch the batch.
+	 * @return false if the queue is closed and the batch was discarded. True otherwise.
+	 * @throws InterruptedException if the calling thread is interrupted while it waits.
+	 */
+	boolean put(LineBatch batch) throws InterruptedException {
+		this.lock.lockInterruptibly();
+		try {
+			LineBatch accepted = batch;
+			if (!fits(accepted)) {
+				switch (this.policy) {
+					case BLOCK:
+						while (!this.closed && !fits(accepted)) {
+							this.notFull.await();
+						}
+						break;
+					case SAMPLE:
+						accepted = sample(accepted);
+						dropOldest(accepted);
+						break;
+					default:
+						dropOldest(accepted);
+				}
+			}
+			if (this.closed) {
+				return false;
+			}
+			if (accepted.size() > 0) {
+				this.batches.addLast(accepted);
+				this.depth += accepted.size();
+				this.notEmpty.signal();
+			}
+			return true;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Dequeues the oldest batch, waiting for one if the queue is empty.
+	 *
+	 * @return the oldest batch, or null if the queue is closed and empty.
+	 * @throws InterruptedException if the calling thread is interrupted while it waits.
+	 */
+	LineBatch take() throws InterruptedException {
+		this.lock.lockInterruptibly();
+		try {
+			while (this.batches.isEmpty() && !this.closed) {
+				this.notEmpty.await();
+			}
+			LineBatch batch = this.batches.pollFirst();
+			if (batch != null) {
+				this.depth -= batch.size();
+				this.notFull.signalAll();
+			}
+			return batch;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Closes the queue. The waiting readers are released and their batches discarded, while the consumer still gets
+	 * the batches already queued.
+	 */
+	void close() {
+		this.lock.lock();
+		try {
+			this.closed = true;
+			this.notFull.signalAll();
+			this.notEmpty.signalAll();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public int getQueueDepth() {
+		this.lock.lock();
+		try {
+			return this.depth;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	public int getQueueCapacity() {
+		return this.capacity;
+	}
+
+	@Override
+	public long getDroppedLines() {
+		return this.droppedLines;
+	}
+
+	@Override
+	public long getSampledLines() {
+		return this.sampledLines;
+	}
+
+	private boolean fits(LineBatch batch) {
+		return this.batches.isEmpty() || this.depth + batch.size() <= this.capacity;
+	}
+
+	/**
+	 * Discards the oldest batches until the given one fits.
+	 *
+	 * @param batch the batch that has to fit.
+	 */
+	private void dropOldest(LineBatch batch) {
+		while (!fits(batch)) {
+			LineBatch dropped = this.batches.pollFirst();
+			this.depth -= dropped.size();
+			this.droppedLines += dropped.size();
+		}
+	}
+
+	/**
+	 * Keeps one of every N lines of the batch. The count goes on between batches, so small batches are sampled
+	 * as well.
+	 *
+	 * @param batch the batch to sample.
+	 * @return the sampled batch, weighted by the sample rate.
+	 */
+	private LineBatch sample(LineBatch batch) {
+		String[] lines = batch.getLines();
+		String[] kept = new String[lines.length / this.sampleRate + 1];
+		int size = 0;
+		for (String line : lines) {
+			if (this.sampleCounter++ % this.sampleRate == 0) {
+				kept[size++] = line;
+			}
+		}
+		this.sampledLines += lines.length - size;
+		return new LineBatch(batch.getSource(), Arrays.copyOf(kept, size), batch.getWeight() * this.sampleRate);
+	}
+}
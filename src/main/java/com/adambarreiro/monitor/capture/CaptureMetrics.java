@@ -0,0 +1,60 @@
+package com.adambarreiro.monitor.capture;
+
+/**
+ * Metrics of the queue between an observer and its consumer, useful to know if the consumer is falling behind.
+ */
+public interface CaptureMetrics {
+
+	/**
+	 * Metrics of an observer without queue.
+	 */
+	CaptureMetrics NONE = new CaptureMetrics() {
+		@Override
+		public int getQueueDepth() {
+			return 0;
+		}
+
+		@Override
+		public int getQueueCapacity() {
+			return 0;
+		}
+
+		@Override
+		public long getDroppedLines() {
+			return 0L;
+		}
+
+		@Override
+		public long getSampledLines() {
+			return 0L;
+		}
+	};
+
+	/**
+	 * Gets the number of lines waiting in the queue.
+	 *
+	 * @return the number of queued lines.
+	 */
+	int getQueueDepth();
+
+	/**
+	 * Gets the maximum number of lines the queue can hold.
+	 *
+	 * @return the capacity of the queue.
+	 */
+	int getQueueCapacity();
+
+	/**
+	 * Gets the number of lines discarded since the observer started, because the queue was full.
+	 *
+	 * @return the number of dropped lines.
+	 */
+	long getDroppedLines();
+
+	/**
+	 * Gets the number of lines left out by sampling since the observer started, because the queue was full.
+	 *
+	 * @return the number of lines left out by sampling.
+	 */
+	long getSampledLines();
+}
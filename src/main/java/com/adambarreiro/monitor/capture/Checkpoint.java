@@ -0,0 +1,87 @@
+package com.adambarreiro.monitor.capture;
+
+import java.util.Objects;
+
+/**
+ * Position of an observer in a file. Besides the offset, it keeps the key of the file (its inode on Linux) and
+ * the length and hash of the line that ends at the offset, so we can check later that it's still the same file
+ * and the same content.
+ */
+public final class Checkpoint {
+
+	private static final String SEPARATOR = "|";
+
+	private final String fileKey;
+	private final long offset;
+	private final int lineLength;
+	private final long lineHash;
+
+	public Checkpoint(String fileKey, long offset, int lineLength, long lineHash) {
+		this.fileKey = fileKey;
+		this.offset = offset;
+		this.lineLength = lineLength;
+		this.lineHash = lineHash;
+	}
+
+	/**
+	 * Parses a checkpoint previously formatted with {@link #toString()}.
+	 *
+	 * @param checkpoint the formatted checkpoint.
+	 * @return the checkpoint.
+	 *
+	 * @throws IllegalArgumentException if the checkpoint is malformed.
+	 */
+	public static Checkpoint parse(String checkpoint) {
+		try {
+			int hashIndex = checkpoint.lastIndexOf(SEPARATOR);
+			int lengthIndex = checkpoint.lastIndexOf(SEPARATOR, hashIndex - 1);
+			int offsetIndex = checkpoint.lastIndexOf(SEPARATOR, lengthIndex - 1);
+			return new Checkpoint(
+					checkpoint.substring(0, offsetIndex),
+					Long.parseLong(checkpoint.substring(offsetIndex + 1, lengthIndex)),
+					Integer.parseInt(checkpoint.substring(lengthIndex + 1, hashIndex)),
+					Long.parseLong(checkpoint.substring(hashIndex + 1)));
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Malformed checkpoint: " + checkpoint, e);
+		}
+	}
+
+	public String getFileKey() {
+		return this.fileKey;
+	}
+
+	public long getOffset() {
+		return this.offset;
+	}
+
+	public int getLineLength() {
+		return this.lineLength;
+	}
+
+	public long getLineHash() {
+		return this.lineHash;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof Checkpoint)) {
+			return false;
+		}
+		Checkpoint that = (Checkpoint) o;
+		return offset == that.offset && lineLength == that.lineLength && lineHash == that.lineHash
+				&& Objects.equals(fileKey, that.fileKey);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(fileKey, offset, lineLength, lineHash);
+	}
+
+	@Override
+	public String toString() {
+		return fileKey + SEPARATOR + offset + SEPARATOR + lineLength + SEPARATOR + lineHash;
+	}
+}
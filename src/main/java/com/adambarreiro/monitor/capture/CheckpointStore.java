@@ -0,0 +1,87 @@
+package com.adambarreiro.monitor.capture;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Small file that keeps a {@link Checkpoint} per observed file, so observers can resume where they left off after a
+ * restart. The file is replaced atomically on every save, so a crash never leaves it half written.
+ */
+public final class CheckpointStore {
+
+	private static final String TEMPORARY_SUFFIX = ".tmp";
+
+	private final Path file;
+	private final Properties checkpoints;
+
+	private CheckpointStore(Path file, Properties checkpoints) {
+		this.file = file;
+		this.checkpoints = checkpoints;
+	}
+
+	/**
+	 * Creates a store backed by the given file, loading its checkpoints if it exists.
+	 *
+	 * @param file the file that keeps the checkpoints.
+	 * @return An instance of this class
+	 *
+	 * @throws IOException if the file exists but cannot be read.
+	 */
+	public static CheckpointStore of(Path file) throws IOException {
+		Properties checkpoints = new Properties();
+		if (Files.exists(file)) {
+			try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+				checkpoints.load(reader);
+			}
+		}
+		return new CheckpointStore(file, checkpoints);
+	}
+
+	/**
+	 * Gets the checkpoint of the observed file, if any.
+	 *
+	 * @param observedFile the observed file.
+	 * @return the checkpoint of the observed file.
+	 */
+	public synchronized Optional<Checkpoint> get(Path observedFile) {
+		try {
+			return Optional.ofNullable(this.checkpoints.getProperty(key(observedFile))).map(Checkpoint::parse);
+		} catch (IllegalArgumentException e) {
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Updates the checkpoint of the observed file. It's not persisted until {@link #save()} is called.
+	 *
+	 * @param observedFile the observed file.
+	 * @param checkpoint   its new checkpoint.
+	 */
+	public synchronized void put(Path observedFile, Checkpoint checkpoint) {
+		this.checkpoints.setProperty(key(observedFile), checkpoint.toString());
+	}
+
+	/**
+	 * Persists all the checkpoints.
+	 *
+	 * @throws IOException if the file cannot be written.
+	 */
+	public synchronized void save() throws IOException {
+		Path temporaryFile = this.file.resolveSibling(this.file.getFileName() + TEMPORARY_SUFFIX);
+		try (Writer writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+			this.checkpoints.store(writer, null);
+		}
+		Files.move(temporaryFile, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private String key(Path observedFile) {
+		return observedFile.toAbsolutePath().normalize().toString();
+	}
+}
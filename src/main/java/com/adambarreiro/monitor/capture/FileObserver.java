@@ -1,37 +1,44 @@
 package com.adambarreiro.monitor.capture;
 
-import io.reactivex.rxjava3.core.BackpressureStrategy;
-import io.reactivex.rxjava3.core.Flowable;
-import io.reactivex.rxjava3.core.FlowableEmitter;
+import com.adambarreiro.monitor.capture.vo.LineBatch;
 import io.reactivex.rxjava3.functions.Consumer;
-import io.reactivex.rxjava3.schedulers.Schedulers;
 
-import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.TimeUnit;
 
 /**
- * This class allows the main thread to subscribe to a text file and retrieve its contents indefinitely. It polls the
- * file every second and processes every line in a separated thread, managed by the {@link Schedulers} single
- * thread pool.
+ * This class allows the main thread to subscribe to a text file and retrieve its contents indefinitely. It waits for
+ * changes in the file as configured by its {@link TailMode} and processes every line in a separated thread. The file
+ * is read in chunks with a {@link LineReader} and its lines are delivered in {@link LineBatch}es through a bounded
+ * {@link BatchQueue}, so a slow consumer is handled with the configured {@link BackpressurePolicy} instead of
+ * buffering without limit.
+ *
+ * Rotations are followed by file key (inode on Linux). If a {@link CheckpointStore} is configured, the position in
+ * the file is saved periodically, so a restart resumes where the previous run left off.
  */
 public final class FileObserver implements Observer {
 
-	private static final String READ_MODE = "r";
+	private final TailStrategy tailStrategy;
+	private final CheckpointStore checkpointStore;
+	private final long checkpointIntervalNanos;
+	private final FileObserverConfig config;
+	private final BatchQueue queue;
 
-	private final AtomicLong offset;
-	private final long idleTimeMillis;
+	private FileTail tail;
+	private long lastCheckpointNanos;
+	private volatile boolean initialized;
 
-	private RandomAccessFile observedFile;
-	private boolean initialized;
-
-	private FileObserver(RandomAccessFile observedFile, long offset, long idleTimeMillis) {
-		this.observedFile = observedFile;
-		this.offset = new AtomicLong(offset);
-		this.idleTimeMillis = idleTimeMillis;
+	private FileObserver(FileTail tail, TailStrategy tailStrategy, CheckpointStore checkpointStore, FileObserverConfig config) {
+		this.tail = tail;
+		this.tailStrategy = tailStrategy;
+		this.checkpointStore = checkpointStore;
+		this.config = config;
+		this.queue = BatchQueue.of(config);
+		this.checkpointIntervalNanos = TimeUnit.MILLISECONDS.toNanos(config.getCheckpointIntervalMillis());
+		this.lastCheckpointNanos = System.nanoTime();
 		this.initialized = false;
 	}
 
@@ -41,102 +48,162 @@ public final class FileObserver implements Observer {
 	 * @param pathToFile An existent plain text file in your disk.
 	 * @return An instance of this class
 	 *
-	 * @throws FileNotFoundException If the file does not exist in the given path
+	 * @throws IOException If the file does not exist in the given path or cannot be read
 	 */
-	public static FileObserver of(final String pathToFile) throws FileNotFoundException {
+	public static FileObserver of(final String pathToFile) throws IOException {
+		return of(pathToFile, FileObserverConfig.defaults());
+	}
+
+	/**
+	 * Creates a file observer that is ready to be subscribed to the given file. If the configuration has a checkpoint
+	 * file with a valid checkpoint for this file, the observer starts from there.
+	 *
+	 * @param pathToFile An existent plain text file in your disk.
+	 * @param config     How the file is read and tailed.
+	 * @return An instance of this class
+	 *
+	 * @throws IOException If the file does not exist in the given path or cannot be read
+	 */
+	public static FileObserver of(final String pathToFile, final FileObserverConfig config) throws IOException {
+		Path file = Paths.get(pathToFile);
+		CheckpointStore checkpointStore = null;
+		Checkpoint checkpoint = null;
+		if (config.isCheckpointEnabled()) {
+			checkpointStore = CheckpointStore.of(Paths.get(config.getCheckpointFile()));
+			checkpoint = checkpointStore.get(file).orElse(null);
+		}
 		return new FileObserver(
-				new RandomAccessFile(new File(pathToFile), READ_MODE),
-				0L,
-				1000L);
+				FileTail.open(file, LineReader.of(config.getBufferSize(), config.isMemoryMapped()),
+						config.getMaxIdleTimeMillis(), checkpoint),
+				createTailStrategy(file, config),
+				checkpointStore,
+				config);
 	}
 
 	/**
 	 * Subscribes to the file and starts polling its contents indefinitely. Warning, this subscription process
 	 * runs in the main thread.
 	 *
-	 * @param onNext a function called on every processed line of the file. It runs in a separated thread pool.
+	 * @param onBatch a function called on every batch of lines of the file. It runs in a separated thread pool.
 	 */
-	public void observe(Consumer<? super Object> onNext) {
-		if (initialized || Objects.isNull(observedFile)) {
+	@Override
+	public void observeBatches(Consumer<? super LineBatch> onBatch) {
+		if (initialized || Objects.isNull(tail)) {
 			return;
 		}
 		initialized = true;
-		Flowable.create(subscriber -> {
-			while (initialized) {
-				try {
-					if (this.isObservedFileRotated()) {
-						this.resetOffsetOfObservedFile();
-					}
-					if (this.isNewDataAvailable()) {
-						this.processData(subscriber);
-					}
-					Thread.sleep(this.idleTimeMillis);
-				} catch (Exception e) {
-					subscriber.onError(e);
-				}
+		this.queue.subscribe(onBatch);
+		LineBatcher batcher = new LineBatcher(null, config.getBatchSize(), config.getBatchDelayMillis(), this::enqueue);
+		while (initialized) {
+			try {
+				boolean dataFound = this.tail.poll(batcher::add);
+				batcher.flush();
+				this.checkpointIfDue();
+				this.tailStrategy.await(dataFound);
+			} catch (IOException e) {
+				e.printStackTrace();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				initialized = false;
 			}
-		}, BackpressureStrategy.BUFFER)
-				.observeOn(Schedulers.single())
-				.subscribe(onNext);
+		}
+		try {
+			this.closeTail();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		this.queue.close();
+	}
+
+	/**
+	 * Gets the metrics of the queue between the file and its consumer.
+	 *
+	 * @return the metrics of the queue.
+	 */
+	@Override
+	public CaptureMetrics getMetrics() {
+		return this.queue;
 	}
 
 	/**
 	 * Stops the subscription process and makes everything ready to consume any other file or the same file again.
+	 * The last position in the file is checkpointed before closing it.
 	 *
 	 * @throws IOException if the file cannot be closed for any reason.
 	 */
 	public void stop() throws IOException {
+		boolean running = initialized;
 		initialized = false;
-		if (Objects.nonNull(observedFile)) {
-			observedFile.close();
-			observedFile = null;
+		queue.close();
+		tailStrategy.close();
+		if (!running) {
+			closeTail();
 		}
 	}
 
 	/**
-	 * Updates the current file offset to start reading from the last position, retrieves new lines and
-	 * sends to the subscriber function.
+	 * Enqueues a batch of lines, waiting for room if the backpressure policy says so.
 	 *
-	 * @param subscriber a function that will handle the read line.
-	 * @throws IOException if something goes wrong with the current file.
+	 * @param batch the batch of lines.
 	 */
-	private void processData(FlowableEmitter<Object> subscriber) throws IOException {
-		this.observedFile.seek( offset.get() );
-		String line = this.observedFile.readLine();
-		while( line != null ) {
-			subscriber.onNext(line);
-			line = this.observedFile.readLine();
+	private void enqueue(LineBatch batch) {
+		try {
+			this.queue.put(batch);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			this.initialized = false;
 		}
-		offset.set(this.observedFile.getFilePointer());
 	}
 
 	/**
-	 * Returns true if the file has been emptied. False otherwise.
-	 *
-	 * @return true if the file has been emptied. False otherwise.
-	 * @throws IOException if something goes wrong with the current file.
+	 * Saves the position in the file if the checkpoint interval has passed since the last time.
+	 */
+	private void checkpointIfDue() {
+		if (Objects.nonNull(this.checkpointStore) && System.nanoTime() - this.lastCheckpointNanos >= this.checkpointIntervalNanos) {
+			this.checkpoint();
+		}
+	}
+
+	/**
+	 * Saves the position in the file, if it has changed.
 	 */
-	private boolean isObservedFileRotated() throws IOException {
-		return this.observedFile.length() < this.offset.get();
+	private void checkpoint() {
+		this.lastCheckpointNanos = System.nanoTime();
+		try {
+			if (this.tail.checkpoint(this.checkpointStore)) {
+				this.checkpointStore.save();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 	}
 
 	/**
-	 * Returns true if the file has new data available. False otherwise.
+	 * Checkpoints and closes the observed file, if it's still open.
 	 *
-	 * @return true if the file has new data available. False otherwise.
-	 * @throws IOException if something goes wrong with the current file.
+	 * @throws IOException if the file cannot be closed for any reason.
 	 */
-	private boolean isNewDataAvailable() throws IOException {
-		return this.observedFile.length() > this.offset.get();
+	private synchronized void closeTail() throws IOException {
+		if (Objects.nonNull(tail)) {
+			if (Objects.nonNull(checkpointStore)) {
+				checkpoint();
+			}
+			tail.close();
+			tail = null;
+		}
 	}
 
 	/**
-	 * Resets the file offset to the beginning.
+	 * Creates the strategy to wait for changes in the file.
 	 *
-	 * @throws IOException if something goes wrong with the current file.
+	 * @param file   the observed file.
+	 * @param config the configuration of the observer.
+	 * @return the strategy to wait for changes in the file.
 	 */
-	private void resetOffsetOfObservedFile() throws IOException {
-		this.observedFile.seek(0L);
-		offset.set(0L);
+	private static TailStrategy createTailStrategy(Path file, FileObserverConfig config) {
+		if (config.getTailMode() == TailMode.WATCH) {
+			return WatchServiceTailStrategy.of(file, config.getMaxIdleTimeMillis());
+		}
+		return new AdaptivePollTailStrategy(config.getMaxIdleTimeMillis());
 	}
 }
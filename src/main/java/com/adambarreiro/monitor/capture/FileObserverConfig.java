@@ -0,0 +1,201 @@
+package com.adambarreiro.monitor.capture;
+
+/**
+ * Configuration for file observers. This can be used in {@link FileObserver} and {@link MultiFileObserver} to
+ * configure how the observed files are read, tailed and delivered.
+ */
+public class FileObserverConfig {
+
+	public static final long DEFAULT_MAX_IDLE_TIME_MILLIS = 1000L;
+	public static final long DEFAULT_CHECKPOINT_INTERVAL_MILLIS = 5000L;
+	public static final int DEFAULT_BATCH_SIZE = 512;
+	public static final long DEFAULT_BATCH_DELAY_MILLIS = 100L;
+	public static final int DEFAULT_QUEUE_CAPACITY = 65536;
+	public static final int DEFAULT_SAMPLE_RATE = 10;
+
+	private final int bufferSize;
+	private final boolean memoryMapped;
+	private final TailMode tailMode;
+	private final long maxIdleTimeMillis;
+	private final String checkpointFile;
+	private final long checkpointIntervalMillis;
+	private final int batchSize;
+	private final long batchDelayMillis;
+	private final BackpressurePolicy backpressurePolicy;
+	private final int queueCapacity;
+	private final int sampleRate;
+
+	private FileObserverConfig(Builder builder) {
+		this.bufferSize = builder.bufferSize;
+		this.memoryMapped = builder.memoryMapped;
+		this.tailMode = builder.tailMode;
+		this.maxIdleTimeMillis = builder.maxIdleTimeMillis;
+		this.checkpointFile = builder.checkpointFile;
+		this.checkpointIntervalMillis = builder.checkpointIntervalMillis;
+		this.batchSize = builder.batchSize;
+		this.batchDelayMillis = builder.batchDelayMillis;
+		this.backpressurePolicy = builder.backpressurePolicy;
+		this.queueCapacity = builder.queueCapacity;
+		this.sampleRate = builder.sampleRate;
+	}
+
+	/**
+	 * Gets the default configuration.
+	 *
+	 * @return the default configuration.
+	 */
+	public static FileObserverConfig defaults() {
+		return builder().build();
+	}
+
+	/**
+	 * Starts a configuration with the default values.
+	 *
+	 * @return a builder with the default values.
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public int getBufferSize() {
+		return this.bufferSize;
+	}
+
+	public boolean isMemoryMapped() {
+		return this.memoryMapped;
+	}
+
+	public TailMode getTailMode() {
+		return this.tailMode;
+	}
+
+	public long getMaxIdleTimeMillis() {
+		return this.maxIdleTimeMillis;
+	}
+
+	public String getCheckpointFile() {
+		return this.checkpointFile;
+	}
+
+	public long getCheckpointIntervalMillis() {
+		return this.checkpointIntervalMillis;
+	}
+
+	public int getBatchSize() {
+		return this.batchSize;
+	}
+
+	public long getBatchDelayMillis() {
+		return this.batchDelayMillis;
+	}
+
+	public BackpressurePolicy getBackpressurePolicy() {
+		return this.backpressurePolicy;
+	}
+
+	public int getQueueCapacity() {
+		return this.queueCapacity;
+	}
+
+	public int getSampleRate() {
+		return this.sampleRate;
+	}
+
+	/**
+	 * Returns true if the position in the observed files must be checkpointed. False otherwise.
+	 *
+	 * @return true if the position in the observed files must be checkpointed. False otherwise.
+	 */
+	public boolean isCheckpointEnabled() {
+		return this.checkpointFile != null && !this.checkpointFile.isBlank();
+	}
+
+	/**
+	 * Builds a {@link FileObserverConfig}, starting from the default values.
+	 */
+	public static final class Builder {
+
+		private int bufferSize = LineReader.DEFAULT_BUFFER_SIZE;
+		private boolean memoryMapped = false;
+		private TailMode tailMode = TailMode.WATCH;
+		private long maxIdleTimeMillis = DEFAULT_MAX_IDLE_TIME_MILLIS;
+		private String checkpointFile = "";
+		private long checkpointIntervalMillis = DEFAULT_CHECKPOINT_INTERVAL_MILLIS;
+		private int batchSize = DEFAULT_BATCH_SIZE;
+		private long batchDelayMillis = DEFAULT_BATCH_DELAY_MILLIS;
+		private BackpressurePolicy backpressurePolicy = BackpressurePolicy.BLOCK;
+		private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+		private int sampleRate = DEFAULT_SAMPLE_RATE;
+
+		private Builder() {
+		}
+
+		public Builder bufferSize(int bufferSize) {
+			this.bufferSize = bufferSize;
+			return this;
+		}
+
+		public Builder memoryMapped(boolean memoryMapped) {
+			this.memoryMapped = memoryMapped;
+			return this;
+		}
+
+		public Builder tailMode(TailMode tailMode) {
+			this.tailMode = tailMode;
+			return this;
+		}
+
+		public Builder maxIdleTimeMillis(long maxIdleTimeMillis) {
+			this.maxIdleTimeMillis = maxIdleTimeMillis;
+			return this;
+		}
+
+		public Builder checkpointFile(String checkpointFile) {
+			this.checkpointFile = checkpointFile;
+			return this;
+		}
+
+		public Builder checkpointIntervalMillis(long checkpointIntervalMillis) {
+			this.checkpointIntervalMillis = checkpointIntervalMillis;
+			return this;
+		}
+
+		public Builder batchSize(int batchSize) {
+			this.batchSize = batchSize;
+			return this;
+		}
+
+		public Builder batchDelayMillis(long batchDelayMillis) {
+			this.batchDelayMillis = batchDelayMillis;
+			return this;
+		}
+
+		public Builder backpressurePolicy(BackpressurePolicy backpressurePolicy) {
+			this.backpressurePolicy = backpressurePolicy;
+			return this;
+		}
+
+		public Builder queueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+			return this;
+		}
+
+		public Builder sampleRate(int sampleRate) {
+			this.sampleRate = sampleRate;
+			return this;
+		}
+
+		public FileObserverConfig build() {
+			if (this.batchSize <= 0) {
+				throw new IllegalArgumentException("The batch size must be positive: " + this.batchSize);
+			}
+			if (this.queueCapacity <= 0) {
+				throw new IllegalArgumentException("The queue capacity must be positive: " + this.queueCapacity);
+			}
+			if (this.sampleRate <= 0) {
+				throw new IllegalArgumentException("The sample rate must be positive: " + this.sampleRate);
+			}
+			return new FileObserverConfig(this);
+		}
+	}
+}
@@ -0,0 +1,274 @@
+package com.adambarreiro.monitor.capture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Reads the new lines of a single file, following it across rotations.
+ *
+ * A rotation is detected when the path points to a different file key (inode on Linux) than the open file, like
+ * logrotate does with rename and create. In that case the rotated file is drained before switching to the new one.
+ * A file that is truncated in place is read again from the beginning.
+ *
+ * A last line without line break may still be being written, so it's only emitted once the file hasn't grown for a
+ * grace period, or when the file is drained.
+ */
+final class FileTail implements Closeable {
+
+	private static final String READ_MODE = "r";
+
+	private final Path path;
+	private final LineReader reader;
+	private final long pendingLineGraceNanos;
+
+	private FileChannel channel;
+	private Object fileKey;
+	private long offset;
+	private long checkpointOffset;
+	private long lastGrowthNanos;
+
+	private FileTail(Path path, LineReader reader, long pendingLineGraceMillis, FileChannel channel, Object fileKey,
+			long offset) {
+		this.path = path;
+		this.reader = reader;
+		this.pendingLineGraceNanos = TimeUnit.MILLISECONDS.toNanos(pendingLineGraceMillis);
+		this.channel = channel;
+		this.fileKey = fileKey;
+		this.offset = offset;
+		this.checkpointOffset = offset;
+		this.lastGrowthNanos = System.nanoTime();
+	}
+
+	/**
+	 * Opens the file, resuming from its checkpoint if it's still valid, or from the beginning otherwise.
+	 *
+	 * @param path                   the file to read.
+	 * @param reader                 the reader to split the lines of the file.
+	 * @param pendingLineGraceMillis how long the file must stop growing before a last line without line break is
+	 *                               emitted.
+	 * @param checkpoint             the last known position in the file, if any.
+	 * @return An instance of this class
+	 *
+	 * @throws IOException if the file does not exist or cannot be read.
+	 */
+	static FileTail open(Path path, LineReader reader, long pendingLineGraceMillis, Checkpoint checkpoint)
+			throws IOException {
+		FileChannel channel = new RandomAccessFile(path.toFile(), READ_MODE).getChannel();
+		Object fileKey = readFileKey(path);
+		long offset = 0L;
+		if (Objects.nonNull(checkpoint) && isValid(checkpoint, channel, fileKey)) {
+			offset = checkpoint.getOffset();
+		}
+		return new FileTail(path, reader, pendingLineGraceMillis, channel, fileKey, offset);
+	}
+
+	/**
+	 * Reads the lines written since the last call. If the file has been rotated, the rest of the rotated file is
+	 * read before switching to the new one. A last line without line break is emitted once the file has stopped
+	 * growing for the grace period.
+	 *
+	 * @param onLine a function called on every new line.
+	 * @return true if new data was found. False otherwise.
+	 * @throws IOException if something goes wrong with the file.
+	 */
+	boolean poll(Consumer<String> onLine) throws IOException {
+		return poll(onLine, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Reads the lines written since the last call, up to the given number of bytes. If the file has been rotated,
+	 * the rest of the rotated file is read before switching to the new one. A last line without line break is emitted
+	 * once the file has stopped growing for the grace period.
+	 *
+	 * @param onLine   a function called on every new line.
+	 * @param maxBytes the maximum number of bytes to read, so other files get their turn.
+	 * @return true if new data was found. False otherwise.
+	 * @throws IOException if something goes wrong with the file.
+	 */
+	boolean poll(Consumer<String> onLine, long maxBytes) throws IOException {
+		if (isRotated()) {
+			drain(onLine);
+			switchToNewFile();
+			return true;
+		}
+		if (isTruncated()) {
+			reset();
+		}
+		if (isNewDataAvailable()) {
+			this.offset = this.reader.read(this.channel, this.offset, onLine, maxBytes);
+			this.lastGrowthNanos = System.nanoTime();
+			return true;
+		}
+		if (System.nanoTime() - this.lastGrowthNanos >= this.pendingLineGraceNanos) {
+			// the file has stopped growing, so the last line is complete
+			this.reader.flushPendingLine(onLine);
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if there's data that hasn't been read yet. False otherwise.
+	 *
+	 * @return true if there's data that hasn't been read yet. False otherwise.
+	 * @throws IOException if something goes wrong with the file.
+	 */
+	boolean hasMoreData() throws IOException {
+		return isNewDataAvailable();
+	}
+
+	/**
+	 * Reads the rest of the file, including a last line without line break. Useful before closing a file that
+	 * is not going to be written anymore.
+	 *
+	 * @param onLine a function called on every new line.
+	 * @throws IOException if something goes wrong with the file.
+	 */
+	void drain(Consumer<String> onLine) throws IOException {
+		if (isNewDataAvailable()) {
+			this.offset = this.reader.read(this.channel, this.offset, onLine);
+		}
+		this.reader.flushPendingLine(onLine);
+	}
+
+	/**
+	 * Returns the position after the last emitted line.
+	 *
+	 * @return the position after the last emitted line.
+	 */
+	Checkpoint getCheckpoint() {
+		return new Checkpoint(String.valueOf(this.fileKey), this.offset - this.reader.getPendingLength(),
+				this.reader.getLastLineLength(), this.reader.getLastLineHash());
+	}
+
+	/**
+	 * Stores the current checkpoint if it has changed since the last time.
+	 *
+	 * @param store the store of checkpoints.
+	 * @return true if the checkpoint has changed. False otherwise.
+	 */
+	boolean checkpoint(CheckpointStore store) {
+		Checkpoint checkpoint = getCheckpoint();
+		if (checkpoint.getOffset() == this.checkpointOffset) {
+			return false;
+		}
+		store.put(this.path, checkpoint);
+		this.checkpointOffset = checkpoint.getOffset();
+		return true;
+	}
+
+	Path getPath() {
+		return this.path;
+	}
+
+	String getFileKey() {
+		return String.valueOf(this.fileKey);
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	/**
+	 * Closes the rotated file and opens the new one from the beginning.
+	 *
+	 * @throws IOException if something goes wrong with the files.
+	 */
+	private void switchToNewFile() throws IOException {
+		this.channel.close();
+		this.channel = new RandomAccessFile(this.path.toFile(), READ_MODE).getChannel();
+		this.fileKey = readFileKey(this.path);
+		reset();
+	}
+
+	/**
+	 * Returns true if the path points to another file than the one being read. False otherwise.
+	 *
+	 * @return true if the file has been rotated. False otherwise.
+	 */
+	private boolean isRotated() {
+		if (Objects.isNull(this.fileKey)) {
+			return false;
+		}
+		try {
+			return !this.fileKey.equals(readFileKey(this.path));
+		} catch (NoSuchFileException e) {
+			// Renamed, but the new file is not created yet: keep reading the old one
+			return false;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns true if the file has been emptied. False otherwise.
+	 *
+	 * @return true if the file has been emptied. False otherwise.
+	 * @throws IOException if something goes wrong with the current file.
+	 */
+	private boolean isTruncated() throws IOException {
+		return this.channel.size() < this.offset;
+	}
+
+	/**
+	 * Returns true if the file has new data available. False otherwise.
+	 *
+	 * @return true if the file has new data available. False otherwise.
+	 * @throws IOException if something goes wrong with the current file.
+	 */
+	private boolean isNewDataAvailable() throws IOException {
+		return this.channel.size() > this.offset;
+	}
+
+	/**
+	 * Resets the file offset to the beginning, discarding any pending line.
+	 */
+	private void reset() {
+		this.reader.reset();
+		this.offset = 0L;
+		this.checkpointOffset = -1L;
+	}
+
+	/**
+	 * Returns true if the checkpoint belongs to the open file and the line that ends at its offset is the same one.
+	 * False otherwise.
+	 *
+	 * @param checkpoint the checkpoint to validate.
+	 * @param channel    the open file.
+	 * @param fileKey    the key of the open file.
+	 * @return true if the checkpoint is valid. False otherwise.
+	 * @throws IOException if the file cannot be read.
+	 */
+	private static boolean isValid(Checkpoint checkpoint, FileChannel channel, Object fileKey) throws IOException {
+		if (!String.valueOf(fileKey).equals(checkpoint.getFileKey()) || channel.size() < checkpoint.getOffset()
+				|| checkpoint.getOffset() < checkpoint.getLineLength()) {
+			return false;
+		}
+		ByteBuffer line = ByteBuffer.allocate(checkpoint.getLineLength());
+		long position = checkpoint.getOffset() - checkpoint.getLineLength();
+		while (line.hasRemaining() && channel.read(line, position + line.position()) > 0) {
+			// Keep reading until the whole line is in the buffer
+		}
+		if (line.hasRemaining()) {
+			return false;
+		}
+		CRC32 checksum = new CRC32();
+		checksum.update(line.flip());
+		return checksum.getValue() == checkpoint.getLineHash();
+	}
+
+	private static Object readFileKey(Path path) throws IOException {
+		return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+	}
+}
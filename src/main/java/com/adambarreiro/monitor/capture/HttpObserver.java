@@ -1,5 +1,6 @@
 package com.adambarreiro.monitor.capture;
 
+import com.adambarreiro.monitor.capture.vo.LineBatch;
 import io.reactivex.rxjava3.functions.Consumer;
 
 public final class HttpObserver implements Observer {
@@ -7,7 +8,7 @@ public final class HttpObserver implements Observer {
 	// TODO: We could observe other sources like HTTP endpoints, messaging queues, a database...
 
 	@Override
-	public void observe(Consumer<? super Object> onNext) {
+	public void observeBatches(Consumer<? super LineBatch> onBatch) {
 	}
 
 }
@@ -0,0 +1,61 @@
+package com.adambarreiro.monitor.capture;
+
+import com.adambarreiro.monitor.capture.vo.LineBatch;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Groups the lines read from a source in {@link LineBatch}es. A batch is delivered when it's full, when its first
+ * line is older than the maximum delay or when it's flushed, at the end of every read.
+ */
+final class LineBatcher {
+
+	private static final int DELAY_CHECK_MASK = 63;
+
+	private final String source;
+	private final long maxDelayNanos;
+	private final Consumer<LineBatch> onBatch;
+	private final String[] lines;
+
+	private int size;
+	private long firstLineNanos;
+
+	LineBatcher(String source, int maxSize, long maxDelayMillis, Consumer<LineBatch> onBatch) {
+		this.source = source;
+		this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+		this.onBatch = onBatch;
+		this.lines = new String[maxSize];
+		this.size = 0;
+	}
+
+	/**
+	 * Adds a line to the current batch, delivering it if it's full or too old. The clock is only checked every
+	 * few lines.
+	 *
+	 * @param line the line.
+	 */
+	void add(String line) {
+		if (this.size == 0) {
+			this.firstLineNanos = System.nanoTime();
+		}
+		this.lines[this.size++] = line;
+		if (this.size == this.lines.length
+				|| ((this.size & DELAY_CHECK_MASK) == 0 && System.nanoTime() - this.firstLineNanos >= this.maxDelayNanos)) {
+			flush();
+		}
+	}
+
+	/**
+	 * Delivers the current batch, if it's not empty.
+	 */
+	void flush() {
+		if (this.size > 0) {
+			LineBatch batch = new LineBatch(this.source, Arrays.copyOf(this.lines, this.size));
+			Arrays.fill(this.lines, 0, this.size, null);
+			this.size = 0;
+			this.onBatch.accept(batch);
+		}
+	}
+}
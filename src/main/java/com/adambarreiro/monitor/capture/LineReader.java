@@ -0,0 +1,262 @@
+package com.adambarreiro.monitor.capture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Reads text lines from a {@link FileChannel} in big chunks instead of byte by byte. Every chunk is copied into a
+ * reusable direct buffer and split in place, so a single read call serves thousands of lines. When enabled, big
+ * backlogs are memory-mapped instead of copied.
+ *
+ * Lines are decoded as UTF-8. A line that is split between two chunks is kept as pending until its end arrives, so
+ * the reader never emits half lines while the file is being written. The reader also remembers the length and the
+ * hash of the last emitted line, so the position in the file can be verified later.
+ */
+public final class LineReader {
+
+	public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+	private static final long MAPPED_REGION_SIZE = 64L * 1024 * 1024;
+	private static final int INITIAL_LINE_SIZE = 1024;
+	private static final byte LF = '\n';
+	private static final byte CR = '\r';
+
+	private final ByteBuffer buffer;
+	private final boolean memoryMapped;
+	private final CRC32 checksum;
+
+	private byte[] line;
+	private int lineLength;
+	private int lastLineLength;
+	private long lastLineHash;
+
+	private LineReader(ByteBuffer buffer, boolean memoryMapped) {
+		this.buffer = buffer;
+		this.memoryMapped = memoryMapped;
+		this.checksum = new CRC32();
+		this.line = new byte[INITIAL_LINE_SIZE];
+		this.lineLength = 0;
+		this.lastLineLength = 0;
+		this.lastLineHash = 0L;
+	}
+
+	/**
+	 * Creates a line reader.
+	 *
+	 * @param bufferSize   Size in bytes of the read buffer.
+	 * @param memoryMapped If true, the backlogs bigger than the buffer are memory-mapped instead of read.
+	 * @return An instance of this class
+	 */
+	public static LineReader of(final int bufferSize, final boolean memoryMapped) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("The buffer size must be positive: " + bufferSize);
+		}
+		return new LineReader(ByteBuffer.allocateDirect(bufferSize), memoryMapped);
+	}
+
+	/**
+	 * Reads every complete line from the given position until the end of the channel. A trailing line without
+	 * line terminator is kept as pending, see {@link #flushPendingLine(Consumer)}.
+	 *
+	 * @param channel  the channel to read.
+	 * @param position the position to start reading from.
+	 * @param onLine   a function called on every read line.
+	 * @return the position of the channel after the last read byte, including the pending line.
+	 * @throws IOException if something goes wrong with the channel.
+	 */
+	public long read(FileChannel channel, long position, Consumer<String> onLine) throws IOException {
+		return read(channel, position, onLine, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Reads the complete lines from the given position until the end of the channel or until the given number
+	 * of bytes has been read, whatever comes first. A trailing line without line terminator is kept as pending,
+	 * see {@link #flushPendingLine(Consumer)}.
+	 *
+	 * @param channel  the channel to read.
+	 * @param position the position to start reading from.
+	 * @param onLine   a function called on every read line.
+	 * @param maxBytes the maximum number of bytes to read.
+	 * @return the position of the channel after the last read byte, including the pending line.
+	 * @throws IOException if something goes wrong with the channel.
+	 */
+	public long read(FileChannel channel, long position, Consumer<String> onLine, long maxBytes) throws IOException {
+		long limit = maxBytes > Long.MAX_VALUE - position ? Long.MAX_VALUE : position + maxBytes;
+		long current = position;
+		if (this.memoryMapped) {
+			current = readMapped(channel, current, limit, onLine);
+		}
+		int read = readChunk(channel, current, limit);
+		while (read > 0) {
+			current += read;
+			split(this.buffer, onLine);
+			read = readChunk(channel, current, limit);
+		}
+		return current;
+	}
+
+	/**
+	 * Returns true if there's a line waiting for its terminator. False otherwise.
+	 *
+	 * @return true if there's a line waiting for its terminator. False otherwise.
+	 */
+	public boolean hasPendingLine() {
+		return this.lineLength > 0;
+	}
+
+	/**
+	 * Returns the number of bytes of the line waiting for its terminator.
+	 *
+	 * @return the number of bytes of the line waiting for its terminator.
+	 */
+	public int getPendingLength() {
+		return this.lineLength;
+	}
+
+	/**
+	 * Emits the line waiting for its terminator, if any. This is useful when the writer is not going to
+	 * finish it, like the last line of a file without a line break.
+	 *
+	 * @param onLine a function called with the pending line.
+	 */
+	public void flushPendingLine(Consumer<String> onLine) {
+		if (hasPendingLine()) {
+			emit(onLine, false);
+		}
+	}
+
+	/**
+	 * Returns the number of bytes of the last emitted line, including its line terminator.
+	 *
+	 * @return the number of bytes of the last emitted line.
+	 */
+	public int getLastLineLength() {
+		return this.lastLineLength;
+	}
+
+	/**
+	 * Returns the CRC-32 of the bytes of the last emitted line, including its line terminator.
+	 *
+	 * @return the hash of the last emitted line.
+	 */
+	public long getLastLineHash() {
+		return this.lastLineHash;
+	}
+
+	/**
+	 * Discards the pending line. It must be called when the channel is read from another position.
+	 */
+	public void reset() {
+		this.lineLength = 0;
+		this.lastLineLength = 0;
+		this.lastLineHash = 0L;
+	}
+
+	/**
+	 * Fills the buffer with the bytes of the channel starting at the given position.
+	 *
+	 * @param channel  the channel to read.
+	 * @param position the position to start reading from.
+	 * @param limit    the position where reading must stop.
+	 * @return the number of read bytes, zero or less if the end of the channel or the limit was reached.
+	 * @throws IOException if something goes wrong with the channel.
+	 */
+	private int readChunk(FileChannel channel, long position, long limit) throws IOException {
+		this.buffer.clear();
+		if (limit - position < this.buffer.capacity()) {
+			this.buffer.limit((int) (limit - position));
+		}
+		int read = channel.read(this.buffer, position);
+		this.buffer.flip();
+		return read;
+	}
+
+	/**
+	 * Maps and splits the backlog of the channel in regions, as long as it's bigger than the read buffer.
+	 *
+	 * @param channel  the channel to read.
+	 * @param position the position to start reading from.
+	 * @param limit    the position where reading must stop.
+	 * @param onLine   a function called on every read line.
+	 * @return the position of the channel after the last mapped byte.
+	 * @throws IOException if something goes wrong with the channel.
+	 */
+	private long readMapped(FileChannel channel, long position, long limit, Consumer<String> onLine) throws IOException {
+		long current = position;
+		long remaining = Math.min(channel.size(), limit) - current;
+		while (remaining > this.buffer.capacity()) {
+			long regionSize = Math.min(remaining, MAPPED_REGION_SIZE);
+			MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, current, regionSize);
+			split(region, onLine);
+			current += regionSize;
+			remaining -= regionSize;
+		}
+		return current;
+	}
+
+	/**
+	 * Splits the readable bytes of the chunk in lines. The bytes after the last line terminator are kept
+	 * as pending.
+	 *
+	 * @param chunk  the bytes to split.
+	 * @param onLine a function called on every complete line.
+	 */
+	private void split(ByteBuffer chunk, Consumer<String> onLine) {
+		int start = chunk.position();
+		int limit = chunk.limit();
+		for (int i = start; i < limit; i++) {
+			if (chunk.get(i) == LF) {
+				append(chunk, start, i - start);
+				emit(onLine, true);
+				start = i + 1;
+			}
+		}
+		append(chunk, start, limit - start);
+	}
+
+	/**
+	 * Copies bytes of the chunk at the end of the current line.
+	 *
+	 * @param chunk  the source of bytes.
+	 * @param from   the index of the first byte to copy.
+	 * @param length the number of bytes to copy.
+	 */
+	private void append(ByteBuffer chunk, int from, int length) {
+		if (length == 0) {
+			return;
+		}
+		if (this.lineLength + length > this.line.length) {
+			this.line = Arrays.copyOf(this.line, Math.max(this.line.length * 2, this.lineLength + length));
+		}
+		chunk.get(from, this.line, this.lineLength, length);
+		this.lineLength += length;
+	}
+
+	/**
+	 * Decodes the current line, without its carriage return if present, and starts a new one.
+	 *
+	 * @param onLine     a function called with the decoded line.
+	 * @param terminated true if the line was finished by a line feed.
+	 */
+	private void emit(Consumer<String> onLine, boolean terminated) {
+		int length = this.lineLength;
+		this.checksum.reset();
+		this.checksum.update(this.line, 0, length);
+		if (terminated) {
+			this.checksum.update(LF);
+		}
+		this.lastLineHash = this.checksum.getValue();
+		this.lastLineLength = terminated ? length + 1 : length;
+		if (length > 0 && this.line[length - 1] == CR) {
+			length--;
+		}
+		this.lineLength = 0;
+		onLine.accept(new String(this.line, 0, length, StandardCharsets.UTF_8));
+	}
+}
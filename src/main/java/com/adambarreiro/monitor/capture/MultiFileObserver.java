@@ -0,0 +1,498 @@
+package com.adambarreiro.monitor.capture;
+
+import com.adambarreiro.monitor.capture.vo.LineBatch;
+import com.adambarreiro.monitor.capture.vo.SourcedLine;
+import io.reactivex.rxjava3.functions.Consumer;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Observes all the files in a directory, or all the files matching a glob pattern like
+ * <code>/var/log/nginx/*.access.log</code>. New files are picked up as they appear.
+ *
+ * Instead of a thread per file, all of them are multiplexed over a small fixed pool of reader threads. Every turn
+ * reads a limited amount of bytes from a file and, if there's more, the file goes back to the end of the queue, so
+ * a busy file cannot starve the rest. Idle files wait with an adaptive back-off and, in {@link TailMode#WATCH}, are
+ * woken up by file system events.
+ *
+ * Lines are delivered in {@link LineBatch}es tagged with the path of their file, relative to the directory. A batch
+ * never mixes lines of different files. All the reader threads share a bounded {@link BatchQueue}, so with
+ * {@link BackpressurePolicy#BLOCK} a slow consumer pauses every file.
+ */
+public final class MultiFileObserver implements Observer {
+
+	private static final String GLOB_CHARACTERS = "*?[{";
+	private static final String RECURSIVE_GLOB = "**";
+	private static final String GLOB_SYNTAX = "glob:";
+	private static final long MAX_BYTES_PER_TURN = 1024L * 1024L;
+
+	private final Path directory;
+	private final PathMatcher matcher;
+	private final int maxDepth;
+	private final FileObserverConfig config;
+	private final int readerThreads;
+	private final CheckpointStore checkpointStore;
+	private final Map<Path, TailTask> tasks;
+	private final BatchQueue queue;
+
+	private ScheduledThreadPoolExecutor executor;
+	private WatchService watchService;
+	private CountDownLatch stopped;
+	private volatile boolean initialized;
+
+	private MultiFileObserver(Path directory, PathMatcher matcher, int maxDepth, FileObserverConfig config,
+			int readerThreads, CheckpointStore checkpointStore) {
+		this.directory = directory;
+		this.matcher = matcher;
+		this.maxDepth = maxDepth;
+		this.config = config;
+		this.readerThreads = readerThreads;
+		this.checkpointStore = checkpointStore;
+		this.tasks = new ConcurrentHashMap<>();
+		this.queue = BatchQueue.of(config);
+		this.initialized = false;
+	}
+
+	/**
+	 * Creates an observer that is ready to be subscribed to the files of a directory or the files that match a glob
+	 * pattern.
+	 *
+	 * @param pattern       A directory or a glob pattern.
+	 * @param config        How the files are read and tailed.
+	 * @param readerThreads The number of threads that read the files.
+	 * @return An instance of this class
+	 *
+	 * @throws IOException If the directory of the pattern does not exist
+	 */
+	public static MultiFileObserver of(final String pattern, final FileObserverConfig config, final int readerThreads) throws IOException {
+		Path path = Paths.get(pattern).toAbsolutePath().normalize();
+		Path directory = path;
+		String glob = path.resolve("*").toString();
+		int maxDepth = 1;
+		if (isGlob(pattern)) {
+			directory = path.getRoot();
+			int depth = 0;
+			while (depth < path.getNameCount() && !isGlob(path.getName(depth).toString())) {
+				directory = directory.resolve(path.getName(depth));
+				depth++;
+			}
+			glob = path.toString();
+			maxDepth = glob.contains(RECURSIVE_GLOB) ? Integer.MAX_VALUE : path.getNameCount() - depth;
+		}
+		if (!Files.isDirectory(directory)) {
+			throw new NoSuchFileException(directory.toString());
+		}
+		CheckpointStore checkpointStore = config.isCheckpointEnabled() ? CheckpointStore.of(Paths.get(config.getCheckpointFile())) : null;
+		return new MultiFileObserver(directory, FileSystems.getDefault().getPathMatcher(GLOB_SYNTAX + glob),
+				maxDepth, config, readerThreads, checkpointStore);
+	}
+
+	/**
+	 * Returns true if the log file option refers to several files, a directory or a glob pattern. False otherwise.
+	 *
+	 * @param pattern the log file option.
+	 * @return true if the option refers to several files. False otherwise.
+	 */
+	public static boolean isMultiFile(String pattern) {
+		return isGlob(pattern) || Files.isDirectory(Paths.get(pattern));
+	}
+
+	/**
+	 * Subscribes to the files and starts polling their contents indefinitely. Warning, this subscription process
+	 * blocks the calling thread until the observer is stopped. Line by line, through
+	 * {@link #observe(Consumer)}, every line is a {@link SourcedLine}.
+	 *
+	 * @param onBatch a function called on every batch of lines of the files. It runs in a separated thread pool.
+	 */
+	@Override
+	public void observeBatches(Consumer<? super LineBatch> onBatch) {
+		if (initialized) {
+			return;
+		}
+		initialized = true;
+		stopped = new CountDownLatch(1);
+		this.queue.subscribe(onBatch);
+		this.start();
+		try {
+			this.stopped.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Gets the metrics of the queue shared by all the files.
+	 *
+	 * @return the metrics of the queue.
+	 */
+	@Override
+	public CaptureMetrics getMetrics() {
+		return this.queue;
+	}
+
+	/**
+	 * Stops the reader threads and closes all the files, checkpointing them first.
+	 *
+	 * @throws IOException if a file cannot be closed for any reason.
+	 */
+	public void stop() throws IOException {
+		if (!initialized) {
+			return;
+		}
+		initialized = false;
+		queue.close();
+		if (Objects.nonNull(watchService)) {
+			watchService.close();
+		}
+		if (Objects.nonNull(executor)) {
+			executor.shutdown();
+			try {
+				executor.awaitTermination(config.getMaxIdleTimeMillis(), TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		for (TailTask task : tasks.values()) {
+			task.close();
+		}
+		tasks.clear();
+		saveCheckpoints();
+		stopped.countDown();
+	}
+
+	/**
+	 * Gets the paths of the files currently observed.
+	 *
+	 * @return the paths of the observed files.
+	 */
+	public Set<Path> getObservedFiles() {
+		return Set.copyOf(tasks.keySet());
+	}
+
+	/**
+	 * Starts the reader threads, the discovery of new files and the checkpoints.
+	 */
+	private void start() {
+		this.executor = new ScheduledThreadPoolExecutor(this.readerThreads);
+		this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		this.discover();
+		this.executor.scheduleWithFixedDelay(this::discover, this.config.getMaxIdleTimeMillis(),
+				this.config.getMaxIdleTimeMillis(), TimeUnit.MILLISECONDS);
+		if (Objects.nonNull(this.checkpointStore)) {
+			this.executor.scheduleWithFixedDelay(this::saveCheckpoints, this.config.getCheckpointIntervalMillis(),
+					this.config.getCheckpointIntervalMillis(), TimeUnit.MILLISECONDS);
+		}
+		if (this.config.getTailMode() == TailMode.WATCH && this.maxDepth == 1) {
+			this.startWatching();
+		}
+	}
+
+	/**
+	 * Looks for new files matching the pattern and retires the ones that don't exist anymore. A file whose key is being
+	 * read, or has been read, by an observed file is skipped, as it's a rotated copy of it. Only the live files count:
+	 * once a file is closed, or its rotated copy is gone, its key can be reused by a new file.
+	 */
+	private synchronized void discover() {
+		if (!initialized) {
+			return;
+		}
+		Map<Path, String> files = new HashMap<>();
+		try (Stream<Path> paths = Files.find(this.directory, this.maxDepth,
+				(path, attributes) -> attributes.isRegularFile() && this.matcher.matches(path))) {
+			paths.forEach(path -> files.put(path, fileKeyOf(path)));
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		for (TailTask task : this.tasks.values()) {
+			if (files.containsKey(task.tail.getPath())) {
+				task.forgetRotatedFileKeys(files.values());
+			} else {
+				task.retire();
+			}
+		}
+		files.forEach((file, fileKey) -> {
+			if (!this.tasks.containsKey(file)) {
+				add(file, fileKey);
+			}
+		});
+	}
+
+	/**
+	 * Starts observing a new file, unless an observed file has read it.
+	 *
+	 * @param file    the file to observe.
+	 * @param fileKey the key of the file, or null if it's unknown.
+	 */
+	private void add(Path file, String fileKey) {
+		if (Objects.nonNull(fileKey) && this.tasks.values().stream().anyMatch(task -> task.hasRead(fileKey))) {
+			return;
+		}
+		try {
+			Checkpoint checkpoint = Objects.isNull(this.checkpointStore) ? null : this.checkpointStore.get(file).orElse(null);
+			FileTail tail = FileTail.open(file, LineReader.of(this.config.getBufferSize(), this.config.isMemoryMapped()),
+					this.config.getMaxIdleTimeMillis(), checkpoint);
+			TailTask task = new TailTask(tail, this.directory.relativize(file).toString());
+			this.tasks.put(file, task);
+			this.executor.execute(task);
+		} catch (NoSuchFileException e) {
+			// Deleted before we could open it
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Saves the checkpoints of all the files, if any has changed.
+	 */
+	private void saveCheckpoints() {
+		if (Objects.isNull(this.checkpointStore)) {
+			return;
+		}
+		try {
+			this.checkpointStore.save();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Starts a thread that wakes up the files modified in the directory and discovers the new ones straight away.
+	 */
+	private void startWatching() {
+		try {
+			this.watchService = this.directory.getFileSystem().newWatchService();
+			this.directory.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		} catch (IOException | UnsupportedOperationException e) {
+			// The adaptive polling of every file is good enough
+			return;
+		}
+		Thread watcher = new Thread(() -> {
+			try {
+				while (initialized) {
+					WatchKey key = this.watchService.take();
+					for (WatchEvent<?> event : key.pollEvents()) {
+						TailTask task = event.kind() == StandardWatchEventKinds.OVERFLOW ? null
+								: this.tasks.get(this.directory.resolve((Path) event.context()));
+						if (Objects.nonNull(task)) {
+							task.wake();
+						} else {
+							this.executor.execute(this::discover);
+						}
+					}
+					key.reset();
+				}
+			} catch (ClosedWatchServiceException | RejectedExecutionException e) {
+				// The observer has been stopped
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, "file-watcher");
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+
+	private static String fileKeyOf(Path file) {
+		try {
+			Object fileKey = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+			return Objects.isNull(fileKey) ? null : fileKey.toString();
+		} catch (IOException e) {
+			// Deleted since it was found
+			return null;
+		}
+	}
+
+	private static boolean isGlob(String pattern) {
+		return pattern.chars().anyMatch(c -> GLOB_CHARACTERS.indexOf(c) >= 0);
+	}
+
+	/**
+	 * A turn of reading of a single file. A task never runs in two threads at the same time, as it's only
+	 * rescheduled at the end of its own turn.
+	 */
+	private final class TailTask implements Runnable {
+
+		private final FileTail tail;
+		private final LineBatcher batcher;
+		private final AdaptivePollTailStrategy backOff;
+		private final long checkpointIntervalNanos;
+		private final Set<String> fileKeys;
+
+		private volatile String fileKey;
+		private ScheduledFuture<?> parked;
+		private long lastCheckpointNanos;
+		private boolean woken;
+		private boolean retired;
+		private boolean closed;
+
+		private TailTask(FileTail tail, String source) {
+			this.tail = tail;
+			this.batcher = new LineBatcher(source, config.getBatchSize(), config.getBatchDelayMillis(), this::enqueue);
+			this.backOff = new AdaptivePollTailStrategy(config.getMaxIdleTimeMillis());
+			this.checkpointIntervalNanos = TimeUnit.MILLISECONDS.toNanos(config.getCheckpointIntervalMillis());
+			this.lastCheckpointNanos = System.nanoTime();
+			this.fileKeys = ConcurrentHashMap.newKeySet();
+			this.fileKey = tail.getFileKey();
+			this.fileKeys.add(this.fileKey);
+		}
+
+		@Override
+		public void run() {
+			synchronized (this) {
+				if (this.closed) {
+					return;
+				}
+				this.parked = null;
+				this.woken = false;
+			}
+			long idleTimeMillis = config.getMaxIdleTimeMillis();
+			try {
+				boolean dataFound = this.tail.poll(this.batcher::add, MAX_BYTES_PER_TURN);
+				boolean moreData = this.tail.hasMoreData();
+				if (!this.fileKey.equals(this.tail.getFileKey())) {
+					// rotated: the previous file is still known until its copy is gone
+					this.fileKey = this.tail.getFileKey();
+					this.fileKeys.add(this.fileKey);
+				}
+				if (isRetired() && !moreData) {
+					this.tail.drain(this.batcher::add);
+					this.batcher.flush();
+					close();
+					tasks.remove(this.tail.getPath(), this);
+					return;
+				}
+				this.batcher.flush();
+				this.checkpointIfDue();
+				idleTimeMillis = moreData ? 0L : this.backOff.nextIdleTimeMillis(dataFound);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			this.reschedule(idleTimeMillis);
+		}
+
+		/**
+		 * Enqueues a batch of lines of the file, waiting for room if the backpressure policy says so.
+		 *
+		 * @param batch the batch of lines.
+		 */
+		private void enqueue(LineBatch batch) {
+			try {
+				queue.put(batch);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * Reads the file straight away if it's waiting for its next turn, or right after the current one.
+		 */
+		private synchronized void wake() {
+			this.woken = true;
+			if (Objects.nonNull(this.parked) && this.parked.cancel(false)) {
+				this.parked = null;
+				this.submit(0L);
+			}
+		}
+
+		/**
+		 * Returns true if this task reads, or has read, the file with the given key.
+		 *
+		 * @param fileKey the key of the file.
+		 * @return true if the file has been read by this task. False otherwise.
+		 */
+		private boolean hasRead(String fileKey) {
+			return this.fileKeys.contains(fileKey);
+		}
+
+		/**
+		 * Forgets the keys of the files this task read before a rotation that don't exist anymore.
+		 *
+		 * @param existingFileKeys the keys of the existing files.
+		 */
+		private void forgetRotatedFileKeys(Collection<String> existingFileKeys) {
+			String current = this.fileKey;
+			this.fileKeys.removeIf(key -> !key.equals(current) && !existingFileKeys.contains(key));
+		}
+
+		/**
+		 * Marks the file as gone. It will be read until its end and closed.
+		 */
+		private synchronized void retire() {
+			this.retired = true;
+		}
+
+		private synchronized boolean isRetired() {
+			return this.retired;
+		}
+
+		/**
+		 * Checkpoints and closes the file.
+		 */
+		private synchronized void close() {
+			if (this.closed) {
+				return;
+			}
+			this.closed = true;
+			if (Objects.nonNull(this.parked)) {
+				this.parked.cancel(false);
+			}
+			if (Objects.nonNull(checkpointStore)) {
+				this.tail.checkpoint(checkpointStore);
+			}
+			try {
+				this.tail.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		private void checkpointIfDue() {
+			if (Objects.nonNull(checkpointStore) && System.nanoTime() - this.lastCheckpointNanos >= this.checkpointIntervalNanos) {
+				this.lastCheckpointNanos = System.nanoTime();
+				this.tail.checkpoint(checkpointStore);
+			}
+		}
+
+		private synchronized void reschedule(long idleTimeMillis) {
+			if (!this.closed) {
+				this.submit(this.woken ? 0L : idleTimeMillis);
+			}
+		}
+
+		private void submit(long idleTimeMillis) {
+			try {
+				if (idleTimeMillis == 0L) {
+					executor.execute(this);
+				} else {
+					this.parked = executor.schedule(this, idleTimeMillis, TimeUnit.MILLISECONDS);
+				}
+			} catch (RejectedExecutionException e) {
+				// The observer has been stopped
+			}
+		}
+	}
+}
@@ -1,15 +1,42 @@
 package com.adambarreiro.monitor.capture;
 
 
+import com.adambarreiro.monitor.capture.vo.LineBatch;
+import com.adambarreiro.monitor.capture.vo.SourcedLine;
 import io.reactivex.rxjava3.functions.Consumer;
 
+import java.util.Objects;
+
 public interface Observer {
 
 	/**
-	 * Subscribes to any source and starts polling its data.
+	 * Subscribes to any source and starts polling its data, delivered in batches of lines.
+	 *
+	 * @param onBatch a function called on every batch of processed data.
+	 */
+	void observeBatches(Consumer<? super LineBatch> onBatch);
+
+	/**
+	 * Gets the metrics of the queue between the observer and its consumer.
+	 *
+	 * @return the metrics of the queue.
+	 */
+	default CaptureMetrics getMetrics() {
+		return CaptureMetrics.NONE;
+	}
+
+	/**
+	 * Subscribes to any source and starts polling its data. Lines are delivered one by one, as a {@link String} or
+	 * as a {@link SourcedLine} if the observer tags them with their source.
 	 *
 	 * @param onNext a function called on every processed piece of data.
 	 */
-	void observe(Consumer<? super Object> onNext);
+	default void observe(Consumer<? super Object> onNext) {
+		observeBatches(batch -> {
+			for (String line : batch.getLines()) {
+				onNext.accept(Objects.isNull(batch.getSource()) ? line : new SourcedLine(batch.getSource(), line));
+			}
+		});
+	}
 
 }
@@ -0,0 +1,28 @@
+package com.adambarreiro.monitor.capture;
+
+/**
+ * The ways a {@link FileObserver} can wait for new data in the observed file.
+ */
+public enum TailMode {
+
+	/**
+	 * Waits for file system events, like inotify on Linux. Falls back to {@link #POLL} if the file system
+	 * doesn't support them.
+	 */
+	WATCH,
+
+	/**
+	 * Polls the file, waiting less when the file is busy and more when it's idle.
+	 */
+	POLL;
+
+	/**
+	 * Gets the tail mode with the given name, ignoring the case.
+	 *
+	 * @param name the name of the tail mode.
+	 * @return the tail mode.
+	 */
+	public static TailMode of(String name) {
+		return TailMode.valueOf(name.trim().toUpperCase());
+	}
+}
@@ -0,0 +1,20 @@
+package com.adambarreiro.monitor.capture;
+
+import java.io.Closeable;
+
+/**
+ * Decides how long a {@link FileObserver} waits between two reads of the observed file.
+ */
+interface TailStrategy extends Closeable {
+
+	/**
+	 * Waits until it's worth to read the observed file again.
+	 *
+	 * @param dataFound true if the last read found new data in the file.
+	 * @throws InterruptedException if the thread is interrupted while waiting.
+	 */
+	void await(boolean dataFound) throws InterruptedException;
+
+	@Override
+	void close();
+}
@@ -0,0 +1,96 @@
+package com.adambarreiro.monitor.capture;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waits for file system events on the observed file (inotify on Linux), so new lines are read a few milliseconds
+ * after being written and idle files cost nothing. As some file systems can miss events, it never waits longer than
+ * a maximum idle time.
+ */
+final class WatchServiceTailStrategy implements TailStrategy {
+
+	private final WatchService watchService;
+	private final Path fileName;
+	private final long maxIdleTimeMillis;
+
+	private WatchServiceTailStrategy(WatchService watchService, Path fileName, long maxIdleTimeMillis) {
+		this.watchService = watchService;
+		this.fileName = fileName;
+		this.maxIdleTimeMillis = maxIdleTimeMillis;
+	}
+
+	/**
+	 * Creates a strategy that watches the given file, or an {@link AdaptivePollTailStrategy} if the file system of
+	 * the file cannot be watched.
+	 *
+	 * @param file              the observed file.
+	 * @param maxIdleTimeMillis the maximum time to wait without events.
+	 * @return the strategy.
+	 */
+	static TailStrategy of(Path file, long maxIdleTimeMillis) {
+		Path absoluteFile = file.toAbsolutePath();
+		try {
+			WatchService watchService = absoluteFile.getFileSystem().newWatchService();
+			absoluteFile.getParent().register(watchService,
+					StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY,
+					StandardWatchEventKinds.ENTRY_DELETE);
+			return new WatchServiceTailStrategy(watchService, absoluteFile.getFileName(), maxIdleTimeMillis);
+		} catch (IOException | UnsupportedOperationException e) {
+			return new AdaptivePollTailStrategy(maxIdleTimeMillis);
+		}
+	}
+
+	@Override
+	public void await(boolean dataFound) throws InterruptedException {
+		if (dataFound) {
+			return;
+		}
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.maxIdleTimeMillis);
+		long remaining = this.maxIdleTimeMillis;
+		try {
+			while (remaining > 0) {
+				WatchKey key = this.watchService.poll(remaining, TimeUnit.MILLISECONDS);
+				if (key == null || isObservedFileChanged(key)) {
+					return;
+				}
+				remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+			}
+		} catch (ClosedWatchServiceException e) {
+			// The observer has been stopped
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			this.watchService.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Consumes the events of the key. Returns true if any of them affects the observed file. False otherwise.
+	 *
+	 * @param key the signalled key.
+	 * @return true if any of the events affects the observed file. False otherwise.
+	 */
+	private boolean isObservedFileChanged(WatchKey key) {
+		boolean changed = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW || this.fileName.equals(event.context())) {
+				changed = true;
+			}
+		}
+		key.reset();
+		return changed;
+	}
+}
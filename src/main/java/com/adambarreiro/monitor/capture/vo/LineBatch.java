@@ -0,0 +1,49 @@
+package com.adambarreiro.monitor.capture.vo;
+
+/**
+ * A group of consecutive lines read by an observer from the same source. Delivering lines in batches instead of one
+ * by one saves a queue hop and a scheduling round per line.
+ */
+public class LineBatch {
+
+	private final String source;
+	private final String[] lines;
+	private final int weight;
+
+	public LineBatch(String source, String[] lines) {
+		this(source, lines, 1);
+	}
+
+	public LineBatch(String source, String[] lines, int weight) {
+		this.source = source;
+		this.lines = lines;
+		this.weight = weight;
+	}
+
+	/**
+	 * Gets the source of the lines, like the file name. It's null if the observer doesn't tag its lines.
+	 *
+	 * @return the source of the lines.
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	public String[] getLines() {
+		return lines;
+	}
+
+	/**
+	 * Gets how many read lines every line of the batch stands for. It's greater than one when the batch has been
+	 * sampled.
+	 *
+	 * @return the weight of every line.
+	 */
+	public int getWeight() {
+		return weight;
+	}
+
+	public int size() {
+		return lines.length;
+	}
+}
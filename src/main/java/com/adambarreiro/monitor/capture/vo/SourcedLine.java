@@ -0,0 +1,28 @@
+package com.adambarreiro.monitor.capture.vo;
+
+/**
+ * A line read by an observer, tagged with the source it comes from, like the file name.
+ */
+public class SourcedLine {
+
+	private final String source;
+	private final String content;
+
+	public SourcedLine(String source, String content) {
+		this.source = source;
+		this.content = content;
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public String getContent() {
+		return content;
+	}
+
+	@Override
+	public String toString() {
+		return content;
+	}
+}
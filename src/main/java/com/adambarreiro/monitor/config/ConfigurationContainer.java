@@ -1,7 +1,10 @@
 package com.adambarreiro.monitor.config;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.stream.Collectors;
 
 /**
  * This class manages the configuration for the application.
@@ -17,10 +20,39 @@ public final class ConfigurationContainer {
 	 * All the available configuration options
 	 */
 	private static class ConfigurationOptions {
+		private static final String AGGREGATOR = "aggregator";
 		private static final String ALERT_INTERVAL_SECONDS = "alertInterval";
+		private static final String ALLOWED_LATENESS_SECONDS = "allowedLateness";
+		private static final String BATCH_DELAY_MILLIS = "batchDelay";
+		private static final String BATCH_SIZE = "batchSize";
+		private static final String BACKPRESSURE = "backpressure";
+		private static final String QUEUE_CAPACITY = "queueCapacity";
+		private static final String SAMPLE_RATE = "sampleRate";
+		private static final String CHECKPOINT_FILE = "checkpointFile";
+		private static final String CHECKPOINT_INTERVAL_SECONDS = "checkpointInterval";
+		private static final String GROUP_BY = "groupBy";
 		private static final String LOG_FILE = "logFile";
+		private static final String LOG_FORMAT = "logFormat";
+		private static final String MAX_IDLE_TIME_MILLIS = "maxIdleTime";
+		private static final String MEMORY_MAPPED = "memoryMapped";
+		private static final String PARSE_THREADS = "parseThreads";
+		private static final String PEER_AGGREGATOR = "peerAggregator";
+		private static final String PEER_NAME = "peerName";
+		private static final String READ_BUFFER_SIZE = "readBufferSize";
+		private static final String READER_THREADS = "readerThreads";
 		private static final Object REQUEST_RATE_THRESHOLD = "requestRateThreshold";
+		private static final String RING_SIZE = "ringSize";
 		private static final String SCHEDULE_INTERVAL_SECONDS = "scheduleInterval";
+		private static final String SHARDS = "shards";
+		private static final String STORE_DIRECTORY = "storeDirectory";
+		private static final String STORE_RETENTION_HOURS = "storeRetention";
+		private static final String STORE_ROLLUPS = "storeRollups";
+		private static final String TAIL_MODE = "tailMode";
+		private static final String TIME_MODE = "timeMode";
+		private static final String TOP_SITES = "topSites";
+		private static final String TOP_SITES_ERROR = "topSitesError";
+		private static final String WAIT_STRATEGY = "waitStrategy";
+		private static final String WINDOWS_SECONDS = "windows";
 	}
 
 	/**
@@ -31,6 +63,35 @@ public final class ConfigurationContainer {
 		private static final int SCHEDULE_INTERVAL_SECONDS = 10;
 		private static final int ALERT_INTERVAL_SECONDS = 120;
 		private static final String LOG_FILE = "/tmp/access.log";
+		private static final String LOG_FORMAT = "";
+		private static final boolean MEMORY_MAPPED = false;
+		private static final int READ_BUFFER_SIZE = 256 * 1024;
+		private static final String TAIL_MODE = "watch";
+		private static final long MAX_IDLE_TIME_MILLIS = 1000L;
+		private static final String CHECKPOINT_FILE = "";
+		private static final int CHECKPOINT_INTERVAL_SECONDS = 5;
+		private static final int READER_THREADS = 2;
+		private static final int BATCH_SIZE = 512;
+		private static final long BATCH_DELAY_MILLIS = 100L;
+		private static final String BACKPRESSURE = "block";
+		private static final int QUEUE_CAPACITY = 65536;
+		private static final int SAMPLE_RATE = 10;
+		private static final String WINDOWS_SECONDS = "10,60,300,3600";
+		private static final int TOP_SITES = 3;
+		private static final double TOP_SITES_ERROR = 0.01;
+		private static final String GROUP_BY = "statusClass,verb,site,source";
+		private static final String TIME_MODE = "processing";
+		private static final int ALLOWED_LATENESS_SECONDS = 2;
+		private static final String STORE_DIRECTORY = "";
+		private static final int STORE_RETENTION_HOURS = 168;
+		private static final String STORE_ROLLUPS = "60:720,3600:8760";
+		private static final String AGGREGATOR = "";
+		private static final String PEER_AGGREGATOR = "";
+		private static final String PEER_NAME = "";
+		private static final int SHARDS = 1;
+		private static final int PARSE_THREADS = 0;
+		private static final int RING_SIZE = 1024;
+		private static final String WAIT_STRATEGY = "blocking";
 	}
 
 	private ConfigurationContainer() {
@@ -65,6 +126,123 @@ public final class ConfigurationContainer {
 		return (String) this.properties.get(ConfigurationOptions.LOG_FILE);
 	}
 
+	/**
+	 * Gets the nginx or Apache format of the log lines. If empty, the lines are in Common Log Format.
+	 *
+	 * @return the log format.
+	 */
+	public String getLogFormat() {
+		return String.valueOf(this.properties.get(ConfigurationOptions.LOG_FORMAT));
+	}
+
+	/**
+	 * Gets the size in bytes of the buffer used to read the log file.
+	 *
+	 * @return the size of the read buffer.
+	 */
+	public int getReadBufferSize() {
+		return Integer.parseInt(String.valueOf(this.properties.get(ConfigurationOptions.READ_BUFFER_SIZE)));
+	}
+
+	/**
+	 * Returns true if big backlogs of the log file must be memory-mapped instead of read.
+	 *
+	 * @return true if big backlogs of the log file must be memory-mapped.
+	 */
+	public boolean isMemoryMapped() {
+		return Boolean.parseBoolean(String.valueOf(this.properties.get(ConfigurationOptions.MEMORY_MAPPED)));
+	}
+
+	/**
+	 * Gets how the log file is tailed: "watch" for file system events or "poll" for adaptive polling.
+	 *
+	 * @return the tail mode.
+	 */
+	public String getTailMode() {
+		return String.valueOf(this.properties.get(ConfigurationOptions.TAIL_MODE));
+	}
+
+	/**
+	 * Gets the maximum time in milliseconds to wait between two checks of the log file.
+	 *
+	 * @return the maximum idle time.
+	 */
+	public long getMaxIdleTimeMillis() {
+		return Long.parseLong(String.valueOf(this.properties.get(ConfigurationOptions.MAX_IDLE_TIME_MILLIS)));
+	}
+
+	/**
+	 * Gets the file where the position in the log file is checkpointed. Empty if checkpoints are disabled.
+	 *
+	 * @return the checkpoint file.
+	 */
+	public String getCheckpointFile() {
+		return String.valueOf(this.properties.get(ConfigurationOptions.CHECKPOINT_FILE));
+	}
+
+	/**
+	 * Gets the interval in which the position in the log file is checkpointed.
+	 *
+	 * @return the checkpoint interval.
+	 */
+	public int getCheckpointIntervalSeconds() {
+		return Integer.parseInt(String.valueOf(this.properties.get(ConfigurationOptions.CHECKPOINT_INTERVAL_SECONDS)));
+	}
+
+	/**
+	 * Gets the number of threads that read the log files, when the log file option is a directory or a glob.
+	 *
+	 * @return the number of reader threads.
+	 */
+	public int getReaderThreads() {
+		return Integer.parseInt(String.valueOf(this.properties.get(ConfigurationOptions.READER_THREADS)));
+	}
+
+	/**
+	 * Gets the maximum number of lines delivered together from the log files.
+	 *
+	 * @return the batch size.
+	 */
+	public int getBatchSize() {
+		return Integer.parseInt(String.valueOf(this.properties.get(ConfigurationOptions.BATCH_SIZE)));
+	}
+
+	/**
+	 * Gets the maximum time in milliseconds a read line can wait for its batch to be delivered.
+	 *
+	 * @return the batch delay.
+	 */
+	public long getBatchDelayMillis() {
+		return Long.parseLong(String.valueOf(this.properties.get(ConfigurationOptions.BATCH_DELAY_MILLIS)));
+	}
+
+	/**
+	 * Gets what to do with the read lines when the statistics cannot keep up: block, drop_oldest or sample.
+	 *
+	 * @return the backpressure policy.
+	 */
+	public String getBackpressure() {
+		return String.valueOf(this.properties.get(ConfigurationOptions.BACKPRESSURE));
+	}
+
+	/**
+	 * Gets the maximum number of read lines waiting to be processed.
+	 *
+	 * @return the queue capacity.
+	 */
+	public int getQueueCapacity() {
+		return Integer.parseInt(String.valueOf(this.properties.get(ConfigurationOptions.QUEUE_CAPACITY)));
+	}
+
+	/**
+	 * Gets N, when one of every N lines is kept by the sample backpressure policy.
+	 *
+	 * @return the sample rate.
+	 */
+	public int getSampleRate() {
+		return Integer.parseInt(String.valueOf(this.properties.get(ConfigurationOptions.SAMPLE_RATE)));
+	}
+
 	/**
 	 * Gets the interval in which the statistics are updated.
 	 *
@@ -74,6 +252,164 @@ public final class ConfigurationContainer {
 		return Integer.parseInt(String.valueOf(this.properties.get(ConfigurationOptions.SCHEDULE_INTERVAL_SECONDS)));
 	}
 
+	/**
+	 * Gets the length of the sliding windows of the statistics, besides the interval in which they're updated.
+	 *
+	 * @return the length in seconds of the windows.
+	 */
+	public List<Integer> getWindowsSeconds() {
+		return Arrays.stream(String.valueOf(this.properties.get(ConfigurationOptions.WINDOWS_SECONDS)).split(","))
+				.map(String::trim)
+				.filter(window -> !window.isEmpty())
+				.map(Integer::valueOf)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Gets the names of the dimensions the requests are grouped by, like statusClass or verb.
+	 *
+	 * @return the names of the dimensions.
+	 */
+	public List<String> getGroupBy() {
+		return Arrays.stream(String.valueOf(this.properties.get(ConfigurationOptions.GROUP_BY)).split(","))
+				.map(String::trim)
+				.filter(dimension -> !dimension.isEmpty())
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Gets how many top sites are reported.
+	 *
+	 * @return the number of top sites.
+	 */
+	public int getTopSites() {
+		return Integer.parseInt(String.valueOf(this.properties.get(ConfigurationOptions.TOP_SITES)));
+	}
+
+	/**
+	 * Gets the error bound of the hits and bytes of the top sites, as a fraction of the total hits and bytes.
+	 *
+	 * @return the error bound of the top sites.
+	 */
+	public double getTopSitesError() {
+		return Double.parseDouble(String.valueOf(this.properties.get(ConfigurationOptions.TOP_SITES_ERROR)));
+	}
+
+	/**
+	 * Gets the clock the sliding windows follow: processing for the wall clock, event for the timestamps of the log
+	 * lines.
+	 *
+	 * @return the time mode.
+	 */
+	public String getTimeMode() {
+		return String.valueOf(this.properties.get(ConfigurationOptions.TIME_MODE));
+	}
+
+	/**
+	 * Gets how many seconds behind the latest log line a line can be, to be counted before its second is rolled into
+	 * the sliding windows.
+	 *
+	 * @return the allowed lateness.
+	 */
+	public int getAllowedLatenessSeconds() {
+		return Integer.parseInt(String.valueOf(this.properties.get(ConfigurationOptions.ALLOWED_LATENESS_SECONDS)));
+	}
+
+	/**
+	 * Gets the directory where the metrics of every interval are kept, to read them after the fact.
+	 *
+	 * @return the directory of the store, or an empty string if the metrics aren't kept.
+	 */
+	public String getStoreDirectory() {
+		return String.valueOf(this.properties.get(ConfigurationOptions.STORE_DIRECTORY));
+	}
+
+	/**
+	 * Gets how many hours the metrics of every interval are kept.
+	 *
+	 * @return the retention of the store.
+	 */
+	public int getStoreRetentionHours() {
+		return Integer.parseInt(String.valueOf(this.properties.get(ConfigurationOptions.STORE_RETENTION_HOURS)));
+	}
+
+	/**
+	 * Gets the rollup tiers of the store as resolution:retention pairs, like 60:720 for a snapshot per minute kept for
+	 * 720 hours.
+	 *
+	 * @return the rollup tiers.
+	 */
+	public List<String> getStoreRollups() {
+		return Arrays.stream(String.valueOf(this.properties.get(ConfigurationOptions.STORE_ROLLUPS)).split(","))
+				.map(String::trim)
+				.filter(tier -> !tier.isEmpty())
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Gets the host:port the aggregator mode listens at, merging the metrics that other monitors push instead of
+	 * reading log files.
+	 *
+	 * @return the address of the aggregator, or an empty string if this monitor reads log files.
+	 */
+	public String getAggregator() {
+		return String.valueOf(this.properties.get(ConfigurationOptions.AGGREGATOR));
+	}
+
+	/**
+	 * Gets the host:port of the aggregator the metrics of every interval are pushed to.
+	 *
+	 * @return the address of the aggregator, or an empty string if they aren't pushed.
+	 */
+	public String getPeerAggregator() {
+		return String.valueOf(this.properties.get(ConfigurationOptions.PEER_AGGREGATOR));
+	}
+
+	/**
+	 * Gets the name this monitor is known by in the aggregator.
+	 *
+	 * @return the name of the monitor, or an empty string for the host name and the process id.
+	 */
+	public String getPeerName() {
+		return String.valueOf(this.properties.get(ConfigurationOptions.PEER_NAME));
+	}
+
+	/**
+	 * Gets how many shards the log lines are spread over by their site, every one ingested by a thread of its own.
+	 *
+	 * @return the number of shards. With one, the lines are ingested by the threads that parse them.
+	 */
+	public int getShards() {
+		return Integer.parseInt(String.valueOf(this.properties.get(ConfigurationOptions.SHARDS)));
+	}
+
+	/**
+	 * Gets how many threads parse the log lines in the pipeline between the observer and the stats.
+	 *
+	 * @return the parse threads. With none, the lines are parsed by the thread that delivers them.
+	 */
+	public int getParseThreads() {
+		return Integer.parseInt(String.valueOf(this.properties.get(ConfigurationOptions.PARSE_THREADS)));
+	}
+
+	/**
+	 * Gets how many batches of lines fit in the ring of the pipeline.
+	 *
+	 * @return the size of the ring.
+	 */
+	public int getRingSize() {
+		return Integer.parseInt(String.valueOf(this.properties.get(ConfigurationOptions.RING_SIZE)));
+	}
+
+	/**
+	 * Gets how the stages of the pipeline wait for each other.
+	 *
+	 * @return the wait strategy.
+	 */
+	public String getWaitStrategy() {
+		return String.valueOf(this.properties.get(ConfigurationOptions.WAIT_STRATEGY));
+	}
+
 	/**
 	 * Gets the interval in which alerts are checked.
 	 *
@@ -97,9 +433,38 @@ public final class ConfigurationContainer {
 	 */
 	private void setDefaults() {
 		this.properties.put(ConfigurationOptions.LOG_FILE, DefaultConfigurationValues.LOG_FILE);
+		this.properties.put(ConfigurationOptions.LOG_FORMAT, DefaultConfigurationValues.LOG_FORMAT);
 		this.properties.put(ConfigurationOptions.SCHEDULE_INTERVAL_SECONDS, DefaultConfigurationValues.SCHEDULE_INTERVAL_SECONDS);
 		this.properties.put(ConfigurationOptions.ALERT_INTERVAL_SECONDS, DefaultConfigurationValues.ALERT_INTERVAL_SECONDS);
 		this.properties.put(ConfigurationOptions.REQUEST_RATE_THRESHOLD, DefaultConfigurationValues.REQUEST_RATE_THRESHOLD);
+		this.properties.put(ConfigurationOptions.READ_BUFFER_SIZE, DefaultConfigurationValues.READ_BUFFER_SIZE);
+		this.properties.put(ConfigurationOptions.MEMORY_MAPPED, DefaultConfigurationValues.MEMORY_MAPPED);
+		this.properties.put(ConfigurationOptions.TAIL_MODE, DefaultConfigurationValues.TAIL_MODE);
+		this.properties.put(ConfigurationOptions.MAX_IDLE_TIME_MILLIS, DefaultConfigurationValues.MAX_IDLE_TIME_MILLIS);
+		this.properties.put(ConfigurationOptions.CHECKPOINT_FILE, DefaultConfigurationValues.CHECKPOINT_FILE);
+		this.properties.put(ConfigurationOptions.CHECKPOINT_INTERVAL_SECONDS, DefaultConfigurationValues.CHECKPOINT_INTERVAL_SECONDS);
+		this.properties.put(ConfigurationOptions.READER_THREADS, DefaultConfigurationValues.READER_THREADS);
+		this.properties.put(ConfigurationOptions.BATCH_SIZE, DefaultConfigurationValues.BATCH_SIZE);
+		this.properties.put(ConfigurationOptions.BATCH_DELAY_MILLIS, DefaultConfigurationValues.BATCH_DELAY_MILLIS);
+		this.properties.put(ConfigurationOptions.BACKPRESSURE, DefaultConfigurationValues.BACKPRESSURE);
+		this.properties.put(ConfigurationOptions.QUEUE_CAPACITY, DefaultConfigurationValues.QUEUE_CAPACITY);
+		this.properties.put(ConfigurationOptions.SAMPLE_RATE, DefaultConfigurationValues.SAMPLE_RATE);
+		this.properties.put(ConfigurationOptions.WINDOWS_SECONDS, DefaultConfigurationValues.WINDOWS_SECONDS);
+		this.properties.put(ConfigurationOptions.TOP_SITES, DefaultConfigurationValues.TOP_SITES);
+		this.properties.put(ConfigurationOptions.TOP_SITES_ERROR, DefaultConfigurationValues.TOP_SITES_ERROR);
+		this.properties.put(ConfigurationOptions.GROUP_BY, DefaultConfigurationValues.GROUP_BY);
+		this.properties.put(ConfigurationOptions.TIME_MODE, DefaultConfigurationValues.TIME_MODE);
+		this.properties.put(ConfigurationOptions.ALLOWED_LATENESS_SECONDS, DefaultConfigurationValues.ALLOWED_LATENESS_SECONDS);
+		this.properties.put(ConfigurationOptions.STORE_DIRECTORY, DefaultConfigurationValues.STORE_DIRECTORY);
+		this.properties.put(ConfigurationOptions.STORE_RETENTION_HOURS, DefaultConfigurationValues.STORE_RETENTION_HOURS);
+		this.properties.put(ConfigurationOptions.STORE_ROLLUPS, DefaultConfigurationValues.STORE_ROLLUPS);
+		this.properties.put(ConfigurationOptions.AGGREGATOR, DefaultConfigurationValues.AGGREGATOR);
+		this.properties.put(ConfigurationOptions.PEER_AGGREGATOR, DefaultConfigurationValues.PEER_AGGREGATOR);
+		this.properties.put(ConfigurationOptions.PEER_NAME, DefaultConfigurationValues.PEER_NAME);
+		this.properties.put(ConfigurationOptions.SHARDS, DefaultConfigurationValues.SHARDS);
+		this.properties.put(ConfigurationOptions.PARSE_THREADS, DefaultConfigurationValues.PARSE_THREADS);
+		this.properties.put(ConfigurationOptions.RING_SIZE, DefaultConfigurationValues.RING_SIZE);
+		this.properties.put(ConfigurationOptions.WAIT_STRATEGY, DefaultConfigurationValues.WAIT_STRATEGY);
 	}
 
 	/**
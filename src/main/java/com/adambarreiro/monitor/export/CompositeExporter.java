@@ -0,0 +1,28 @@
+package com.adambarreiro.monitor.export;
+
+import com.adambarreiro.monitor.alert.AlertManager;
+import com.adambarreiro.monitor.stats.Stats;
+
+import java.util.List;
+
+/**
+ * Exports the statistics and alerts to several destinations, one after the other.
+ */
+public final class CompositeExporter implements Exporter {
+
+	private final List<Exporter> exporters;
+
+	public CompositeExporter(List<Exporter> exporters) {
+		this.exporters = List.copyOf(exporters);
+	}
+
+	@Override
+	public void exportStatistics(Stats statistics) {
+		this.exporters.forEach(exporter -> exporter.exportStatistics(statistics));
+	}
+
+	@Override
+	public void exportAlerts(AlertManager alertManager) {
+		this.exporters.forEach(exporter -> exporter.exportAlerts(alertManager));
+	}
+}
@@ -1,11 +1,23 @@
 package com.adambarreiro.monitor.export;
 
 import com.adambarreiro.monitor.alert.AlertManager;
+import com.adambarreiro.monitor.capture.CaptureMetrics;
+import com.adambarreiro.monitor.pipeline.PipelineMetrics;
 import com.adambarreiro.monitor.process.log.CommonLogFormatLogProcessor;
+import com.adambarreiro.monitor.process.log.vo.LogData;
 import com.adambarreiro.monitor.stats.Stats;
+import com.adambarreiro.monitor.stats.vo.Dimension;
+import com.adambarreiro.monitor.stats.vo.Group;
+import com.adambarreiro.monitor.stats.vo.Percentiles;
+import com.adambarreiro.monitor.stats.vo.StatsSnapshot;
+import com.adambarreiro.monitor.stats.vo.TopSites;
 
 import java.text.SimpleDateFormat;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -14,21 +26,68 @@ import java.util.stream.Stream;
  */
 public final class ConsoleExporter implements Exporter {
 
+	private static final int TOP_SOURCES = 3;
+
+	private final CaptureMetrics captureMetrics;
+	private final PipelineMetrics pipelineMetrics;
+
+	private long lastReadLines;
+	private long lastParsedLines;
+	private long lastAggregatedLines;
+	private long lastExportNanos;
+
+	public ConsoleExporter() {
+		this(CaptureMetrics.NONE);
+	}
+
+	/**
+	 * Creates an exporter that also writes the metrics of the capture queue.
+	 *
+	 * @param captureMetrics the metrics of the queue between the observer and the statistics.
+	 */
+	public ConsoleExporter(CaptureMetrics captureMetrics) {
+		this(captureMetrics, PipelineMetrics.NONE);
+	}
+
+	/**
+	 * Creates an exporter that also writes the metrics of the capture queue and of the stages of the pipeline.
+	 *
+	 * @param captureMetrics  the metrics of the queue between the observer and the statistics.
+	 * @param pipelineMetrics the metrics of the stages between the observer and the statistics.
+	 */
+	public ConsoleExporter(CaptureMetrics captureMetrics, PipelineMetrics pipelineMetrics) {
+		this.captureMetrics = captureMetrics;
+		this.pipelineMetrics = pipelineMetrics;
+		this.lastExportNanos = System.nanoTime();
+	}
+
 	/**
-	 * Writes the statistics to stdin.
+	 * Writes the statistics to stdin. The metrics of the interval come from a single snapshot, so they all belong to
+	 * the same interval.
 	 *
 	 * @param statistics the statistics to write.
 	 */
 	public void exportStatistics(Stats statistics) {
+		StatsSnapshot snapshot = statistics.getSnapshot();
 		String separator = Stream.generate(() -> "-").limit(30).collect(Collectors.joining());
-		System.out.printf("%s%n\uD83D\uDD52 %s%n%s%n\uD83D\uDD25 Top site hits: %s%n\u23E9 Requests per second: %.2f%n\u274C Error rate: %.2f%%%n\uD83D\uDCE6 Total traffic data: %d Bytes%n%s%n",
+		System.out.printf("%s%n\uD83D\uDD52 %s%n%s%n\uD83D\uDD25 Top site hits: %s%n%s%s\u23E9 Requests per second: %.2f%n%s\u274C Error rate: %.2f%%%n%s\uD83D\uDCE6 Total traffic data: %d Bytes%n%s%s%s%s%s%s%s%n",
 				separator.replaceAll("-","_"),
-				new Date(),
+				Date.from(snapshot.getTimestamp()),
 				separator,
-				getPrintableTopSiteHits(statistics),
-				statistics.getRequestsRate(),
-				statistics.getErrorRate(),
-				statistics.getTotalTransmittedData(),
+				getPrintableTopSiteHits(snapshot),
+				getPrintableTopSiteBytes(snapshot),
+				getPrintableTopSources(snapshot),
+				snapshot.getRequestsRate(),
+				getPrintableWindows(statistics),
+				snapshot.getErrorRate(),
+				getPrintableStatusClasses(snapshot),
+				snapshot.getTotalTransmittedData(),
+				getPrintablePercentiles("\uD83D\uDCCF Response size", snapshot.getSizePercentiles(), "Bytes"),
+				getPrintablePercentiles("\u23F1 Request time", snapshot.getRequestTimePercentiles(), "\u00B5s"),
+				getPrintableDistinct(snapshot),
+				getPrintableLateEvents(snapshot),
+				getPrintableCaptureMetrics(),
+				getPrintablePipelineMetrics(),
 				separator);
 	}
 
@@ -52,16 +111,126 @@ public final class ConsoleExporter implements Exporter {
 		});
 	}
 
-	private String getPrintableTopSiteHits(Stats statistics) {
-		StringBuilder topSites = new StringBuilder();
-		int i=1;
-		statistics.getTopSiteHits().forEach((site, hits) -> {
-			topSites.append(String.format("%d. %s (%d hits) | ", i, site, hits));
-		});
-		if ("".equals(topSites.toString())) {
+	private String getPrintableTopSiteHits(StatsSnapshot snapshot) {
+		TopSites topSites = snapshot.getTopSites();
+		StringBuilder printableTopSites = new StringBuilder();
+		int i = 1;
+		for (Map.Entry<String, Long> site : topSites.getByHits().entrySet()) {
+			printableTopSites.append(String.format("%d. %s (%d hits) | ", i++, site.getKey(), site.getValue()));
+		}
+		if ("".equals(printableTopSites.toString())) {
 			return "N/A";
 		}
-		return topSites.toString();
+		if (topSites.getHitsError() > 0) {
+			printableTopSites.append(String.format("\u00B1 %d hits", topSites.getHitsError()));
+		}
+		return printableTopSites.toString();
+	}
+
+	private String getPrintableTopSiteBytes(StatsSnapshot snapshot) {
+		TopSites topSites = snapshot.getTopSites();
+		if (topSites.getByBytes().isEmpty()) {
+			return "";
+		}
+		String printableTopSites = topSites.getByBytes().entrySet().stream()
+				.map(site -> String.format("%s (%d Bytes)", site.getKey(), site.getValue()))
+				.collect(Collectors.joining(" | "));
+		if (topSites.getBytesError() > 0) {
+			printableTopSites += String.format(" | \u00B1 %d Bytes", topSites.getBytesError());
+		}
+		return String.format("\uD83D\uDCE6 Top site traffic: %s%n", printableTopSites);
+	}
+
+	private String getPrintableTopSources(StatsSnapshot snapshot) {
+		Map<String, Integer> sourceHits = snapshot.getSourceHits();
+		if (sourceHits.isEmpty() || sourceHits.keySet().equals(Set.of(LogData.NO_SOURCE))) {
+			return "";
+		}
+		return String.format("\uD83D\uDCC4 Top sources (%d active): %s%n", sourceHits.size(), sourceHits.entrySet().stream()
+				.sorted(Map.Entry.comparingByValue(Comparator.reverseOrder()))
+				.limit(TOP_SOURCES)
+				.map(entry -> String.format("%s (%d hits)", entry.getKey(), entry.getValue()))
+				.collect(Collectors.joining(" | ")));
+	}
+
+	private String getPrintableWindows(Stats statistics) {
+		if (statistics.getWindowsSeconds().size() < 2) {
+			return "";
+		}
+		return String.format("\uD83D\uDCC8 Requests per second by window: %s%n", statistics.getWindowsSeconds().stream()
+				.map(window -> String.format("%ds %.2f", window, statistics.getRequestsRate(window)))
+				.collect(Collectors.joining(" | ")));
+	}
+
+	private String getPrintableStatusClasses(StatsSnapshot snapshot) {
+		List<Group> statusClasses = snapshot.getGroups(Set.of(Dimension.STATUS_CLASS));
+		if (statusClasses.isEmpty() || statusClasses.get(0).getValues().isEmpty()) {
+			return "";
+		}
+		return String.format("\uD83D\uDEA6 Requests by status: %s%n", statusClasses.stream()
+				.sorted(Comparator.comparing(group -> group.getValue(Dimension.STATUS_CLASS)))
+				.map(group -> String.format("%s %d", group.getValue(Dimension.STATUS_CLASS), group.getHits()))
+				.collect(Collectors.joining(" | ")));
+	}
+
+	private String getPrintablePercentiles(String title, Percentiles percentiles, String unit) {
+		if (percentiles.getCount() == 0) {
+			return "";
+		}
+		return String.format("%s: p50 %d | p90 %d | p99 %d | p99.9 %d %s%n", title, percentiles.getP50(),
+				percentiles.getP90(), percentiles.getP99(), percentiles.getP999(), unit);
+	}
+
+	private String getPrintableDistinct(StatsSnapshot snapshot) {
+		if (snapshot.getDistinctClients() == 0) {
+			return "";
+		}
+		return String.format("\uD83D\uDC65 Distinct clients: ~%d | Distinct paths: ~%d%n", snapshot.getDistinctClients(),
+				snapshot.getDistinctPaths());
+	}
+
+	private String getPrintableLateEvents(StatsSnapshot snapshot) {
+		if (snapshot.getLateEvents() == 0 && snapshot.getDroppedEvents() == 0 && snapshot.getSkippedIntervals() == 0) {
+			return "";
+		}
+		return String.format("\u231B Late lines: %d | Out of the windows: %d | Skipped intervals: %d%n",
+				snapshot.getLateEvents(), snapshot.getDroppedEvents(), snapshot.getSkippedIntervals());
+	}
+
+	private String getPrintableCaptureMetrics() {
+		if (this.captureMetrics.getQueueCapacity() == 0) {
+			return "";
+		}
+		return String.format("\uD83D\uDCE5 Queued lines: %d/%d | Dropped: %d | Left out by sampling: %d%n",
+				this.captureMetrics.getQueueDepth(),
+				this.captureMetrics.getQueueCapacity(),
+				this.captureMetrics.getDroppedLines(),
+				this.captureMetrics.getSampledLines());
+	}
+
+	/**
+	 * Formats the occupancy of the ring and the lines per second of every stage since the last export.
+	 */
+	private String getPrintablePipelineMetrics() {
+		if (this.pipelineMetrics.getCapacity() == 0) {
+			return "";
+		}
+		long now = System.nanoTime();
+		double seconds = Math.max(now - this.lastExportNanos, 1L) / 1e9;
+		long readLines = this.pipelineMetrics.getReadLines();
+		long parsedLines = this.pipelineMetrics.getParsedLines();
+		long aggregatedLines = this.pipelineMetrics.getAggregatedLines();
+		String printable = String.format("\uD83D\uDEE0 Pipeline: %d/%d batches | Read: %.0f/s | Parsed: %.0f/s | Aggregated: %.0f/s%n",
+				this.pipelineMetrics.getOccupancy(),
+				this.pipelineMetrics.getCapacity(),
+				(readLines - this.lastReadLines) / seconds,
+				(parsedLines - this.lastParsedLines) / seconds,
+				(aggregatedLines - this.lastAggregatedLines) / seconds);
+		this.lastReadLines = readLines;
+		this.lastParsedLines = parsedLines;
+		this.lastAggregatedLines = aggregatedLines;
+		this.lastExportNanos = now;
+		return printable;
 	}
 
 	private String formatDate(Date date) {
@@ -0,0 +1,46 @@
+package com.adambarreiro.monitor.export;
+
+import com.adambarreiro.monitor.alert.AlertManager;
+import com.adambarreiro.monitor.peer.PeerClient;
+import com.adambarreiro.monitor.stats.Stats;
+
+import java.io.IOException;
+
+/**
+ * Pushes the aggregate of the last interval to an aggregator, which merges it with the ones of the other monitors.
+ */
+public final class PeerExporter implements Exporter {
+
+	private final PeerClient client;
+	private final String peer;
+
+	/**
+	 * Creates the exporter.
+	 *
+	 * @param client the client of the aggregator.
+	 * @param peer   the name this monitor is known by.
+	 */
+	public PeerExporter(PeerClient client, String peer) {
+		this.client = client;
+		this.peer = peer;
+	}
+
+	/**
+	 * Pushes the aggregate of the last interval. If the aggregator cannot be reached, it's tried again the next one.
+	 *
+	 * @param statistics the statistics to push.
+	 */
+	@Override
+	public void exportStatistics(Stats statistics) {
+		try {
+			this.client.push(this.peer, statistics.getAggregate());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void exportAlerts(AlertManager alertManager) {
+
+	}
+}
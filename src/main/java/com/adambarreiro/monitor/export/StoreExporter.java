@@ -0,0 +1,39 @@
+package com.adambarreiro.monitor.export;
+
+import com.adambarreiro.monitor.alert.AlertManager;
+import com.adambarreiro.monitor.stats.Stats;
+import com.adambarreiro.monitor.store.TieredSnapshotStore;
+
+import java.io.IOException;
+
+/**
+ * Appends the aggregate of every interval to a {@link TieredSnapshotStore}, which rolls it up into every rollup tier,
+ * so the metrics can be read after the fact.
+ */
+public final class StoreExporter implements Exporter {
+
+	private final TieredSnapshotStore store;
+
+	public StoreExporter(TieredSnapshotStore store) {
+		this.store = store;
+	}
+
+	/**
+	 * Appends the aggregate of the last interval to the store, stamped as its snapshot.
+	 *
+	 * @param statistics the statistics to keep.
+	 */
+	@Override
+	public void exportStatistics(Stats statistics) {
+		try {
+			this.store.append(statistics.getSnapshot().getTimestamp(), statistics.getAggregate());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void exportAlerts(AlertManager alertManager) {
+
+	}
+}
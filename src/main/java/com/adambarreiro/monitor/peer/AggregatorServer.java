@@ -0,0 +1,133 @@
+package com.adambarreiro.monitor.peer;
+
+import com.adambarreiro.monitor.stats.Aggregate;
+import com.adambarreiro.monitor.stats.MergedStats;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Server of the aggregator mode, which accepts the aggregates that other monitors push over TCP and serves the merged
+ * view of all of them, see {@link PeerProtocol}. Every connection is served by a thread of its own, as there are as
+ * many as monitors and they only send a frame per interval.
+ */
+public final class AggregatorServer implements Closeable {
+
+	private final ServerSocket serverSocket;
+	private final MergedStats stats;
+	private final Set<Socket> connections;
+
+	private AggregatorServer(ServerSocket serverSocket, MergedStats stats) {
+		this.serverSocket = serverSocket;
+		this.stats = stats;
+		this.connections = ConcurrentHashMap.newKeySet();
+	}
+
+	/**
+	 * Starts listening for the monitors.
+	 *
+	 * @param address where to listen. The port 0 picks a free one.
+	 * @param stats   the stats the pushed aggregates are kept in.
+	 * @return the started server.
+	 * @throws IOException if the address cannot be bound.
+	 */
+	public static AggregatorServer start(InetSocketAddress address, MergedStats stats) throws IOException {
+		ServerSocket serverSocket = new ServerSocket();
+		serverSocket.bind(address);
+		AggregatorServer server = new AggregatorServer(serverSocket, stats);
+		Thread acceptor = new Thread(server::accept, "aggregator-" + serverSocket.getLocalPort());
+		acceptor.setDaemon(true);
+		acceptor.start();
+		return server;
+	}
+
+	/**
+	 * Gets the address the server listens at, with the picked port if it was 0.
+	 *
+	 * @return the address.
+	 */
+	public InetSocketAddress getAddress() {
+		return (InetSocketAddress) this.serverSocket.getLocalSocketAddress();
+	}
+
+	/**
+	 * Stops listening and closes the connections of the monitors.
+	 */
+	@Override
+	public void close() {
+		try {
+			this.serverSocket.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		this.connections.forEach(AggregatorServer::closeQuietly);
+	}
+
+	private void accept() {
+		while (!this.serverSocket.isClosed()) {
+			try {
+				Socket socket = this.serverSocket.accept();
+				this.connections.add(socket);
+				Thread handler = new Thread(() -> serve(socket), "aggregator-peer-" + socket.getRemoteSocketAddress());
+				handler.setDaemon(true);
+				handler.start();
+			} catch (SocketException e) {
+				// the server was closed
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Answers the frames of a connection until it's closed. A malformed frame closes it, as the next frame cannot be
+	 * found.
+	 */
+	private void serve(Socket socket) {
+		try (socket;
+			 DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+			while (true) {
+				int type = in.read();
+				if (type == PeerProtocol.PUSH) {
+					String peer = in.readUTF();
+					this.stats.put(peer, Aggregate.readFrom(in));
+					out.writeByte(PeerProtocol.ACK);
+				} else if (type == PeerProtocol.QUERY) {
+					out.writeByte(PeerProtocol.MERGED);
+					this.stats.getMerged().writeTo(out);
+				} else if (type == -1) {
+					return;
+				} else {
+					throw new IOException("Unknown frame type " + type);
+				}
+				out.flush();
+			}
+		} catch (EOFException | SocketException e) {
+			// the peer left, or the server was closed
+		} catch (IOException | IllegalArgumentException e) {
+			e.printStackTrace();
+		} finally {
+			this.connections.remove(socket);
+		}
+	}
+
+	private static void closeQuietly(Socket socket) {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// it's closed anyway
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.adambarreiro.monitor.peer;
+
+import com.adambarreiro.monitor.stats.Aggregate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Objects;
+
+/**
+ * Client of an {@link AggregatorServer}, over a connection that is opened when first needed and opened again after a
+ * failure, so a monitor keeps pushing when the aggregator restarts. It's thread safe.
+ */
+public final class PeerClient implements Closeable {
+
+	private static final int TIMEOUT_MILLIS = 5000;
+
+	private final InetSocketAddress address;
+
+	private Socket socket;
+	private DataInputStream in;
+	private DataOutputStream out;
+
+	public PeerClient(InetSocketAddress address) {
+		this.address = address;
+	}
+
+	/**
+	 * Pushes the aggregate of a peer and waits for the aggregator to keep it.
+	 *
+	 * @param peer      the name of the peer.
+	 * @param aggregate the aggregate of its last interval.
+	 * @throws IOException if the aggregator cannot be reached.
+	 */
+	public synchronized void push(String peer, Aggregate aggregate) throws IOException {
+		try {
+			connect();
+			this.out.writeByte(PeerProtocol.PUSH);
+			this.out.writeUTF(peer);
+			aggregate.writeTo(this.out);
+			this.out.flush();
+			expect(PeerProtocol.ACK);
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Gets the merged aggregate of all the peers of the aggregator.
+	 *
+	 * @return the merged aggregate.
+	 * @throws IOException if the aggregator cannot be reached.
+	 */
+	public synchronized Aggregate query() throws IOException {
+		try {
+			connect();
+			this.out.writeByte(PeerProtocol.QUERY);
+			this.out.flush();
+			expect(PeerProtocol.MERGED);
+			return Aggregate.readFrom(this.in);
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Closes the connection, if it's open.
+	 */
+	@Override
+	public synchronized void close() {
+		if (Objects.nonNull(this.socket)) {
+			try {
+				this.socket.close();
+			} catch (IOException e) {
+				// it's closed anyway
+			}
+			this.socket = null;
+		}
+	}
+
+	private void connect() throws IOException {
+		if (Objects.isNull(this.socket)) {
+			Socket socket = new Socket();
+			socket.connect(this.address, TIMEOUT_MILLIS);
+			socket.setSoTimeout(TIMEOUT_MILLIS);
+			socket.setTcpNoDelay(true);
+			this.socket = socket;
+			this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		}
+	}
+
+	private void expect(int type) throws IOException {
+		int received = this.in.read();
+		if (received != type) {
+			throw new IOException("Expected a frame of type " + type + " from the aggregator, got " + received);
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package com.adambarreiro.monitor.peer;
+
+/**
+ * The frames between the monitors and their aggregator, over a TCP connection that is kept open. A frame starts with
+ * its type byte:
+ * <ul>
+ *     <li>{@link #PUSH}: the name of a peer, as modified UTF-8, and its {@link com.adambarreiro.monitor.stats.Aggregate}.
+ *     The aggregator answers with an {@link #ACK}.</li>
+ *     <li>{@link #QUERY}: nothing else. The aggregator answers with a {@link #MERGED} frame and the merged aggregate.</li>
+ * </ul>
+ */
+final class PeerProtocol {
+
+	static final int PUSH = 1;
+	static final int QUERY = 2;
+	static final int ACK = 3;
+	static final int MERGED = 4;
+
+	private PeerProtocol() {
+	}
+}
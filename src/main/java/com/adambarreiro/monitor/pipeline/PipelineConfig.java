@@ -0,0 +1,98 @@
+package com.adambarreiro.monitor.pipeline;
+
+/**
+ * Configuration for the pipeline between the observer and the stats: how many threads parse the lines, how many
+ * batches fit in the ring and how the stages wait for each other.
+ */
+public class PipelineConfig {
+
+	public static final int DEFAULT_RING_SIZE = 1024;
+
+	private final int parseThreads;
+	private final int ringSize;
+	private final WaitStrategy waitStrategy;
+
+	private PipelineConfig(Builder builder) {
+		this.parseThreads = builder.parseThreads;
+		this.ringSize = builder.ringSize;
+		this.waitStrategy = builder.waitStrategy;
+	}
+
+	/**
+	 * Gets the default configuration, which parses the lines on the thread that delivers them.
+	 *
+	 * @return the default configuration.
+	 */
+	public static PipelineConfig defaults() {
+		return builder().build();
+	}
+
+	/**
+	 * Starts a configuration with the default values.
+	 *
+	 * @return a builder with the default values.
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public int getParseThreads() {
+		return this.parseThreads;
+	}
+
+	public int getRingSize() {
+		return this.ringSize;
+	}
+
+	public WaitStrategy getWaitStrategy() {
+		return this.waitStrategy;
+	}
+
+	/**
+	 * Returns true if the lines go through a {@link RingPipeline}. False if they're parsed by the thread that delivers
+	 * them.
+	 *
+	 * @return true if the lines go through a ring.
+	 */
+	public boolean isRingEnabled() {
+		return this.parseThreads > 0;
+	}
+
+	/**
+	 * Builds a {@link PipelineConfig}, starting from the default values.
+	 */
+	public static final class Builder {
+
+		private int parseThreads = 0;
+		private int ringSize = DEFAULT_RING_SIZE;
+		private WaitStrategy waitStrategy = WaitStrategy.BLOCKING;
+
+		private Builder() {
+		}
+
+		public Builder parseThreads(int parseThreads) {
+			this.parseThreads = parseThreads;
+			return this;
+		}
+
+		public Builder ringSize(int ringSize) {
+			this.ringSize = ringSize;
+			return this;
+		}
+
+		public Builder waitStrategy(WaitStrategy waitStrategy) {
+			this.waitStrategy = waitStrategy;
+			return this;
+		}
+
+		public PipelineConfig build() {
+			if (this.parseThreads < 0) {
+				throw new IllegalArgumentException("The parse threads cannot be negative: " + this.parseThreads);
+			}
+			if (this.ringSize <= 0 || Integer.bitCount(this.ringSize) != 1) {
+				throw new IllegalArgumentException("The ring size must be a power of two: " + this.ringSize);
+			}
+			return new PipelineConfig(this);
+		}
+	}
+}
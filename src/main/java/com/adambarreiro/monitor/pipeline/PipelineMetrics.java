@@ -0,0 +1,72 @@
+package com.adambarreiro.monitor.pipeline;
+
+/**
+ * Metrics of the stages between the observer and the stats, useful to know which one is falling behind.
+ */
+public interface PipelineMetrics {
+
+	/**
+	 * Metrics of a pipeline without stages, where the lines are parsed by the thread that delivers them.
+	 */
+	PipelineMetrics NONE = new PipelineMetrics() {
+		@Override
+		public int getCapacity() {
+			return 0;
+		}
+
+		@Override
+		public int getOccupancy() {
+			return 0;
+		}
+
+		@Override
+		public long getReadLines() {
+			return 0L;
+		}
+
+		@Override
+		public long getParsedLines() {
+			return 0L;
+		}
+
+		@Override
+		public long getAggregatedLines() {
+			return 0L;
+		}
+	};
+
+	/**
+	 * Gets the number of batches the ring can hold.
+	 *
+	 * @return the capacity of the ring.
+	 */
+	int getCapacity();
+
+	/**
+	 * Gets the number of batches in the ring, read but not aggregated yet.
+	 *
+	 * @return the occupancy of the ring.
+	 */
+	int getOccupancy();
+
+	/**
+	 * Gets the number of lines put into the ring since the pipeline started.
+	 *
+	 * @return the read lines.
+	 */
+	long getReadLines();
+
+	/**
+	 * Gets the number of lines parsed since the pipeline started, including the ones that couldn't be parsed.
+	 *
+	 * @return the parsed lines.
+	 */
+	long getParsedLines();
+
+	/**
+	 * Gets the number of parsed records handed to the stats since the pipeline started.
+	 *
+	 * @return the aggregated records.
+	 */
+	long getAggregatedLines();
+}
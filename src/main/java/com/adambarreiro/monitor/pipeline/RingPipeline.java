@@ -0,0 +1,259 @@
+package com.adambarreiro.monitor.pipeline;
+
+import com.adambarreiro.monitor.capture.vo.LineBatch;
+import com.adambarreiro.monitor.process.log.LogProcessor;
+import com.adambarreiro.monitor.process.log.vo.LogData;
+import com.adambarreiro.monitor.process.log.vo.LogRecord;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Pipeline between the observer and the stats, with a stage per step: the thread that reads the lines puts their
+ * batches into a preallocated ring of slots, several threads parse them into the records of their slots, and a single
+ * thread hands the records to the stats. Hence, the parsing, which is the expensive step, uses several cores.
+ *
+ * Every stage tracks the last slot it's done with by a {@link Sequence}, and only waits, with the configured
+ * {@link WaitStrategy}, when the stage before it has nothing new: then it takes all the slots that are ready at once,
+ * and moves its sequence once for all of them. The parsing threads split the slots by their sequence, and the records
+ * are handed to the stats in the order of the slots, so the lines of every source reach the stats in the order they
+ * were read. The slots and their records are reused, so a line doesn't allocate anything once the ring is warm.
+ */
+public final class RingPipeline implements PipelineMetrics, Closeable {
+
+	private static final long NONE = -1L;
+
+	private final Slot[] slots;
+	private final int mask;
+	private final LogProcessor processor;
+	private final Consumer<? super LogRecord> onRecord;
+	private final WaitStrategy waitStrategy;
+	private final Object monitor;
+	private final Sequence published;
+	private final Sequence[] parsed;
+	private final Sequence aggregated;
+	private final Sequence readLines;
+	private final Sequence[] parsedLines;
+	private final Sequence aggregatedLines;
+	private final List<Thread> threads;
+
+	private long next;
+
+	private RingPipeline(PipelineConfig config, LogProcessor processor, Consumer<? super LogRecord> onRecord) {
+		this.slots = new Slot[config.getRingSize()];
+		for (int i = 0; i < this.slots.length; i++) {
+			this.slots[i] = new Slot();
+		}
+		this.mask = config.getRingSize() - 1;
+		this.processor = processor;
+		this.onRecord = onRecord;
+		this.waitStrategy = config.getWaitStrategy();
+		this.monitor = new Object();
+		this.published = new Sequence(NONE);
+		this.parsed = new Sequence[config.getParseThreads()];
+		this.parsedLines = new Sequence[config.getParseThreads()];
+		for (int i = 0; i < this.parsed.length; i++) {
+			this.parsed[i] = new Sequence(NONE);
+			this.parsedLines[i] = new Sequence(0L);
+		}
+		this.aggregated = new Sequence(NONE);
+		this.readLines = new Sequence(0L);
+		this.aggregatedLines = new Sequence(0L);
+		this.threads = new ArrayList<>();
+		this.next = 0L;
+	}
+
+	/**
+	 * Creates a pipeline and starts the threads of its parsing and aggregation stages.
+	 *
+	 * @param config    the configuration of the pipeline, with at least a parsing thread.
+	 * @param processor the parser of the log lines. It's shared by the parsing threads.
+	 * @param onRecord  a function called with every parsed record, always from the same thread. It must not keep the
+	 *                  record.
+	 * @return the started pipeline.
+	 * @throws IllegalArgumentException if there's no parsing thread.
+	 */
+	public static RingPipeline start(PipelineConfig config, LogProcessor processor, Consumer<? super LogRecord> onRecord) {
+		if (!config.isRingEnabled()) {
+			throw new IllegalArgumentException("A ring pipeline needs at least a parsing thread");
+		}
+		RingPipeline pipeline = new RingPipeline(config, processor, onRecord);
+		for (int i = 0; i < config.getParseThreads(); i++) {
+			int worker = i;
+			pipeline.startThread(() -> pipeline.parse(worker), "pipeline-parse-" + i);
+		}
+		pipeline.startThread(pipeline::aggregate, "pipeline-aggregate");
+		return pipeline;
+	}
+
+	/**
+	 * Puts a batch of read lines into the next slot, waiting for one to be free if the ring is full.
+	 *
+	 * @param batch the batch.
+	 * @throws InterruptedException if the calling thread is interrupted while it waits.
+	 */
+	public synchronized void publish(LineBatch batch) throws InterruptedException {
+		long sequence = this.next;
+		long wrapPoint = sequence - this.slots.length;
+		if (this.aggregated.get() < wrapPoint) {
+			this.waitStrategy.await(() -> this.aggregated.get() >= wrapPoint, this.monitor);
+		}
+		this.slots[(int) sequence & this.mask].batch = batch;
+		this.next = sequence + 1;
+		this.readLines.set(this.readLines.get() + batch.size());
+		this.published.set(sequence);
+		this.waitStrategy.signal(this.monitor);
+	}
+
+	@Override
+	public int getCapacity() {
+		return this.slots.length;
+	}
+
+	@Override
+	public int getOccupancy() {
+		return (int) (this.published.get() - this.aggregated.get());
+	}
+
+	@Override
+	public long getReadLines() {
+		return this.readLines.get();
+	}
+
+	@Override
+	public long getParsedLines() {
+		long lines = 0L;
+		for (Sequence parsedLines : this.parsedLines) {
+			lines += parsedLines.get();
+		}
+		return lines;
+	}
+
+	@Override
+	public long getAggregatedLines() {
+		return this.aggregatedLines.get();
+	}
+
+	/**
+	 * Stops the threads of the stages. The batches still in the ring are discarded.
+	 */
+	@Override
+	public void close() {
+		this.threads.forEach(Thread::interrupt);
+	}
+
+	/**
+	 * Parses the slots of a parsing thread, that is, the ones whose sequence modulo the parsing threads is its number.
+	 */
+	private void parse(int worker) {
+		int workers = this.parsed.length;
+		Sequence sequence = this.parsed[worker];
+		Sequence lines = this.parsedLines[worker];
+		try {
+			while (true) {
+				long first = sequence.get() + 1;
+				long last = waitFor(first, this.published);
+				for (long current = first; current <= last; current++) {
+					if (current % workers == worker) {
+						Slot slot = this.slots[(int) current & this.mask];
+						slot.parse(this.processor);
+						lines.set(lines.get() + slot.batch.size());
+					}
+				}
+				sequence.set(last);
+				this.waitStrategy.signal(this.monitor);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Hands the records of the parsed slots to the stats, in the order of the slots, and frees them.
+	 */
+	private void aggregate() {
+		try {
+			while (true) {
+				long first = this.aggregated.get() + 1;
+				long last = waitFor(first, this.parsed);
+				for (long current = first; current <= last; current++) {
+					Slot slot = this.slots[(int) current & this.mask];
+					for (int i = 0; i < slot.size; i++) {
+						this.onRecord.accept(slot.records[i]);
+					}
+					this.aggregatedLines.set(this.aggregatedLines.get() + slot.size);
+					slot.batch = null;
+				}
+				this.aggregated.set(last);
+				this.waitStrategy.signal(this.monitor);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Waits for the stages before to be done with a slot.
+	 *
+	 * @param sequence     the sequence of the slot.
+	 * @param dependencies the sequences of the stages before.
+	 * @return the last slot all of them are done with, at least the given one.
+	 * @throws InterruptedException if the thread is interrupted while it waits.
+	 */
+	private long waitFor(long sequence, Sequence... dependencies) throws InterruptedException {
+		if (minimum(dependencies) < sequence) {
+			this.waitStrategy.await(() -> minimum(dependencies) >= sequence, this.monitor);
+		}
+		return minimum(dependencies);
+	}
+
+	private static long minimum(Sequence[] sequences) {
+		long minimum = Long.MAX_VALUE;
+		for (Sequence sequence : sequences) {
+			minimum = Math.min(minimum, sequence.get());
+		}
+		return minimum;
+	}
+
+	private void startThread(Runnable stage, String name) {
+		Thread thread = new Thread(stage, name);
+		thread.setDaemon(true);
+		thread.start();
+		this.threads.add(thread);
+	}
+
+	/**
+	 * A slot of the ring: a batch of read lines and the records they're parsed into, which grow to the biggest batch.
+	 */
+	private static final class Slot {
+
+		private LineBatch batch;
+		private LogRecord[] records = new LogRecord[0];
+		private int size;
+
+		private void parse(LogProcessor processor) {
+			String[] lines = this.batch.getLines();
+			if (this.records.length < lines.length) {
+				LogRecord[] records = new LogRecord[lines.length];
+				System.arraycopy(this.records, 0, records, 0, this.records.length);
+				for (int i = this.records.length; i < records.length; i++) {
+					records[i] = new LogRecord();
+				}
+				this.records = records;
+			}
+			String source = Objects.isNull(this.batch.getSource()) ? LogData.NO_SOURCE : this.batch.getSource();
+			this.size = 0;
+			for (String line : lines) {
+				LogRecord record = this.records[this.size];
+				if (processor.parse(line, record)) {
+					record.setSource(source);
+					record.setWeight(this.batch.getWeight());
+					this.size++;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package com.adambarreiro.monitor.pipeline;
+
+/**
+ * A counter written by a single thread and read by others, like the last slot a stage is done with. It's padded to a
+ * cache line of its own on both sides, so the sequences of different stages don't invalidate each other's cache lines.
+ */
+@SuppressWarnings("unused")
+final class Sequence {
+
+	private long p1, p2, p3, p4, p5, p6, p7;
+	private volatile long value;
+	private long p9, p10, p11, p12, p13, p14, p15;
+
+	Sequence(long value) {
+		this.value = value;
+	}
+
+	long get() {
+		return this.value;
+	}
+
+	void set(long value) {
+		this.value = value;
+	}
+}
@@ -0,0 +1,101 @@
+package com.adambarreiro.monitor.pipeline;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * The ways a stage of a {@link RingPipeline} waits for the stage before it, or the reader for room in the ring. They
+ * trade CPU for latency: spinning reacts the soonest but burns a core per waiting thread, while blocking frees the
+ * cores at the cost of waking up the threads.
+ */
+public enum WaitStrategy {
+
+	/**
+	 * Spins on the sequence, hinting the CPU it's a spin loop. For dedicated cores.
+	 */
+	BUSY_SPIN {
+		@Override
+		void await(BooleanSupplier ready, Object monitor) throws InterruptedException {
+			while (!ready.getAsBoolean()) {
+				checkInterrupted();
+				Thread.onSpinWait();
+			}
+		}
+	},
+
+	/**
+	 * Spins for a while, then yields the core to other threads between checks.
+	 */
+	YIELD {
+		@Override
+		void await(BooleanSupplier ready, Object monitor) throws InterruptedException {
+			int spins = SPINS;
+			while (!ready.getAsBoolean()) {
+				checkInterrupted();
+				if (spins > 0) {
+					spins--;
+					Thread.onSpinWait();
+				} else {
+					Thread.yield();
+				}
+			}
+		}
+	},
+
+	/**
+	 * Waits on a monitor until the stage before signals it. Every signal takes the monitor, so it costs some
+	 * throughput, but the waiting threads use no CPU.
+	 */
+	BLOCKING {
+		@Override
+		void await(BooleanSupplier ready, Object monitor) throws InterruptedException {
+			synchronized (monitor) {
+				while (!ready.getAsBoolean()) {
+					monitor.wait(BLOCKING_TIMEOUT_MILLIS);
+				}
+			}
+		}
+
+		@Override
+		void signal(Object monitor) {
+			synchronized (monitor) {
+				monitor.notifyAll();
+			}
+		}
+	};
+
+	private static final int SPINS = 100;
+	private static final long BLOCKING_TIMEOUT_MILLIS = 10L;
+
+	/**
+	 * Waits until a condition holds.
+	 *
+	 * @param ready   the condition, like a sequence being published.
+	 * @param monitor the monitor the waiting threads of a pipeline share.
+	 * @throws InterruptedException if the thread is interrupted while it waits.
+	 */
+	abstract void await(BooleanSupplier ready, Object monitor) throws InterruptedException;
+
+	/**
+	 * Wakes up the threads waiting on a monitor, after a sequence moved.
+	 *
+	 * @param monitor the monitor the waiting threads of a pipeline share.
+	 */
+	void signal(Object monitor) {
+	}
+
+	/**
+	 * Gets the wait strategy with the given name, ignoring the case, like busy_spin.
+	 *
+	 * @param name the name of the wait strategy.
+	 * @return the wait strategy.
+	 */
+	public static WaitStrategy of(String name) {
+		return WaitStrategy.valueOf(name.trim().toUpperCase());
+	}
+
+	private static void checkInterrupted() throws InterruptedException {
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package com.adambarreiro.monitor.process.log;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Decodes the timestamps of the Common Log Format, like <code>09/May/2018:16:00:39 +0000</code>, honoring their
+ * offset.
+ *
+ * Consecutive lines almost always share the same second, so the last decoded timestamp is cached and a line of the
+ * same second costs a comparison of its characters. Otherwise the timestamp is decoded straight to epoch seconds from
+ * its fixed layout, and only the timestamps out of that layout go through a {@link DateTimeFormatter}. The cache is a
+ * single immutable entry, so a decoder can be shared between threads.
+ */
+public final class ClfTimestampDecoder {
+
+	private static final int LAYOUT_LENGTH = "dd/MMM/yyyy:HH:mm:ss +hhmm".length();
+	private static final DateTimeFormatter FORMATTER = new DateTimeFormatterBuilder()
+			.parseCaseInsensitive()
+			.appendPattern(CommonLogFormatLogProcessor.STRFTIME_FORMAT)
+			.toFormatter(Locale.US);
+	private static final int SECONDS_PER_DAY = 86400;
+	private static final int DAYS_0000_TO_1970 = 719468;
+
+	private volatile CachedTimestamp last;
+
+	/**
+	 * Decodes the whole text as a timestamp.
+	 *
+	 * @param text the timestamp.
+	 * @return the decoded timestamp.
+	 * @throws DateTimeParseException if the text is not a valid timestamp.
+	 */
+	public Instant decode(String text) {
+		return decode(text, 0, text.length());
+	}
+
+	/**
+	 * Decodes the timestamp between the given positions of the text, without copying it if it's the same as the
+	 * last one.
+	 *
+	 * @param text  the text containing the timestamp, like a log line.
+	 * @param start the position of the first character of the timestamp.
+	 * @param end   the position after the last character of the timestamp.
+	 * @return the decoded timestamp.
+	 * @throws DateTimeParseException if the text is not a valid timestamp.
+	 */
+	public Instant decode(String text, int start, int end) {
+		return lookup(text, start, end).timestamp;
+	}
+
+	/**
+	 * Decodes the timestamp between the given positions of the text to epoch seconds, without allocating anything if
+	 * it's the same as the last one.
+	 *
+	 * @param text  the text containing the timestamp, like a log line.
+	 * @param start the position of the first character of the timestamp.
+	 * @param end   the position after the last character of the timestamp.
+	 * @return the decoded epoch seconds.
+	 * @throws DateTimeParseException if the text is not a valid timestamp.
+	 */
+	public long decodeEpochSecond(String text, int start, int end) {
+		return lookup(text, start, end).epochSecond;
+	}
+
+	/**
+	 * Gets the cached timestamp if it's the same as the given one, or decodes and caches it otherwise.
+	 */
+	private CachedTimestamp lookup(String text, int start, int end) {
+		CachedTimestamp cached = this.last;
+		if (Objects.nonNull(cached) && cached.text.length() == end - start && text.startsWith(cached.text, start)) {
+			return cached;
+		}
+		long epochSecond = end - start == LAYOUT_LENGTH ? decodeLayout(text, start) : Long.MIN_VALUE;
+		Instant timestamp = epochSecond == Long.MIN_VALUE
+				? OffsetDateTime.parse(text.subSequence(start, end), FORMATTER).toInstant()
+				: Instant.ofEpochSecond(epochSecond);
+		cached = new CachedTimestamp(text.substring(start, end), timestamp);
+		this.last = cached;
+		return cached;
+	}
+
+	/**
+	 * Decodes a timestamp with the fixed layout <code>dd/MMM/yyyy:HH:mm:ss +hhmm</code>.
+	 *
+	 * @param text  the text containing the timestamp.
+	 * @param start the position of the first character of the timestamp.
+	 * @return the epoch seconds, or {@link Long#MIN_VALUE} if the timestamp doesn't follow the layout.
+	 */
+	private static long decodeLayout(String text, int start) {
+		if (text.charAt(start + 2) != '/' || text.charAt(start + 6) != '/' || text.charAt(start + 11) != ':'
+				|| text.charAt(start + 14) != ':' || text.charAt(start + 17) != ':' || text.charAt(start + 20) != ' ') {
+			return Long.MIN_VALUE;
+		}
+		int day = digits(text, start, 2);
+		int month = month(text, start + 3);
+		int year = digits(text, start + 7, 4);
+		int hour = digits(text, start + 12, 2);
+		int minute = digits(text, start + 15, 2);
+		int second = digits(text, start + 18, 2);
+		int offsetHours = digits(text, start + 22, 2);
+		int offsetMinutes = digits(text, start + 24, 2);
+		char sign = text.charAt(start + 21);
+		if ((hour | minute | second | offsetHours | offsetMinutes) < 0
+				|| day < 1 || day > 31 || month < 1 || year < 0 || hour > 23 || minute > 59 || second > 59
+				|| offsetHours > 18 || offsetMinutes > 59 || (sign != '+' && sign != '-') || day > daysInMonth(year, month)) {
+			return Long.MIN_VALUE;
+		}
+		int offsetSeconds = (offsetHours * 3600 + offsetMinutes * 60) * (sign == '-' ? -1 : 1);
+		return epochDay(year, month, day) * SECONDS_PER_DAY + hour * 3600 + minute * 60 + second - offsetSeconds;
+	}
+
+	/**
+	 * Parses a fixed number of decimal digits.
+	 *
+	 * @return the number, or a negative number if there's something else than digits.
+	 */
+	private static int digits(String text, int start, int count) {
+		int number = 0;
+		for (int i = start; i < start + count; i++) {
+			int digit = text.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				return Integer.MIN_VALUE;
+			}
+			number = number * 10 + digit;
+		}
+		return number;
+	}
+
+	/**
+	 * Parses the English abbreviation of a month, ignoring the case.
+	 *
+	 * @return the month, from 1 to 12, or -1 if it's not a month.
+	 */
+	private static int month(String text, int start) {
+		int key = (Character.toLowerCase(text.charAt(start)) << 16)
+				| (Character.toLowerCase(text.charAt(start + 1)) << 8)
+				| Character.toLowerCase(text.charAt(start + 2));
+		switch (key) {
+			case ('j' << 16) | ('a' << 8) | 'n': return 1;
+			case ('f' << 16) | ('e' << 8) | 'b': return 2;
+			case ('m' << 16) | ('a' << 8) | 'r': return 3;
+			case ('a' << 16) | ('p' << 8) | 'r': return 4;
+			case ('m' << 16) | ('a' << 8) | 'y': return 5;
+			case ('j' << 16) | ('u' << 8) | 'n': return 6;
+			case ('j' << 16) | ('u' << 8) | 'l': return 7;
+			case ('a' << 16) | ('u' << 8) | 'g': return 8;
+			case ('s' << 16) | ('e' << 8) | 'p': return 9;
+			case ('o' << 16) | ('c' << 8) | 't': return 10;
+			case ('n' << 16) | ('o' << 8) | 'v': return 11;
+			case ('d' << 16) | ('e' << 8) | 'c': return 12;
+			default: return -1;
+		}
+	}
+
+	private static int daysInMonth(int year, int month) {
+		if (month == 2) {
+			return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+		}
+		return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+	}
+
+	/**
+	 * Counts the days since 1970-01-01 of a date of the proleptic Gregorian calendar, in constant time.
+	 *
+	 * @return the epoch day.
+	 */
+	private static long epochDay(int year, int month, int day) {
+		int y = month <= 2 ? year - 1 : year;
+		int era = Math.floorDiv(y, 400);
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return (long) era * 146097 + dayOfEra - DAYS_0000_TO_1970;
+	}
+
+	/**
+	 * The last decoded timestamp, along with its text.
+	 */
+	private static final class CachedTimestamp {
+
+		private final String text;
+		private final Instant timestamp;
+		private final long epochSecond;
+
+		private CachedTimestamp(String text, Instant timestamp) {
+			this.text = text;
+			this.timestamp = timestamp;
+			this.epochSecond = timestamp.getEpochSecond();
+		}
+	}
+}
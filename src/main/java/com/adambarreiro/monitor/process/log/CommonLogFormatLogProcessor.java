@@ -1,27 +1,46 @@
 package com.adambarreiro.monitor.process.log;
 
 import com.adambarreiro.monitor.process.log.vo.LogData;
+import com.adambarreiro.monitor.process.log.vo.LogField;
+import com.adambarreiro.monitor.process.log.vo.LogRecord;
 import com.adambarreiro.monitor.stats.Stats;
 
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatterBuilder;
-import java.util.Locale;
+import java.time.format.DateTimeParseException;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
 
 /**
  * Transforms a raw piece of data in the Common Log Format (https://en.wikipedia.org/wiki/Common_Log_Format)
  * to the {@link LogData} value object, to be able to be used in a {@link Stats} handler.
+ *
+ * The line is scanned once, from delimiter to delimiter, instead of matched with a regular expression. The numbers
+ * are parsed in place and the text fields are kept as slices of the line in a {@link LogRecord}, so they are only
+ * copied if someone reads them. A malformed line is rejected as soon as a delimiter is missing.
+ *
+ * A processor can be projected to the fields that are actually read: the delimiters are always found, but the
+ * timestamp, the request and the numbers are only decoded if they're needed.
  */
 public final class CommonLogFormatLogProcessor implements LogProcessor {
 
 	public static final String STRFTIME_FORMAT = "dd/MMM/yyyy:HH:mm:ss Z";
 
-	private static final DateTimeFormatterBuilder builder = new DateTimeFormatterBuilder().parseCaseInsensitive().appendPattern(STRFTIME_FORMAT);
-	private static final Pattern CLF_PATTERN = Pattern.compile("^(.+) (.+) (.+) \\[(.+)] \"(.+) (.+) (.+)\" (.+) (.+)$");
+	private final ClfTimestampDecoder timestampDecoder;
+	private final boolean timestamp;
+	private final boolean request;
+	private final boolean statusCode;
+	private final boolean size;
+
+	public CommonLogFormatLogProcessor() {
+		this(LogField.all());
+	}
+
+	private CommonLogFormatLogProcessor(Set<LogField> fields) {
+		this.timestampDecoder = new ClfTimestampDecoder();
+		this.timestamp = fields.contains(LogField.TIMESTAMP);
+		this.request = fields.contains(LogField.VERB) || fields.contains(LogField.PATH) || fields.contains(LogField.VERSION);
+		this.statusCode = fields.contains(LogField.STATUS_CODE);
+		this.size = fields.contains(LogField.SIZE);
+	}
 
 	/**
 	 * Transforms a raw piece of data in the Common Log Format (https://en.wikipedia.org/wiki/Common_Log_Format)
@@ -33,24 +52,79 @@ public final class CommonLogFormatLogProcessor implements LogProcessor {
 	 */
 	@Override
 	public Optional<LogData> process(String logEntry) {
-		Matcher matcher = CLF_PATTERN.matcher(logEntry);
-		if (!matcher.matches()) {
-			return Optional.empty();
-		}
-		return Optional.of(new LogData(
-				matcher.group(1),
-				matcher.group(2),
-				matcher.group(3),
-				formatDate(matcher.group(4)),
-				new LogData.Request(matcher.group(5), matcher.group(6), matcher.group(7)),
-				Integer.parseInt(matcher.group(8)),
-				Integer.parseInt(matcher.group(9))));
+		LogRecord record = new LogRecord();
+		return parse(logEntry, record) ? Optional.of(record.toLogData()) : Optional.empty();
+	}
+
+	/**
+	 * Gets a processor that only decodes the given fields.
+	 *
+	 * @param fields the fields to extract.
+	 * @return a new processor.
+	 */
+	@Override
+	public LogProcessor project(Set<LogField> fields) {
+		return new CommonLogFormatLogProcessor(fields);
 	}
 
-	private Instant formatDate(String date) {
-		return LocalDateTime
-				.parse(date, builder.toFormatter(Locale.US))
-				.atZone(ZoneId.systemDefault())
-				.toInstant();
+	/**
+	 * Parses a raw piece of data in the Common Log Format into the given record, without allocating anything.
+	 *
+	 * @param logEntry the raw data in CLF format.
+	 * @param record   the record to fill.
+	 * @return true if the line is valid. False otherwise, leaving the record in an undefined state.
+	 */
+	@Override
+	public boolean parse(String logEntry, LogRecord record) {
+		int length = logEntry.length();
+		// client identity userId [timestamp] "verb path version" status size
+		int identityStart = logEntry.indexOf(' ') + 1;
+		int userIdStart = identityStart == 0 ? -1 : logEntry.indexOf(' ', identityStart) + 1;
+		int timestampStart = userIdStart <= 0 ? -1 : logEntry.indexOf(" [", userIdStart) + 2;
+		int timestampEnd = timestampStart <= 1 ? -1 : logEntry.indexOf("] \"", timestampStart);
+		int sizeStart = logEntry.lastIndexOf(' ') + 1;
+		int statusStart = sizeStart <= 0 ? -1 : logEntry.lastIndexOf(' ', sizeStart - 2) + 1;
+		int requestStart = timestampEnd + 3;
+		int requestEnd = statusStart - 2;
+		if (timestampEnd <= timestampStart || requestEnd <= requestStart || logEntry.charAt(requestEnd) != '"'
+				|| identityStart == 1 || userIdStart == identityStart + 1 || timestampStart - 2 == userIdStart || sizeStart == length) {
+			return false;
+		}
+		record.reset(logEntry);
+		record.setClient(0, identityStart - 1);
+		record.setIdentity(identityStart, userIdStart - 1);
+		record.setUserId(userIdStart, timestampStart - 2);
+		if (this.request) {
+			int verbEnd = logEntry.indexOf(' ', requestStart);
+			int versionStart = logEntry.lastIndexOf(' ', requestEnd) + 1;
+			if (verbEnd <= requestStart || versionStart <= verbEnd + 2 || versionStart == requestEnd) {
+				return false;
+			}
+			record.setVerb(requestStart, verbEnd);
+			record.setPath(verbEnd + 1, versionStart - 1);
+			record.setVersion(versionStart, requestEnd);
+		}
+		if (this.statusCode) {
+			int statusCode = LogFields.parseNumber(logEntry, statusStart, sizeStart - 1);
+			if (statusCode < 0) {
+				return false;
+			}
+			record.setStatusCode(statusCode);
+		}
+		if (this.size) {
+			int size = LogFields.parseNumber(logEntry, sizeStart, length);
+			if (size < 0) {
+				return false;
+			}
+			record.setSize(size);
+		}
+		if (this.timestamp) {
+			try {
+				record.setEpochSecond(this.timestampDecoder.decodeEpochSecond(logEntry, timestampStart, timestampEnd));
+			} catch (DateTimeParseException e) {
+				return false;
+			}
+		}
+		return true;
 	}
 }
@@ -1,14 +1,395 @@
 package com.adambarreiro.monitor.process.log;
 
 import com.adambarreiro.monitor.process.log.vo.LogData;
+import com.adambarreiro.monitor.process.log.vo.LogField;
+import com.adambarreiro.monitor.process.log.vo.LogRecord;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
+/**
+ * Transforms log lines written with a configurable format, like the nginx <code>log_format</code> directive
+ * (<code>$remote_addr - $remote_user [$time_local] "$request" $status $body_bytes_sent $request_time</code>) or the
+ * Apache <code>LogFormat</code> directive (<code>%h %l %u %t "%r" %&gt;s %b %D</code>).
+ *
+ * The format is compiled once into a plan: the literal text expected before every variable and the kind of field the
+ * variable holds. Every variable ends where the literal text of the next one starts, so a line is parsed in a single
+ * pass with an <code>indexOf</code> per field into a {@link LogRecord}, and the fields unknown to it are skipped.
+ * Two variables without text between them cannot be told apart, so such a format is rejected.
+ *
+ * A processor can be projected to the fields that are actually read, which turns the rest of the variables of the
+ * plan into skipped ones.
+ */
 public final class CustomLogProcessor implements LogProcessor {
 
-	// TODO: We can implement other logging formats
+	public static final String COMMON = "$remote_addr $remote_ident $remote_user [$time_local] \"$request\" $status $body_bytes_sent";
+	public static final String COMBINED = "$remote_addr - $remote_user [$time_local] \"$request\" $status $body_bytes_sent \"$http_referer\" \"$http_user_agent\"";
+
+	private static final long MICROS_PER_SECOND = 1_000_000L;
+
+	private final Field[] fields;
+	private final String[] prefixes;
+	private final String trailer;
+	private final ClfTimestampDecoder timestampDecoder;
+
+	private CustomLogProcessor(Field[] fields, String[] prefixes, String trailer) {
+		this.fields = fields;
+		this.prefixes = prefixes;
+		this.trailer = trailer;
+		this.timestampDecoder = new ClfTimestampDecoder();
+	}
+
+	/**
+	 * Compiles a log format into a processor.
+	 *
+	 * @param logFormat an nginx or Apache log format, or the name of a predefined one: common or combined.
+	 * @return An instance of this class
+	 *
+	 * @throws IllegalArgumentException if the format has no timestamp or two variables without text between them.
+	 */
+	public static CustomLogProcessor of(final String logFormat) {
+		String format = logFormat;
+		if ("common".equalsIgnoreCase(logFormat.trim())) {
+			format = COMMON;
+		} else if ("combined".equalsIgnoreCase(logFormat.trim())) {
+			format = COMBINED;
+		}
+		List<Field> fields = new ArrayList<>();
+		List<String> prefixes = new ArrayList<>();
+		StringBuilder literal = new StringBuilder();
+		int i = 0;
+		while (i < format.length()) {
+			char c = format.charAt(i);
+			int end = i + 1;
+			Field field = null;
+			if (c == '$' && end < format.length()) {
+				if (format.charAt(end) == '{') {
+					end = format.indexOf('}', end);
+					if (end < 0) {
+						throw new IllegalArgumentException("Unclosed variable in the log format: " + logFormat);
+					}
+					field = Field.ofNginx(format.substring(i + 2, end));
+					end++;
+				} else {
+					while (end < format.length() && (Character.isLetterOrDigit(format.charAt(end)) || format.charAt(end) == '_')) {
+						end++;
+					}
+					field = end > i + 1 ? Field.ofNginx(format.substring(i + 1, end)) : null;
+				}
+			} else if (c == '%' && end < format.length()) {
+				if (format.charAt(end) == '%') {
+					c = '%';
+					end++;
+				} else {
+					if (format.charAt(end) == '{') {
+						end = format.indexOf('}', end);
+						if (end < 0) {
+							throw new IllegalArgumentException("Unclosed directive in the log format: " + logFormat);
+						}
+						end++;
+					}
+					while (end < format.length() && (format.charAt(end) == '>' || format.charAt(end) == '<')) {
+						end++;
+					}
+					if (end == format.length()) {
+						throw new IllegalArgumentException("Incomplete directive in the log format: " + logFormat);
+					}
+					field = Field.ofApache(format.charAt(end), format.charAt(i + 1) == '{');
+					end++;
+					if (field == Field.TIME_LOCAL) {
+						// Apache writes the brackets as part of the time
+						literal.append('[');
+						addField(logFormat, fields, prefixes, literal, field);
+						literal.append(']');
+						i = end;
+						continue;
+					}
+				}
+			}
+			if (field == null) {
+				literal.append(c);
+			} else {
+				addField(logFormat, fields, prefixes, literal, field);
+			}
+			i = end;
+		}
+		if (!fields.contains(Field.TIME_LOCAL) && !fields.contains(Field.TIME_ISO8601) && !fields.contains(Field.MSEC)) {
+			throw new IllegalArgumentException("The log format has no timestamp: " + logFormat);
+		}
+		return new CustomLogProcessor(fields.toArray(new Field[0]), prefixes.toArray(new String[0]), literal.toString());
+	}
+
+	/**
+	 * Gets a processor whose plan skips the variables holding fields other than the given ones.
+	 *
+	 * @param fields the fields to extract.
+	 * @return a new processor.
+	 */
+	@Override
+	public LogProcessor project(Set<LogField> fields) {
+		Field[] projected = new Field[this.fields.length];
+		for (int i = 0; i < projected.length; i++) {
+			projected[i] = this.fields[i].isReadBy(fields) ? this.fields[i] : Field.SKIPPED;
+		}
+		return new CustomLogProcessor(projected, this.prefixes, this.trailer);
+	}
 
+	/**
+	 * Transforms a raw piece of data in the configured format to the {@link LogData} value object.
+	 *
+	 * @param logEntry the raw data.
+	 *
+	 * @return the same data inside the VO, or empty if the line doesn't follow the format.
+	 */
 	@Override
 	public Optional<LogData> process(String logEntry) {
-		return Optional.empty();
+		LogRecord record = new LogRecord();
+		return parse(logEntry, record) ? Optional.of(record.toLogData()) : Optional.empty();
+	}
+
+	/**
+	 * Parses a raw piece of data in the configured format into the given record, without allocating anything.
+	 *
+	 * @param logEntry the raw data.
+	 * @param record   the record to fill.
+	 * @return true if the line follows the format. False otherwise, leaving the record in an undefined state.
+	 */
+	@Override
+	public boolean parse(String logEntry, LogRecord record) {
+		int length = logEntry.length() - this.trailer.length();
+		if (length < 0 || !logEntry.startsWith(this.trailer, length)) {
+			return false;
+		}
+		record.reset(logEntry);
+		int position = 0;
+		for (int i = 0; i < this.fields.length; i++) {
+			if (!logEntry.startsWith(this.prefixes[i], position)) {
+				return false;
+			}
+			int start = position + this.prefixes[i].length();
+			int end = i + 1 < this.fields.length ? logEntry.indexOf(this.prefixes[i + 1], start) : length;
+			if (end < start || !parseField(this.fields[i], logEntry, start, end, record)) {
+				return false;
+			}
+			position = end;
+		}
+		return position == length;
+	}
+
+	/**
+	 * Parses a field of the line into the record.
+	 *
+	 * @return true if the field is valid. False otherwise.
+	 */
+	private boolean parseField(Field field, String logEntry, int start, int end, LogRecord record) {
+		switch (field) {
+			case CLIENT:
+				record.setClient(start, end);
+				return true;
+			case IDENTITY:
+				record.setIdentity(start, end);
+				return true;
+			case USER:
+				record.setUserId(start, end);
+				return true;
+			case TIME_LOCAL:
+			case TIME_ISO8601:
+			case MSEC:
+				return parseTimestamp(field, logEntry, start, end, record);
+			case REQUEST:
+				int verbEnd = logEntry.indexOf(' ', start);
+				int versionStart = logEntry.lastIndexOf(' ', end - 1) + 1;
+				if (verbEnd <= start || versionStart <= verbEnd + 2 || versionStart >= end) {
+					return false;
+				}
+				record.setVerb(start, verbEnd);
+				record.setPath(verbEnd + 1, versionStart - 1);
+				record.setVersion(versionStart, end);
+				return true;
+			case METHOD:
+				record.setVerb(start, end);
+				return true;
+			case URI:
+				record.setPath(start, end);
+				return true;
+			case PROTOCOL:
+				record.setVersion(start, end);
+				return true;
+			case STATUS:
+				int statusCode = LogFields.parseNumber(logEntry, start, end);
+				record.setStatusCode(statusCode);
+				return statusCode >= 0;
+			case BYTES:
+				int size = LogFields.parseNumber(logEntry, start, end);
+				record.setSize(size);
+				return size >= 0;
+			case REQUEST_TIME_SECONDS:
+				record.setRequestTimeMicros(LogFields.parseSecondsAsMicros(logEntry, start, end));
+				return true;
+			case REQUEST_TIME_MICROS:
+				int micros = LogFields.parseNumber(logEntry, start, end);
+				record.setRequestTimeMicros(micros < 0 ? LogData.NO_REQUEST_TIME : micros);
+				return true;
+			default:
+				return true;
+		}
+	}
+
+	/**
+	 * Parses a timestamp field into the record.
+	 *
+	 * @return true if the timestamp is valid. False otherwise.
+	 */
+	private boolean parseTimestamp(Field field, String logEntry, int start, int end, LogRecord record) {
+		try {
+			switch (field) {
+				case TIME_LOCAL:
+					record.setEpochSecond(this.timestampDecoder.decodeEpochSecond(logEntry, start, end));
+					return true;
+				case TIME_ISO8601:
+					record.setEpochSecond(OffsetDateTime.parse(logEntry.subSequence(start, end)).toEpochSecond());
+					return true;
+				default:
+					long micros = LogFields.parseSecondsAsMicros(logEntry, start, end);
+					record.setEpochSecond(micros / MICROS_PER_SECOND);
+					return micros >= 0;
+			}
+		} catch (DateTimeParseException e) {
+			return false;
+		}
+	}
+
+	private static void addField(String logFormat, List<Field> fields, List<String> prefixes, StringBuilder literal, Field field) {
+		if (!fields.isEmpty() && literal.length() == 0) {
+			throw new IllegalArgumentException("Two variables without text between them in the log format: " + logFormat);
+		}
+		fields.add(field);
+		prefixes.add(literal.toString());
+		literal.setLength(0);
+	}
+
+	/**
+	 * The kinds of fields of a log format.
+	 */
+	private enum Field {
+		CLIENT, IDENTITY, USER, TIME_LOCAL, TIME_ISO8601, MSEC, REQUEST, METHOD, URI, PROTOCOL, STATUS, BYTES,
+		REQUEST_TIME_SECONDS, REQUEST_TIME_MICROS, SKIPPED;
+
+		/**
+		 * Tells whether the kind of field holds any of the given fields.
+		 */
+		private boolean isReadBy(Set<LogField> fields) {
+			switch (this) {
+				case CLIENT:
+					return fields.contains(LogField.CLIENT);
+				case IDENTITY:
+					return fields.contains(LogField.IDENTITY);
+				case USER:
+					return fields.contains(LogField.USER_ID);
+				case TIME_LOCAL:
+				case TIME_ISO8601:
+				case MSEC:
+					return fields.contains(LogField.TIMESTAMP);
+				case REQUEST:
+					return fields.contains(LogField.VERB) || fields.contains(LogField.PATH) || fields.contains(LogField.VERSION);
+				case METHOD:
+					return fields.contains(LogField.VERB);
+				case URI:
+					return fields.contains(LogField.PATH);
+				case PROTOCOL:
+					return fields.contains(LogField.VERSION);
+				case STATUS:
+					return fields.contains(LogField.STATUS_CODE);
+				case BYTES:
+					return fields.contains(LogField.SIZE);
+				case REQUEST_TIME_SECONDS:
+				case REQUEST_TIME_MICROS:
+					return fields.contains(LogField.REQUEST_TIME);
+				default:
+					return false;
+			}
+		}
+
+		/**
+		 * Gets the kind of field of an nginx variable.
+		 */
+		private static Field ofNginx(String variable) {
+			switch (variable) {
+				case "remote_addr":
+					return CLIENT;
+				case "remote_ident":
+					return IDENTITY;
+				case "remote_user":
+					return USER;
+				case "time_local":
+					return TIME_LOCAL;
+				case "time_iso8601":
+					return TIME_ISO8601;
+				case "msec":
+					return MSEC;
+				case "request":
+					return REQUEST;
+				case "request_method":
+					return METHOD;
+				case "request_uri":
+				case "uri":
+					return URI;
+				case "server_protocol":
+					return PROTOCOL;
+				case "status":
+					return STATUS;
+				case "body_bytes_sent":
+				case "bytes_sent":
+					return BYTES;
+				case "request_time":
+					return REQUEST_TIME_SECONDS;
+				default:
+					return SKIPPED;
+			}
+		}
+
+		/**
+		 * Gets the kind of field of an Apache directive.
+		 */
+		private static Field ofApache(char directive, boolean withArgument) {
+			if (withArgument) {
+				return SKIPPED;
+			}
+			switch (directive) {
+				case 'h':
+				case 'a':
+					return CLIENT;
+				case 'l':
+					return IDENTITY;
+				case 'u':
+					return USER;
+				case 't':
+					return TIME_LOCAL;
+				case 'r':
+					return REQUEST;
+				case 'm':
+					return METHOD;
+				case 'U':
+					return URI;
+				case 'H':
+					return PROTOCOL;
+				case 's':
+					return STATUS;
+				case 'b':
+				case 'B':
+				case 'O':
+					return BYTES;
+				case 'T':
+					return REQUEST_TIME_SECONDS;
+				case 'D':
+					return REQUEST_TIME_MICROS;
+				default:
+					return SKIPPED;
+			}
+		}
 	}
 }
@@ -0,0 +1,76 @@
+package com.adambarreiro.monitor.process.log;
+
+/**
+ * Helpers to parse the fields of a log line in place, shared by the log processors.
+ */
+final class LogFields {
+
+	private static final long MICROS_PER_SECOND = 1_000_000L;
+
+	private LogFields() {
+	}
+
+	/**
+	 * Parses the decimal number between the given positions, without copying it. An empty size ("-") is zero. The
+	 * numbers beyond the range of an int, like the size of a download of several GB, are capped to its largest value,
+	 * so the line is still counted.
+	 *
+	 * @param logEntry the raw data.
+	 * @param start    the position of the first digit.
+	 * @param end      the position after the last digit.
+	 * @return the number, or -1 if it's not a number.
+	 */
+	static int parseNumber(String logEntry, int start, int end) {
+		if (end - start == 1 && logEntry.charAt(start) == '-') {
+			return 0;
+		}
+		if (end <= start) {
+			return -1;
+		}
+		long number = 0;
+		for (int i = start; i < end; i++) {
+			int digit = logEntry.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				return -1;
+			}
+			number = Math.min(number * 10 + digit, Integer.MAX_VALUE);
+		}
+		return (int) number;
+	}
+
+	/**
+	 * Parses the decimal number of seconds between the given positions, like the 0.012 of the nginx request time.
+	 * Only the first number is read if there are several, like in the upstream times of a retried request.
+	 *
+	 * @param logEntry the raw data.
+	 * @param start    the position of the first digit.
+	 * @param end      the position after the last character of the field.
+	 * @return the microseconds, or -1 if it's empty ("-") or not a number.
+	 */
+	static long parseSecondsAsMicros(String logEntry, int start, int end) {
+		long seconds = 0;
+		long fraction = 0;
+		long scale = MICROS_PER_SECOND;
+		boolean decimals = false;
+		int i = start;
+		for (; i < end; i++) {
+			char c = logEntry.charAt(i);
+			if (c == '.' && !decimals) {
+				decimals = true;
+			} else if (c >= '0' && c <= '9') {
+				if (!decimals) {
+					seconds = seconds * 10 + (c - '0');
+				} else if (scale > 1) {
+					scale /= 10;
+					fraction += (c - '0') * scale;
+				}
+			} else {
+				break;
+			}
+		}
+		if (i == start || seconds > Integer.MAX_VALUE) {
+			return -1L;
+		}
+		return seconds * MICROS_PER_SECOND + fraction;
+	}
+}
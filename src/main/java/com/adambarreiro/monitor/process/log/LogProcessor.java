@@ -1,9 +1,14 @@
 package com.adambarreiro.monitor.process.log;
 
 import com.adambarreiro.monitor.process.log.vo.LogData;
+import com.adambarreiro.monitor.process.log.vo.LogField;
+import com.adambarreiro.monitor.process.log.vo.LogRecord;
 import com.adambarreiro.monitor.stats.Stats;
 
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Transforms a raw piece of data in a specific logging format to the {@link LogData} value object, to be able
@@ -12,4 +17,86 @@ import java.util.Optional;
 public interface LogProcessor {
 
 	Optional<LogData> process(String logEntry);
+
+	/**
+	 * Gets a processor that only extracts the given fields, leaving the rest with their default values. The fields
+	 * that are not extracted are not validated either. By default every field is extracted.
+	 *
+	 * @param fields the fields to extract.
+	 * @return a processor extracting, at least, the given fields.
+	 */
+	default LogProcessor project(Set<LogField> fields) {
+		return this;
+	}
+
+	/**
+	 * Transforms a raw piece of data and tags it with the source it comes from.
+	 *
+	 * @param source   where the log entry comes from, like the file name.
+	 * @param logEntry the raw data.
+	 * @return the same data inside the VO.
+	 */
+	default Optional<LogData> process(String source, String logEntry) {
+		return process(logEntry).map(data -> data.withSource(source));
+	}
+
+	/**
+	 * Transforms a whole batch of raw pieces of data coming from the same source. The entries that cannot be
+	 * transformed are skipped.
+	 *
+	 * @param source     where the log entries come from, like the file name. Null if unknown.
+	 * @param logEntries the raw data.
+	 * @param onData     a function called with every transformed entry.
+	 * @return the number of transformed entries.
+	 */
+	default int process(String source, String[] logEntries, Consumer<? super LogData> onData) {
+		int processed = 0;
+		for (String logEntry : logEntries) {
+			Optional<LogData> data = Objects.isNull(source) ? process(logEntry) : process(source, logEntry);
+			if (data.isPresent()) {
+				onData.accept(data.get());
+				processed++;
+			}
+		}
+		return processed;
+	}
+
+	/**
+	 * Parses a raw piece of data into a reusable record, instead of creating a new VO. By default it relies on
+	 * {@link #process(String)} and copies the result, so the processors meant for the hot path override it to fill the
+	 * record without allocating anything.
+	 *
+	 * @param logEntry the raw data.
+	 * @param record   the record to fill.
+	 * @return true if the entry was parsed. False otherwise, leaving the record in an undefined state.
+	 */
+	default boolean parse(String logEntry, LogRecord record) {
+		Optional<LogData> data = process(logEntry);
+		data.ifPresent(record::set);
+		return data.isPresent();
+	}
+
+	/**
+	 * Parses a whole batch of raw pieces of data coming from the same source into a single reusable record. The
+	 * entries that cannot be parsed are skipped.
+	 *
+	 * @param source     where the log entries come from, like the file name. Null if unknown.
+	 * @param logEntries the raw data.
+	 * @param weight     how many log entries every entry stands for, more than one if they were sampled.
+	 * @param record     the record to fill with every entry.
+	 * @param onRecord   a function called with the record after every parsed entry. It must not keep the record.
+	 * @return the number of parsed entries.
+	 */
+	default int parse(String source, String[] logEntries, int weight, LogRecord record, Consumer<? super LogRecord> onRecord) {
+		int parsed = 0;
+		for (String logEntry : logEntries) {
+			if (parse(logEntry, record)) {
+				record.setSource(Objects.isNull(source) ? LogData.NO_SOURCE : source);
+				record.setWeight(weight);
+				onRecord.accept(record);
+				parsed++;
+			}
+		}
+		return parsed;
+	}
 }
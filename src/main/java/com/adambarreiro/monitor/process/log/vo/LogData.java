@@ -7,6 +7,10 @@ import java.time.Instant;
  */
 public class LogData {
 
+	public static final String NO_SOURCE = "-";
+	public static final long NO_REQUEST_TIME = -1L;
+
+	private final String source;
 	private final String client;
 	private final String identity;
 	private final String userId;
@@ -14,8 +18,23 @@ public class LogData {
 	private final Request request;
 	private final int statusCode;
 	private final int size;
+	private final int weight;
+	private final long requestTimeMicros;
 
 	public LogData(String client, String identity, String userId, Instant timestamp, Request request, int statusCode, int size) {
+		this(NO_SOURCE, client, identity, userId, timestamp, request, statusCode, size);
+	}
+
+	public LogData(String source, String client, String identity, String userId, Instant timestamp, Request request, int statusCode, int size) {
+		this(source, client, identity, userId, timestamp, request, statusCode, size, 1);
+	}
+
+	public LogData(String source, String client, String identity, String userId, Instant timestamp, Request request, int statusCode, int size, int weight) {
+		this(source, client, identity, userId, timestamp, request, statusCode, size, weight, NO_REQUEST_TIME);
+	}
+
+	public LogData(String source, String client, String identity, String userId, Instant timestamp, Request request, int statusCode, int size, int weight, long requestTimeMicros) {
+		this.source = source;
 		this.client = client;
 		this.identity = identity;
 		this.userId = userId;
@@ -23,6 +42,33 @@ public class LogData {
 		this.request = request;
 		this.statusCode = statusCode;
 		this.size = size;
+		this.weight = weight;
+		this.requestTimeMicros = requestTimeMicros;
+	}
+
+	/**
+	 * Copies this log data, tagging it with the given source.
+	 *
+	 * @param source where the log entry comes from, like the file name.
+	 * @return the tagged log data.
+	 */
+	public LogData withSource(String source) {
+		return new LogData(source, client, identity, userId, timestamp, request, statusCode, size, weight, requestTimeMicros);
+	}
+
+	/**
+	 * Copies this log data, giving it the weight of the given number of log entries. Used when the entries are
+	 * sampled, so the statistics can be corrected.
+	 *
+	 * @param weight how many log entries this one stands for.
+	 * @return the weighted log data.
+	 */
+	public LogData withWeight(int weight) {
+		return new LogData(source, client, identity, userId, timestamp, request, statusCode, size, weight, requestTimeMicros);
+	}
+
+	public String getSource() {
+		return source;
 	}
 
 	public String getClient() {
@@ -53,6 +99,19 @@ public class LogData {
 		return size;
 	}
 
+	public int getWeight() {
+		return weight;
+	}
+
+	/**
+	 * Gets the time it took to serve the request, if the log format includes it.
+	 *
+	 * @return the request time in microseconds, or {@link #NO_REQUEST_TIME} if it's unknown.
+	 */
+	public long getRequestTimeMicros() {
+		return requestTimeMicros;
+	}
+
 	public static class Request {
 
 		private final String verb;
@@ -0,0 +1,21 @@
+package com.adambarreiro.monitor.process.log.vo;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The fields of a log line. The components consuming the log lines declare the ones they read, so the
+ * log processors can skip extracting the rest.
+ */
+public enum LogField {
+	CLIENT, IDENTITY, USER_ID, TIMESTAMP, VERB, PATH, VERSION, STATUS_CODE, SIZE, REQUEST_TIME;
+
+	/**
+	 * Gets all the fields, for the components that read the whole log line.
+	 *
+	 * @return all the fields.
+	 */
+	public static Set<LogField> all() {
+		return EnumSet.allOf(LogField.class);
+	}
+}
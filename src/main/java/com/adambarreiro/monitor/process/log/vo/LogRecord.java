@@ -0,0 +1,324 @@
+package com.adambarreiro.monitor.process.log.vo;
+
+import java.time.Instant;
+
+/**
+ * Mutable and reusable counterpart of {@link LogData}, for the hot path. A single record is filled by the
+ * log processor for every line and handed to the stats, so parsing a line allocates nothing: the timestamp is kept
+ * as epoch seconds and the text fields as slices of the line, which are only copied if someone asks for them.
+ *
+ * The record is only valid until the next line is parsed into it, so it must never be kept. Use
+ * {@link #toLogData()} to get an immutable copy.
+ */
+public final class LogRecord {
+
+	private static final String EMPTY_FIELD = "-";
+	private static final String ROOT_PATH = "/";
+
+	private String line;
+	private String source;
+	private int weight;
+	private long epochSecond;
+	private short statusCode;
+	private int size;
+	private long requestTimeMicros;
+	private int clientStart;
+	private int clientEnd;
+	private int identityStart;
+	private int identityEnd;
+	private int userIdStart;
+	private int userIdEnd;
+	private int verbStart;
+	private int verbEnd;
+	private int pathStart;
+	private int pathEnd;
+	private int versionStart;
+	private int versionEnd;
+
+	public LogRecord() {
+		this.reset("");
+	}
+
+	/**
+	 * Creates a record with the contents of the given log data.
+	 *
+	 * @param data the log data.
+	 * @return a new record.
+	 */
+	public static LogRecord of(LogData data) {
+		LogRecord record = new LogRecord();
+		record.set(data);
+		return record;
+	}
+
+	/**
+	 * Fills the record with the contents of the given log data. Meant for the components that still produce
+	 * {@link LogData}, as it copies its text fields into a new line.
+	 *
+	 * @param data the log data.
+	 */
+	public void set(LogData data) {
+		String client = data.getClient();
+		String identity = data.getIdentity();
+		String userId = data.getUserId();
+		String verb = data.getRequest().getVerb();
+		String path = data.getRequest().getPath();
+		String version = data.getRequest().getVersion();
+		reset(client + identity + userId + verb + path + version);
+		int position = 0;
+		setClient(position, position += client.length());
+		setIdentity(position, position += identity.length());
+		setUserId(position, position += userId.length());
+		setVerb(position, position += verb.length());
+		setPath(position, position += path.length());
+		setVersion(position, position + version.length());
+		this.epochSecond = data.getTimestamp().getEpochSecond();
+		this.statusCode = (short) data.getStatusCode();
+		this.size = data.getSize();
+		this.requestTimeMicros = data.getRequestTimeMicros();
+		this.source = data.getSource();
+		this.weight = data.getWeight();
+	}
+
+	/**
+	 * Clears the record to parse a new line into it.
+	 *
+	 * @param line the line the slices of the record refer to.
+	 */
+	public void reset(String line) {
+		this.line = line;
+		this.source = LogData.NO_SOURCE;
+		this.weight = 1;
+		this.epochSecond = 0L;
+		this.statusCode = 0;
+		this.size = 0;
+		this.requestTimeMicros = LogData.NO_REQUEST_TIME;
+		this.clientStart = this.clientEnd = -1;
+		this.identityStart = this.identityEnd = -1;
+		this.userIdStart = this.userIdEnd = -1;
+		this.verbStart = this.verbEnd = -1;
+		this.pathStart = this.pathEnd = -1;
+		this.versionStart = this.versionEnd = -1;
+	}
+
+	/**
+	 * Fills the record with the contents of another one, to hand it to another thread. The line isn't copied, as it's
+	 * immutable.
+	 *
+	 * @param other the record to copy.
+	 */
+	public void set(LogRecord other) {
+		this.line = other.line;
+		this.source = other.source;
+		this.weight = other.weight;
+		this.epochSecond = other.epochSecond;
+		this.statusCode = other.statusCode;
+		this.size = other.size;
+		this.requestTimeMicros = other.requestTimeMicros;
+		this.clientStart = other.clientStart;
+		this.clientEnd = other.clientEnd;
+		this.identityStart = other.identityStart;
+		this.identityEnd = other.identityEnd;
+		this.userIdStart = other.userIdStart;
+		this.userIdEnd = other.userIdEnd;
+		this.verbStart = other.verbStart;
+		this.verbEnd = other.verbEnd;
+		this.pathStart = other.pathStart;
+		this.pathEnd = other.pathEnd;
+		this.versionStart = other.versionStart;
+		this.versionEnd = other.versionEnd;
+	}
+
+	/**
+	 * Copies the record into an immutable {@link LogData}.
+	 *
+	 * @return the log data.
+	 */
+	public LogData toLogData() {
+		return new LogData(this.source, getClient(), getIdentity(), getUserId(), Instant.ofEpochSecond(this.epochSecond),
+				new LogData.Request(getVerb(), getPath(), getVersion()), this.statusCode, this.size, this.weight,
+				this.requestTimeMicros);
+	}
+
+	public String getLine() {
+		return this.line;
+	}
+
+	public String getSource() {
+		return this.source;
+	}
+
+	public void setSource(String source) {
+		this.source = source;
+	}
+
+	public int getWeight() {
+		return this.weight;
+	}
+
+	public void setWeight(int weight) {
+		this.weight = weight;
+	}
+
+	public long getEpochSecond() {
+		return this.epochSecond;
+	}
+
+	public void setEpochSecond(long epochSecond) {
+		this.epochSecond = epochSecond;
+	}
+
+	public int getStatusCode() {
+		return this.statusCode;
+	}
+
+	public void setStatusCode(int statusCode) {
+		this.statusCode = (short) statusCode;
+	}
+
+	public int getSize() {
+		return this.size;
+	}
+
+	public void setSize(int size) {
+		this.size = size;
+	}
+
+	public long getRequestTimeMicros() {
+		return this.requestTimeMicros;
+	}
+
+	public void setRequestTimeMicros(long requestTimeMicros) {
+		this.requestTimeMicros = requestTimeMicros;
+	}
+
+	public void setClient(int start, int end) {
+		this.clientStart = start;
+		this.clientEnd = end;
+	}
+
+	public void setIdentity(int start, int end) {
+		this.identityStart = start;
+		this.identityEnd = end;
+	}
+
+	public void setUserId(int start, int end) {
+		this.userIdStart = start;
+		this.userIdEnd = end;
+	}
+
+	public void setVerb(int start, int end) {
+		this.verbStart = start;
+		this.verbEnd = end;
+	}
+
+	public void setPath(int start, int end) {
+		this.pathStart = start;
+		this.pathEnd = end;
+	}
+
+	public void setVersion(int start, int end) {
+		this.versionStart = start;
+		this.versionEnd = end;
+	}
+
+	/**
+	 * Gets the position in the line of the first character of the client, or -1 if the line has no client.
+	 *
+	 * @return the start of the client.
+	 */
+	public int getClientStart() {
+		return this.clientStart;
+	}
+
+	/**
+	 * Gets the position in the line after the last character of the client, or -1 if the line has no client.
+	 *
+	 * @return the end of the client.
+	 */
+	public int getClientEnd() {
+		return this.clientEnd;
+	}
+
+	/**
+	 * Gets the position in the line of the first character of the verb, or -1 if the line has no verb.
+	 *
+	 * @return the start of the verb.
+	 */
+	public int getVerbStart() {
+		return this.verbStart;
+	}
+
+	/**
+	 * Gets the position in the line after the last character of the verb, or -1 if the line has no verb.
+	 *
+	 * @return the end of the verb.
+	 */
+	public int getVerbEnd() {
+		return this.verbEnd;
+	}
+
+	/**
+	 * Gets the position in the line of the first character of the request path, or -1 if the line has no path.
+	 *
+	 * @return the start of the path.
+	 */
+	public int getPathStart() {
+		return this.pathStart;
+	}
+
+	/**
+	 * Gets the position in the line after the last character of the request path, or -1 if the line has no path.
+	 *
+	 * @return the end of the path.
+	 */
+	public int getPathEnd() {
+		return this.pathEnd;
+	}
+
+	/**
+	 * Copies the client out of the line. Prefer {@link #getClientStart()} and {@link #getClientEnd()} on the hot
+	 * path.
+	 *
+	 * @return the client.
+	 */
+	public String getClient() {
+		return slice(this.clientStart, this.clientEnd, EMPTY_FIELD);
+	}
+
+	public String getIdentity() {
+		return slice(this.identityStart, this.identityEnd, EMPTY_FIELD);
+	}
+
+	public String getUserId() {
+		return slice(this.userIdStart, this.userIdEnd, EMPTY_FIELD);
+	}
+
+	public String getVerb() {
+		return slice(this.verbStart, this.verbEnd, EMPTY_FIELD);
+	}
+
+	/**
+	 * Copies the request path out of the line. Prefer {@link #getPathStart()} and {@link #getPathEnd()} on the hot
+	 * path.
+	 *
+	 * @return the request path, or / if the line has no path.
+	 */
+	public String getPath() {
+		return slice(this.pathStart, this.pathEnd, ROOT_PATH);
+	}
+
+	public String getVersion() {
+		return slice(this.versionStart, this.versionEnd, EMPTY_FIELD);
+	}
+
+	private String slice(int start, int end, String defaultValue) {
+		if (start < 0) {
+			return defaultValue;
+		}
+		if (end - start == 1 && this.line.charAt(start) == '-') {
+			return EMPTY_FIELD;
+		}
+		return this.line.substring(start, end);
+	}
+}
@@ -2,13 +2,22 @@ package com.adambarreiro.monitor.service;
 
 import com.adambarreiro.monitor.alert.AlertManager;
 import com.adambarreiro.monitor.capture.Observer;
+import com.adambarreiro.monitor.export.CompositeExporter;
 import com.adambarreiro.monitor.export.ConsoleExporter;
 import com.adambarreiro.monitor.export.Exporter;
+import com.adambarreiro.monitor.pipeline.PipelineConfig;
+import com.adambarreiro.monitor.pipeline.PipelineMetrics;
+import com.adambarreiro.monitor.pipeline.RingPipeline;
 import com.adambarreiro.monitor.process.log.LogProcessor;
-import com.adambarreiro.monitor.process.log.vo.LogData;
+import com.adambarreiro.monitor.process.log.vo.LogField;
+import com.adambarreiro.monitor.process.log.vo.LogRecord;
 import com.adambarreiro.monitor.stats.Stats;
 
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * This service orchestrates all the application components.
@@ -19,24 +28,74 @@ public final class LogMonitorService {
 	private final LogProcessor logProcessor;
 	private final Stats stats;
 	private final AlertManager alertManager;
+	private final List<Exporter> exporters;
+	private final PipelineConfig pipelineConfig;
 
 	public LogMonitorService(Observer observer, LogProcessor logProcessor, Stats stats, AlertManager alertManager) {
+		this(observer, logProcessor, stats, alertManager, List.of());
+	}
+
+	/**
+	 * Creates the service with other destinations of the metrics and the alerts, besides the console.
+	 *
+	 * @param observer     the observer of the log files.
+	 * @param logProcessor the parser of the log lines.
+	 * @param stats        the statistics.
+	 * @param alertManager the alerts.
+	 * @param exporters    the other destinations.
+	 */
+	public LogMonitorService(Observer observer, LogProcessor logProcessor, Stats stats, AlertManager alertManager,
+			List<Exporter> exporters) {
+		this(observer, logProcessor, stats, alertManager, exporters, PipelineConfig.defaults());
+	}
+
+	/**
+	 * Creates the service with other destinations of the metrics and the alerts, and a pipeline of stages between the
+	 * observer and the stats.
+	 *
+	 * @param observer       the observer of the log files.
+	 * @param logProcessor   the parser of the log lines.
+	 * @param stats          the statistics.
+	 * @param alertManager   the alerts.
+	 * @param exporters      the other destinations.
+	 * @param pipelineConfig the stages between the observer and the stats.
+	 */
+	public LogMonitorService(Observer observer, LogProcessor logProcessor, Stats stats, AlertManager alertManager,
+			List<Exporter> exporters, PipelineConfig pipelineConfig) {
 		this.observer = observer;
 		this.logProcessor = logProcessor;
 		this.stats = stats;
 		this.alertManager = alertManager;
+		this.exporters = List.copyOf(exporters);
+		this.pipelineConfig = pipelineConfig;
 	}
 
 	/**
-	 * Exposes the metrics that are observed in the monitored log file and enables the alert management.
+	 * Exposes the metrics that are observed in the monitored log file and enables the alert management. The log
+	 * lines are only parsed as far as the stats and the alerts need, either by the thread that delivers them or, if
+	 * the pipeline has parsing threads, by a {@link RingPipeline}.
 	 */
 	public void start() {
-		Exporter exporter = new ConsoleExporter();
+		Set<LogField> requiredFields = EnumSet.noneOf(LogField.class);
+		requiredFields.addAll(this.stats.getRequiredFields());
+		requiredFields.addAll(this.alertManager.getRequiredFields());
+		LogProcessor projectedLogProcessor = this.logProcessor.project(requiredFields);
+		RingPipeline pipeline = this.pipelineConfig.isRingEnabled()
+				? RingPipeline.start(this.pipelineConfig, projectedLogProcessor, this.stats::add)
+				: null;
+		List<Exporter> exporters = new ArrayList<>();
+		exporters.add(new ConsoleExporter(this.observer.getMetrics(),
+				Objects.isNull(pipeline) ? PipelineMetrics.NONE : pipeline));
+		exporters.addAll(this.exporters);
+		Exporter exporter = new CompositeExporter(exporters);
 		this.stats.expose(exporter);
 		this.alertManager.start(exporter);
-		this.observer.observe(line -> {
-			Optional<LogData> data = this.logProcessor.process((String)line);
-			data.ifPresent(this.stats::add);
-		});
+		if (Objects.nonNull(pipeline)) {
+			this.observer.observeBatches(pipeline::publish);
+			return;
+		}
+		LogRecord record = new LogRecord();
+		this.observer.observeBatches(batch -> projectedLogProcessor.parse(batch.getSource(), batch.getLines(),
+				batch.getWeight(), record, this.stats::add));
 	}
 }
@@ -0,0 +1,432 @@
+package com.adambarreiro.monitor.stats;
+
+import com.adambarreiro.monitor.stats.vo.Dimension;
+import com.adambarreiro.monitor.stats.vo.Group;
+import com.adambarreiro.monitor.stats.vo.StatsSnapshot;
+import com.adambarreiro.monitor.stats.vo.TopSites;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything a sliding window counted, in a form that can be serialized and merged with the windows of other
+ * monitors, like the ones of every node of a fleet: the counters, the top sites as bounded summaries with their error,
+ * the histograms of the sizes and request times, the distinct counters of the clients and paths, and the groups by
+ * their values, not by the ids each monitor gives them. Hence, the merged rates, percentiles and distinct counts are
+ * the ones of all the requests, not averages of averages.
+ *
+ * Merging is associative and commutative: the counters, histograms and distinct counters are merged exactly, and the
+ * top sites keep their heaviest sites up to the largest capacity of the merged summaries, adding the heaviest site
+ * left out to their error bound. An aggregate is never modified once built.
+ */
+public final class Aggregate {
+
+	private static final int MAGIC = 0x484c4d41;
+	private static final int VERSION = 2;
+	private static final int MAX_ENTRIES = 1 << 20;
+
+	private final int windowSeconds;
+	private final int sitesCapacity;
+	private final Map<String, Long> siteHits;
+	private final Map<String, Long> siteBytes;
+	private final Map<String, Long> sourceHits;
+	private final LogLinearHistogram sizes;
+	private final LogLinearHistogram requestTimes;
+	private final HyperLogLog clients;
+	private final HyperLogLog paths;
+	private final Map<Map<Dimension, String>, long[]> groups;
+	private long requests;
+	private long errors;
+	private long bytes;
+	private long siteHitsError;
+	private long siteBytesError;
+	private long lateEvents;
+	private long droppedEvents;
+	private long skippedIntervals;
+
+	private Aggregate(int windowSeconds, int sitesCapacity, LogLinearHistogram sizes, LogLinearHistogram requestTimes,
+			HyperLogLog clients, HyperLogLog paths) {
+		this.windowSeconds = windowSeconds;
+		this.sitesCapacity = sitesCapacity;
+		this.siteHits = new HashMap<>();
+		this.siteBytes = new HashMap<>();
+		this.sourceHits = new HashMap<>();
+		this.sizes = sizes;
+		this.requestTimes = requestTimes;
+		this.clients = clients;
+		this.paths = paths;
+		this.groups = new HashMap<>();
+	}
+
+	private Aggregate(int windowSeconds, int sitesCapacity) {
+		this(windowSeconds, sitesCapacity, new LogLinearHistogram(), new LogLinearHistogram(), new HyperLogLog(),
+				new HyperLogLog());
+	}
+
+	/**
+	 * Creates an aggregate without requests.
+	 *
+	 * @param windowSeconds the length of its window.
+	 * @return the aggregate.
+	 */
+	public static Aggregate empty(int windowSeconds) {
+		return new Aggregate(windowSeconds, 0);
+	}
+
+	/**
+	 * Creates the aggregate of a window.
+	 *
+	 * @param windowSeconds    the length of the window.
+	 * @param sitesCapacity    how many sites the summaries of the top sites keep.
+	 * @param totals           the totals of the window.
+	 * @param clients          the distinct clients of the window.
+	 * @param paths            the distinct paths of the window.
+	 * @param groups           the groups of the window by every grouped dimension.
+	 * @param lateEvents       the late lines so far.
+	 * @param droppedEvents    the dropped lines so far.
+	 * @param skippedIntervals the skipped intervals so far.
+	 * @return the aggregate.
+	 */
+	static Aggregate of(int windowSeconds, int sitesCapacity, Totals totals, HyperLogLog clients, HyperLogLog paths,
+			List<Group> groups, long lateEvents, long droppedEvents, long skippedIntervals) {
+		Aggregate aggregate = new Aggregate(windowSeconds, sitesCapacity);
+		aggregate.requests = totals.getRequests();
+		aggregate.errors = totals.getErrors();
+		aggregate.bytes = totals.getBytes();
+		totals.getSiteHits().forEach((site, hits) -> aggregate.siteHits.put(site, hits[0]));
+		totals.getSiteBytes().forEach((site, bytes) -> aggregate.siteBytes.put(site, bytes[0]));
+		totals.getSourceHits().forEach((source, hits) -> aggregate.sourceHits.put(source, hits[0]));
+		aggregate.siteHitsError = totals.getSiteHitsError() + trim(aggregate.siteHits, sitesCapacity);
+		aggregate.siteBytesError = totals.getSiteBytesError() + trim(aggregate.siteBytes, sitesCapacity);
+		aggregate.sizes.add(totals.getSizes(), 1);
+		aggregate.requestTimes.add(totals.getRequestTimes(), 1);
+		aggregate.clients.merge(clients);
+		aggregate.paths.merge(paths);
+		groups.forEach(group -> aggregate.groups.put(group.getValues(), new long[]{group.getHits(), group.getBytes()}));
+		aggregate.lateEvents = lateEvents;
+		aggregate.droppedEvents = droppedEvents;
+		aggregate.skippedIntervals = skippedIntervals;
+		return aggregate;
+	}
+
+	/**
+	 * Merges this aggregate with another one, of a window of the same length, into a new one.
+	 *
+	 * @param other the other aggregate.
+	 * @return the merged aggregate.
+	 * @throws IllegalArgumentException if the windows don't last the same.
+	 */
+	public Aggregate merge(Aggregate other) {
+		if (other.windowSeconds != this.windowSeconds) {
+			throw new IllegalArgumentException("Cannot merge a window of " + this.windowSeconds + "s with one of "
+					+ other.windowSeconds + "s");
+		}
+		Aggregate merged = new Aggregate(this.windowSeconds, Math.max(this.sitesCapacity, other.sitesCapacity));
+		merged.add(this);
+		merged.add(other);
+		merged.siteHitsError += trim(merged.siteHits, merged.sitesCapacity);
+		merged.siteBytesError += trim(merged.siteBytes, merged.sitesCapacity);
+		return merged;
+	}
+
+	/**
+	 * Counts the skipped intervals of a clock shared by the merged aggregates, like the one of the shards of a
+	 * {@link ShardedStats}, once instead of once per aggregate.
+	 *
+	 * @param skippedIntervals the skipped intervals so far.
+	 * @return this aggregate.
+	 */
+	Aggregate withSkippedIntervals(long skippedIntervals) {
+		this.skippedIntervals = skippedIntervals;
+		return this;
+	}
+
+	/**
+	 * Merges the aggregates of consecutive windows, like the intervals of an hour, into the one of a window of the given
+	 * length, which may be partly covered. The late and dropped lines and the skipped intervals are counted so far, so
+	 * the merged ones are the latest ones instead of their sum.
+	 *
+	 * @param windowSeconds the length of the merged window.
+	 * @param aggregates    the aggregates of the windows in it, from the oldest one.
+	 * @return the merged aggregate.
+	 */
+	public static Aggregate rollUp(int windowSeconds, List<Aggregate> aggregates) {
+		Aggregate rolled = new Aggregate(windowSeconds,
+				aggregates.stream().mapToInt(aggregate -> aggregate.sitesCapacity).max().orElse(0));
+		for (Aggregate aggregate : aggregates) {
+			rolled.add(aggregate);
+			rolled.lateEvents = aggregate.lateEvents;
+			rolled.droppedEvents = aggregate.droppedEvents;
+			rolled.skippedIntervals = aggregate.skippedIntervals;
+		}
+		rolled.siteHitsError += trim(rolled.siteHits, rolled.sitesCapacity);
+		rolled.siteBytesError += trim(rolled.siteBytes, rolled.sitesCapacity);
+		return rolled;
+	}
+
+	/**
+	 * Calculates the metrics of the window.
+	 *
+	 * @param topSitesCount how many top sites.
+	 * @return the snapshot of the window, right now.
+	 */
+	public StatsSnapshot toSnapshot(int topSitesCount) {
+		return toSnapshot(topSitesCount, Instant.now());
+	}
+
+	/**
+	 * Calculates the metrics of the window, stamped with the given time, like the end of a past interval.
+	 *
+	 * @param topSitesCount how many top sites.
+	 * @param timestamp     the time of the snapshot.
+	 * @return the snapshot of the window.
+	 */
+	public StatsSnapshot toSnapshot(int topSitesCount, Instant timestamp) {
+		Map<String, Integer> sourceHits = new HashMap<>();
+		this.sourceHits.forEach((source, hits) -> sourceHits.put(source, (int) hits.longValue()));
+		List<Group> groups = new ArrayList<>();
+		this.groups.forEach((values, counts) -> groups.add(new Group(values, counts[0], counts[1])));
+		groups.sort(Comparator.comparingLong(Group::getHits).reversed());
+		return StatsSnapshot.builder()
+				.timestamp(timestamp)
+				.requestsRate((float) this.requests / this.windowSeconds)
+				.errorRate(this.requests > 0 ? ((float) this.errors / this.requests) * 100 : 0)
+				.totalTransmittedData(this.bytes)
+				.topSites(new TopSites(top(this.siteHits, topSitesCount), top(this.siteBytes, topSitesCount),
+						this.siteHitsError, this.siteBytesError))
+				.sourceHits(sourceHits)
+				.sizePercentiles(this.sizes.getPercentiles())
+				.requestTimePercentiles(this.requestTimes.getPercentiles())
+				.distinctClients(this.clients.estimate())
+				.distinctPaths(this.paths.estimate())
+				.groups(groups)
+				.lateEvents(this.lateEvents)
+				.droppedEvents(this.droppedEvents)
+				.skippedIntervals(this.skippedIntervals)
+				.build();
+	}
+
+	public int getWindowSeconds() {
+		return this.windowSeconds;
+	}
+
+	public long getRequests() {
+		return this.requests;
+	}
+
+	public long getErrors() {
+		return this.errors;
+	}
+
+	public long getBytes() {
+		return this.bytes;
+	}
+
+	/**
+	 * Writes the aggregate in a compact binary form: the counts are variable-length, the histograms only have their
+	 * non-empty buckets and the sparse distinct counters the gaps between their entries.
+	 *
+	 * @param out where the aggregate is written.
+	 * @throws IOException if it cannot be written.
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		Varints.write(out, this.windowSeconds);
+		Varints.write(out, this.sitesCapacity);
+		Varints.write(out, this.requests);
+		Varints.write(out, this.errors);
+		Varints.write(out, this.bytes);
+		Varints.write(out, this.lateEvents);
+		Varints.write(out, this.droppedEvents);
+		Varints.write(out, this.skippedIntervals);
+		Varints.write(out, this.siteHitsError);
+		Varints.write(out, this.siteBytesError);
+		writeCounts(out, this.siteHits);
+		writeCounts(out, this.siteBytes);
+		writeCounts(out, this.sourceHits);
+		this.sizes.writeTo(out);
+		this.requestTimes.writeTo(out);
+		this.clients.writeTo(out);
+		this.paths.writeTo(out);
+		Varints.write(out, this.groups.size());
+		for (Map.Entry<Map<Dimension, String>, long[]> group : this.groups.entrySet()) {
+			int dimensions = 0;
+			for (Dimension dimension : group.getKey().keySet()) {
+				dimensions |= 1 << dimension.ordinal();
+			}
+			out.writeByte(dimensions);
+			for (String value : group.getKey().values()) {
+				out.writeUTF(value);
+			}
+			Varints.write(out, group.getValue()[0]);
+			Varints.write(out, group.getValue()[1]);
+		}
+	}
+
+	/**
+	 * Reads an aggregate written by {@link #writeTo(DataOutput)}.
+	 *
+	 * @param in where the aggregate is read from.
+	 * @return the aggregate.
+	 * @throws IOException if it cannot be read or it's not an aggregate.
+	 */
+	public static Aggregate readFrom(DataInput in) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not an aggregate, or one of an unknown version");
+		}
+		int version = in.readUnsignedByte();
+		if (version < 1 || version > VERSION) {
+			throw new IOException("Not an aggregate, or one of an unknown version");
+		}
+		int windowSeconds = Varints.readCount(in, Integer.MAX_VALUE);
+		if (windowSeconds == 0) {
+			throw new IOException("The window of an aggregate must last at least a second");
+		}
+		int sitesCapacity = Varints.readCount(in, MAX_ENTRIES);
+		long requests = Varints.read(in);
+		long errors = Varints.read(in);
+		long bytes = Varints.read(in);
+		long lateEvents = Varints.read(in);
+		long droppedEvents = Varints.read(in);
+		// the first version didn't count the skipped intervals
+		long skippedIntervals = version > 1 ? Varints.read(in) : 0L;
+		long siteHitsError = Varints.read(in);
+		long siteBytesError = Varints.read(in);
+		Map<String, Long> siteHits = readCounts(in);
+		Map<String, Long> siteBytes = readCounts(in);
+		Map<String, Long> sourceHits = readCounts(in);
+		Aggregate aggregate = new Aggregate(windowSeconds, sitesCapacity, LogLinearHistogram.readFrom(in),
+				LogLinearHistogram.readFrom(in), HyperLogLog.readFrom(in), HyperLogLog.readFrom(in));
+		aggregate.requests = requests;
+		aggregate.errors = errors;
+		aggregate.bytes = bytes;
+		aggregate.lateEvents = lateEvents;
+		aggregate.droppedEvents = droppedEvents;
+		aggregate.skippedIntervals = skippedIntervals;
+		aggregate.siteHitsError = siteHitsError;
+		aggregate.siteBytesError = siteBytesError;
+		aggregate.siteHits.putAll(siteHits);
+		aggregate.siteBytes.putAll(siteBytes);
+		aggregate.sourceHits.putAll(sourceHits);
+		int groups = Varints.readCount(in, MAX_ENTRIES);
+		for (int i = 0; i < groups; i++) {
+			int dimensions = in.readUnsignedByte();
+			Map<Dimension, String> values = new EnumMap<>(Dimension.class);
+			for (Dimension dimension : Dimension.values()) {
+				if ((dimensions & (1 << dimension.ordinal())) != 0) {
+					values.put(dimension, in.readUTF());
+				}
+			}
+			aggregate.groups.put(values, new long[]{Varints.read(in), Varints.read(in)});
+		}
+		return aggregate;
+	}
+
+	/**
+	 * Serializes the aggregate, see {@link #writeTo(DataOutput)}.
+	 *
+	 * @return the bytes of the aggregate.
+	 */
+	public byte[] toBytes() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			writeTo(out);
+		} catch (IOException e) {
+			// a byte array doesn't fail
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Deserializes an aggregate, see {@link #readFrom(DataInput)}.
+	 *
+	 * @param bytes the bytes of the aggregate.
+	 * @return the aggregate.
+	 * @throws IOException if it's not an aggregate.
+	 */
+	public static Aggregate fromBytes(byte[] bytes) throws IOException {
+		return readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+	}
+
+	private void add(Aggregate other) {
+		this.requests += other.requests;
+		this.errors += other.errors;
+		this.bytes += other.bytes;
+		this.lateEvents += other.lateEvents;
+		this.droppedEvents += other.droppedEvents;
+		this.skippedIntervals += other.skippedIntervals;
+		this.siteHitsError += other.siteHitsError;
+		this.siteBytesError += other.siteBytesError;
+		other.siteHits.forEach((site, hits) -> this.siteHits.merge(site, hits, Long::sum));
+		other.siteBytes.forEach((site, bytes) -> this.siteBytes.merge(site, bytes, Long::sum));
+		other.sourceHits.forEach((source, hits) -> this.sourceHits.merge(source, hits, Long::sum));
+		this.sizes.add(other.sizes, 1);
+		this.requestTimes.add(other.requestTimes, 1);
+		this.clients.merge(other.clients);
+		this.paths.merge(other.paths);
+		other.groups.forEach((values, counts) -> {
+			long[] merged = this.groups.computeIfAbsent(values, key -> new long[2]);
+			merged[0] += counts[0];
+			merged[1] += counts[1];
+		});
+	}
+
+	/**
+	 * Keeps the heaviest keys of a summary.
+	 *
+	 * @param counts   the counts of the summary.
+	 * @param capacity how many keys to keep.
+	 * @return the count of the heaviest key left out, or 0 if none was.
+	 */
+	private static long trim(Map<String, Long> counts, int capacity) {
+		if (counts.size() <= capacity) {
+			return 0L;
+		}
+		List<Map.Entry<String, Long>> entries = new ArrayList<>(counts.entrySet());
+		entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+		long error = entries.get(capacity).getValue();
+		entries.subList(capacity, entries.size()).forEach(entry -> counts.remove(entry.getKey()));
+		return error;
+	}
+
+	private static Map<String, Long> top(Map<String, Long> counts, int count) {
+		Map<String, Long> top = new LinkedHashMap<>();
+		counts.entrySet().stream()
+				.sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+				.limit(count)
+				.forEach(entry -> top.put(entry.getKey(), entry.getValue()));
+		return top;
+	}
+
+	private static void writeCounts(DataOutput out, Map<String, Long> counts) throws IOException {
+		Varints.write(out, counts.size());
+		for (Map.Entry<String, Long> count : counts.entrySet()) {
+			out.writeUTF(count.getKey());
+			Varints.write(out, count.getValue());
+		}
+	}
+
+	private static Map<String, Long> readCounts(DataInput in) throws IOException {
+		int size = Varints.readCount(in, MAX_ENTRIES);
+		Map<String, Long> counts = new HashMap<>();
+		for (int i = 0; i < size; i++) {
+			counts.put(in.readUTF(), Varints.read(in));
+		}
+		return counts;
+	}
+}
@@ -0,0 +1,302 @@
+package com.adambarreiro.monitor.stats;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Ring of per-second buckets serving several sliding windows at the same time, like the last 10 seconds and the last
+ * hour. A log line is counted once, in the bucket of its second, and every window keeps the running totals of its
+ * seconds: when a second is over it's rolled into the windows, adding it to all of them and subtracting the second
+ * that leaves each one. Hence, updating the ring costs the same no matter the number of windows, and reading a window
+ * costs the copy of its totals, not the sum of its seconds.
+ *
+ * The last seconds are still being written, so they're not rolled yet but read straight from their buckets. The newest
+ * rolled second is the watermark: the lines of that second or older ones are late, and are added to the windows one by
+ * one, under the lock. So are the lines refused by a bucket frozen while they were being added, after checking the
+ * watermark. The lines older than the longest window are dropped.
+ *
+ * The distinct counters cannot be subtracted, so they aren't rolled: the ones of every second of a window are merged
+ * when the window is read.
+ */
+final class BucketRing {
+
+	private final AtomicReferenceArray<SecondBucket> buckets;
+	private final int[] windowsSeconds;
+	private final Totals[] windows;
+	private final int maxWindowSeconds;
+	private final int maxFutureSeconds;
+	private final int liveSeconds;
+	private final int sitesCapacity;
+	private final ReentrantLock lock;
+	private final LongAdder lateLines;
+	private final LongAdder droppedLines;
+
+	private volatile long lastRolled;
+	private long firstRolled;
+
+	/**
+	 * @param windowsSeconds   the length in seconds of every sliding window.
+	 * @param maxFutureSeconds how many seconds ahead of the clock a line can be, to be counted.
+	 * @param liveSeconds      how many of the last seconds are not rolled yet, waiting for their late lines.
+	 * @param sitesCapacity    the number of sites tracked by every second.
+	 */
+	BucketRing(int[] windowsSeconds, int maxFutureSeconds, int liveSeconds, int sitesCapacity) {
+		this.windowsSeconds = Arrays.stream(windowsSeconds).distinct().sorted().toArray();
+		if (this.windowsSeconds.length == 0 || this.windowsSeconds[0] <= 0) {
+			throw new IllegalArgumentException("The sliding windows must last at least a second: " + Arrays.toString(windowsSeconds));
+		}
+		this.maxWindowSeconds = this.windowsSeconds[this.windowsSeconds.length - 1];
+		this.maxFutureSeconds = maxFutureSeconds;
+		this.liveSeconds = liveSeconds;
+		this.sitesCapacity = sitesCapacity;
+		this.windows = new Totals[this.windowsSeconds.length];
+		Arrays.setAll(this.windows, i -> new Totals());
+		// the bucket leaving the longest window must not be overwritten by the newest possible line
+		this.buckets = new AtomicReferenceArray<>(this.maxWindowSeconds + maxFutureSeconds + liveSeconds + 1);
+		this.lock = new ReentrantLock();
+		this.lateLines = new LongAdder();
+		this.droppedLines = new LongAdder();
+		this.lastRolled = Long.MIN_VALUE;
+	}
+
+	/**
+	 * Counts a log line in the bucket of its second. It can be called from several threads at the same time.
+	 *
+	 * @param now         the current epoch second.
+	 * @param second      the epoch second of the log line.
+	 * @param site        the site of the request.
+	 * @param source      where the log line comes from.
+	 * @param error       whether the request failed.
+	 * @param size        the transmitted bytes.
+	 * @param requestTime the request time in microseconds, negative if unknown.
+	 * @param group       the packed key of the group of the request.
+	 * @param weight      how many log lines it stands for.
+	 */
+	void add(long now, long second, String site, String source, boolean error, int size, long requestTime, long group,
+			int weight) {
+		if (second <= now - this.maxWindowSeconds || second > now + this.maxFutureSeconds) {
+			this.droppedLines.add(weight);
+			return;
+		}
+		SecondBucket bucket = bucketOf(second, true);
+		if (Objects.isNull(bucket)) {
+			this.droppedLines.add(weight);
+			return;
+		}
+		if (second > this.lastRolled && bucket.add(site, source, error, size, requestTime, group, weight)) {
+			return;
+		}
+		// a late line of a second already rolled into the windows, maybe while it was being added
+		this.lateLines.add(weight);
+		this.lock.lock();
+		try {
+			bucket.freeze().add(site, source, error, size, requestTime, group, weight);
+			for (int i = 0; i < this.windows.length; i++) {
+				if (second > this.lastRolled - rolledSeconds(i) && second >= this.firstRolled) {
+					this.windows[i].add(site, source, error, size, requestTime, group, weight);
+				}
+			}
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Counts the client and the path of a log line in the distinct counters of its second.
+	 *
+	 * @param now        the current epoch second.
+	 * @param second     the epoch second of the log line.
+	 * @param clientHash the hash of the client.
+	 * @param pathHash   the hash of the path.
+	 */
+	void addDistinct(long now, long second, long clientHash, long pathHash) {
+		if (second <= now - this.maxWindowSeconds || second > now + this.maxFutureSeconds) {
+			return;
+		}
+		SecondBucket bucket = bucketOf(second, true);
+		if (Objects.nonNull(bucket)) {
+			bucket.addDistinct(clientHash, pathHash);
+		}
+	}
+
+	/**
+	 * Merges the distinct counters of the last seconds.
+	 *
+	 * @param now           the current epoch second.
+	 * @param windowSeconds the length of the window, one of the configured ones.
+	 * @param counter       the counter of every bucket to merge, like {@link SecondBucket#getClients()}.
+	 * @return the merged counter of the window.
+	 * @throws IllegalArgumentException if there's no such window.
+	 */
+	HyperLogLog readDistinct(long now, int windowSeconds, Function<SecondBucket, HyperLogLog> counter) {
+		if (Arrays.binarySearch(this.windowsSeconds, windowSeconds) < 0) {
+			throw new IllegalArgumentException("There's no sliding window of " + windowSeconds + " seconds");
+		}
+		HyperLogLog distinct = new HyperLogLog();
+		for (long second = now - windowSeconds + 1; second <= now; second++) {
+			SecondBucket bucket = bucketOf(second, false);
+			if (Objects.nonNull(bucket)) {
+				distinct.merge(counter.apply(bucket));
+			}
+		}
+		return distinct;
+	}
+
+	/**
+	 * Gets the totals of the last seconds.
+	 *
+	 * @param now           the current epoch second.
+	 * @param windowSeconds the length of the window, one of the configured ones.
+	 * @return a copy of the totals of the window.
+	 * @throws IllegalArgumentException if there's no such window.
+	 */
+	Totals read(long now, int windowSeconds) {
+		int window = Arrays.binarySearch(this.windowsSeconds, windowSeconds);
+		if (window < 0) {
+			throw new IllegalArgumentException("There's no sliding window of " + windowSeconds + " seconds");
+		}
+		this.lock.lock();
+		try {
+			roll(now);
+			Totals totals = new Totals(this.windows[window]);
+			for (long second = Math.max(this.lastRolled, now - windowSeconds) + 1; second <= now; second++) {
+				SecondBucket bucket = bucketOf(second, false);
+				if (Objects.nonNull(bucket)) {
+					totals.add(bucket);
+				}
+			}
+			return totals;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Sums the seconds of a past interval straight from their buckets, without the windows, so the intervals can be
+	 * read after the clock has passed them, like the ones a replay goes through in the event mode.
+	 *
+	 * @param lastSecond the last epoch second of the interval.
+	 * @param seconds    the length of the interval.
+	 * @return the totals of the interval.
+	 */
+	Totals sum(long lastSecond, int seconds) {
+		this.lock.lock();
+		try {
+			Totals totals = new Totals();
+			for (long second = lastSecond - seconds + 1; second <= lastSecond; second++) {
+				SecondBucket bucket = bucketOf(second, false);
+				if (Objects.isNull(bucket)) {
+					continue;
+				}
+				if (second <= this.lastRolled) {
+					// the snapshot of a rolled second has its late lines too
+					totals.add(bucket.freeze(), 1);
+				} else {
+					totals.add(bucket);
+				}
+			}
+			return totals;
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets how many log lines were counted after their second had been rolled into the windows.
+	 *
+	 * @return the late lines.
+	 */
+	long getLateLines() {
+		return this.lateLines.sum();
+	}
+
+	/**
+	 * Gets how many log lines weren't counted, as they were older than the longest window or too far in the future.
+	 *
+	 * @return the dropped lines.
+	 */
+	long getDroppedLines() {
+		return this.droppedLines.sum();
+	}
+
+	/**
+	 * Gets the length in seconds of every sliding window.
+	 *
+	 * @return the length of the windows, sorted.
+	 */
+	int[] getWindowsSeconds() {
+		return this.windowsSeconds.clone();
+	}
+
+	/**
+	 * Rolls the seconds that are over into the windows. Guarded by the lock.
+	 *
+	 * @param now the current epoch second.
+	 */
+	private void roll(long now) {
+		long target = now - this.liveSeconds;
+		if (target <= this.lastRolled) {
+			return;
+		}
+		long from = this.lastRolled;
+		if (from == Long.MIN_VALUE || target - from > this.maxWindowSeconds) {
+			// every window is left behind, so they start over from the seconds still in the ring
+			Arrays.setAll(this.windows, i -> new Totals());
+			from = target - this.maxWindowSeconds;
+			this.firstRolled = from + 1;
+		}
+		// from now on, the lines of these seconds are late ones
+		this.lastRolled = target;
+		for (long second = from + 1; second <= target; second++) {
+			SecondBucket entering = bucketOf(second, false);
+			Totals enteringTotals = Objects.isNull(entering) ? null : entering.freeze();
+			for (int i = 0; i < this.windows.length; i++) {
+				int rolledSeconds = rolledSeconds(i);
+				if (rolledSeconds == 0) {
+					continue;
+				}
+				if (Objects.nonNull(enteringTotals)) {
+					this.windows[i].add(enteringTotals, 1);
+				}
+				SecondBucket leaving = second - rolledSeconds >= this.firstRolled ? bucketOf(second - rolledSeconds, false) : null;
+				if (Objects.nonNull(leaving)) {
+					this.windows[i].add(leaving.freeze(), -1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets how many seconds of a window are rolled. The rest are the live ones.
+	 */
+	private int rolledSeconds(int window) {
+		return Math.max(0, this.windowsSeconds[window] - this.liveSeconds);
+	}
+
+	/**
+	 * Gets the bucket of the given second, replacing the one of an older second that took its place in the ring.
+	 *
+	 * @param second the epoch second.
+	 * @param create whether to create the bucket if it doesn't exist.
+	 * @return the bucket, or null if it doesn't exist and cannot be created.
+	 */
+	private SecondBucket bucketOf(long second, boolean create) {
+		int index = (int) Math.floorMod(second, (long) this.buckets.length());
+		SecondBucket bucket = this.buckets.get(index);
+		while (Objects.isNull(bucket) || bucket.getEpochSecond() != second) {
+			if (!create || (Objects.nonNull(bucket) && bucket.getEpochSecond() > second)) {
+				return null;
+			}
+			SecondBucket newBucket = new SecondBucket(second, this.sitesCapacity);
+			if (this.buckets.compareAndSet(index, bucket, newBucket)) {
+				return newBucket;
+			}
+			bucket = this.buckets.get(index);
+		}
+		return bucket;
+	}
+}
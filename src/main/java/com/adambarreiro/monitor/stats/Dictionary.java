@@ -0,0 +1,121 @@
+package com.adambarreiro.monitor.stats;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Gives every distinct value of a dimension, like every verb, a small number, so the values can be packed into the
+ * keys of the groups. Id 0 is reserved for no value. The number of ids is bounded: once they're all taken, the ids of
+ * the values that haven't been seen for long enough, so no key packing them is kept anymore, are released to the new
+ * values. Only while every id is still in use, the new values share the last one, which stands for any other value.
+ * The released ids are looked for at most once a second. It's thread safe.
+ */
+final class Dictionary {
+
+	static final String OTHER = "other";
+
+	private final int maxId;
+	private final long retainSeconds;
+	private final Map<String, Integer> ids;
+	private final List<String> values;
+	private final long[] lastSeen;
+	private final Deque<Integer> released;
+	private final Slice probe;
+
+	private long lastRelease;
+
+	/**
+	 * @param maxId         the largest id, which stands for any other value.
+	 * @param retainSeconds how long the id of a value is kept since it was last seen.
+	 */
+	Dictionary(int maxId, long retainSeconds) {
+		this.maxId = maxId;
+		this.retainSeconds = retainSeconds;
+		this.ids = new HashMap<>();
+		this.values = new ArrayList<>();
+		this.values.add(null);
+		this.lastSeen = new long[maxId];
+		this.released = new ArrayDeque<>();
+		this.probe = new Slice();
+		this.lastRelease = Long.MIN_VALUE;
+	}
+
+	/**
+	 * Gets the id of a value, without copying it if it already has one.
+	 *
+	 * @param text  the text containing the value, like a log line.
+	 * @param start the position of the first character of the value.
+	 * @param end   the position after the last character of the value.
+	 * @param now   the epoch second the value is seen at.
+	 * @return the id.
+	 */
+	synchronized int idOf(String text, int start, int end, long now) {
+		Integer id = this.ids.get(this.probe.set(text, start, end));
+		return Objects.nonNull(id) ? seen(id, now) : register(text.substring(start, end), now);
+	}
+
+	/**
+	 * Gets the id of a value.
+	 *
+	 * @param value the value.
+	 * @param now   the epoch second the value is seen at.
+	 * @return the id.
+	 */
+	synchronized int idOf(String value, long now) {
+		Integer id = this.ids.get(value);
+		return Objects.nonNull(id) ? seen(id, now) : register(value, now);
+	}
+
+	/**
+	 * Gets the value of an id.
+	 *
+	 * @param id the id.
+	 * @return the value, or {@link #OTHER} if the id stands for any other value.
+	 */
+	synchronized String valueOf(int id) {
+		return id < this.values.size() ? this.values.get(id) : OTHER;
+	}
+
+	private int seen(int id, long now) {
+		this.lastSeen[id] = Math.max(this.lastSeen[id], now);
+		return id;
+	}
+
+	private int register(String value, long now) {
+		int id;
+		if (this.values.size() < this.maxId) {
+			id = this.values.size();
+			this.values.add(value);
+		} else {
+			if (this.released.isEmpty() && now > this.lastRelease) {
+				release(now);
+			}
+			if (this.released.isEmpty()) {
+				return this.maxId;
+			}
+			id = this.released.poll();
+			// the released value is still given back until then, in case a key is read late
+			this.values.set(id, value);
+		}
+		this.ids.put(value, id);
+		this.lastSeen[id] = now;
+		return id;
+	}
+
+	/**
+	 * Releases the ids of the values not seen for longer than they're kept.
+	 */
+	private void release(long now) {
+		this.lastRelease = now;
+		for (int id = 1; id < this.values.size(); id++) {
+			if (this.lastSeen[id] < now - this.retainSeconds && this.ids.remove(this.values.get(id), id)) {
+				this.released.add(id);
+			}
+		}
+	}
+}
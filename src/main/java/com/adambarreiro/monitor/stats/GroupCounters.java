@@ -0,0 +1,150 @@
+package com.adambarreiro.monitor.stats;
+
+import java.util.Arrays;
+
+/**
+ * The hits and bytes of every group of requests, keyed by the dimension values of the group packed into a
+ * <code>long</code>. It's an open-addressing hash table with linear probing over primitive arrays, so counting a
+ * request allocates nothing and no key nor counter is boxed.
+ *
+ * The groups left without hits nor bytes, like the ones subtracted from a sliding window, are dropped when the table
+ * grows. It's thread safe.
+ */
+final class GroupCounters {
+
+	private static final long EMPTY = -1L;
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private long[] hits;
+	private long[] bytes;
+	private int used;
+
+	GroupCounters() {
+		allocate(MIN_CAPACITY);
+	}
+
+	/**
+	 * Counts the hits and the bytes of a group.
+	 *
+	 * @param key   the packed key of the group. Never all ones.
+	 * @param hits  the hits.
+	 * @param bytes the bytes.
+	 */
+	synchronized void add(long key, long hits, long bytes) {
+		int slot = slotOf(key);
+		if (this.keys[slot] == EMPTY) {
+			if (2 * (this.used + 1) > this.keys.length) {
+				rehash();
+				slot = slotOf(key);
+			}
+			this.keys[slot] = key;
+			this.used++;
+		}
+		this.hits[slot] += hits;
+		this.bytes[slot] += bytes;
+	}
+
+	/**
+	 * Adds or, with a negative sign, subtracts the counters of other groups.
+	 *
+	 * @param other the other groups.
+	 * @param sign  1 to add them, -1 to subtract them.
+	 */
+	void add(GroupCounters other, int sign) {
+		long[] otherKeys;
+		long[] otherHits;
+		long[] otherBytes;
+		synchronized (other) {
+			otherKeys = other.keys.clone();
+			otherHits = other.hits.clone();
+			otherBytes = other.bytes.clone();
+		}
+		synchronized (this) {
+			for (int i = 0; i < otherKeys.length; i++) {
+				if (otherKeys[i] != EMPTY && (otherHits[i] != 0 || otherBytes[i] != 0)) {
+					add(otherKeys[i], sign * otherHits[i], sign * otherBytes[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Merges the groups that share the values of some dimensions, dropping the values of the rest.
+	 *
+	 * @param mask the bits of the key to keep.
+	 * @return the merged groups.
+	 */
+	synchronized GroupCounters project(long mask) {
+		GroupCounters projection = new GroupCounters();
+		forEach((key, hits, bytes) -> projection.add(key & mask, hits, bytes));
+		return projection;
+	}
+
+	/**
+	 * Calls the given function with every group that has hits or bytes.
+	 *
+	 * @param visitor the function.
+	 */
+	synchronized void forEach(Visitor visitor) {
+		for (int i = 0; i < this.keys.length; i++) {
+			if (this.keys[i] != EMPTY && (this.hits[i] != 0 || this.bytes[i] != 0)) {
+				visitor.visit(this.keys[i], this.hits[i], this.bytes[i]);
+			}
+		}
+	}
+
+	/**
+	 * Finds the slot of a key: the one holding it, or the empty one where it would go.
+	 */
+	private int slotOf(long key) {
+		int mask = this.keys.length - 1;
+		// Fibonacci hashing, as the low bits of the packed keys are far from random
+		int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+		while (this.keys[slot] != EMPTY && this.keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Moves the groups with counts to a table with room for twice as many, dropping the empty ones.
+	 */
+	private void rehash() {
+		long[] oldKeys = this.keys;
+		long[] oldHits = this.hits;
+		long[] oldBytes = this.bytes;
+		int live = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY && (oldHits[i] != 0 || oldBytes[i] != 0)) {
+				live++;
+			}
+		}
+		allocate(Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, live) * 4 - 1) << 1));
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY && (oldHits[i] != 0 || oldBytes[i] != 0)) {
+				int slot = slotOf(oldKeys[i]);
+				this.keys[slot] = oldKeys[i];
+				this.hits[slot] = oldHits[i];
+				this.bytes[slot] = oldBytes[i];
+				this.used++;
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		this.keys = new long[capacity];
+		Arrays.fill(this.keys, EMPTY);
+		this.hits = new long[capacity];
+		this.bytes = new long[capacity];
+		this.used = 0;
+	}
+
+	/**
+	 * Function called with the counters of a group.
+	 */
+	interface Visitor {
+
+		void visit(long key, long hits, long bytes);
+	}
+}
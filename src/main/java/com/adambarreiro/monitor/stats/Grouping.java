@@ -0,0 +1,127 @@
+package com.adambarreiro.monitor.stats;
+
+import com.adambarreiro.monitor.process.log.vo.LogRecord;
+import com.adambarreiro.monitor.stats.vo.Dimension;
+import com.adambarreiro.monitor.stats.vo.Group;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Packs the values of the grouped dimensions of a request into a <code>long</code>, 16 bits per dimension, and
+ * unpacks them. Every dimension value is an id given by a {@link Dictionary}, but the status class, which is its own
+ * id. The dimensions that aren't grouped are always 0, so they cost nothing. The ids of the values that haven't been
+ * seen for a while are given to new ones, so a long-running monitor doesn't run out of them.
+ */
+final class Grouping {
+
+	private static final int BITS_PER_DIMENSION = 16;
+	private static final long DIMENSION_MASK = (1L << BITS_PER_DIMENSION) - 1;
+	// an id less than the maximum, so a key is never all ones
+	private static final int MAX_ID = (int) DIMENSION_MASK - 1;
+	private static final String EMPTY_FIELD = "-";
+
+	private final Set<Dimension> dimensions;
+	private final Dictionary verbs;
+	private final Dictionary sites;
+	private final Dictionary sources;
+
+	/**
+	 * @param dimensions    the grouped dimensions.
+	 * @param retainSeconds how long the keys of a request may be kept, so the ids of its values are kept too.
+	 */
+	Grouping(Set<Dimension> dimensions, long retainSeconds) {
+		this.dimensions = dimensions.isEmpty() ? Set.of() : Collections.unmodifiableSet(EnumSet.copyOf(dimensions));
+		this.verbs = new Dictionary(MAX_ID, retainSeconds);
+		this.sites = new Dictionary(MAX_ID, retainSeconds);
+		this.sources = new Dictionary(MAX_ID, retainSeconds);
+	}
+
+	/**
+	 * Packs the grouped dimensions of a request.
+	 *
+	 * @param record the parsed log line.
+	 * @param site   the site of the request.
+	 * @param now    the epoch second of the clock of the stats.
+	 * @return the key of its group.
+	 */
+	long keyOf(LogRecord record, String site, long now) {
+		long key = 0L;
+		for (Dimension dimension : this.dimensions) {
+			key |= (long) idOf(dimension, record, site, now) << shiftOf(dimension);
+		}
+		return key;
+	}
+
+	/**
+	 * Gets the bits of the keys holding some dimensions.
+	 *
+	 * @param dimensions the dimensions.
+	 * @return the mask of the dimensions.
+	 */
+	long maskOf(Set<Dimension> dimensions) {
+		long mask = 0L;
+		for (Dimension dimension : dimensions) {
+			mask |= DIMENSION_MASK << shiftOf(dimension);
+		}
+		return mask;
+	}
+
+	/**
+	 * Unpacks a group.
+	 *
+	 * @param key        the key of the group.
+	 * @param hits       the hits of the group.
+	 * @param bytes      the bytes of the group.
+	 * @param dimensions the dimensions to unpack, among the grouped ones.
+	 * @return the group.
+	 */
+	Group groupOf(long key, long hits, long bytes, Set<Dimension> dimensions) {
+		Map<Dimension, String> values = new EnumMap<>(Dimension.class);
+		for (Dimension dimension : dimensions) {
+			if (this.dimensions.contains(dimension)) {
+				values.put(dimension, valueOf(dimension, (int) ((key >>> shiftOf(dimension)) & DIMENSION_MASK)));
+			}
+		}
+		return new Group(values, hits, bytes);
+	}
+
+	Set<Dimension> getDimensions() {
+		return this.dimensions;
+	}
+
+	private int idOf(Dimension dimension, LogRecord record, String site, long now) {
+		switch (dimension) {
+			case STATUS_CLASS:
+				int statusClass = record.getStatusCode() / 100;
+				return statusClass >= 1 && statusClass <= 5 ? statusClass : MAX_ID;
+			case VERB:
+				return record.getVerbStart() < 0 ? this.verbs.idOf(EMPTY_FIELD, now)
+						: this.verbs.idOf(record.getLine(), record.getVerbStart(), record.getVerbEnd(), now);
+			case SITE:
+				return this.sites.idOf(site, now);
+			default:
+				return this.sources.idOf(record.getSource(), now);
+		}
+	}
+
+	private String valueOf(Dimension dimension, int id) {
+		switch (dimension) {
+			case STATUS_CLASS:
+				return id == MAX_ID ? Dictionary.OTHER : id + "xx";
+			case VERB:
+				return this.verbs.valueOf(id);
+			case SITE:
+				return this.sites.valueOf(id);
+			default:
+				return this.sources.valueOf(id);
+		}
+	}
+
+	private static int shiftOf(Dimension dimension) {
+		return dimension.ordinal() * BITS_PER_DIMENSION;
+	}
+}
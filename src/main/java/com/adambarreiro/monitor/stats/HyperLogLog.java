@@ -0,0 +1,305 @@
+package com.adambarreiro.monitor.stats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * HyperLogLog++ counter of the distinct values of a stream, like the clients or the paths, in a few KB no matter how
+ * many there are. The values are hashed to 64 bits: the first 12 bits choose one of 4096 registers, which keeps the
+ * longest run of leading zeros seen in the rest. The standard error of the estimation is 1.04 / sqrt(4096), about
+ * 1.6%. The classic raw estimation is biased upwards while many registers are still empty (+40% at 3500 values, +6%
+ * at 8000), so the estimation is the improved one of Ertl, which corrects the empty and the saturated registers from the
+ * histogram of the registers: it has no noticeable bias at any cardinality, without bias tables nor a switch to linear
+ * counting.
+ *
+ * While few values are counted, the registers aren't allocated: the counter is sparse, a sorted list of the hashes
+ * truncated to 25 bits instead of 12, so the small cardinalities, like most seconds of a log, are nearly exact and
+ * take a few bytes. Once the list would take as much as the registers, it's converted into them.
+ *
+ * Counters can be merged, like the seconds of a sliding window or the windows of several monitors, but not
+ * subtracted. A sparse counter is serialized as the gaps between its sorted entries, so it takes a few bytes per value,
+ * and a dense one as its registers. It's thread safe.
+ */
+final class HyperLogLog {
+
+	private static final int PRECISION = 12;
+	private static final int REGISTERS = 1 << PRECISION;
+	private static final int SPARSE_PRECISION = 25;
+	private static final int MAX_SPARSE_ENTRIES = REGISTERS / Integer.BYTES;
+	private static final int RHO_BITS = 6;
+	private static final int MAX_RHO = 64 - PRECISION;
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	private static final int SPARSE = 0;
+	private static final int DENSE = 1;
+
+	private byte[] registers;
+	private int[] sparse;
+	private int sparseSize;
+
+	HyperLogLog() {
+		this.sparse = new int[4];
+	}
+
+	/**
+	 * Hashes a slice of text into the 64 bits the counter needs, without copying it.
+	 *
+	 * @param text  the text, like a log line.
+	 * @param start the position of the first character.
+	 * @param end   the position after the last character.
+	 * @return the hash.
+	 */
+	static long hash(String text, int start, int end) {
+		long hash = FNV_OFFSET;
+		for (int i = start; i < end; i++) {
+			hash = (hash ^ text.charAt(i)) * FNV_PRIME;
+		}
+		// the FNV-1a bits are mixed with the MurmurHash3 finalizer, as the leading ones must look random
+		hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+		hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return hash ^ (hash >>> 33);
+	}
+
+	/**
+	 * Counts a value.
+	 *
+	 * @param hash the hash of the value, see {@link #hash(String, int, int)}.
+	 */
+	synchronized void add(long hash) {
+		if (Objects.nonNull(this.registers)) {
+			addToRegisters(hash);
+			return;
+		}
+		int index = (int) (hash >>> (64 - SPARSE_PRECISION));
+		int rho = Math.min(Long.numberOfLeadingZeros(hash << SPARSE_PRECISION), 64 - SPARSE_PRECISION) + 1;
+		addToSparse((index << RHO_BITS) | rho);
+	}
+
+	/**
+	 * Adds the values counted by another counter.
+	 *
+	 * @param other the other counter.
+	 */
+	void merge(HyperLogLog other) {
+		byte[] otherRegisters;
+		int[] otherSparse;
+		synchronized (other) {
+			otherRegisters = Objects.isNull(other.registers) ? null : other.registers.clone();
+			otherSparse = Arrays.copyOf(other.sparse, other.sparseSize);
+		}
+		synchronized (this) {
+			if (Objects.nonNull(otherRegisters)) {
+				toRegisters();
+				for (int i = 0; i < REGISTERS; i++) {
+					this.registers[i] = (byte) Math.max(this.registers[i], otherRegisters[i]);
+				}
+				return;
+			}
+			for (int entry : otherSparse) {
+				if (Objects.nonNull(this.registers)) {
+					addSparseToRegisters(entry);
+				} else {
+					addToSparse(entry);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the counter: the sparse entries, or the registers once it's dense.
+	 *
+	 * @param out where the counter is written.
+	 * @throws IOException if it cannot be written.
+	 */
+	synchronized void writeTo(DataOutput out) throws IOException {
+		if (Objects.nonNull(this.registers)) {
+			out.writeByte(DENSE);
+			out.write(this.registers);
+			return;
+		}
+		out.writeByte(SPARSE);
+		Varints.write(out, this.sparseSize);
+		int previous = 0;
+		for (int i = 0; i < this.sparseSize; i++) {
+			Varints.write(out, this.sparse[i] - previous);
+			previous = this.sparse[i];
+		}
+	}
+
+	/**
+	 * Reads a counter written by {@link #writeTo(DataOutput)}.
+	 *
+	 * @param in where the counter is read from.
+	 * @return the counter.
+	 * @throws IOException if it cannot be read or it's not a counter.
+	 */
+	static HyperLogLog readFrom(DataInput in) throws IOException {
+		HyperLogLog counter = new HyperLogLog();
+		int kind = in.readUnsignedByte();
+		if (kind == DENSE) {
+			counter.registers = new byte[REGISTERS];
+			in.readFully(counter.registers);
+			counter.sparse = new int[0];
+			return counter;
+		}
+		if (kind != SPARSE) {
+			throw new IOException("Unknown kind of distinct counter: " + kind);
+		}
+		int entries = Varints.readCount(in, MAX_SPARSE_ENTRIES);
+		counter.sparse = new int[Math.max(entries, 1)];
+		long entry = 0L;
+		for (int i = 0; i < entries; i++) {
+			long previousIndex = entry >>> RHO_BITS;
+			entry += Varints.readCount(in, Integer.MAX_VALUE);
+			if (entry > Integer.MAX_VALUE || (i > 0 && entry >>> RHO_BITS <= previousIndex)) {
+				throw new IOException("The sparse entries of a distinct counter aren't sorted");
+			}
+			counter.sparse[i] = (int) entry;
+		}
+		counter.sparseSize = entries;
+		return counter;
+	}
+
+	/**
+	 * Estimates the number of distinct values.
+	 *
+	 * @return the estimated number of distinct values.
+	 */
+	synchronized long estimate() {
+		if (Objects.isNull(this.registers)) {
+			// linear counting over the 2^25 sparse registers
+			double sparseRegisters = 1 << SPARSE_PRECISION;
+			return Math.round(sparseRegisters * Math.log(sparseRegisters / (sparseRegisters - this.sparseSize)));
+		}
+		int[] histogram = new int[MAX_RHO + 2];
+		for (byte register : this.registers) {
+			histogram[register]++;
+		}
+		double sum = REGISTERS * tau(1 - (double) histogram[MAX_RHO + 1] / REGISTERS);
+		for (int rho = MAX_RHO; rho >= 1; rho--) {
+			sum = 0.5 * (sum + histogram[rho]);
+		}
+		sum += REGISTERS * sigma((double) histogram[0] / REGISTERS);
+		return Math.round(REGISTERS * REGISTERS / (2 * Math.log(2)) / sum);
+	}
+
+	/**
+	 * Corrects the contribution of the empty registers: x + sum of x^(2^k) * 2^(k-1), for k from 1.
+	 *
+	 * @param x the fraction of empty registers.
+	 * @return the correction.
+	 */
+	private static double sigma(double x) {
+		if (x == 1) {
+			return Double.POSITIVE_INFINITY;
+		}
+		double weight = 1;
+		double sigma = x;
+		double previous;
+		do {
+			x *= x;
+			previous = sigma;
+			sigma += x * weight;
+			weight += weight;
+		} while (sigma != previous);
+		return sigma;
+	}
+
+	/**
+	 * Corrects the contribution of the saturated registers: (1 - x - sum of (1 - x^(2^-k))^2 * 2^-k) / 3, for k from 1.
+	 *
+	 * @param x the fraction of registers that are not saturated.
+	 * @return the correction.
+	 */
+	private static double tau(double x) {
+		if (x == 0 || x == 1) {
+			return 0;
+		}
+		double weight = 1;
+		double tau = 1 - x;
+		double previous;
+		do {
+			x = Math.sqrt(x);
+			previous = tau;
+			weight *= 0.5;
+			tau -= (1 - x) * (1 - x) * weight;
+		} while (tau != previous);
+		return tau / 3;
+	}
+
+	/**
+	 * Keeps a sparse entry, or raises its run of zeros, converting the counter into registers once it's too long.
+	 *
+	 * @param entry the sparse index followed by the run of zeros.
+	 */
+	private void addToSparse(int entry) {
+		int index = entry >>> RHO_BITS;
+		int low = 0;
+		int high = this.sparseSize - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int middleIndex = this.sparse[middle] >>> RHO_BITS;
+			if (middleIndex < index) {
+				low = middle + 1;
+			} else if (middleIndex > index) {
+				high = middle - 1;
+			} else {
+				this.sparse[middle] = Math.max(this.sparse[middle], entry);
+				return;
+			}
+		}
+		if (this.sparseSize == MAX_SPARSE_ENTRIES) {
+			toRegisters();
+			addSparseToRegisters(entry);
+			return;
+		}
+		if (this.sparseSize == this.sparse.length) {
+			this.sparse = Arrays.copyOf(this.sparse, this.sparse.length * 2);
+		}
+		System.arraycopy(this.sparse, low, this.sparse, low + 1, this.sparseSize - low);
+		this.sparse[low] = entry;
+		this.sparseSize++;
+	}
+
+	private void addToRegisters(long hash) {
+		int index = (int) (hash >>> (64 - PRECISION));
+		byte rho = (byte) (Math.min(Long.numberOfLeadingZeros(hash << PRECISION), 64 - PRECISION) + 1);
+		if (rho > this.registers[index]) {
+			this.registers[index] = rho;
+		}
+	}
+
+	/**
+	 * Counts a sparse entry in the registers: the bits of the sparse index after the first 12 are the start of the
+	 * run of zeros of the register.
+	 *
+	 * @param entry the sparse index followed by the run of zeros.
+	 */
+	private void addSparseToRegisters(int entry) {
+		int sparseIndex = entry >>> RHO_BITS;
+		int extraBits = SPARSE_PRECISION - PRECISION;
+		int index = sparseIndex >>> extraBits;
+		int extra = sparseIndex & ((1 << extraBits) - 1);
+		int rho = extra != 0
+				? Integer.numberOfLeadingZeros(extra) - (32 - extraBits) + 1
+				: extraBits + (entry & ((1 << RHO_BITS) - 1));
+		if (rho > this.registers[index]) {
+			this.registers[index] = (byte) rho;
+		}
+	}
+
+	private void toRegisters() {
+		if (Objects.nonNull(this.registers)) {
+			return;
+		}
+		this.registers = new byte[REGISTERS];
+		for (int i = 0; i < this.sparseSize; i++) {
+			addSparseToRegisters(this.sparse[i]);
+		}
+		this.sparse = new int[0];
+		this.sparseSize = 0;
+	}
+}
@@ -0,0 +1,178 @@
+package com.adambarreiro.monitor.stats;
+
+import com.adambarreiro.monitor.stats.vo.Percentiles;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Histogram of non-negative values, like response sizes or request times, in log-linear buckets as HdrHistogram does:
+ * the values below 32 have a bucket of their own, and every power of two above is split into 16 linear buckets.
+ * Hence, recording a value costs a few bit operations, and any percentile is within about 3% of the true value no
+ * matter its magnitude.
+ *
+ * The counts are kept in a primitive array that only grows up to the bucket of the largest recorded value, so the
+ * memory is bounded by the number of buckets, under 5KB. Histograms can be added and subtracted, like the seconds of a
+ * sliding window, and serialized as their non-empty buckets only. It's thread safe.
+ */
+final class LogLinearHistogram {
+
+	/**
+	 * The largest value with a bucket of its own. Bigger values are counted as this one.
+	 */
+	static final long MAX_VALUE = (1L << 36) - 1;
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int HALF_SUB_BUCKETS = SUB_BUCKETS >> 1;
+	private static final long[] NO_COUNTS = new long[0];
+	private static final int BUCKETS = indexOf(MAX_VALUE) + 1;
+
+	private long[] counts;
+	private long total;
+
+	LogLinearHistogram() {
+		this.counts = NO_COUNTS;
+	}
+
+	/**
+	 * Counts a value.
+	 *
+	 * @param value  the value. Negative ones, like an unknown request time, are ignored.
+	 * @param weight how many times it's counted.
+	 */
+	synchronized void record(long value, long weight) {
+		if (value < 0 || weight <= 0) {
+			return;
+		}
+		int index = indexOf(Math.min(value, MAX_VALUE));
+		if (index >= this.counts.length) {
+			this.counts = Arrays.copyOf(this.counts, index + 1);
+		}
+		this.counts[index] += weight;
+		this.total += weight;
+	}
+
+	/**
+	 * Adds or, with a negative sign, subtracts the counts of another histogram.
+	 *
+	 * @param other the other histogram.
+	 * @param sign  1 to add it, -1 to subtract it.
+	 */
+	void add(LogLinearHistogram other, int sign) {
+		long[] otherCounts;
+		long otherTotal;
+		synchronized (other) {
+			otherCounts = other.counts.clone();
+			otherTotal = other.total;
+		}
+		synchronized (this) {
+			if (otherCounts.length > this.counts.length) {
+				this.counts = Arrays.copyOf(this.counts, otherCounts.length);
+			}
+			for (int i = 0; i < otherCounts.length; i++) {
+				this.counts[i] += sign * otherCounts[i];
+			}
+			this.total += sign * otherTotal;
+		}
+	}
+
+	/**
+	 * Writes the non-empty buckets, as the gap from the previous one and the count.
+	 *
+	 * @param out where the histogram is written.
+	 * @throws IOException if it cannot be written.
+	 */
+	synchronized void writeTo(DataOutput out) throws IOException {
+		int buckets = 0;
+		for (long count : this.counts) {
+			if (count != 0) {
+				buckets++;
+			}
+		}
+		Varints.write(out, buckets);
+		int previous = 0;
+		for (int i = 0; i < this.counts.length; i++) {
+			if (this.counts[i] != 0) {
+				Varints.write(out, i - previous);
+				Varints.write(out, this.counts[i]);
+				previous = i;
+			}
+		}
+	}
+
+	/**
+	 * Reads a histogram written by {@link #writeTo(DataOutput)}.
+	 *
+	 * @param in where the histogram is read from.
+	 * @return the histogram.
+	 * @throws IOException if it cannot be read or it's not a histogram.
+	 */
+	static LogLinearHistogram readFrom(DataInput in) throws IOException {
+		LogLinearHistogram histogram = new LogLinearHistogram();
+		int buckets = Varints.readCount(in, BUCKETS);
+		int index = 0;
+		for (int i = 0; i < buckets; i++) {
+			index += Varints.readCount(in, BUCKETS);
+			if (index >= BUCKETS) {
+				throw new IOException("Histogram bucket out of bounds: " + index);
+			}
+			long count = Varints.read(in);
+			if (index >= histogram.counts.length) {
+				histogram.counts = Arrays.copyOf(histogram.counts, index + 1);
+			}
+			histogram.counts[index] += count;
+			histogram.total += count;
+		}
+		return histogram;
+	}
+
+	/**
+	 * Gets the most watched percentiles.
+	 *
+	 * @return the percentiles, or {@link Percentiles#NONE} if nothing was counted.
+	 */
+	synchronized Percentiles getPercentiles() {
+		if (this.total <= 0) {
+			return Percentiles.NONE;
+		}
+		return new Percentiles(this.total, valueAt(50), valueAt(90), valueAt(99), valueAt(99.9), valueAt(100));
+	}
+
+	/**
+	 * Gets the value below which the given percentage of the counted values fall, as the middle of its bucket.
+	 */
+	private long valueAt(double percentile) {
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * this.total));
+		long seen = 0;
+		for (int i = 0; i < this.counts.length; i++) {
+			seen += this.counts[i];
+			if (seen >= rank) {
+				return lowestValueOf(i) + (widthOf(i) >> 1);
+			}
+		}
+		return MAX_VALUE;
+	}
+
+	static int indexOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+		return shift * HALF_SUB_BUCKETS + (int) (value >>> shift);
+	}
+
+	static long lowestValueOf(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / HALF_SUB_BUCKETS - 1;
+		return (long) (index % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS) << shift;
+	}
+
+	private static long widthOf(int index) {
+		return index < SUB_BUCKETS ? 1 : 1L << (index / HALF_SUB_BUCKETS - 1);
+	}
+}
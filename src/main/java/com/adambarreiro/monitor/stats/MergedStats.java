@@ -0,0 +1,245 @@
+package com.adambarreiro.monitor.stats;
+
+import com.adambarreiro.monitor.export.Exporter;
+import com.adambarreiro.monitor.process.log.vo.LogRecord;
+import com.adambarreiro.monitor.stats.vo.Dimension;
+import com.adambarreiro.monitor.stats.vo.Group;
+import com.adambarreiro.monitor.stats.vo.Percentiles;
+import com.adambarreiro.monitor.stats.vo.StatsSnapshot;
+import com.adambarreiro.monitor.stats.vo.TopSites;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The stats of several monitors, like the ones of every node of a fleet, which don't read any log line but merge the
+ * {@link Aggregate} of the last interval that every monitor (aka peer) sends. Hence, the merged rates, percentiles and
+ * distinct counts are the ones of all the requests of the fleet.
+ *
+ * Only the last aggregate of every peer is kept, and the peers that haven't sent one for
+ * {@value #STALE_INTERVALS} intervals are left out, so a monitor that stops doesn't count forever. It's thread safe.
+ */
+public final class MergedStats implements Stats {
+
+	private static final int STALE_INTERVALS = 3;
+
+	private final int intervalSeconds;
+	private final int topSitesCount;
+	private final Map<String, Received> peers;
+
+	private volatile StatsSnapshot snapshot;
+	private volatile Aggregate aggregate;
+
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * Creates the stats of several monitors.
+	 *
+	 * @param intervalSeconds the interval of the monitors, which is the window of their aggregates.
+	 * @param topSitesCount   how many top sites are reported.
+	 */
+	public MergedStats(int intervalSeconds, int topSitesCount) {
+		this.intervalSeconds = intervalSeconds;
+		this.topSitesCount = topSitesCount;
+		this.peers = new ConcurrentHashMap<>();
+		this.snapshot = StatsSnapshot.NONE;
+		this.aggregate = Aggregate.empty(intervalSeconds);
+	}
+
+	/**
+	 * Keeps the last aggregate of a peer, replacing the previous one.
+	 *
+	 * @param peer      the name of the peer.
+	 * @param aggregate the aggregate of its last interval.
+	 * @throws IllegalArgumentException if its window is not the interval.
+	 */
+	public void put(String peer, Aggregate aggregate) {
+		if (aggregate.getWindowSeconds() != this.intervalSeconds) {
+			throw new IllegalArgumentException("The aggregate of " + peer + " has a window of "
+					+ aggregate.getWindowSeconds() + "s instead of " + this.intervalSeconds + "s");
+		}
+		this.peers.put(peer, new Received(aggregate, System.currentTimeMillis()));
+	}
+
+	/**
+	 * Merges the last aggregates of the peers that are not stale.
+	 *
+	 * @return the merged aggregate.
+	 */
+	public Aggregate getMerged() {
+		long oldest = oldestReception();
+		Aggregate merged = Aggregate.empty(this.intervalSeconds);
+		for (Received received : this.peers.values()) {
+			if (received.millis >= oldest) {
+				merged = merged.merge(received.aggregate);
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * Gets the peers that are not stale.
+	 *
+	 * @return the names of the peers, sorted.
+	 */
+	public Set<String> getPeers() {
+		long oldest = oldestReception();
+		Set<String> peers = new TreeSet<>();
+		this.peers.forEach((peer, received) -> {
+			if (received.millis >= oldest) {
+				peers.add(peer);
+			}
+		});
+		return peers;
+	}
+
+	/**
+	 * Does nothing: the log lines are read and counted by the peers, which push their aggregates, so a line given to
+	 * these stats is ignored rather than counted twice.
+	 *
+	 * @param record the parsed log line.
+	 */
+	@Override
+	public void add(LogRecord record) {
+
+	}
+
+	@Override
+	public StatsSnapshot getSnapshot() {
+		return this.snapshot;
+	}
+
+	/**
+	 * Gets the merged aggregate of the peers of the last interval, the one of {@link #getSnapshot()}.
+	 *
+	 * @return the merged aggregate.
+	 */
+	@Override
+	public Aggregate getAggregate() {
+		return this.aggregate;
+	}
+
+	/**
+	 * Gets the merged aggregate of the peers, whose only window is the interval.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the merged aggregate, or an empty one if the window is not the interval.
+	 */
+	@Override
+	public Aggregate getAggregate(int windowSeconds) {
+		return windowSeconds == this.intervalSeconds ? getMerged() : Aggregate.empty(windowSeconds);
+	}
+
+	@Override
+	public Map<String, Integer> getTopSiteHits() {
+		return this.snapshot.getTopSiteHits();
+	}
+
+	@Override
+	public TopSites getTopSites() {
+		return this.snapshot.getTopSites();
+	}
+
+	@Override
+	public Map<String, Integer> getSourceHits() {
+		return this.snapshot.getSourceHits();
+	}
+
+	@Override
+	public float getRequestsRate() {
+		return this.snapshot.getRequestsRate();
+	}
+
+	@Override
+	public float getErrorRate() {
+		return this.snapshot.getErrorRate();
+	}
+
+	@Override
+	public long getTotalTransmittedData() {
+		return this.snapshot.getTotalTransmittedData();
+	}
+
+	@Override
+	public Percentiles getSizePercentiles() {
+		return this.snapshot.getSizePercentiles();
+	}
+
+	@Override
+	public Percentiles getRequestTimePercentiles() {
+		return this.snapshot.getRequestTimePercentiles();
+	}
+
+	@Override
+	public long getDistinctClients() {
+		return this.snapshot.getDistinctClients();
+	}
+
+	@Override
+	public long getDistinctPaths() {
+		return this.snapshot.getDistinctPaths();
+	}
+
+	@Override
+	public long getLateEvents() {
+		return this.snapshot.getLateEvents();
+	}
+
+	@Override
+	public long getDroppedEvents() {
+		return this.snapshot.getDroppedEvents();
+	}
+
+	@Override
+	public long getSkippedIntervals() {
+		return this.snapshot.getSkippedIntervals();
+	}
+
+	@Override
+	public List<Group> getGroups(Set<Dimension> dimensions) {
+		return this.snapshot.getGroups(dimensions);
+	}
+
+	/**
+	 * Merges the aggregates of the peers every interval in a separate thread and exposes them through the exporter.
+	 *
+	 * @param exporter the exporter to expose metrics to the outside world.
+	 */
+	@Override
+	public void expose(final Exporter exporter) {
+		if (Objects.isNull(this.scheduler)) {
+			this.scheduler = Executors.newSingleThreadScheduledExecutor();
+			this.scheduler.scheduleWithFixedDelay(() -> {
+				Aggregate merged = getMerged();
+				this.aggregate = merged;
+				this.snapshot = merged.toSnapshot(this.topSitesCount);
+				exporter.exportStatistics(this);
+			}, 0L, this.intervalSeconds, TimeUnit.SECONDS);
+		}
+	}
+
+	private long oldestReception() {
+		return System.currentTimeMillis() - TimeUnit.SECONDS.toMillis((long) STALE_INTERVALS * this.intervalSeconds);
+	}
+
+	/**
+	 * The last aggregate of a peer and when it was received.
+	 */
+	private static final class Received {
+
+		private final Aggregate aggregate;
+		private final long millis;
+
+		private Received(Aggregate aggregate, long millis) {
+			this.aggregate = aggregate;
+			this.millis = millis;
+		}
+	}
+}
@@ -0,0 +1,251 @@
+package com.adambarreiro.monitor.stats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Trie of the visited URL paths, split on their slashes and without their query string, that counts the hits at
+ * every depth: a visit to <code>/api/v2/users</code> counts for <code>/api</code>, <code>/api/v2</code> and
+ * <code>/api/v2/users</code>. Hence, the top paths under any prefix can be read from the same structure.
+ *
+ * The paths are read as slices of the log line, so a known path is counted without allocating anything, and an LRU
+ * cache keeps the nodes of the hottest raw paths to skip the walk down the trie. The number of nodes below the sites is
+ * bounded: once the trie is full, the new paths are counted by their deepest known prefix. The sites, the first level,
+ * have a bound of their own, so a full trie still counts the paths of a new site by the site. Once there are as many
+ * sites as that, the paths of the new ones are counted together under <code>/*</code>, although their own site is
+ * still given back to be counted elsewhere, like in the bounded summaries of the top sites.
+ *
+ * The counts of the current interval are rotated into the ones of the last interval, which are the ones read, and the
+ * nodes without visits are pruned. It's thread safe, guarded by its own lock.
+ */
+final class PathTrie {
+
+	private static final String ROOT_PATH = "/";
+	private static final String OTHER_SITES_SEGMENT = "*";
+
+	private final Node root;
+	private final int maxNodes;
+	private final int maxSites;
+	private final Map<String, Node[]> hotPaths;
+	private final Slice probe;
+	private int nodes;
+	private int sites;
+
+	/**
+	 * @param maxNodes     the maximum number of nodes of the trie below the sites.
+	 * @param maxSites     the maximum number of sites of the trie.
+	 * @param hotPathsSize the number of raw paths whose nodes are cached.
+	 */
+	PathTrie(int maxNodes, int maxSites, int hotPathsSize) {
+		this.root = new Node(ROOT_PATH);
+		this.maxNodes = maxNodes;
+		this.maxSites = maxSites;
+		this.hotPaths = new LinkedHashMap<>(hotPathsSize * 2, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Node[]> eldest) {
+				return size() > hotPathsSize;
+			}
+		};
+		this.probe = new Slice();
+	}
+
+	/**
+	 * Counts a visit to a path.
+	 *
+	 * @param text   the text containing the path, like a log line.
+	 * @param start  the position of the first character of the path.
+	 * @param end    the position after the last character of the path.
+	 * @param hits   the hits of the visit.
+	 * @return the site of the path, that is, its first level like /foo for /foo/bar.
+	 */
+	synchronized String add(String text, int start, int end, long hits) {
+		int pathEnd = start;
+		while (pathEnd < end && text.charAt(pathEnd) != '?' && text.charAt(pathEnd) != '#') {
+			pathEnd++;
+		}
+		this.probe.set(text, start, pathEnd);
+		Node[] path = this.hotPaths.get(this.probe);
+		boolean otherSite = false;
+		if (Objects.isNull(path)) {
+			path = walk(text, start, pathEnd);
+			otherSite = path.length > 0 && path[0].path.endsWith(OTHER_SITES_SEGMENT);
+			if (!otherSite) {
+				this.hotPaths.put(text.substring(start, pathEnd), path);
+			}
+		}
+		this.root.hits += hits;
+		for (Node node : path) {
+			node.hits += hits;
+		}
+		if (otherSite) {
+			return siteOf(text, start, pathEnd);
+		}
+		return path.length == 0 ? ROOT_PATH : path[0].path;
+	}
+
+	/**
+	 * Gets the most visited paths right under a prefix, during the last interval.
+	 *
+	 * @param prefix the prefix, like /api or /api/v2. The root, /, gives the sites.
+	 * @param count  how many paths.
+	 * @return the hits of the top paths, from the most visited one.
+	 */
+	synchronized Map<String, Long> getTopPaths(String prefix, int count) {
+		Node node = this.root;
+		int start = 0;
+		while (Objects.nonNull(node) && start < prefix.length()) {
+			int segmentEnd = segmentEnd(prefix, start, prefix.length());
+			if (segmentEnd > start) {
+				node = node.child(this.probe.set(prefix, start, segmentEnd));
+			}
+			start = segmentEnd + 1;
+		}
+		Map<String, Long> topPaths = new LinkedHashMap<>();
+		if (Objects.nonNull(node)) {
+			node.children.values().stream()
+					.filter(child -> child.lastHits > 0)
+					.sorted(Comparator.comparingLong((Node child) -> child.lastHits).reversed())
+					.limit(count)
+					.forEach(child -> topPaths.put(child.path, child.lastHits));
+		}
+		return topPaths;
+	}
+
+	/**
+	 * Makes the counts of the current interval the ones of the last interval, and prunes the nodes that weren't
+	 * visited during it.
+	 */
+	synchronized void rotate() {
+		if (rotate(this.root)) {
+			// the cached nodes may be gone
+			this.hotPaths.clear();
+		}
+	}
+
+	/**
+	 * Walks down the trie, adding the missing site and the missing nodes below it while there's room. A new site that
+	 * doesn't fit is counted under the node of the other sites.
+	 *
+	 * @return the nodes of the path, without the root.
+	 */
+	private Node[] walk(String text, int start, int end) {
+		List<Node> path = new ArrayList<>();
+		Node node = this.root;
+		int segmentStart = start;
+		while (segmentStart < end) {
+			int segmentEnd = segmentEnd(text, segmentStart, end);
+			if (segmentEnd > segmentStart) {
+				Node child = node.child(this.probe.set(text, segmentStart, segmentEnd));
+				if (Objects.isNull(child)) {
+					if (node == this.root && this.sites >= this.maxSites) {
+						path.add(this.root.children.computeIfAbsent(OTHER_SITES_SEGMENT,
+								segment -> new Node(ROOT_PATH + segment)));
+						break;
+					}
+					if (node != this.root && this.nodes >= this.maxNodes) {
+						break;
+					}
+					String segment = text.substring(segmentStart, segmentEnd);
+					if (node == this.root) {
+						child = new Node(ROOT_PATH + segment);
+						this.sites++;
+					} else {
+						child = new Node(node.path + "/" + segment);
+						this.nodes++;
+					}
+					node.children.put(segment, child);
+				}
+				path.add(child);
+				node = child;
+			}
+			segmentStart = segmentEnd + 1;
+		}
+		return path.toArray(new Node[0]);
+	}
+
+	/**
+	 * Rotates the counts of a node and its children.
+	 *
+	 * @return true if any node was pruned.
+	 */
+	private boolean rotate(Node node) {
+		boolean pruned = false;
+		node.lastHits = node.hits;
+		node.hits = 0;
+		for (var iterator = node.children.values().iterator(); iterator.hasNext(); ) {
+			Node child = iterator.next();
+			pruned |= rotate(child);
+			if (child.lastHits == 0) {
+				// neither were its children visited
+				this.nodes -= child.size() - 1;
+				if (node != this.root) {
+					this.nodes--;
+				} else if (!child.path.endsWith(OTHER_SITES_SEGMENT)) {
+					this.sites--;
+				}
+				iterator.remove();
+				pruned = true;
+			}
+		}
+		return pruned;
+	}
+
+	/**
+	 * Gets the site of a path, that is, its first non-empty level.
+	 */
+	private static String siteOf(String text, int start, int end) {
+		int segmentStart = start;
+		while (segmentStart < end) {
+			int segmentEnd = segmentEnd(text, segmentStart, end);
+			if (segmentEnd > segmentStart) {
+				return ROOT_PATH + text.substring(segmentStart, segmentEnd);
+			}
+			segmentStart = segmentEnd + 1;
+		}
+		return ROOT_PATH;
+	}
+
+	private static int segmentEnd(String text, int start, int end) {
+		int segmentEnd = start;
+		while (segmentEnd < end && text.charAt(segmentEnd) != '/') {
+			segmentEnd++;
+		}
+		return segmentEnd;
+	}
+
+	/**
+	 * A path of the trie.
+	 */
+	private static final class Node {
+
+		private final String path;
+		private final Map<String, Node> children;
+		private long hits;
+		private long lastHits;
+
+		private Node(String path) {
+			this.path = path;
+			this.children = new HashMap<>();
+		}
+
+		private Node child(Slice segment) {
+			return this.children.get(segment);
+		}
+
+		/**
+		 * Counts the node and the nodes below it.
+		 */
+		private int size() {
+			int size = 1;
+			for (Node child : this.children.values()) {
+				size += child.size();
+			}
+			return size;
+		}
+	}
+}
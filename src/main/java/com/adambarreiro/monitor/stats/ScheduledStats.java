@@ -2,52 +2,263 @@ package com.adambarreiro.monitor.stats;
 
 import com.adambarreiro.monitor.export.Exporter;
 import com.adambarreiro.monitor.process.log.vo.LogData;
+import com.adambarreiro.monitor.process.log.vo.LogField;
+import com.adambarreiro.monitor.process.log.vo.LogRecord;
+import com.adambarreiro.monitor.stats.vo.Dimension;
+import com.adambarreiro.monitor.stats.vo.Group;
+import com.adambarreiro.monitor.stats.vo.Percentiles;
+import com.adambarreiro.monitor.stats.vo.StatsSnapshot;
+import com.adambarreiro.monitor.stats.vo.TopSites;
 
 import java.net.HttpURLConnection;
-import java.nio.file.Paths;
 import java.time.Instant;
+import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 /**
- * Component that ingests new log data {@link LogData} periodically and calculates several metrics are exposed with
- * an {@link Exporter}. The period (aka interval) can be configurable.
+ * Component that ingests new log data {@link LogData} and calculates several metrics that are exposed periodically
+ * with an {@link Exporter}. The period (aka interval) can be configurable.
+ *
+ * The log lines are aggregated as soon as they're ingested into a {@link BucketRing} of per-second buckets, keyed by
+ * the second of the line, so the stats never keep them: a line only costs a few
+ * {@link java.util.concurrent.atomic.LongAdder} increments and the walk of its path down a {@link PathTrie}, which
+ * counts the hits under every path prefix.
+ * The same ring serves the interval and any number of longer or shorter sliding windows, whose metrics can be read at
+ * any time. The sites of every second are tracked by {@link SpaceSaving} summaries, whose size only depends on the
+ * allowed error, their sizes and request times by {@link LogLinearHistogram}s of fixed size and their distinct clients
+ * and paths by {@link HyperLogLog} counters. Hence, the memory depends on the seconds and the error, not on the
+ * traffic nor the distinct sites or clients.
+ *
+ * The hits and bytes are also counted per group of requests sharing the values of some dimensions, like the status
+ * class and the verb, whose values are packed into a single <code>long</code> by a {@link Grouping}. The groups can be
+ * queried by any subset of those dimensions.
+ *
+ * The windows follow the wall clock or, in the {@link TimeMode#EVENT} mode, the timestamps of the log lines: the clock
+ * is then the latest second seen, and the seconds more than the allowed lateness behind it are rolled into the windows.
+ * Hence, a replay or the backlog of a lagging tail fills the windows as the traffic happened, not as it's read. When
+ * the log goes quiet for longer than the allowed lateness, the clock goes on with the wall clock, so the windows empty
+ * instead of freezing on the last lines. See {@link StatsClock}.
+ *
+ * In the event mode, the snapshots are stamped with the event time, and every interval the clock passes, aligned to
+ * the epoch and once it's over by the allowed lateness, gets its own snapshot, so the exporters get the history of a
+ * replay interval by interval. The intervals older than the longest window by the time they're processed are gone,
+ * and counted as skipped.
  */
 public final class ScheduledStats implements Stats {
 
-	private final ConcurrentLinkedQueue<LogData> data;
-	private final Map<String, Integer> topSiteHits;
+	private static final int MAX_PATHS = 10_000;
+	private static final int MAX_SITES = 1024;
+	private static final int HOT_PATHS = 1024;
+	private static final int MAX_SITE_METRICS = 256;
+	private static final String ROOT_SITE = "/";
+	private static final int MAX_FUTURE_SECONDS = 5;
+
+	private final BucketRing ring;
+	private final Set<Integer> windowsSeconds;
+	private final PathTrie paths;
+	private final SiteMetrics siteMetrics;
+	private final Grouping grouping;
 	private final int intervalSeconds;
+	private final int topSitesCount;
+	private final int sitesCapacity;
+	private final StatsClock clock;
+	private final int maxWindowSeconds;
 
-	private float requestRate;
-	private float errorRate;
-	private long totalSize;
+	private volatile StatsSnapshot snapshot;
+	private volatile Aggregate aggregate;
 
 	private ScheduledExecutorService scheduler;
 
 	public ScheduledStats(final int intervalSeconds) {
+		this(intervalSeconds, Set.of());
+	}
+
+	/**
+	 * Creates the stats with some sliding windows, besides the interval.
+	 *
+	 * @param intervalSeconds the period of every update of the stats, also a sliding window.
+	 * @param windowsSeconds  the length in seconds of the other sliding windows.
+	 * @throws IllegalArgumentException if a window doesn't last at least a second.
+	 */
+	public ScheduledStats(final int intervalSeconds, final Collection<Integer> windowsSeconds) {
+		this(intervalSeconds, windowsSeconds, StatsConfig.defaults());
+	}
+
+	/**
+	 * Creates the stats with some sliding windows, besides the interval, and a custom number of top sites.
+	 *
+	 * @param intervalSeconds the period of every update of the stats, also a sliding window.
+	 * @param windowsSeconds  the length in seconds of the other sliding windows.
+	 * @param topSitesCount   how many top sites are reported.
+	 * @param topSitesError   the error bound of the hits and bytes of the top sites, as a fraction of the total
+	 *                        hits and bytes. The smaller, the more sites are tracked every second.
+	 * @throws IllegalArgumentException if a window doesn't last at least a second, or the error is not between 0 and 1.
+	 */
+	public ScheduledStats(final int intervalSeconds, final Collection<Integer> windowsSeconds, int topSitesCount, double topSitesError) {
+		this(intervalSeconds, windowsSeconds, StatsConfig.builder()
+				.topSites(topSitesCount)
+				.topSitesError(topSitesError)
+				.build());
+	}
+
+	/**
+	 * Creates the stats with some sliding windows, besides the interval, and the given configuration.
+	 *
+	 * @param intervalSeconds the period of every update of the stats, also a sliding window.
+	 * @param windowsSeconds  the length in seconds of the other sliding windows.
+	 * @param config          the top sites, the grouped dimensions and the clock of the windows.
+	 * @throws IllegalArgumentException if a window doesn't last at least a second.
+	 */
+	public ScheduledStats(final int intervalSeconds, final Collection<Integer> windowsSeconds, final StatsConfig config) {
+		this(intervalSeconds, windowsSeconds, config, StatsClock.of(config));
+	}
+
+	/**
+	 * Creates the stats with some sliding windows, besides the interval, following a clock that may be shared.
+	 *
+	 * @param intervalSeconds the period of every update of the stats, also a sliding window.
+	 * @param windowsSeconds  the length in seconds of the other sliding windows.
+	 * @param config          the top sites and the grouped dimensions.
+	 * @param clock           the clock of the windows.
+	 * @throws IllegalArgumentException if a window doesn't last at least a second.
+	 */
+	ScheduledStats(final int intervalSeconds, final Collection<Integer> windowsSeconds, final StatsConfig config,
+			final StatsClock clock) {
 		this.intervalSeconds = intervalSeconds;
-		this.data = new ConcurrentLinkedQueue<>();
-		this.topSiteHits = new HashMap<>();
+		this.topSitesCount = config.getTopSites();
+		this.clock = clock;
+		SortedSet<Integer> windows = new TreeSet<>(windowsSeconds);
+		windows.add(intervalSeconds);
+		this.windowsSeconds = Collections.unmodifiableSortedSet(windows);
+		this.maxWindowSeconds = windows.last();
+		this.sitesCapacity = Math.max(this.topSitesCount, (int) Math.ceil(1 / config.getTopSitesError()));
+		this.ring = new BucketRing(windows.stream().mapToInt(Integer::intValue).toArray(), MAX_FUTURE_SECONDS,
+				clock.getLiveSeconds(), this.sitesCapacity);
+		this.paths = new PathTrie(MAX_PATHS, MAX_SITES, HOT_PATHS);
+		this.siteMetrics = new SiteMetrics(MAX_SITE_METRICS);
+		// a key is kept in the ring until its second leaves the longest window, and read up to an interval later
+		this.grouping = new Grouping(config.getGroupBy(),
+				this.maxWindowSeconds + clock.getLiveSeconds() + MAX_FUTURE_SECONDS + intervalSeconds);
+		this.snapshot = StatsSnapshot.NONE;
+		this.aggregate = Aggregate.empty(intervalSeconds);
+	}
+
+	/**
+	 * Ingests a parsed log line into the bucket of its second, discarding the log entries older than the longest
+	 * window or too far in the future. Every log entry counts as many times as its weight, so the rates of sampled
+	 * entries are corrected. It can be called from several threads at the same time.
+	 *
+	 * @param record the parsed log line.
+	 */
+	@Override
+	public void add(LogRecord record) {
+		long now = this.clock.advance(record.getEpochSecond());
+		String site = addPath(record);
+		long pathHash = pathHash(record);
+		this.ring.add(now, record.getEpochSecond(), site, record.getSource(),
+				isErrorRequest(record), record.getSize(), record.getRequestTimeMicros(),
+				this.grouping.keyOf(record, site, now), record.getWeight());
+		this.ring.addDistinct(now, record.getEpochSecond(),
+				HyperLogLog.hash(record.getLine(), record.getClientStart(), record.getClientEnd()), pathHash);
+		this.siteMetrics.record(site, record.getSize(), record.getRequestTimeMicros(), pathHash, record.getWeight());
 	}
 
 	/**
-	 * Ingests log data, discarding the log entries older than 'intervalSeconds'.
+	 * Gets the fields of the log lines these stats read: the client, the timestamp, the path, the status code, the
+	 * size and the request time, as well as the verb if the requests are grouped by it.
 	 *
-	 * @param data the data.
+	 * @return the read fields.
 	 */
 	@Override
-	public void add(LogData data) {
-		if (data.getTimestamp().compareTo(Instant.now().minusSeconds(intervalSeconds)) > 0) {
-			this.data.add(data);
+	public Set<LogField> getRequiredFields() {
+		Set<LogField> fields = EnumSet.of(LogField.CLIENT, LogField.TIMESTAMP, LogField.PATH, LogField.STATUS_CODE,
+				LogField.SIZE, LogField.REQUEST_TIME);
+		if (this.grouping.getDimensions().contains(Dimension.VERB)) {
+			fields.add(LogField.VERB);
 		}
+		return fields;
+	}
+
+	/**
+	 * Gets the metrics of the last interval, all of them calculated at the same time. It never blocks.
+	 *
+	 * @return the snapshot of the last interval.
+	 */
+	@Override
+	public StatsSnapshot getSnapshot() {
+		return this.snapshot;
+	}
+
+	/**
+	 * Gets the metrics of a sliding window at once, right now. The histograms and the distinct counters of its seconds
+	 * are merged, so its percentiles and distinct counts are the ones of the whole window.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the snapshot of the window.
+	 * @throws IllegalArgumentException if there's no such window.
+	 */
+	@Override
+	public StatsSnapshot getSnapshot(int windowSeconds) {
+		long now = now();
+		return snapshotOf(this.ring.read(now, windowSeconds), windowSeconds, now);
+	}
+
+	/**
+	 * Gets everything the last interval counted, the one of {@link #getSnapshot()}. It never blocks.
+	 *
+	 * @return the aggregate of the last interval.
+	 */
+	@Override
+	public Aggregate getAggregate() {
+		return this.aggregate;
+	}
+
+	/**
+	 * Gets everything a sliding window counted, right now, to be merged with the ones of other monitors. Its groups are
+	 * the ones by every grouped dimension, by their values.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the aggregate of the window.
+	 * @throws IllegalArgumentException if there's no such window.
+	 */
+	@Override
+	public Aggregate getAggregate(int windowSeconds) {
+		long now = now();
+		return aggregateOf(this.ring.read(now, windowSeconds), windowSeconds, now);
+	}
+
+	/**
+	 * Gets everything an interval of the event mode counted, once the clock has passed it.
+	 *
+	 * @param intervalEnd the epoch second right after the interval, as closed by the clock.
+	 * @return the aggregate of the interval.
+	 */
+	Aggregate getIntervalAggregate(long intervalEnd) {
+		return aggregateOf(this.ring.sum(intervalEnd - 1, this.intervalSeconds), this.intervalSeconds, intervalEnd - 1);
+	}
+
+	/**
+	 * Gets the length of the sliding windows, including the interval.
+	 *
+	 * @return the length in seconds of the windows, sorted.
+	 */
+	@Override
+	public Set<Integer> getWindowsSeconds() {
+		return this.windowsSeconds;
 	}
 
 	/**
@@ -57,7 +268,75 @@ public final class ScheduledStats implements Stats {
 	 */
 	@Override
 	public Map<String, Integer> getTopSiteHits() {
-		return this.topSiteHits;
+		return this.snapshot.getTopSiteHits();
+	}
+
+	/**
+	 * Calculates the top visited sites of a sliding window, right now.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the top visited sites.
+	 * @throws IllegalArgumentException if there's no such window.
+	 */
+	@Override
+	public Map<String, Integer> getTopSiteHits(int windowSeconds) {
+		return topSiteHits(getTopSites(windowSeconds));
+	}
+
+	/**
+	 * Gets the top sites by hits and by bytes of the last interval, with the error bound of their estimations.
+	 *
+	 * @return the top sites.
+	 */
+	@Override
+	public TopSites getTopSites() {
+		return this.snapshot.getTopSites();
+	}
+
+	/**
+	 * Gets the top sites by hits and by bytes of a sliding window, right now.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the top sites.
+	 * @throws IllegalArgumentException if there's no such window.
+	 */
+	@Override
+	public TopSites getTopSites(int windowSeconds) {
+		return read(windowSeconds).getTopSites(this.topSitesCount);
+	}
+
+	/**
+	 * Gets the most visited paths right under a prefix during the last interval, like the ones under /api.
+	 *
+	 * @param prefix the prefix. The root, /, gives the sites.
+	 * @param count  how many paths.
+	 * @return the hits of the top paths.
+	 */
+	@Override
+	public Map<String, Long> getTopPaths(String prefix, int count) {
+		return this.paths.getTopPaths(prefix, count);
+	}
+
+	/**
+	 * Gets the hits of every source during the last interval.
+	 *
+	 * @return the hits per source.
+	 */
+	@Override
+	public Map<String, Integer> getSourceHits() {
+		return this.snapshot.getSourceHits();
+	}
+
+	/**
+	 * Gets the hits of every source of a sliding window, right now.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the hits per source.
+	 * @throws IllegalArgumentException if there's no such window.
+	 */
+	@Override
+	public Map<String, Integer> getSourceHits(int windowSeconds) {
+		return sourceHits(read(windowSeconds));
 	}
 
 	/**
@@ -67,7 +346,19 @@ public final class ScheduledStats implements Stats {
 	 */
 	@Override
 	public float getRequestsRate() {
-		return this.requestRate;
+		return this.snapshot.getRequestsRate();
+	}
+
+	/**
+	 * Calculates the request rate of a sliding window, right now.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the request rate.
+	 * @throws IllegalArgumentException if there's no such window.
+	 */
+	@Override
+	public float getRequestsRate(int windowSeconds) {
+		return requestRate(read(windowSeconds), windowSeconds);
 	}
 
 	/**
@@ -77,7 +368,19 @@ public final class ScheduledStats implements Stats {
 	 */
 	@Override
 	public float getErrorRate() {
-		return this.errorRate;
+		return this.snapshot.getErrorRate();
+	}
+
+	/**
+	 * Calculates the error rate of a sliding window, right now.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the error rate.
+	 * @throws IllegalArgumentException if there's no such window.
+	 */
+	@Override
+	public float getErrorRate(int windowSeconds) {
+		return errorRate(read(windowSeconds));
 	}
 
 	/**
@@ -87,7 +390,196 @@ public final class ScheduledStats implements Stats {
 	 */
 	@Override
 	public long getTotalTransmittedData() {
-		return this.totalSize;
+		return this.snapshot.getTotalTransmittedData();
+	}
+
+	/**
+	 * Calculates the transmitted data of a sliding window, right now.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the transmitted data.
+	 * @throws IllegalArgumentException if there's no such window.
+	 */
+	@Override
+	public long getTotalTransmittedData(int windowSeconds) {
+		return read(windowSeconds).getBytes();
+	}
+
+	/**
+	 * Calculates the percentiles of the response sizes during the last interval.
+	 *
+	 * @return the percentiles of the sizes, in bytes.
+	 */
+	@Override
+	public Percentiles getSizePercentiles() {
+		return this.snapshot.getSizePercentiles();
+	}
+
+	/**
+	 * Calculates the percentiles of the response sizes of a sliding window, right now.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the percentiles of the sizes, in bytes.
+	 * @throws IllegalArgumentException if there's no such window.
+	 */
+	@Override
+	public Percentiles getSizePercentiles(int windowSeconds) {
+		return read(windowSeconds).getSizePercentiles();
+	}
+
+	/**
+	 * Calculates the percentiles of the response sizes of a site during the last interval.
+	 *
+	 * @param site the site, like /api.
+	 * @return the percentiles of the sizes, in bytes.
+	 */
+	@Override
+	public Percentiles getSizePercentiles(String site) {
+		return this.siteMetrics.getSizePercentiles(site);
+	}
+
+	/**
+	 * Calculates the percentiles of the request times during the last interval.
+	 *
+	 * @return the percentiles of the request times, in microseconds.
+	 */
+	@Override
+	public Percentiles getRequestTimePercentiles() {
+		return this.snapshot.getRequestTimePercentiles();
+	}
+
+	/**
+	 * Calculates the percentiles of the request times of a sliding window, right now.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the percentiles of the request times, in microseconds.
+	 * @throws IllegalArgumentException if there's no such window.
+	 */
+	@Override
+	public Percentiles getRequestTimePercentiles(int windowSeconds) {
+		return read(windowSeconds).getRequestTimePercentiles();
+	}
+
+	/**
+	 * Calculates the percentiles of the request times of a site during the last interval.
+	 *
+	 * @param site the site, like /api.
+	 * @return the percentiles of the request times, in microseconds.
+	 */
+	@Override
+	public Percentiles getRequestTimePercentiles(String site) {
+		return this.siteMetrics.getRequestTimePercentiles(site);
+	}
+
+	/**
+	 * Estimates the distinct clients during the last interval.
+	 *
+	 * @return the distinct clients.
+	 */
+	@Override
+	public long getDistinctClients() {
+		return this.snapshot.getDistinctClients();
+	}
+
+	/**
+	 * Estimates the distinct clients of a sliding window, right now.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the distinct clients.
+	 * @throws IllegalArgumentException if there's no such window.
+	 */
+	@Override
+	public long getDistinctClients(int windowSeconds) {
+		return this.ring.readDistinct(now(), windowSeconds, SecondBucket::getClients).estimate();
+	}
+
+	/**
+	 * Estimates the distinct paths during the last interval.
+	 *
+	 * @return the distinct paths.
+	 */
+	@Override
+	public long getDistinctPaths() {
+		return this.snapshot.getDistinctPaths();
+	}
+
+	/**
+	 * Estimates the distinct paths of a sliding window, right now.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the distinct paths.
+	 * @throws IllegalArgumentException if there's no such window.
+	 */
+	@Override
+	public long getDistinctPaths(int windowSeconds) {
+		return this.ring.readDistinct(now(), windowSeconds, SecondBucket::getPaths).estimate();
+	}
+
+	/**
+	 * Estimates the distinct paths of a site during the last interval.
+	 *
+	 * @param site the site, like /api.
+	 * @return the distinct paths.
+	 */
+	@Override
+	public long getDistinctPaths(String site) {
+		return this.siteMetrics.getDistinctPaths(site);
+	}
+
+	/**
+	 * Gets how many log lines were counted after their second had been rolled into the windows, since the start.
+	 *
+	 * @return the late lines.
+	 */
+	@Override
+	public long getLateEvents() {
+		return this.ring.getLateLines();
+	}
+
+	/**
+	 * Gets how many log lines weren't counted, as they were older than the longest window or too far in the future,
+	 * since the start.
+	 *
+	 * @return the dropped lines.
+	 */
+	@Override
+	public long getDroppedEvents() {
+		return this.ring.getDroppedLines();
+	}
+
+	/**
+	 * Gets how many intervals of the event mode were never reported, as the clock had passed them by more than the
+	 * longest window by the time they were closed, since the start.
+	 *
+	 * @return the skipped intervals.
+	 */
+	@Override
+	public long getSkippedIntervals() {
+		return this.clock.getSkippedIntervals();
+	}
+
+	/**
+	 * Gets the groups of requests of the last interval by some of the grouped dimensions.
+	 *
+	 * @param dimensions the dimensions. The ones the requests aren't grouped by are ignored.
+	 * @return the groups, from the one with the most hits.
+	 */
+	@Override
+	public List<Group> getGroups(Set<Dimension> dimensions) {
+		return this.snapshot.getGroups(dimensions);
+	}
+
+	/**
+	 * Gets the groups of requests of a sliding window by some of the grouped dimensions, right now.
+	 *
+	 * @param dimensions    the dimensions. The ones the requests aren't grouped by are ignored.
+	 * @param windowSeconds the length of the window.
+	 * @return the groups, from the one with the most hits.
+	 * @throws IllegalArgumentException if there's no such window.
+	 */
+	@Override
+	public List<Group> getGroups(Set<Dimension> dimensions, int windowSeconds) {
+		return groups(read(windowSeconds).getGroups(), dimensions);
 	}
 
 	/**
@@ -100,93 +592,195 @@ public final class ScheduledStats implements Stats {
 		if (Objects.isNull(scheduler)) {
 			scheduler = Executors.newSingleThreadScheduledExecutor();
 			scheduler.scheduleWithFixedDelay(()-> {
-				this.process();
-				exporter.exportStatistics(this);
+				this.process().forEach((timestamp, processed) -> {
+					this.aggregate = processed;
+					this.snapshot = processed.toSnapshot(this.topSitesCount, timestamp);
+					exporter.exportStatistics(this);
+				});
 			},0L, intervalSeconds, TimeUnit.SECONDS);
 		}
 	}
 
 	/**
-	 * Process all the metrics.
+	 * Process all the metrics of the last interval into a new aggregate, whose snapshot is published through a single
+	 * volatile write. Hence, the readers see all the metrics of an interval or none of them, and never a half-built
+	 * map. In the event mode, there's an aggregate for every interval the clock has passed since the last time, stamped
+	 * with its end, or none if it hasn't passed any.
+	 *
+	 * @return the aggregates of the processed intervals by their timestamp, from the oldest one.
 	 */
-	private void process() {
-		Instant now = Instant.now();
-		LogData data = this.data.poll();
-		long requests=0;
-		long errors = 0;
-		Map<String, Integer> siteMap = new HashMap<>();
-
-		this.totalSize = 0;
-		while(data != null && data.getTimestamp().compareTo(now) < 1) {
-			siteMap.put(getSite(data), siteMap.getOrDefault(getSite(data), 0) + 1);
-			if (isErrorRequest(data)) {
-				errors++;
-			}
-			this.totalSize += data.getSize();
-			requests++;
-			data = this.data.poll();
+	private Map<Instant, Aggregate> process() {
+		Map<Instant, Aggregate> aggregates = new LinkedHashMap<>();
+		if (this.clock.getTimeMode() != TimeMode.EVENT) {
+			long now = now();
+			aggregates.put(Instant.now(), aggregateOf(this.ring.read(now, this.intervalSeconds), this.intervalSeconds, now));
+		}
+		for (long end : this.clock.closeIntervals(this.intervalSeconds, this.maxWindowSeconds)) {
+			aggregates.put(Instant.ofEpochSecond(end), getIntervalAggregate(end));
 		}
-		processRequestRate(requests);
-		processErrorRate(requests, errors);
-		generateTopSites(siteMap);
+		rotate();
+		return aggregates;
+	}
+
+	/**
+	 * Makes the top paths and the metrics of the sites of the current interval the ones of the last interval.
+	 */
+	void rotate() {
+		this.paths.rotate();
+		this.siteMetrics.rotate();
 	}
 
 	/**
-	 * Updates the request rate.
+	 * Builds the snapshot of a window, stamped with the wall clock or, in the event mode, with the end of the window.
 	 *
-	 * @param requests Requests during last interval.
+	 * @param totals        the totals of the window.
+	 * @param windowSeconds the length of the window.
+	 * @param now           the last epoch second of the window.
+	 * @return the snapshot.
 	 */
-	private void processRequestRate(long requests) {
-		this.requestRate=((float)requests/this.intervalSeconds);
+	private StatsSnapshot snapshotOf(Totals totals, int windowSeconds, long now) {
+		return StatsSnapshot.builder()
+				.timestamp(this.clock.getTimeMode() == TimeMode.EVENT ? Instant.ofEpochSecond(now + 1) : Instant.now())
+				.requestsRate(requestRate(totals, windowSeconds))
+				.errorRate(errorRate(totals))
+				.totalTransmittedData(totals.getBytes())
+				.topSites(totals.getTopSites(this.topSitesCount))
+				.sourceHits(sourceHits(totals))
+				.sizePercentiles(totals.getSizePercentiles())
+				.requestTimePercentiles(totals.getRequestTimePercentiles())
+				.distinctClients(this.ring.readDistinct(now, windowSeconds, SecondBucket::getClients).estimate())
+				.distinctPaths(this.ring.readDistinct(now, windowSeconds, SecondBucket::getPaths).estimate())
+				.groups(groups(totals.getGroups(), this.grouping.getDimensions()))
+				.lateEvents(getLateEvents())
+				.droppedEvents(getDroppedEvents())
+				.skippedIntervals(getSkippedIntervals())
+				.build();
+	}
+
+	private Totals read(int windowSeconds) {
+		return this.ring.read(now(), windowSeconds);
+	}
+
+	private long now() {
+		return this.clock.now();
+	}
+
+	/**
+	 * Builds the aggregate of a window.
+	 *
+	 * @param totals        the totals of the window.
+	 * @param windowSeconds the length of the window.
+	 * @param now           the last epoch second of the window.
+	 * @return the aggregate.
+	 */
+	private Aggregate aggregateOf(Totals totals, int windowSeconds, long now) {
+		return Aggregate.of(windowSeconds, this.sitesCapacity, totals,
+				this.ring.readDistinct(now, windowSeconds, SecondBucket::getClients),
+				this.ring.readDistinct(now, windowSeconds, SecondBucket::getPaths),
+				groups(totals.getGroups(), this.grouping.getDimensions()), getLateEvents(), getDroppedEvents(),
+				getSkippedIntervals());
+	}
+
+	/**
+	 * Calculates the request rate.
+	 *
+	 * @param totals the totals of a window.
+	 * @param seconds the length of the window.
+	 * @return the requests per second.
+	 */
+	private static float requestRate(Totals totals, int seconds) {
+		return (float) totals.getRequests() / seconds;
 	}
 
 	/**
-	 * Updates the error rate.
+	 * Calculates the error rate.
 	 *
-	 * @param requests Requests during last interval.
-	 * @param errors Errors during last interval.
+	 * @param totals the totals of a window.
+	 * @return the percentage of failed requests.
 	 */
-	private void processErrorRate(long requests, long errors) {
-		if (requests > 0) {
-			this.errorRate=((float)errors / requests)*100;
-		} else {
-			this.errorRate = 0;
+	private static float errorRate(Totals totals) {
+		if (totals.getRequests() > 0) {
+			return ((float) totals.getErrors() / totals.getRequests()) * 100;
 		}
+		return 0;
 	}
 
 	/**
-	 * Generates the top 3 visited sites during the interval.
+	 * Gets the hits of the top visited sites.
 	 *
-	 * @param siteMap All the visited sites in the whole interval.
+	 * @param topSites the top sites of a window.
+	 * @return the top visited sites.
 	 */
-	private void generateTopSites(Map<String, Integer> siteMap) {
-		this.topSiteHits.clear();
-		this.topSiteHits.putAll(siteMap.entrySet().stream()
-				.sorted(Map.Entry.comparingByValue(Comparator.reverseOrder()))
-				.limit(3)
-				.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+	private static Map<String, Integer> topSiteHits(TopSites topSites) {
+		Map<String, Integer> topSiteHits = new LinkedHashMap<>();
+		topSites.getByHits().forEach((site, hits) -> topSiteHits.put(site, hits.intValue()));
+		return topSiteHits;
 	}
 
 	/**
-	 * Given a full site like /foo/bar, returns /foo.
+	 * Merges the groups by some dimensions and unpacks them.
 	 *
-	 * @param data The log entry
+	 * @param counters   the counters of the groups of a window.
+	 * @param dimensions the dimensions.
+	 * @return the groups, from the one with the most hits.
+	 */
+	private List<Group> groups(GroupCounters counters, Set<Dimension> dimensions) {
+		List<Group> groups = new ArrayList<>();
+		counters.project(this.grouping.maskOf(dimensions))
+				.forEach((key, hits, bytes) -> groups.add(this.grouping.groupOf(key, hits, bytes, dimensions)));
+		groups.sort(Comparator.comparingLong(Group::getHits).reversed());
+		return groups;
+	}
+
+	private static Map<String, Integer> sourceHits(Totals totals) {
+		Map<String, Integer> sourceHits = new HashMap<>();
+		totals.getSourceHits().forEach((source, hits) -> sourceHits.put(source, (int) hits[0]));
+		return sourceHits;
+	}
+
+	/**
+	 * Counts the path of a log entry in the trie and returns its site: given a full path like /foo/bar?baz, returns
+	 * /foo.
+	 *
+	 * @param record The log entry
 	 *
 	 * @return The root path.
 	 */
-	private String getSite(LogData data) {
-		return "/"+Paths.get(data.getRequest().getPath()).getName(0).toString();
+	private String addPath(LogRecord record) {
+		if (record.getPathStart() < 0) {
+			return ROOT_SITE;
+		}
+		return this.paths.add(record.getLine(), record.getPathStart(), record.getPathEnd(), record.getWeight());
+	}
+
+	/**
+	 * Hashes the path of a log entry, without its query string, for the distinct counters.
+	 *
+	 * @param record The log entry
+	 *
+	 * @return The hash of the path.
+	 */
+	private static long pathHash(LogRecord record) {
+		if (record.getPathStart() < 0) {
+			return HyperLogLog.hash(ROOT_SITE, 0, ROOT_SITE.length());
+		}
+		String line = record.getLine();
+		int end = record.getPathStart();
+		while (end < record.getPathEnd() && line.charAt(end) != '?' && line.charAt(end) != '#') {
+			end++;
+		}
+		return HyperLogLog.hash(line, record.getPathStart(), end);
 	}
 
 	/**
 	 * Returns true if it's an error request. False otherwise.
 	 *
-	 * @param data The log entry
+	 * @param record The log entry
 	 *
 	 * @return true if it's an error request. False otherwise.
 	 */
-	private boolean isErrorRequest(LogData data) {
-		return data.getStatusCode() >= HttpURLConnection.HTTP_BAD_REQUEST && data.getStatusCode() <= HttpURLConnection.HTTP_VERSION;
+	private boolean isErrorRequest(LogRecord record) {
+		return record.getStatusCode() >= HttpURLConnection.HTTP_BAD_REQUEST && record.getStatusCode() <= HttpURLConnection.HTTP_VERSION;
 	}
 
 }
@@ -0,0 +1,178 @@
+package com.adambarreiro.monitor.stats;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * The counters of the log lines of a single second. They can be updated from several threads at the same time, as
+ * every counter is a {@link LongAdder}. The sites are tracked by two {@link SpaceSaving} summaries, one by hits and
+ * another one by bytes, so a second holds a bounded number of sites no matter how many different ones are visited.
+ * The sizes and the request times are counted in {@link LogLinearHistogram}s, and the distinct clients and paths in
+ * {@link HyperLogLog} counters, also bounded. The hits and bytes are also counted per group of requests, in
+ * {@link GroupCounters}.
+ *
+ * Once the second is over and has been rolled into the sliding windows, the bucket is frozen: a snapshot of the
+ * counters is taken, which is what the windows subtract when the second leaves them. The late lines of a frozen
+ * second are added to that snapshot and to the windows at the same time, so both always agree. The lines are added
+ * under the read side of a lock, so several threads still add them at the same time, and the snapshot is taken under
+ * the write side: a line racing with the freeze is either in the snapshot or refused, to be counted as a late one.
+ */
+final class SecondBucket {
+
+	private final long epochSecond;
+	private final LongAdder requests;
+	private final LongAdder errors;
+	private final LongAdder bytes;
+	private final SpaceSaving siteHits;
+	private final SpaceSaving siteBytes;
+	private final Map<String, LongAdder> sourceHits;
+	private final LogLinearHistogram sizes;
+	private final LogLinearHistogram requestTimes;
+	private final HyperLogLog clients;
+	private final HyperLogLog paths;
+	private final GroupCounters groups;
+	private final StampedLock lock;
+	private volatile Totals frozen;
+
+	/**
+	 * @param epochSecond   the second of the counted log lines.
+	 * @param sitesCapacity the number of sites tracked by hits and by bytes.
+	 */
+	SecondBucket(long epochSecond, int sitesCapacity) {
+		this.epochSecond = epochSecond;
+		this.requests = new LongAdder();
+		this.errors = new LongAdder();
+		this.bytes = new LongAdder();
+		this.siteHits = new SpaceSaving(sitesCapacity);
+		this.siteBytes = new SpaceSaving(sitesCapacity);
+		this.sourceHits = new ConcurrentHashMap<>();
+		this.sizes = new LogLinearHistogram();
+		this.requestTimes = new LogLinearHistogram();
+		this.clients = new HyperLogLog();
+		this.paths = new HyperLogLog();
+		this.groups = new GroupCounters();
+		this.lock = new StampedLock();
+	}
+
+	/**
+	 * Counts a log line, unless the bucket is frozen.
+	 *
+	 * @param site        the site of the request.
+	 * @param source      where the log line comes from.
+	 * @param error       whether the request failed.
+	 * @param size        the transmitted bytes.
+	 * @param requestTime the request time in microseconds, negative if unknown.
+	 * @param group       the packed key of the group of the request.
+	 * @param weight      how many log lines it stands for.
+	 * @return whether it was counted: the lines of a frozen second are late ones, added to its snapshot instead.
+	 */
+	boolean add(String site, String source, boolean error, int size, long requestTime, long group, int weight) {
+		long stamp = this.lock.readLock();
+		try {
+			if (Objects.nonNull(this.frozen)) {
+				return false;
+			}
+			count(site, source, error, size, requestTime, group, weight);
+			return true;
+		} finally {
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	private void count(String site, String source, boolean error, int size, long requestTime, long group, int weight) {
+		this.requests.add(weight);
+		if (error) {
+			this.errors.add(weight);
+		}
+		this.bytes.add((long) size * weight);
+		this.siteHits.add(site, weight);
+		this.siteBytes.add(site, (long) size * weight);
+		this.sourceHits.computeIfAbsent(source, key -> new LongAdder()).add(weight);
+		this.sizes.record(size, weight);
+		this.requestTimes.record(requestTime, weight);
+		this.groups.add(group, weight, (long) size * weight);
+	}
+
+	/**
+	 * Counts the client and the path of a log line among the distinct ones. Unlike the other counters, they're never
+	 * frozen, as the sliding windows merge them when they're read.
+	 *
+	 * @param clientHash the hash of the client.
+	 * @param pathHash   the hash of the path.
+	 */
+	void addDistinct(long clientHash, long pathHash) {
+		this.clients.add(clientHash);
+		this.paths.add(pathHash);
+	}
+
+	/**
+	 * Takes a snapshot of the counters, if it wasn't already taken, once the lines being added are counted. Guarded by
+	 * the lock of the ring.
+	 *
+	 * @return the snapshot.
+	 */
+	Totals freeze() {
+		if (Objects.isNull(this.frozen)) {
+			long stamp = this.lock.writeLock();
+			try {
+				Totals totals = new Totals();
+				totals.add(this);
+				this.frozen = totals;
+			} finally {
+				this.lock.unlockWrite(stamp);
+			}
+		}
+		return this.frozen;
+	}
+
+	long getEpochSecond() {
+		return this.epochSecond;
+	}
+
+	long getRequests() {
+		return this.requests.sum();
+	}
+
+	long getErrors() {
+		return this.errors.sum();
+	}
+
+	long getBytes() {
+		return this.bytes.sum();
+	}
+
+	SpaceSaving getSiteHits() {
+		return this.siteHits;
+	}
+
+	SpaceSaving getSiteBytes() {
+		return this.siteBytes;
+	}
+
+	Map<String, LongAdder> getSourceHits() {
+		return this.sourceHits;
+	}
+
+	LogLinearHistogram getSizes() {
+		return this.sizes;
+	}
+
+	LogLinearHistogram getRequestTimes() {
+		return this.requestTimes;
+	}
+
+	HyperLogLog getClients() {
+		return this.clients;
+	}
+
+	HyperLogLog getPaths() {
+		return this.paths;
+	}
+
+	GroupCounters getGroups() {
+		return this.groups;
+	}
+}
@@ -0,0 +1,477 @@
+package com.adambarreiro.monitor.stats;
+
+import com.adambarreiro.monitor.export.Exporter;
+import com.adambarreiro.monitor.process.log.vo.LogField;
+import com.adambarreiro.monitor.process.log.vo.LogRecord;
+import com.adambarreiro.monitor.stats.vo.Dimension;
+import com.adambarreiro.monitor.stats.vo.Group;
+import com.adambarreiro.monitor.stats.vo.Percentiles;
+import com.adambarreiro.monitor.stats.vo.StatsSnapshot;
+import com.adambarreiro.monitor.stats.vo.TopSites;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stats that spread the log lines over several shards by their site, every one a {@link ScheduledStats} written by a
+ * single thread of its own, so the ingestion scales with the cores instead of contending on the counters, sketches and
+ * locks of a single one. The shards are merged as {@link Aggregate}s when the metrics are read: as a site always goes
+ * to the same shard, the top sites, the top paths and the metrics of every site are the ones of its shard, and the
+ * counters, histograms and distinct counters are merged exactly.
+ *
+ * All the shards follow the same {@link StatsClock}, so in the event mode a shard whose sites went quiet rolls its
+ * seconds and closes its intervals with the rest, instead of keeping its last hits in the windows forever. Every
+ * interval the clock passes is merged from the same interval of every shard.
+ *
+ * The lines are copied into preallocated chunks of records, which are handed to the thread of their shard when full,
+ * or after {@value #FLUSH_MILLIS} ms, so a line costs a copy and no allocation. When a shard falls behind and all its
+ * chunks are taken, adding lines to it blocks. It can be called from several threads at the same time.
+ *
+ * As the lines are sharded by site, the traffic of a single site is never spread: when a site dominates the traffic,
+ * like a crawler or an attack on a single path, its shard does most of the work and the ingestion is bounded by a
+ * single thread again, while the rest of the shards idle. The sharded stats pay off with many sites of similar
+ * traffic; otherwise, the parsing is the part worth spreading, with the parsing threads of the pipeline.
+ */
+public final class ShardedStats implements Stats {
+
+	private static final int CHUNK_SIZE = 256;
+	private static final int CHUNKS_PER_SHARD = 16;
+	private static final long FLUSH_MILLIS = 50L;
+
+	private final int intervalSeconds;
+	private final int topSitesCount;
+	private final StatsClock clock;
+	private final int maxWindowSeconds;
+	private final Shard[] shards;
+
+	private volatile StatsSnapshot snapshot;
+	private volatile Aggregate aggregate;
+
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * Creates the shards and starts their threads.
+	 *
+	 * @param intervalSeconds the period of every update of the stats, also a sliding window.
+	 * @param windowsSeconds  the length in seconds of the other sliding windows.
+	 * @param config          the top sites, the grouped dimensions and the clock of the windows of every shard.
+	 * @param shards          how many shards.
+	 * @throws IllegalArgumentException if there isn't at least a shard, or a window doesn't last at least a second.
+	 */
+	public ShardedStats(int intervalSeconds, Collection<Integer> windowsSeconds, StatsConfig config, int shards) {
+		if (shards < 1) {
+			throw new IllegalArgumentException("There must be at least a shard: " + shards);
+		}
+		this.intervalSeconds = intervalSeconds;
+		this.topSitesCount = config.getTopSites();
+		this.clock = StatsClock.of(config);
+		this.shards = new Shard[shards];
+		for (int i = 0; i < shards; i++) {
+			this.shards[i] = new Shard(new ScheduledStats(intervalSeconds, windowsSeconds, config, this.clock));
+			Thread worker = new Thread(this.shards[i]::run, "stats-shard-" + i);
+			worker.setDaemon(true);
+			worker.start();
+		}
+		this.maxWindowSeconds = Collections.max(getWindowsSeconds());
+		this.snapshot = StatsSnapshot.NONE;
+		this.aggregate = Aggregate.empty(intervalSeconds);
+	}
+
+	/**
+	 * Hands a parsed log line to the shard of its site.
+	 *
+	 * @param record the parsed log line.
+	 */
+	@Override
+	public void add(LogRecord record) {
+		int hash = record.getPathStart() < 0 ? 0 : siteHash(record.getLine(), record.getPathStart(), record.getPathEnd());
+		shardOf(hash).add(record);
+	}
+
+	@Override
+	public Set<LogField> getRequiredFields() {
+		return this.shards[0].stats.getRequiredFields();
+	}
+
+	@Override
+	public StatsSnapshot getSnapshot() {
+		return this.snapshot;
+	}
+
+	/**
+	 * Gets the merged aggregate of the last interval of every shard, the one of {@link #getSnapshot()}.
+	 *
+	 * @return the aggregate of the last interval.
+	 */
+	@Override
+	public Aggregate getAggregate() {
+		return this.aggregate;
+	}
+
+	/**
+	 * Merges the metrics of a sliding window of every shard, right now.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the snapshot of the window.
+	 * @throws IllegalArgumentException if there's no such window.
+	 */
+	@Override
+	public StatsSnapshot getSnapshot(int windowSeconds) {
+		return getAggregate(windowSeconds).toSnapshot(this.topSitesCount);
+	}
+
+	/**
+	 * Merges the aggregates of a sliding window of every shard, right now.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the aggregate of the window.
+	 * @throws IllegalArgumentException if there's no such window.
+	 */
+	@Override
+	public Aggregate getAggregate(int windowSeconds) {
+		Aggregate merged = Aggregate.empty(windowSeconds);
+		for (Shard shard : this.shards) {
+			merged = merged.merge(shard.stats.getAggregate(windowSeconds));
+		}
+		return merged.withSkippedIntervals(getSkippedIntervals());
+	}
+
+	@Override
+	public Set<Integer> getWindowsSeconds() {
+		return this.shards[0].stats.getWindowsSeconds();
+	}
+
+	@Override
+	public Map<String, Integer> getTopSiteHits() {
+		return this.snapshot.getTopSiteHits();
+	}
+
+	@Override
+	public Map<String, Integer> getTopSiteHits(int windowSeconds) {
+		return getSnapshot(windowSeconds).getTopSiteHits();
+	}
+
+	@Override
+	public TopSites getTopSites() {
+		return this.snapshot.getTopSites();
+	}
+
+	@Override
+	public TopSites getTopSites(int windowSeconds) {
+		return getSnapshot(windowSeconds).getTopSites();
+	}
+
+	/**
+	 * Gets the most visited paths right under a prefix during the last interval. The paths of a site are all in its
+	 * shard, and the sites are merged from all of them.
+	 *
+	 * @param prefix the prefix. The root, /, gives the sites.
+	 * @param count  how many paths.
+	 * @return the hits of the top paths, from the most visited one.
+	 */
+	@Override
+	public Map<String, Long> getTopPaths(String prefix, int count) {
+		int hash = siteHash(prefix, 0, prefix.length());
+		if (hash != 0) {
+			return shardOf(hash).stats.getTopPaths(prefix, count);
+		}
+		List<Map.Entry<String, Long>> sites = new ArrayList<>();
+		for (Shard shard : this.shards) {
+			sites.addAll(shard.stats.getTopPaths(prefix, count).entrySet());
+		}
+		sites.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+		Map<String, Long> topPaths = new LinkedHashMap<>();
+		sites.stream().limit(count).forEach(site -> topPaths.put(site.getKey(), site.getValue()));
+		return topPaths;
+	}
+
+	@Override
+	public Map<String, Integer> getSourceHits() {
+		return this.snapshot.getSourceHits();
+	}
+
+	@Override
+	public Map<String, Integer> getSourceHits(int windowSeconds) {
+		return getSnapshot(windowSeconds).getSourceHits();
+	}
+
+	@Override
+	public float getRequestsRate() {
+		return this.snapshot.getRequestsRate();
+	}
+
+	@Override
+	public float getRequestsRate(int windowSeconds) {
+		return getSnapshot(windowSeconds).getRequestsRate();
+	}
+
+	@Override
+	public float getErrorRate() {
+		return this.snapshot.getErrorRate();
+	}
+
+	@Override
+	public float getErrorRate(int windowSeconds) {
+		return getSnapshot(windowSeconds).getErrorRate();
+	}
+
+	@Override
+	public long getTotalTransmittedData() {
+		return this.snapshot.getTotalTransmittedData();
+	}
+
+	@Override
+	public long getTotalTransmittedData(int windowSeconds) {
+		return getSnapshot(windowSeconds).getTotalTransmittedData();
+	}
+
+	@Override
+	public Percentiles getSizePercentiles() {
+		return this.snapshot.getSizePercentiles();
+	}
+
+	@Override
+	public Percentiles getSizePercentiles(int windowSeconds) {
+		return getSnapshot(windowSeconds).getSizePercentiles();
+	}
+
+	@Override
+	public Percentiles getSizePercentiles(String site) {
+		return shardOf(siteHash(site, 0, site.length())).stats.getSizePercentiles(site);
+	}
+
+	@Override
+	public Percentiles getRequestTimePercentiles() {
+		return this.snapshot.getRequestTimePercentiles();
+	}
+
+	@Override
+	public Percentiles getRequestTimePercentiles(int windowSeconds) {
+		return getSnapshot(windowSeconds).getRequestTimePercentiles();
+	}
+
+	@Override
+	public Percentiles getRequestTimePercentiles(String site) {
+		return shardOf(siteHash(site, 0, site.length())).stats.getRequestTimePercentiles(site);
+	}
+
+	@Override
+	public long getDistinctClients() {
+		return this.snapshot.getDistinctClients();
+	}
+
+	@Override
+	public long getDistinctClients(int windowSeconds) {
+		return getSnapshot(windowSeconds).getDistinctClients();
+	}
+
+	@Override
+	public long getDistinctPaths() {
+		return this.snapshot.getDistinctPaths();
+	}
+
+	@Override
+	public long getDistinctPaths(int windowSeconds) {
+		return getSnapshot(windowSeconds).getDistinctPaths();
+	}
+
+	@Override
+	public long getDistinctPaths(String site) {
+		return shardOf(siteHash(site, 0, site.length())).stats.getDistinctPaths(site);
+	}
+
+	@Override
+	public long getLateEvents() {
+		long lateEvents = 0L;
+		for (Shard shard : this.shards) {
+			lateEvents += shard.stats.getLateEvents();
+		}
+		return lateEvents;
+	}
+
+	@Override
+	public long getDroppedEvents() {
+		long droppedEvents = 0L;
+		for (Shard shard : this.shards) {
+			droppedEvents += shard.stats.getDroppedEvents();
+		}
+		return droppedEvents;
+	}
+
+	/**
+	 * Gets how many intervals were skipped by the clock the shards share, since the start.
+	 *
+	 * @return the skipped intervals.
+	 */
+	@Override
+	public long getSkippedIntervals() {
+		return this.clock.getSkippedIntervals();
+	}
+
+	@Override
+	public List<Group> getGroups(Set<Dimension> dimensions) {
+		return this.snapshot.getGroups(dimensions);
+	}
+
+	@Override
+	public List<Group> getGroups(Set<Dimension> dimensions, int windowSeconds) {
+		return getSnapshot(windowSeconds).getGroups(dimensions);
+	}
+
+	/**
+	 * Merges the shards every interval in a separate thread and exposes the metrics through the exporter.
+	 *
+	 * @param exporter the exporter to expose metrics to the outside world.
+	 */
+	@Override
+	public void expose(final Exporter exporter) {
+		if (Objects.isNull(this.scheduler)) {
+			this.scheduler = Executors.newSingleThreadScheduledExecutor();
+			this.scheduler.scheduleWithFixedDelay(() -> {
+				this.process().forEach((timestamp, processed) -> {
+					this.aggregate = processed;
+					this.snapshot = processed.toSnapshot(this.topSitesCount, timestamp);
+					exporter.exportStatistics(this);
+				});
+			}, 0L, this.intervalSeconds, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Merges the last interval of every shard into a new aggregate, and rotates their paths and sites. In the event
+	 * mode, every interval the clock has passed since the last time is merged into an aggregate of its own, stamped
+	 * with its end.
+	 *
+	 * @return the aggregates of the processed intervals by their timestamp, from the oldest one.
+	 */
+	private Map<Instant, Aggregate> process() {
+		Map<Instant, Aggregate> aggregates = new LinkedHashMap<>();
+		if (this.clock.getTimeMode() != TimeMode.EVENT) {
+			aggregates.put(Instant.now(), getAggregate(this.intervalSeconds));
+		}
+		for (long end : this.clock.closeIntervals(this.intervalSeconds, this.maxWindowSeconds)) {
+			Aggregate merged = Aggregate.empty(this.intervalSeconds);
+			for (Shard shard : this.shards) {
+				merged = merged.merge(shard.stats.getIntervalAggregate(end));
+			}
+			aggregates.put(Instant.ofEpochSecond(end), merged.withSkippedIntervals(getSkippedIntervals()));
+		}
+		for (Shard shard : this.shards) {
+			shard.stats.rotate();
+		}
+		return aggregates;
+	}
+
+	private Shard shardOf(int siteHash) {
+		return this.shards[((siteHash ^ (siteHash >>> 16)) & Integer.MAX_VALUE) % this.shards.length];
+	}
+
+	/**
+	 * Hashes the site of a path, that is, its first level, without allocating it.
+	 *
+	 * @param text  the text containing the path, like a log line.
+	 * @param start the position of the first character of the path.
+	 * @param end   the position after the last character of the path.
+	 * @return the hash of the site, 0 for the root.
+	 */
+	private static int siteHash(CharSequence text, int start, int end) {
+		int position = start;
+		while (position < end && text.charAt(position) == '/') {
+			position++;
+		}
+		int hash = 0;
+		while (position < end) {
+			char character = text.charAt(position++);
+			if (character == '/' || character == '?' || character == '#') {
+				break;
+			}
+			hash = 31 * hash + character;
+		}
+		return hash;
+	}
+
+	/**
+	 * A shard: its stats, only written by its own thread, and the chunks of records on their way to it.
+	 */
+	private static final class Shard {
+
+		private final ScheduledStats stats;
+		private final BlockingQueue<LogRecord[]> free;
+		private final BlockingQueue<LogRecord[]> full;
+
+		private LogRecord[] pending;
+		private int pendingSize;
+
+		private Shard(ScheduledStats stats) {
+			this.stats = stats;
+			this.free = new ArrayBlockingQueue<>(CHUNKS_PER_SHARD);
+			this.full = new ArrayBlockingQueue<>(CHUNKS_PER_SHARD);
+			for (int i = 0; i < CHUNKS_PER_SHARD; i++) {
+				LogRecord[] chunk = new LogRecord[CHUNK_SIZE];
+				for (int j = 0; j < CHUNK_SIZE; j++) {
+					chunk[j] = new LogRecord();
+				}
+				this.free.add(chunk);
+			}
+		}
+
+		/**
+		 * Copies a record into the pending chunk, handing it to the thread of the shard when it's full.
+		 */
+		private synchronized void add(LogRecord record) {
+			try {
+				if (Objects.isNull(this.pending)) {
+					this.pending = this.free.take();
+				}
+				this.pending[this.pendingSize++].set(record);
+				if (this.pendingSize == CHUNK_SIZE) {
+					this.full.put(this.pending);
+					this.pending = null;
+					this.pendingSize = 0;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * Ingests the full chunks and, when none arrives for a while, the pending one.
+		 */
+		private void run() {
+			try {
+				while (!Thread.currentThread().isInterrupted()) {
+					LogRecord[] chunk = this.full.poll(FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+					int size = CHUNK_SIZE;
+					if (Objects.isNull(chunk)) {
+						synchronized (this) {
+							chunk = this.pending;
+							size = this.pendingSize;
+							this.pending = null;
+							this.pendingSize = 0;
+						}
+					}
+					if (Objects.nonNull(chunk)) {
+						for (int i = 0; i < size; i++) {
+							this.stats.add(chunk[i]);
+						}
+						this.free.put(chunk);
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package com.adambarreiro.monitor.stats;
+
+import com.adambarreiro.monitor.stats.vo.Percentiles;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The size and request time histograms and the distinct paths of the heaviest sites during an interval. The sites are
+ * tracked by a {@link SpaceSaving} summary of their hits, so the number of sites with metrics is bounded: when a new
+ * site replaces the lightest one, the metrics of the lightest one are dropped, and the new site starts counting from
+ * then on. Hence, a heavy site is counted from its first hits unless a burst of lighter sites evicts it, and a crawler
+ * visiting many sites once cannot take the room of the busy ones.
+ *
+ * The metrics of the current interval are rotated into the ones of the last interval, which are the ones read. They
+ * are rotated whenever the stats process an interval, so they follow the wall clock, even in the event mode. It's
+ * thread safe.
+ */
+final class SiteMetrics {
+
+	private final int maxSites;
+	private SpaceSaving heaviest;
+	private Map<String, Site> current;
+	private Map<String, Site> last;
+
+	/**
+	 * @param maxSites the maximum number of sites with metrics.
+	 */
+	SiteMetrics(int maxSites) {
+		this.maxSites = maxSites;
+		this.heaviest = new SpaceSaving(maxSites);
+		this.current = new HashMap<>();
+		this.last = Map.of();
+	}
+
+	/**
+	 * Counts a request.
+	 *
+	 * @param site        the site of the request.
+	 * @param size        the transmitted bytes.
+	 * @param requestTime the request time in microseconds, negative if unknown.
+	 * @param pathHash    the hash of the path.
+	 * @param weight      how many log lines it stands for.
+	 */
+	synchronized void record(String site, int size, long requestTime, long pathHash, int weight) {
+		if (weight <= 0) {
+			return;
+		}
+		String replaced = this.heaviest.add(site, weight);
+		if (Objects.nonNull(replaced)) {
+			this.current.remove(replaced);
+		}
+		Site metrics = this.current.computeIfAbsent(site, key -> new Site());
+		metrics.sizes.record(size, weight);
+		metrics.requestTimes.record(requestTime, weight);
+		metrics.paths.add(pathHash);
+	}
+
+	/**
+	 * Makes the metrics of the current interval the ones of the last interval.
+	 */
+	synchronized void rotate() {
+		this.last = this.current;
+		this.current = new HashMap<>();
+		this.heaviest = new SpaceSaving(this.maxSites);
+	}
+
+	synchronized Percentiles getSizePercentiles(String site) {
+		Site metrics = this.last.get(site);
+		return Objects.isNull(metrics) ? Percentiles.NONE : metrics.sizes.getPercentiles();
+	}
+
+	synchronized Percentiles getRequestTimePercentiles(String site) {
+		Site metrics = this.last.get(site);
+		return Objects.isNull(metrics) ? Percentiles.NONE : metrics.requestTimes.getPercentiles();
+	}
+
+	synchronized long getDistinctPaths(String site) {
+		Site metrics = this.last.get(site);
+		return Objects.isNull(metrics) ? 0L : metrics.paths.estimate();
+	}
+
+	/**
+	 * The metrics of a site.
+	 */
+	private static final class Site {
+
+		private final LogLinearHistogram sizes = new LogLinearHistogram();
+		private final LogLinearHistogram requestTimes = new LogLinearHistogram();
+		private final HyperLogLog paths = new HyperLogLog();
+	}
+}
@@ -0,0 +1,50 @@
+package com.adambarreiro.monitor.stats;
+
+import java.util.HashMap;
+
+/**
+ * A reusable slice of text that can look up the {@link String} keys of a map without copying the slice. Its hash code
+ * is the one of the equivalent string and it equals any string with the same characters, which is enough for
+ * {@link HashMap#get(Object)}, but not the other way around, so it must never be used as a key.
+ */
+final class Slice {
+
+	private String text;
+	private int start;
+	private int end;
+	private int hash;
+
+	/**
+	 * Points the slice to some text.
+	 *
+	 * @param text  the text, like a log line.
+	 * @param start the position of the first character.
+	 * @param end   the position after the last character.
+	 * @return the slice.
+	 */
+	Slice set(String text, int start, int end) {
+		this.text = text;
+		this.start = start;
+		this.end = end;
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + text.charAt(i);
+		}
+		this.hash = hash;
+		return this;
+	}
+
+	@Override
+	public int hashCode() {
+		return this.hash;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (other instanceof String) {
+			String string = (String) other;
+			return string.length() == this.end - this.start && this.text.startsWith(string, this.start);
+		}
+		return false;
+	}
+}
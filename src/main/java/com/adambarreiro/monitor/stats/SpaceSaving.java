@@ -0,0 +1,139 @@
+package com.adambarreiro.monitor.stats;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * Space-Saving summary of the heaviest keys of a stream, like the most visited sites, in constant memory. It tracks a
+ * fixed number of keys: when a new key arrives and there's no room, it replaces the lightest one and inherits its
+ * count. Hence, the count of a tracked key may be overestimated, and the one of an untracked key is zero instead of
+ * at most the minimum count. Both errors are bounded by the total weight divided by the capacity.
+ *
+ * The keys are kept in a min-heap indexed by a map, so every update costs O(log capacity). It's thread safe.
+ */
+final class SpaceSaving {
+
+	private final Map<String, Entry> entries;
+	private final Entry[] heap;
+	private int size;
+
+	/**
+	 * @param capacity the number of tracked keys.
+	 */
+	SpaceSaving(int capacity) {
+		this.entries = new HashMap<>();
+		this.heap = new Entry[capacity];
+	}
+
+	/**
+	 * Adds weight to a key.
+	 *
+	 * @param key    the key.
+	 * @param weight the weight, like the hits or the bytes.
+	 * @return the key that was replaced by the new one, if any, so whatever is kept for it can be dropped.
+	 */
+	synchronized String add(String key, long weight) {
+		if (weight <= 0) {
+			return null;
+		}
+		Entry entry = this.entries.get(key);
+		if (Objects.nonNull(entry)) {
+			// a heavier key can only sink
+			entry.count += weight;
+			siftDown(entry.position);
+		} else if (this.size < this.heap.length) {
+			// a new key starts at the bottom, and climbs above the lighter ones
+			entry = new Entry(key, this.size);
+			entry.count = weight;
+			this.heap[this.size++] = entry;
+			this.entries.put(key, entry);
+			siftUp(entry.position);
+		} else {
+			// the lightest key leaves its place and its count to the new one
+			entry = this.heap[0];
+			String replaced = entry.key;
+			this.entries.remove(replaced);
+			entry.key = key;
+			entry.count += weight;
+			this.entries.put(key, entry);
+			siftDown(entry.position);
+			return replaced;
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the maximum error of any count: the count of the lightest tracked key, if the summary is full.
+	 *
+	 * @return the maximum error.
+	 */
+	synchronized long getMaxError() {
+		return this.size < this.heap.length ? 0 : this.heap[0].count;
+	}
+
+	/**
+	 * Calls the given function with every tracked key and its count.
+	 *
+	 * @param action the function.
+	 */
+	synchronized void forEach(BiConsumer<String, Long> action) {
+		for (int i = 0; i < this.size; i++) {
+			action.accept(this.heap[i].key, this.heap[i].count);
+		}
+	}
+
+	private void siftUp(int position) {
+		Entry entry = this.heap[position];
+		int current = position;
+		while (current > 0) {
+			int parent = (current - 1) / 2;
+			if (this.heap[parent].count <= entry.count) {
+				break;
+			}
+			this.heap[current] = this.heap[parent];
+			this.heap[current].position = current;
+			current = parent;
+		}
+		this.heap[current] = entry;
+		entry.position = current;
+	}
+
+	private void siftDown(int position) {
+		Entry entry = this.heap[position];
+		int current = position;
+		while (true) {
+			int child = 2 * current + 1;
+			if (child >= this.size) {
+				break;
+			}
+			if (child + 1 < this.size && this.heap[child + 1].count < this.heap[child].count) {
+				child++;
+			}
+			if (this.heap[child].count >= entry.count) {
+				break;
+			}
+			this.heap[current] = this.heap[child];
+			this.heap[current].position = current;
+			current = child;
+		}
+		this.heap[current] = entry;
+		entry.position = current;
+	}
+
+	/**
+	 * A tracked key.
+	 */
+	private static final class Entry {
+
+		private String key;
+		private long count;
+		private int position;
+
+		private Entry(String key, int position) {
+			this.key = key;
+			this.position = position;
+		}
+	}
+}
@@ -2,8 +2,20 @@ package com.adambarreiro.monitor.stats;
 
 import com.adambarreiro.monitor.export.Exporter;
 import com.adambarreiro.monitor.process.log.vo.LogData;
+import com.adambarreiro.monitor.process.log.vo.LogField;
+import com.adambarreiro.monitor.process.log.vo.LogRecord;
+import com.adambarreiro.monitor.stats.vo.Dimension;
+import com.adambarreiro.monitor.stats.vo.Group;
+import com.adambarreiro.monitor.stats.vo.Percentiles;
+import com.adambarreiro.monitor.stats.vo.StatsSnapshot;
+import com.adambarreiro.monitor.stats.vo.TopSites;
 
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Component that is responsible of ingesting new log data {@link LogData} and calculate several metrics that
@@ -12,12 +24,113 @@ import java.util.Map;
 public interface Stats {
 
 	/**
-	 * Ingests log data. Returns the number of buffered records.
+	 * Ingests log data. It's copied into a record, so prefer {@link #add(LogRecord)} on the hot path.
 	 *
 	 * @param data the data.
-	 * @return
 	 */
-	void add(LogData data);
+	default void add(LogData data) {
+		add(LogRecord.of(data));
+	}
+
+	/**
+	 * Ingests a parsed log line. The record is reused for the next line as soon as this method returns, so it must
+	 * not be kept.
+	 *
+	 * @param record the parsed log line.
+	 */
+	void add(LogRecord record);
+
+	/**
+	 * Gets the fields of the log lines these stats read, so the rest don't need to be extracted. By default, all of
+	 * them.
+	 *
+	 * @return the read fields.
+	 */
+	default Set<LogField> getRequiredFields() {
+		return LogField.all();
+	}
+
+	/**
+	 * Gets the metrics of the last interval at once, as an immutable snapshot that can be read without locking. By
+	 * default, it's built from the other getters, so its metrics are only consistent if they don't change meanwhile.
+	 *
+	 * @return the snapshot of the last interval.
+	 */
+	default StatsSnapshot getSnapshot() {
+		return StatsSnapshot.builder()
+				.timestamp(Instant.now())
+				.requestsRate(getRequestsRate())
+				.errorRate(getErrorRate())
+				.totalTransmittedData(getTotalTransmittedData())
+				.topSites(getTopSites())
+				.sourceHits(getSourceHits())
+				.sizePercentiles(getSizePercentiles())
+				.requestTimePercentiles(getRequestTimePercentiles())
+				.distinctClients(getDistinctClients())
+				.distinctPaths(getDistinctPaths())
+				.groups(getGroups(EnumSet.allOf(Dimension.class)))
+				.lateEvents(getLateEvents())
+				.droppedEvents(getDroppedEvents())
+				.skippedIntervals(getSkippedIntervals())
+				.build();
+	}
+
+	/**
+	 * Gets the metrics of a sliding window at once, right now, like the ones of the last hour. By default, it's built
+	 * from the windowed getters.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the snapshot of the window.
+	 */
+	default StatsSnapshot getSnapshot(int windowSeconds) {
+		return StatsSnapshot.builder()
+				.timestamp(Instant.now())
+				.requestsRate(getRequestsRate(windowSeconds))
+				.errorRate(getErrorRate(windowSeconds))
+				.totalTransmittedData(getTotalTransmittedData(windowSeconds))
+				.topSites(getTopSites(windowSeconds))
+				.sourceHits(getSourceHits(windowSeconds))
+				.sizePercentiles(getSizePercentiles(windowSeconds))
+				.requestTimePercentiles(getRequestTimePercentiles(windowSeconds))
+				.distinctClients(getDistinctClients(windowSeconds))
+				.distinctPaths(getDistinctPaths(windowSeconds))
+				.groups(getGroups(EnumSet.allOf(Dimension.class), windowSeconds))
+				.lateEvents(getLateEvents())
+				.droppedEvents(getDroppedEvents())
+				.skippedIntervals(getSkippedIntervals())
+				.build();
+	}
+
+	/**
+	 * Gets everything the last interval counted, the one of {@link #getSnapshot()}, as an aggregate that can be kept
+	 * and merged with the ones of other intervals, like the ones of an hour. By default, an empty one of a second.
+	 *
+	 * @return the aggregate of the last interval.
+	 */
+	default Aggregate getAggregate() {
+		return Aggregate.empty(1);
+	}
+
+	/**
+	 * Gets everything a sliding window counted, right now, as an aggregate that can be serialized and merged with the
+	 * ones of other monitors. By default, an empty one.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the aggregate of the window.
+	 */
+	default Aggregate getAggregate(int windowSeconds) {
+		return Aggregate.empty(windowSeconds);
+	}
+
+	/**
+	 * Gets the length of the sliding windows whose metrics can be read at any time, on top of the ones of the last
+	 * interval. By default there are none, so the windowed metrics are the ones of the last interval.
+	 *
+	 * @return the length in seconds of the windows.
+	 */
+	default Set<Integer> getWindowsSeconds() {
+		return Set.of();
+	}
 
 	/**
 	 * Gets the top visited sites. The keys in the map are the sites
@@ -27,6 +140,68 @@ public interface Stats {
 	 */
 	Map<String, Integer> getTopSiteHits();
 
+	/**
+	 * Gets the top visited sites of a sliding window.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the top visited sites.
+	 */
+	default Map<String, Integer> getTopSiteHits(int windowSeconds) {
+		return getTopSiteHits();
+	}
+
+	/**
+	 * Gets the top visited sites by hits and by bytes, with the error bound of their estimations. By default, the top
+	 * sites by hits, without bytes nor error.
+	 *
+	 * @return the top sites.
+	 */
+	default TopSites getTopSites() {
+		Map<String, Long> byHits = new LinkedHashMap<>();
+		getTopSiteHits().forEach((site, hits) -> byHits.put(site, hits.longValue()));
+		return new TopSites(byHits, Map.of(), 0L, 0L);
+	}
+
+	/**
+	 * Gets the top visited sites of a sliding window by hits and by bytes, with the error bound of their estimations.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the top sites.
+	 */
+	default TopSites getTopSites(int windowSeconds) {
+		return getTopSites();
+	}
+
+	/**
+	 * Gets the most visited paths right under a prefix during the last interval, like the ones under /api or
+	 * /api/v2. By default, none.
+	 *
+	 * @param prefix the prefix. The root, /, gives the sites.
+	 * @param count  how many paths.
+	 * @return the hits of the top paths, from the most visited one.
+	 */
+	default Map<String, Long> getTopPaths(String prefix, int count) {
+		return Map.of();
+	}
+
+	/**
+	 * Gets the hits of every source, like every observed file. The keys in the map are the sources
+	 * and the value the hits.
+	 *
+	 * @return the hits per source.
+	 */
+	Map<String, Integer> getSourceHits();
+
+	/**
+	 * Gets the hits of every source of a sliding window.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the hits per source.
+	 */
+	default Map<String, Integer> getSourceHits(int windowSeconds) {
+		return getSourceHits();
+	}
+
 	/**
 	 * Calculates the request rate.
 	 *
@@ -34,6 +209,16 @@ public interface Stats {
 	 */
 	float getRequestsRate();
 
+	/**
+	 * Calculates the request rate of a sliding window.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the request rate.
+	 */
+	default float getRequestsRate(int windowSeconds) {
+		return getRequestsRate();
+	}
+
 	/**
 	 * Calculates the error rate.
 	 *
@@ -41,6 +226,16 @@ public interface Stats {
 	 */
 	float getErrorRate();
 
+	/**
+	 * Calculates the error rate of a sliding window.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the error rate.
+	 */
+	default float getErrorRate(int windowSeconds) {
+		return getErrorRate();
+	}
+
 	/**
 	 * Calculates the transmitted data.
 	 *
@@ -48,6 +243,173 @@ public interface Stats {
 	 */
 	long getTotalTransmittedData();
 
+	/**
+	 * Calculates the transmitted data of a sliding window.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the transmitted data.
+	 */
+	default long getTotalTransmittedData(int windowSeconds) {
+		return getTotalTransmittedData();
+	}
+
+	/**
+	 * Calculates the percentiles of the response sizes. By default, none.
+	 *
+	 * @return the percentiles of the sizes, in bytes.
+	 */
+	default Percentiles getSizePercentiles() {
+		return Percentiles.NONE;
+	}
+
+	/**
+	 * Calculates the percentiles of the response sizes of a sliding window.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the percentiles of the sizes, in bytes.
+	 */
+	default Percentiles getSizePercentiles(int windowSeconds) {
+		return getSizePercentiles();
+	}
+
+	/**
+	 * Calculates the percentiles of the response sizes of a site during the last interval. By default, none.
+	 *
+	 * @param site the site, like /api.
+	 * @return the percentiles of the sizes, in bytes.
+	 */
+	default Percentiles getSizePercentiles(String site) {
+		return Percentiles.NONE;
+	}
+
+	/**
+	 * Calculates the percentiles of the request times, when the log format has them. By default, none.
+	 *
+	 * @return the percentiles of the request times, in microseconds.
+	 */
+	default Percentiles getRequestTimePercentiles() {
+		return Percentiles.NONE;
+	}
+
+	/**
+	 * Calculates the percentiles of the request times of a sliding window.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the percentiles of the request times, in microseconds.
+	 */
+	default Percentiles getRequestTimePercentiles(int windowSeconds) {
+		return getRequestTimePercentiles();
+	}
+
+	/**
+	 * Calculates the percentiles of the request times of a site during the last interval. By default, none.
+	 *
+	 * @param site the site, like /api.
+	 * @return the percentiles of the request times, in microseconds.
+	 */
+	default Percentiles getRequestTimePercentiles(String site) {
+		return Percentiles.NONE;
+	}
+
+	/**
+	 * Estimates the distinct clients. By default, none.
+	 *
+	 * @return the distinct clients.
+	 */
+	default long getDistinctClients() {
+		return 0L;
+	}
+
+	/**
+	 * Estimates the distinct clients of a sliding window.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the distinct clients.
+	 */
+	default long getDistinctClients(int windowSeconds) {
+		return getDistinctClients();
+	}
+
+	/**
+	 * Estimates the distinct paths, without their query strings. By default, none.
+	 *
+	 * @return the distinct paths.
+	 */
+	default long getDistinctPaths() {
+		return 0L;
+	}
+
+	/**
+	 * Estimates the distinct paths of a sliding window.
+	 *
+	 * @param windowSeconds the length of the window.
+	 * @return the distinct paths.
+	 */
+	default long getDistinctPaths(int windowSeconds) {
+		return getDistinctPaths();
+	}
+
+	/**
+	 * Estimates the distinct paths of a site during the last interval. By default, none.
+	 *
+	 * @param site the site, like /api.
+	 * @return the distinct paths.
+	 */
+	default long getDistinctPaths(String site) {
+		return 0L;
+	}
+
+	/**
+	 * Gets how many log lines were counted late, after the metrics of their second had been calculated. By default,
+	 * none.
+	 *
+	 * @return the late lines.
+	 */
+	default long getLateEvents() {
+		return 0L;
+	}
+
+	/**
+	 * Gets how many log lines weren't counted, as they were too old or too far in the future. By default, none.
+	 *
+	 * @return the dropped lines.
+	 */
+	default long getDroppedEvents() {
+		return 0L;
+	}
+
+	/**
+	 * Gets how many intervals were never reported, as their seconds had left the windows by the time they were closed.
+	 * By default, none.
+	 *
+	 * @return the skipped intervals.
+	 */
+	default long getSkippedIntervals() {
+		return 0L;
+	}
+
+	/**
+	 * Gets the hits and bytes of the groups of requests sharing the values of some dimensions, like every status class
+	 * of every site. By default, none.
+	 *
+	 * @param dimensions the dimensions.
+	 * @return the groups, from the one with the most hits.
+	 */
+	default List<Group> getGroups(Set<Dimension> dimensions) {
+		return List.of();
+	}
+
+	/**
+	 * Gets the hits and bytes of the groups of requests of a sliding window sharing the values of some dimensions.
+	 *
+	 * @param dimensions    the dimensions.
+	 * @param windowSeconds the length of the window.
+	 * @return the groups, from the one with the most hits.
+	 */
+	default List<Group> getGroups(Set<Dimension> dimensions, int windowSeconds) {
+		return getGroups(dimensions);
+	}
+
 	/**
 	 * Exposes the metrics through the exporter.
 	 *
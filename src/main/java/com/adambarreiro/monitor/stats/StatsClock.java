@@ -0,0 +1,154 @@
+package com.adambarreiro.monitor.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The clock of the sliding windows of some stats: the wall clock or, in the {@link TimeMode#EVENT} mode, the latest
+ * second of the log lines seen. Several stats can share it, like the shards of a {@link ShardedStats}, so all of them
+ * roll their seconds and close their intervals at the same time, no matter which lines each one reads.
+ *
+ * In the event mode, only the lines that move the clock write it and read the wall clock, so the threads adding lines
+ * of the same second don't contend. When no line moves it for longer than the allowed lateness, it goes on with the
+ * wall clock, so the windows of a quiet log empty instead of freezing on its last lines. It's thread safe.
+ */
+final class StatsClock {
+
+	private static final int PROCESSING_LIVE_SECONDS = 2;
+	private static final long NO_EVENT = 0L;
+
+	private final TimeMode timeMode;
+	private final int liveSeconds;
+	private final AtomicLong maxEventSecond;
+
+	private volatile long movedAtSecond;
+	private volatile long firstEventSecond;
+	private volatile long skippedIntervals;
+	private long nextIntervalEnd;
+
+	private StatsClock(TimeMode timeMode, int liveSeconds) {
+		this.timeMode = timeMode;
+		this.liveSeconds = liveSeconds;
+		this.maxEventSecond = new AtomicLong(NO_EVENT);
+		this.nextIntervalEnd = Long.MIN_VALUE;
+	}
+
+	/**
+	 * Creates the clock of the given configuration.
+	 *
+	 * @param config the time mode and the allowed lateness.
+	 * @return the clock.
+	 */
+	static StatsClock of(StatsConfig config) {
+		return config.getTimeMode() == TimeMode.EVENT
+				? new StatsClock(TimeMode.EVENT, config.getAllowedLatenessSeconds())
+				: new StatsClock(TimeMode.PROCESSING, PROCESSING_LIVE_SECONDS);
+	}
+
+	TimeMode getTimeMode() {
+		return this.timeMode;
+	}
+
+	/**
+	 * Gets how many of the last seconds are not rolled into the windows yet, waiting for their late lines: the allowed
+	 * lateness in the event mode.
+	 *
+	 * @return the live seconds.
+	 */
+	int getLiveSeconds() {
+		return this.liveSeconds;
+	}
+
+	/**
+	 * Gets the current epoch second. If no line has moved the clock of the event mode for longer than the allowed
+	 * lateness, it goes on with the wall clock from then on.
+	 *
+	 * @return the current epoch second.
+	 */
+	long now() {
+		if (this.timeMode != TimeMode.EVENT) {
+			return System.currentTimeMillis() / 1000;
+		}
+		long now = this.maxEventSecond.get();
+		long idleSeconds = System.currentTimeMillis() / 1000 - this.movedAtSecond - this.liveSeconds;
+		if (now == NO_EVENT || idleSeconds <= 0) {
+			return now;
+		}
+		if (this.maxEventSecond.compareAndSet(now, now + idleSeconds)) {
+			// as if it had been moved by a line of the allowed lateness ago, so it keeps pace with the wall clock
+			this.movedAtSecond += idleSeconds;
+			return now + idleSeconds;
+		}
+		return this.maxEventSecond.get();
+	}
+
+	/**
+	 * Moves the clock of the event mode forward to the second of a log line, if it's the latest one.
+	 *
+	 * @param second the epoch second of a log line.
+	 * @return the current epoch second.
+	 */
+	long advance(long second) {
+		if (this.timeMode != TimeMode.EVENT) {
+			return System.currentTimeMillis() / 1000;
+		}
+		long max = this.maxEventSecond.get();
+		while (second > max) {
+			if (this.maxEventSecond.compareAndSet(max, second)) {
+				this.movedAtSecond = System.currentTimeMillis() / 1000;
+				if (max == NO_EVENT) {
+					this.firstEventSecond = second;
+				}
+				return second;
+			}
+			max = this.maxEventSecond.get();
+		}
+		return max;
+	}
+
+	/**
+	 * Closes the intervals of the event mode, aligned to the epoch, that the clock has passed by the allowed lateness
+	 * since the last call, from the first line seen. The intervals older than the longest window are skipped, as their
+	 * seconds aren't kept anymore, and counted. Only a single thread closes the intervals of a clock.
+	 *
+	 * @param intervalSeconds  the length of the intervals.
+	 * @param maxWindowSeconds the length of the longest window.
+	 * @return the epoch second right after every closed interval, from the oldest one.
+	 */
+	long[] closeIntervals(int intervalSeconds, int maxWindowSeconds) {
+		long now = now();
+		if (this.timeMode != TimeMode.EVENT || now == NO_EVENT) {
+			return new long[0];
+		}
+		long lastEnd = Math.floorDiv(now - this.liveSeconds + 1, intervalSeconds) * intervalSeconds;
+		long first = Math.max(this.nextIntervalEnd, intervalEndOf(this.firstEventSecond, intervalSeconds));
+		long end = Math.max(first, intervalEndOf(now - maxWindowSeconds + intervalSeconds, intervalSeconds));
+		if (end > first) {
+			this.skippedIntervals += (Math.min(end, lastEnd + intervalSeconds) - first) / intervalSeconds;
+		}
+		long[] ends = new long[(int) Math.max(0, (lastEnd - end) / intervalSeconds + 1)];
+		for (int i = 0; i < ends.length; i++) {
+			ends[i] = end + (long) i * intervalSeconds;
+		}
+		this.nextIntervalEnd = Math.max(end, lastEnd + intervalSeconds);
+		return ends;
+	}
+
+	/**
+	 * Gets how many intervals were skipped, as the clock had passed them by more than the longest window by the time
+	 * they were closed, since the start.
+	 *
+	 * @return the skipped intervals.
+	 */
+	long getSkippedIntervals() {
+		return this.skippedIntervals;
+	}
+
+	/**
+	 * Gets the end of the interval, aligned to the epoch, of a second.
+	 *
+	 * @return the epoch second right after its interval.
+	 */
+	private static long intervalEndOf(long second, int intervalSeconds) {
+		return Math.floorDiv(second, intervalSeconds) * intervalSeconds + intervalSeconds;
+	}
+}
@@ -0,0 +1,124 @@
+package com.adambarreiro.monitor.stats;
+
+import com.adambarreiro.monitor.stats.vo.Dimension;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Configuration for the {@link ScheduledStats}: how the top sites are tracked, how the requests are grouped and
+ * which clock the sliding windows follow.
+ */
+public class StatsConfig {
+
+	public static final int DEFAULT_TOP_SITES = 3;
+	public static final double DEFAULT_TOP_SITES_ERROR = 0.01;
+	public static final int DEFAULT_ALLOWED_LATENESS_SECONDS = 2;
+
+	private final int topSites;
+	private final double topSitesError;
+	private final Set<Dimension> groupBy;
+	private final TimeMode timeMode;
+	private final int allowedLatenessSeconds;
+
+	private StatsConfig(Builder builder) {
+		this.topSites = builder.topSites;
+		this.topSitesError = builder.topSitesError;
+		this.groupBy = builder.groupBy;
+		this.timeMode = builder.timeMode;
+		this.allowedLatenessSeconds = builder.allowedLatenessSeconds;
+	}
+
+	/**
+	 * Gets the default configuration.
+	 *
+	 * @return the default configuration.
+	 */
+	public static StatsConfig defaults() {
+		return builder().build();
+	}
+
+	/**
+	 * Starts a configuration with the default values.
+	 *
+	 * @return a builder with the default values.
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public int getTopSites() {
+		return this.topSites;
+	}
+
+	public double getTopSitesError() {
+		return this.topSitesError;
+	}
+
+	public Set<Dimension> getGroupBy() {
+		return this.groupBy;
+	}
+
+	public TimeMode getTimeMode() {
+		return this.timeMode;
+	}
+
+	/**
+	 * Gets how many seconds a second is kept open for its late lines, before it's rolled into the sliding windows.
+	 *
+	 * @return the allowed lateness.
+	 */
+	public int getAllowedLatenessSeconds() {
+		return this.allowedLatenessSeconds;
+	}
+
+	/**
+	 * Builds a {@link StatsConfig}, starting from the default values.
+	 */
+	public static final class Builder {
+
+		private int topSites = DEFAULT_TOP_SITES;
+		private double topSitesError = DEFAULT_TOP_SITES_ERROR;
+		private Set<Dimension> groupBy = EnumSet.allOf(Dimension.class);
+		private TimeMode timeMode = TimeMode.PROCESSING;
+		private int allowedLatenessSeconds = DEFAULT_ALLOWED_LATENESS_SECONDS;
+
+		private Builder() {
+		}
+
+		public Builder topSites(int topSites) {
+			this.topSites = topSites;
+			return this;
+		}
+
+		public Builder topSitesError(double topSitesError) {
+			this.topSitesError = topSitesError;
+			return this;
+		}
+
+		public Builder groupBy(Set<Dimension> groupBy) {
+			this.groupBy = groupBy;
+			return this;
+		}
+
+		public Builder timeMode(TimeMode timeMode) {
+			this.timeMode = timeMode;
+			return this;
+		}
+
+		public Builder allowedLatenessSeconds(int allowedLatenessSeconds) {
+			this.allowedLatenessSeconds = allowedLatenessSeconds;
+			return this;
+		}
+
+		public StatsConfig build() {
+			if (this.topSites <= 0 || this.topSitesError <= 0 || this.topSitesError > 1) {
+				throw new IllegalArgumentException("Invalid top sites: " + this.topSites + " with an error of " + this.topSitesError);
+			}
+			if (this.allowedLatenessSeconds <= 0) {
+				throw new IllegalArgumentException("The allowed lateness must be positive: " + this.allowedLatenessSeconds);
+			}
+			return new StatsConfig(this);
+		}
+	}
+}
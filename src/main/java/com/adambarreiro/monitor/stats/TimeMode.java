@@ -0,0 +1,29 @@
+package com.adambarreiro.monitor.stats;
+
+/**
+ * The clocks the sliding windows of the {@link ScheduledStats} can follow.
+ */
+public enum TimeMode {
+
+	/**
+	 * The wall clock: a window holds the log lines whose timestamp falls in its last seconds, so the lines of a
+	 * lagging tail or a replay, older than the longest window, are dropped.
+	 */
+	PROCESSING,
+
+	/**
+	 * The timestamps of the log lines: the clock is the latest timestamp seen, so a replay or the backlog after an
+	 * outage fills the windows with its own history, as it happened.
+	 */
+	EVENT;
+
+	/**
+	 * Gets the time mode with the given name, ignoring the case.
+	 *
+	 * @param name the name of the time mode.
+	 * @return the time mode.
+	 */
+	public static TimeMode of(String name) {
+		return TimeMode.valueOf(name.trim().toUpperCase());
+	}
+}
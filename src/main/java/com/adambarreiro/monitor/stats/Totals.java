@@ -0,0 +1,216 @@
+package com.adambarreiro.monitor.stats;
+
+import com.adambarreiro.monitor.stats.vo.Percentiles;
+import com.adambarreiro.monitor.stats.vo.TopSites;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The sum of the counters of several seconds, like the ones of a sliding window. It's not thread safe.
+ *
+ * The hits and bytes of the sites come from the {@link SpaceSaving} summaries of the seconds, so they're estimations:
+ * every second may overestimate a site, or miss it, by as much as its lightest tracked site. The sum of those errors
+ * is kept along with the sites, as the error bound of the estimations. The sizes and request times are summed as
+ * histograms, so their percentiles can be read too, and the hits and bytes of every group of requests are kept by
+ * their packed keys.
+ */
+final class Totals {
+
+	private long requests;
+	private long errors;
+	private long bytes;
+	private long siteHitsError;
+	private long siteBytesError;
+	private final Map<String, long[]> siteHits;
+	private final Map<String, long[]> siteBytes;
+	private final Map<String, long[]> sourceHits;
+	private final LogLinearHistogram sizes;
+	private final LogLinearHistogram requestTimes;
+	private final GroupCounters groups;
+
+	Totals() {
+		this.siteHits = new HashMap<>();
+		this.siteBytes = new HashMap<>();
+		this.sourceHits = new HashMap<>();
+		this.sizes = new LogLinearHistogram();
+		this.requestTimes = new LogLinearHistogram();
+		this.groups = new GroupCounters();
+	}
+
+	/**
+	 * Copies other totals.
+	 *
+	 * @param totals the totals to copy.
+	 */
+	Totals(Totals totals) {
+		this();
+		add(totals, 1);
+	}
+
+	/**
+	 * Counts a log line.
+	 *
+	 * @param site        the site of the request.
+	 * @param source      where the log line comes from.
+	 * @param error       whether the request failed.
+	 * @param size        the transmitted bytes.
+	 * @param requestTime the request time in microseconds, negative if unknown.
+	 * @param group       the packed key of the group of the request.
+	 * @param weight      how many log lines it stands for.
+	 */
+	void add(String site, String source, boolean error, int size, long requestTime, long group, int weight) {
+		this.requests += weight;
+		if (error) {
+			this.errors += weight;
+		}
+		this.bytes += (long) size * weight;
+		add(this.siteHits, site, weight);
+		add(this.siteBytes, site, (long) size * weight);
+		add(this.sourceHits, source, weight);
+		this.sizes.record(size, weight);
+		this.requestTimes.record(requestTime, weight);
+		this.groups.add(group, weight, (long) size * weight);
+	}
+
+	/**
+	 * Adds the current counters of a bucket.
+	 *
+	 * @param bucket the bucket.
+	 */
+	void add(SecondBucket bucket) {
+		this.requests += bucket.getRequests();
+		this.errors += bucket.getErrors();
+		this.bytes += bucket.getBytes();
+		this.siteHitsError += bucket.getSiteHits().getMaxError();
+		this.siteBytesError += bucket.getSiteBytes().getMaxError();
+		bucket.getSiteHits().forEach((site, hits) -> add(this.siteHits, site, hits));
+		bucket.getSiteBytes().forEach((site, bytes) -> add(this.siteBytes, site, bytes));
+		bucket.getSourceHits().forEach((source, hits) -> add(this.sourceHits, source, hits.sum()));
+		this.sizes.add(bucket.getSizes(), 1);
+		this.requestTimes.add(bucket.getRequestTimes(), 1);
+		this.groups.add(bucket.getGroups(), 1);
+	}
+
+	/**
+	 * Adds or, with a negative sign, subtracts other totals. The keys left without hits are removed.
+	 *
+	 * @param totals the totals.
+	 * @param sign   1 to add them, -1 to subtract them.
+	 */
+	void add(Totals totals, int sign) {
+		this.requests += sign * totals.requests;
+		this.errors += sign * totals.errors;
+		this.bytes += sign * totals.bytes;
+		this.siteHitsError += sign * totals.siteHitsError;
+		this.siteBytesError += sign * totals.siteBytesError;
+		merge(this.siteHits, totals.siteHits, sign);
+		merge(this.siteBytes, totals.siteBytes, sign);
+		merge(this.sourceHits, totals.sourceHits, sign);
+		this.sizes.add(totals.sizes, sign);
+		this.requestTimes.add(totals.requestTimes, sign);
+		this.groups.add(totals.groups, sign);
+	}
+
+	/**
+	 * Gets the heaviest sites by hits and by bytes.
+	 *
+	 * @param count how many sites.
+	 * @return the top sites, along with the error bounds of their hits and bytes.
+	 */
+	TopSites getTopSites(int count) {
+		return new TopSites(top(this.siteHits, count), top(this.siteBytes, count), this.siteHitsError, this.siteBytesError);
+	}
+
+	long getRequests() {
+		return this.requests;
+	}
+
+	long getErrors() {
+		return this.errors;
+	}
+
+	long getBytes() {
+		return this.bytes;
+	}
+
+	Map<String, long[]> getSiteHits() {
+		return this.siteHits;
+	}
+
+	Map<String, long[]> getSiteBytes() {
+		return this.siteBytes;
+	}
+
+	long getSiteHitsError() {
+		return this.siteHitsError;
+	}
+
+	long getSiteBytesError() {
+		return this.siteBytesError;
+	}
+
+	Map<String, long[]> getSourceHits() {
+		return this.sourceHits;
+	}
+
+	LogLinearHistogram getSizes() {
+		return this.sizes;
+	}
+
+	LogLinearHistogram getRequestTimes() {
+		return this.requestTimes;
+	}
+
+	Percentiles getSizePercentiles() {
+		return this.sizes.getPercentiles();
+	}
+
+	Percentiles getRequestTimePercentiles() {
+		return this.requestTimes.getPercentiles();
+	}
+
+	GroupCounters getGroups() {
+		return this.groups;
+	}
+
+	private static void add(Map<String, long[]> counts, String key, long count) {
+		if (count > 0) {
+			counts.computeIfAbsent(key, k -> new long[1])[0] += count;
+		}
+	}
+
+	private static void merge(Map<String, long[]> counts, Map<String, long[]> other, int sign) {
+		other.forEach((key, otherCount) -> {
+			long[] count = counts.computeIfAbsent(key, k -> new long[1]);
+			count[0] += sign * otherCount[0];
+			if (count[0] == 0) {
+				counts.remove(key);
+			}
+		});
+	}
+
+	/**
+	 * Selects the heaviest keys with a bounded heap, instead of sorting all of them.
+	 *
+	 * @return the heaviest keys, from the heaviest to the lightest.
+	 */
+	private static Map<String, Long> top(Map<String, long[]> counts, int count) {
+		Comparator<Map.Entry<String, long[]>> byCount = Comparator.comparingLong(entry -> entry.getValue()[0]);
+		PriorityQueue<Map.Entry<String, long[]>> heaviest = new PriorityQueue<>(count + 1, byCount);
+		for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+			heaviest.add(entry);
+			if (heaviest.size() > count) {
+				heaviest.poll();
+			}
+		}
+		Map<String, Long> top = new LinkedHashMap<>();
+		heaviest.stream()
+				.sorted(byCount.reversed())
+				.forEach(entry -> top.put(entry.getKey(), entry.getValue()[0]));
+		return top;
+	}
+}
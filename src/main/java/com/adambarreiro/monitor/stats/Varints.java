@@ -0,0 +1,68 @@
+package com.adambarreiro.monitor.stats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Variable-length encoding of <code>long</code> values, 7 bits per byte, as protocol buffers do. Hence, the small
+ * values, like most counts and the gaps between sorted indexes, take a byte or two instead of eight.
+ */
+final class Varints {
+
+	private static final int MAX_BYTES = 10;
+
+	private Varints() {
+	}
+
+	/**
+	 * Writes a value. Negative ones are valid too, but take ten bytes.
+	 *
+	 * @param out   where the value is written.
+	 * @param value the value.
+	 * @throws IOException if it cannot be written.
+	 */
+	static void write(DataOutput out, long value) throws IOException {
+		long rest = value;
+		while ((rest & ~0x7FL) != 0) {
+			out.writeByte((int) ((rest & 0x7F) | 0x80));
+			rest >>>= 7;
+		}
+		out.writeByte((int) rest);
+	}
+
+	/**
+	 * Reads a value.
+	 *
+	 * @param in where the value is read from.
+	 * @return the value.
+	 * @throws IOException if it cannot be read, or it's longer than a <code>long</code>.
+	 */
+	static long read(DataInput in) throws IOException {
+		long value = 0L;
+		for (int i = 0; i < MAX_BYTES; i++) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << (7 * i);
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable-length value");
+	}
+
+	/**
+	 * Reads a value that must be a count between 0 and the given maximum, like the size of a collection.
+	 *
+	 * @param in  where the value is read from.
+	 * @param max the maximum count.
+	 * @return the count.
+	 * @throws IOException if it cannot be read or it's out of bounds.
+	 */
+	static int readCount(DataInput in, int max) throws IOException {
+		long count = read(in);
+		if (count < 0 || count > max) {
+			throw new IOException("Count out of bounds: " + count);
+		}
+		return (int) count;
+	}
+}
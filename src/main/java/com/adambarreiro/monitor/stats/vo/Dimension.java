@@ -0,0 +1,50 @@
+package com.adambarreiro.monitor.stats.vo;
+
+import java.util.Arrays;
+
+/**
+ * The dimensions the requests can be grouped by.
+ */
+public enum Dimension {
+
+	/**
+	 * The class of the status code, like 2xx or 5xx.
+	 */
+	STATUS_CLASS("statusClass"),
+	/**
+	 * The HTTP verb, like GET.
+	 */
+	VERB("verb"),
+	/**
+	 * The site, that is, the first level of the path like /api.
+	 */
+	SITE("site"),
+	/**
+	 * Where the log line comes from, like the observed file.
+	 */
+	SOURCE("source");
+
+	private final String name;
+
+	Dimension(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Gets the dimension with the given name.
+	 *
+	 * @param name the name, like statusClass.
+	 * @return the dimension.
+	 * @throws IllegalArgumentException if there's no such dimension.
+	 */
+	public static Dimension of(String name) {
+		return Arrays.stream(values())
+				.filter(dimension -> dimension.name.equals(name))
+				.findFirst()
+				.orElseThrow(() -> new IllegalArgumentException("There's no dimension called " + name));
+	}
+
+	public String getName() {
+		return name;
+	}
+}
@@ -0,0 +1,55 @@
+package com.adambarreiro.monitor.stats.vo;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * The hits and bytes of the requests sharing the same values of some dimensions, like the 5xx GET requests of /api.
+ */
+public class Group {
+
+	private final Map<Dimension, String> values;
+	private final long hits;
+	private final long bytes;
+
+	public Group(Map<Dimension, String> values, long hits, long bytes) {
+		this.values = Collections.unmodifiableMap(values);
+		this.hits = hits;
+		this.bytes = bytes;
+	}
+
+	/**
+	 * Gets the value of every grouped dimension.
+	 *
+	 * @return the values of the group.
+	 */
+	public Map<Dimension, String> getValues() {
+		return values;
+	}
+
+	/**
+	 * Gets the value of a dimension.
+	 *
+	 * @param dimension the dimension.
+	 * @return the value, or null if the requests weren't grouped by it.
+	 */
+	public String getValue(Dimension dimension) {
+		return values.get(dimension);
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	@Override
+	public String toString() {
+		return values.entrySet().stream()
+				.map(value -> value.getKey().getName() + "=" + value.getValue())
+				.collect(Collectors.joining(" "));
+	}
+}
@@ -0,0 +1,80 @@
+package com.adambarreiro.monitor.stats.vo;
+
+/**
+ * The most watched percentiles of some values, like the response sizes or the request times. They're estimations, as
+ * the values are counted in buckets: every percentile is within about 3% of the true one.
+ */
+public class Percentiles {
+
+	public static final Percentiles NONE = new Percentiles(0L, 0L, 0L, 0L, 0L, 0L);
+
+	private final long count;
+	private final long p50;
+	private final long p90;
+	private final long p99;
+	private final long p999;
+	private final long max;
+
+	public Percentiles(long count, long p50, long p90, long p99, long p999, long max) {
+		this.count = count;
+		this.p50 = p50;
+		this.p90 = p90;
+		this.p99 = p99;
+		this.p999 = p999;
+		this.max = max;
+	}
+
+	/**
+	 * Gets how many values were counted.
+	 *
+	 * @return the number of values.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the median.
+	 *
+	 * @return the 50th percentile.
+	 */
+	public long getP50() {
+		return p50;
+	}
+
+	/**
+	 * Gets the 90th percentile.
+	 *
+	 * @return the 90th percentile.
+	 */
+	public long getP90() {
+		return p90;
+	}
+
+	/**
+	 * Gets the 99th percentile.
+	 *
+	 * @return the 99th percentile.
+	 */
+	public long getP99() {
+		return p99;
+	}
+
+	/**
+	 * Gets the 99.9th percentile.
+	 *
+	 * @return the 99.9th percentile.
+	 */
+	public long getP999() {
+		return p999;
+	}
+
+	/**
+	 * Gets the largest value.
+	 *
+	 * @return the maximum.
+	 */
+	public long getMax() {
+		return max;
+	}
+}
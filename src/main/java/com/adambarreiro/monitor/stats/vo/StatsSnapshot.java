@@ -0,0 +1,279 @@
+package com.adambarreiro.monitor.stats.vo;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The metrics of an interval, calculated at the same time. It's immutable, so it can be published to any number of
+ * readers, like the exporters and the alerts, which always see the metrics of the same interval without locking.
+ */
+public class StatsSnapshot {
+
+	public static final StatsSnapshot NONE = builder().build();
+
+	private final Instant timestamp;
+	private final float requestsRate;
+	private final float errorRate;
+	private final long totalTransmittedData;
+	private final TopSites topSites;
+	private final Map<String, Integer> topSiteHits;
+	private final Map<String, Integer> sourceHits;
+	private final Percentiles sizePercentiles;
+	private final Percentiles requestTimePercentiles;
+	private final long distinctClients;
+	private final long distinctPaths;
+	private final List<Group> groups;
+	private final long lateEvents;
+	private final long droppedEvents;
+	private final long skippedIntervals;
+
+	private StatsSnapshot(Builder builder) {
+		this.timestamp = builder.timestamp;
+		this.requestsRate = builder.requestsRate;
+		this.errorRate = builder.errorRate;
+		this.totalTransmittedData = builder.totalTransmittedData;
+		this.topSites = builder.topSites;
+		Map<String, Integer> topSiteHits = new LinkedHashMap<>();
+		this.topSites.getByHits().forEach((site, hits) -> topSiteHits.put(site, hits.intValue()));
+		this.topSiteHits = Collections.unmodifiableMap(topSiteHits);
+		this.sourceHits = Collections.unmodifiableMap(new LinkedHashMap<>(builder.sourceHits));
+		this.sizePercentiles = builder.sizePercentiles;
+		this.requestTimePercentiles = builder.requestTimePercentiles;
+		this.distinctClients = builder.distinctClients;
+		this.distinctPaths = builder.distinctPaths;
+		this.groups = List.copyOf(builder.groups);
+		this.lateEvents = builder.lateEvents;
+		this.droppedEvents = builder.droppedEvents;
+		this.skippedIntervals = builder.skippedIntervals;
+	}
+
+	/**
+	 * Starts an empty snapshot.
+	 *
+	 * @return a builder without metrics.
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Gets when the metrics were calculated.
+	 *
+	 * @return the time of the snapshot.
+	 */
+	public Instant getTimestamp() {
+		return this.timestamp;
+	}
+
+	public float getRequestsRate() {
+		return this.requestsRate;
+	}
+
+	public float getErrorRate() {
+		return this.errorRate;
+	}
+
+	public long getTotalTransmittedData() {
+		return this.totalTransmittedData;
+	}
+
+	public TopSites getTopSites() {
+		return this.topSites;
+	}
+
+	/**
+	 * Gets the hits of the top sites, from the most visited one.
+	 *
+	 * @return the top visited sites.
+	 */
+	public Map<String, Integer> getTopSiteHits() {
+		return this.topSiteHits;
+	}
+
+	public Map<String, Integer> getSourceHits() {
+		return this.sourceHits;
+	}
+
+	public Percentiles getSizePercentiles() {
+		return this.sizePercentiles;
+	}
+
+	public Percentiles getRequestTimePercentiles() {
+		return this.requestTimePercentiles;
+	}
+
+	public long getDistinctClients() {
+		return this.distinctClients;
+	}
+
+	public long getDistinctPaths() {
+		return this.distinctPaths;
+	}
+
+	/**
+	 * Gets how many log lines were counted after their second had been rolled into the windows, since the start.
+	 *
+	 * @return the late lines.
+	 */
+	public long getLateEvents() {
+		return this.lateEvents;
+	}
+
+	/**
+	 * Gets how many log lines weren't counted, as they were out of the windows, since the start.
+	 *
+	 * @return the dropped lines.
+	 */
+	public long getDroppedEvents() {
+		return this.droppedEvents;
+	}
+
+	/**
+	 * Gets how many intervals were never reported, as their seconds were out of the windows by the time they were
+	 * closed, since the start.
+	 *
+	 * @return the skipped intervals.
+	 */
+	public long getSkippedIntervals() {
+		return this.skippedIntervals;
+	}
+
+	/**
+	 * Gets the groups of requests by every grouped dimension.
+	 *
+	 * @return the groups, from the one with the most hits.
+	 */
+	public List<Group> getGroups() {
+		return this.groups;
+	}
+
+	/**
+	 * Gets the groups of requests by some of the grouped dimensions, merging the ones that share their values.
+	 *
+	 * @param dimensions the dimensions.
+	 * @return the groups, from the one with the most hits.
+	 */
+	public List<Group> getGroups(Set<Dimension> dimensions) {
+		Map<Map<Dimension, String>, long[]> merged = new LinkedHashMap<>();
+		for (Group group : this.groups) {
+			Map<Dimension, String> values = new EnumMap<>(Dimension.class);
+			group.getValues().forEach((dimension, value) -> {
+				if (dimensions.contains(dimension)) {
+					values.put(dimension, value);
+				}
+			});
+			long[] counts = merged.computeIfAbsent(values, key -> new long[2]);
+			counts[0] += group.getHits();
+			counts[1] += group.getBytes();
+		}
+		List<Group> groups = new ArrayList<>();
+		merged.forEach((values, counts) -> groups.add(new Group(values, counts[0], counts[1])));
+		groups.sort(Comparator.comparingLong(Group::getHits).reversed());
+		return groups;
+	}
+
+	/**
+	 * Builds a {@link StatsSnapshot}, starting without metrics.
+	 */
+	public static final class Builder {
+
+		private Instant timestamp = Instant.EPOCH;
+		private float requestsRate;
+		private float errorRate;
+		private long totalTransmittedData;
+		private TopSites topSites = TopSites.NONE;
+		private Map<String, Integer> sourceHits = Map.of();
+		private Percentiles sizePercentiles = Percentiles.NONE;
+		private Percentiles requestTimePercentiles = Percentiles.NONE;
+		private long distinctClients;
+		private long distinctPaths;
+		private List<Group> groups = List.of();
+		private long lateEvents;
+		private long droppedEvents;
+		private long skippedIntervals;
+
+		private Builder() {
+		}
+
+		public Builder timestamp(Instant timestamp) {
+			this.timestamp = timestamp;
+			return this;
+		}
+
+		public Builder requestsRate(float requestsRate) {
+			this.requestsRate = requestsRate;
+			return this;
+		}
+
+		public Builder errorRate(float errorRate) {
+			this.errorRate = errorRate;
+			return this;
+		}
+
+		public Builder totalTransmittedData(long totalTransmittedData) {
+			this.totalTransmittedData = totalTransmittedData;
+			return this;
+		}
+
+		public Builder topSites(TopSites topSites) {
+			this.topSites = topSites;
+			return this;
+		}
+
+		public Builder sourceHits(Map<String, Integer> sourceHits) {
+			this.sourceHits = sourceHits;
+			return this;
+		}
+
+		public Builder sizePercentiles(Percentiles sizePercentiles) {
+			this.sizePercentiles = sizePercentiles;
+			return this;
+		}
+
+		public Builder requestTimePercentiles(Percentiles requestTimePercentiles) {
+			this.requestTimePercentiles = requestTimePercentiles;
+			return this;
+		}
+
+		public Builder distinctClients(long distinctClients) {
+			this.distinctClients = distinctClients;
+			return this;
+		}
+
+		public Builder distinctPaths(long distinctPaths) {
+			this.distinctPaths = distinctPaths;
+			return this;
+		}
+
+		public Builder groups(List<Group> groups) {
+			this.groups = groups;
+			return this;
+		}
+
+		public Builder lateEvents(long lateEvents) {
+			this.lateEvents = lateEvents;
+			return this;
+		}
+
+		public Builder droppedEvents(long droppedEvents) {
+			this.droppedEvents = droppedEvents;
+			return this;
+		}
+
+		public Builder skippedIntervals(long skippedIntervals) {
+			this.skippedIntervals = skippedIntervals;
+			return this;
+		}
+
+		public StatsSnapshot build() {
+			return new StatsSnapshot(this);
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package com.adambarreiro.monitor.stats.vo;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The most visited sites, by hits and by bytes. The hits and bytes are estimations, as the sites are tracked in
+ * constant memory: the true value of every site is within the error bound of the estimated one.
+ */
+public class TopSites {
+
+	public static final TopSites NONE = new TopSites(Map.of(), Map.of(), 0L, 0L);
+
+	private final Map<String, Long> byHits;
+	private final Map<String, Long> byBytes;
+	private final long hitsError;
+	private final long bytesError;
+
+	public TopSites(Map<String, Long> byHits, Map<String, Long> byBytes, long hitsError, long bytesError) {
+		this.byHits = Collections.unmodifiableMap(byHits);
+		this.byBytes = Collections.unmodifiableMap(byBytes);
+		this.hitsError = hitsError;
+		this.bytesError = bytesError;
+	}
+
+	/**
+	 * Gets the sites with the most hits, from the most visited one.
+	 *
+	 * @return the hits of every top site.
+	 */
+	public Map<String, Long> getByHits() {
+		return byHits;
+	}
+
+	/**
+	 * Gets the sites with the most transmitted bytes, from the heaviest one.
+	 *
+	 * @return the bytes of every top site.
+	 */
+	public Map<String, Long> getByBytes() {
+		return byBytes;
+	}
+
+	/**
+	 * Gets the maximum difference between the estimated hits of a site and the true ones.
+	 *
+	 * @return the error bound of the hits.
+	 */
+	public long getHitsError() {
+		return hitsError;
+	}
+
+	/**
+	 * Gets the maximum difference between the estimated bytes of a site and the true ones.
+	 *
+	 * @return the error bound of the bytes.
+	 */
+	public long getBytesError() {
+		return bytesError;
+	}
+}
@@ -0,0 +1,42 @@
+package com.adambarreiro.monitor.store;
+
+import com.adambarreiro.monitor.stats.Aggregate;
+import com.adambarreiro.monitor.stats.vo.StatsSnapshot;
+
+import java.time.Instant;
+
+/**
+ * The aggregate of a period kept in a store, like an interval or an hour, stamped with the end of the period.
+ */
+public final class AggregateRecord {
+
+	private final Instant timestamp;
+	private final Aggregate aggregate;
+
+	/**
+	 * @param timestamp the end of the period.
+	 * @param aggregate everything the period counted.
+	 */
+	public AggregateRecord(Instant timestamp, Aggregate aggregate) {
+		this.timestamp = timestamp;
+		this.aggregate = aggregate;
+	}
+
+	public Instant getTimestamp() {
+		return timestamp;
+	}
+
+	public Aggregate getAggregate() {
+		return aggregate;
+	}
+
+	/**
+	 * Calculates the metrics of the period.
+	 *
+	 * @param topSitesCount how many top sites.
+	 * @return the snapshot of the period, stamped with its end.
+	 */
+	public StatsSnapshot toSnapshot(int topSitesCount) {
+		return this.aggregate.toSnapshot(topSitesCount, this.timestamp);
+	}
+}
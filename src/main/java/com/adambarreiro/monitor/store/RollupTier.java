@@ -0,0 +1,32 @@
+package com.adambarreiro.monitor.store;
+
+/**
+ * A resolution the metrics are kept at, like an aggregate per minute, and for how long.
+ */
+public class RollupTier {
+
+	private final int resolutionSeconds;
+	private final long retentionSeconds;
+
+	/**
+	 * @param resolutionSeconds the period of the aggregates of the tier.
+	 * @param retentionSeconds  how long they're kept.
+	 * @throws IllegalArgumentException if a period is not positive.
+	 */
+	public RollupTier(int resolutionSeconds, long retentionSeconds) {
+		if (resolutionSeconds <= 0 || retentionSeconds <= 0) {
+			throw new IllegalArgumentException("Invalid rollup tier: a resolution of " + resolutionSeconds
+					+ "s kept for " + retentionSeconds + "s");
+		}
+		this.resolutionSeconds = resolutionSeconds;
+		this.retentionSeconds = retentionSeconds;
+	}
+
+	public int getResolutionSeconds() {
+		return resolutionSeconds;
+	}
+
+	public long getRetentionSeconds() {
+		return retentionSeconds;
+	}
+}
@@ -0,0 +1,252 @@
+package com.adambarreiro.monitor.store;
+
+import com.adambarreiro.monitor.stats.Aggregate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Aggregates of consecutive periods, in time order, named after the epoch second the segment starts at. Every
+ * aggregate is serialized as it is, so the aggregates of a segment can be merged into coarser ones, and appended to a
+ * data file. A memory-mapped index, created with room for all of them, keeps the timestamp, offset and length of every
+ * aggregate in fixed-width entries, so the aggregates of a time range are found by a binary search over their
+ * timestamps. The timestamp of an entry is written last, so an aggregate is only there once it's complete.
+ *
+ * It's not thread safe: the {@link SnapshotStore} guards its segments.
+ */
+final class Segment {
+
+	static final String EXTENSION = ".seg";
+	static final String DATA_EXTENSION = ".data";
+
+	private static final int MAGIC = 0x484c4d53;
+	private static final int VERSION = 2;
+	private static final int HEADER_BYTES = 2 * Integer.BYTES + Long.BYTES + 2 * Integer.BYTES;
+	private static final int ENTRY_BYTES = 2 * Long.BYTES + Integer.BYTES;
+	private static final int OFFSET = Long.BYTES;
+	private static final int LENGTH = 2 * Long.BYTES;
+
+	private final long startSecond;
+	private final Path file;
+	private final Path dataFile;
+	private final MappedByteBuffer buffer;
+	private final int capacity;
+
+	private int size;
+	private long dataBytes;
+
+	private Segment(long startSecond, Path file, MappedByteBuffer buffer, int capacity) {
+		this.startSecond = startSecond;
+		this.file = file;
+		this.dataFile = dataFileOf(file);
+		this.buffer = buffer;
+		this.capacity = capacity;
+		this.size = countAggregates();
+		this.dataBytes = this.size == 0
+				? 0L
+				: buffer.getLong(offsetOf(this.size - 1) + OFFSET) + buffer.getInt(offsetOf(this.size - 1) + LENGTH);
+	}
+
+	/**
+	 * Creates an empty segment.
+	 *
+	 * @param directory   the directory of the segments.
+	 * @param startSecond the epoch second of its first aggregate.
+	 * @param capacity    how many aggregates it can keep.
+	 * @return the segment.
+	 * @throws IOException if the segment cannot be created.
+	 */
+	static Segment create(Path directory, long startSecond, int capacity) throws IOException {
+		Path file = directory.resolve(startSecond + EXTENSION);
+		Files.deleteIfExists(dataFileOf(file));
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+					HEADER_BYTES + (long) capacity * ENTRY_BYTES);
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(Integer.BYTES, VERSION);
+			buffer.putLong(2 * Integer.BYTES, startSecond);
+			buffer.putInt(2 * Integer.BYTES + Long.BYTES, capacity);
+			buffer.putInt(3 * Integer.BYTES + Long.BYTES, ENTRY_BYTES);
+			return new Segment(startSecond, file, buffer, capacity);
+		}
+	}
+
+	/**
+	 * Opens an existing segment, to read it or to keep appending to it.
+	 *
+	 * @param file the file of the segment.
+	 * @return the segment.
+	 * @throws IOException if the file cannot be read or isn't a segment.
+	 */
+	static Segment open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			if (channel.size() < HEADER_BYTES) {
+				throw new IOException("Not a segment file: " + file);
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+			int capacity = buffer.getInt(2 * Integer.BYTES + Long.BYTES);
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION
+					|| buffer.getInt(3 * Integer.BYTES + Long.BYTES) != ENTRY_BYTES
+					|| channel.size() < HEADER_BYTES + (long) capacity * ENTRY_BYTES) {
+				throw new IOException("Not a segment file: " + file);
+			}
+			return new Segment(buffer.getLong(2 * Integer.BYTES), file, buffer, capacity);
+		}
+	}
+
+	/**
+	 * Gets the epoch second of the segment from the name of its file.
+	 *
+	 * @param file the file of the segment.
+	 * @return the epoch second of its first aggregate.
+	 * @throws NumberFormatException if the file isn't named as a segment.
+	 */
+	static long startSecondOf(Path file) {
+		String name = file.getFileName().toString();
+		return Long.parseLong(name.substring(0, name.length() - EXTENSION.length()));
+	}
+
+	/**
+	 * Appends an aggregate, newer than the last one.
+	 *
+	 * @param timestampMillis the epoch millisecond of the end of its period.
+	 * @param aggregate       the aggregate.
+	 * @return whether it was appended, as the segment may be full.
+	 * @throws IOException if the aggregate cannot be written to the data file.
+	 */
+	boolean append(long timestampMillis, Aggregate aggregate) throws IOException {
+		if (this.size == this.capacity) {
+			return false;
+		}
+		byte[] bytes = aggregate.toBytes();
+		try (FileChannel channel = FileChannel.open(this.dataFile, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE)) {
+			// over the remains of an aggregate that was never complete, if any
+			ByteBuffer data = ByteBuffer.wrap(bytes);
+			while (data.hasRemaining()) {
+				channel.write(data, this.dataBytes + data.position());
+			}
+		}
+		int offset = offsetOf(this.size);
+		this.buffer.putLong(offset + OFFSET, this.dataBytes);
+		this.buffer.putInt(offset + LENGTH, bytes.length);
+		this.buffer.putLong(offset, timestampMillis);
+		this.dataBytes += bytes.length;
+		this.size++;
+		return true;
+	}
+
+	/**
+	 * Reads the aggregates of a time range.
+	 *
+	 * @param fromMillis the epoch millisecond the range starts at, included.
+	 * @param toMillis   the epoch millisecond the range ends at, included.
+	 * @param records    where the aggregates are added, in time order.
+	 * @throws IOException if the data file cannot be read.
+	 */
+	void read(long fromMillis, long toMillis, List<AggregateRecord> records) throws IOException {
+		int low = 0;
+		int high = this.size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (this.buffer.getLong(offsetOf(middle)) < fromMillis) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		if (low == this.size || this.buffer.getLong(offsetOf(low)) > toMillis) {
+			return;
+		}
+		try (FileChannel channel = FileChannel.open(this.dataFile, StandardOpenOption.READ)) {
+			for (int i = low; i < this.size; i++) {
+				int offset = offsetOf(i);
+				long timestamp = this.buffer.getLong(offset);
+				if (timestamp > toMillis) {
+					break;
+				}
+				ByteBuffer data = ByteBuffer.allocate(this.buffer.getInt(offset + LENGTH));
+				long position = this.buffer.getLong(offset + OFFSET);
+				while (data.hasRemaining()) {
+					if (channel.read(data, position + data.position()) < 0) {
+						throw new IOException("Truncated data file: " + this.dataFile);
+					}
+				}
+				records.add(new AggregateRecord(Instant.ofEpochMilli(timestamp), Aggregate.fromBytes(data.array())));
+			}
+		}
+	}
+
+	/**
+	 * Gets the timestamp of the first aggregate.
+	 *
+	 * @return the epoch millisecond of the first aggregate, or 0 if it's empty.
+	 */
+	long getFirstTimestamp() {
+		return this.size == 0 ? 0L : this.buffer.getLong(offsetOf(0));
+	}
+
+	/**
+	 * Gets the timestamp of the last aggregate.
+	 *
+	 * @return the epoch millisecond of the last aggregate, or 0 if it's empty.
+	 */
+	long getLastTimestamp() {
+		return this.size == 0 ? 0L : this.buffer.getLong(offsetOf(this.size - 1));
+	}
+
+	long getStartSecond() {
+		return this.startSecond;
+	}
+
+	Path getFile() {
+		return this.file;
+	}
+
+	/**
+	 * Writes the index of the appended aggregates to the disk.
+	 */
+	void force() {
+		this.buffer.force();
+	}
+
+	/**
+	 * Counts the complete aggregates: the ones before the first timestamp that is not set.
+	 */
+	private int countAggregates() {
+		int low = 0;
+		int high = this.capacity;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (this.buffer.getLong(offsetOf(middle)) != 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	private static int offsetOf(int index) {
+		return HEADER_BYTES + index * ENTRY_BYTES;
+	}
+
+	/**
+	 * Gets the data file of the aggregates of a segment.
+	 *
+	 * @param file the file of the segment.
+	 * @return the file of its aggregates.
+	 */
+	static Path dataFileOf(Path file) {
+		String name = file.getFileName().toString();
+		return file.resolveSibling(name.substring(0, name.length() - EXTENSION.length()) + DATA_EXTENSION);
+	}
+}
@@ -0,0 +1,215 @@
+package com.adambarreiro.monitor.store;
+
+import com.adambarreiro.monitor.stats.Aggregate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Embedded, append-only store of the metrics of every interval, so the metrics of the past can be read after the
+ * fact, like the error rate at 03:10 during last night's incident. The intervals are kept as {@link Aggregate}s, in
+ * time order, in {@link Segment} files, a new one every hour by default, named after the second they start at. Hence,
+ * reading a time range only opens the segments that overlap it and searches their fixed-width index by time, the
+ * retention just deletes the segments that are over, and the aggregates read can be merged into coarser ones, with
+ * the percentiles and distinct counts of the whole time range.
+ *
+ * It's thread safe.
+ */
+public final class SnapshotStore implements Closeable {
+
+	private static final long SEGMENT_SECONDS = 3600L;
+
+	private final Path directory;
+	private final long segmentSeconds;
+	private final long retentionSeconds;
+	private final int segmentCapacity;
+	private final NavigableMap<Long, Path> files;
+	private final Map<Long, Segment> segments;
+
+	private Segment current;
+	private long lastTimestamp;
+
+	private SnapshotStore(Path directory, int intervalSeconds, long segmentSeconds, long retentionSeconds) {
+		this.directory = directory;
+		this.segmentSeconds = segmentSeconds;
+		this.retentionSeconds = retentionSeconds;
+		// there's an aggregate per interval at most, plus the one at the end of the segment
+		this.segmentCapacity = (int) (segmentSeconds / intervalSeconds) + 1;
+		this.files = new TreeMap<>();
+		this.segments = new HashMap<>();
+	}
+
+	/**
+	 * Creates a store in the given directory, with a segment per hour, opening the segments already there.
+	 *
+	 * @param directory        the directory of the segments. It's created if it doesn't exist.
+	 * @param intervalSeconds  the period of the aggregates.
+	 * @param retentionSeconds how long an aggregate is kept.
+	 * @return An instance of this class
+	 *
+	 * @throws IOException if the directory cannot be created or its last segment cannot be read.
+	 */
+	public static SnapshotStore of(Path directory, int intervalSeconds, long retentionSeconds) throws IOException {
+		return of(directory, intervalSeconds, SEGMENT_SECONDS, retentionSeconds);
+	}
+
+	/**
+	 * Creates a store in the given directory, opening the segments already there.
+	 *
+	 * @param directory        the directory of the segments. It's created if it doesn't exist.
+	 * @param intervalSeconds  the period of the aggregates.
+	 * @param segmentSeconds   the time span of every segment.
+	 * @param retentionSeconds how long an aggregate is kept.
+	 * @return An instance of this class
+	 *
+	 * @throws IOException if the directory cannot be created or its last segment cannot be read.
+	 * @throws IllegalArgumentException if a period is not positive.
+	 */
+	public static SnapshotStore of(Path directory, int intervalSeconds, long segmentSeconds, long retentionSeconds)
+			throws IOException {
+		if (intervalSeconds <= 0 || segmentSeconds <= 0 || retentionSeconds <= 0) {
+			throw new IllegalArgumentException("Invalid store periods: an interval of " + intervalSeconds
+					+ "s, segments of " + segmentSeconds + "s and a retention of " + retentionSeconds + "s");
+		}
+		Files.createDirectories(directory);
+		SnapshotStore store = new SnapshotStore(directory, intervalSeconds, segmentSeconds, retentionSeconds);
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + Segment.EXTENSION)) {
+			for (Path file : files) {
+				try {
+					store.files.put(Segment.startSecondOf(file), file);
+				} catch (NumberFormatException e) {
+					// not a segment of this store
+				}
+			}
+		}
+		if (!store.files.isEmpty()) {
+			store.current = store.segmentOf(store.files.lastKey());
+			store.lastTimestamp = store.current.getLastTimestamp();
+		}
+		return store;
+	}
+
+	/**
+	 * Appends the aggregate of an interval, starting a new segment when the current one is over and deleting the
+	 * segments older than the retention then.
+	 *
+	 * @param timestamp the end of the interval.
+	 * @param aggregate the aggregate of the interval.
+	 * @return whether it was appended: the ones not newer than the last one are not.
+	 * @throws IOException if the aggregate cannot be written.
+	 */
+	public synchronized boolean append(Instant timestamp, Aggregate aggregate) throws IOException {
+		long millis = timestamp.toEpochMilli();
+		if (millis <= this.lastTimestamp) {
+			return false;
+		}
+		long second = timestamp.getEpochSecond();
+		if (Objects.isNull(this.current) || second >= this.current.getStartSecond() + this.segmentSeconds
+				|| !this.current.append(millis, aggregate)) {
+			if (Objects.nonNull(this.current)) {
+				this.current.force();
+			}
+			this.current = Segment.create(this.directory, second, this.segmentCapacity);
+			this.files.put(second, this.current.getFile());
+			this.segments.put(second, this.current);
+			this.current.append(millis, aggregate);
+			deleteExpired(timestamp);
+		}
+		this.lastTimestamp = millis;
+		return true;
+	}
+
+	/**
+	 * Reads the aggregates of a time range.
+	 *
+	 * @param from when the range starts, included.
+	 * @param to   when the range ends, included.
+	 * @return the aggregates, in time order.
+	 * @throws IOException if a segment cannot be read.
+	 */
+	public synchronized List<AggregateRecord> read(Instant from, Instant to) throws IOException {
+		List<AggregateRecord> records = new ArrayList<>();
+		Long first = this.files.floorKey(from.getEpochSecond());
+		NavigableMap<Long, Path> overlapping = Objects.isNull(first)
+				? this.files.headMap(to.getEpochSecond(), true)
+				: this.files.subMap(first, true, to.getEpochSecond(), true);
+		for (Long startSecond : overlapping.keySet()) {
+			segmentOf(startSecond).read(from.toEpochMilli(), to.toEpochMilli(), records);
+		}
+		return records;
+	}
+
+	/**
+	 * Gets the timestamp of the first aggregate kept.
+	 *
+	 * @return the timestamp of the first aggregate, or {@link Instant#EPOCH} if there's none.
+	 * @throws IOException if the first segment cannot be read.
+	 */
+	public synchronized Instant getFirstTimestamp() throws IOException {
+		return this.files.isEmpty()
+				? Instant.EPOCH
+				: Instant.ofEpochMilli(segmentOf(this.files.firstKey()).getFirstTimestamp());
+	}
+
+	/**
+	 * Gets the timestamp of the last appended aggregate.
+	 *
+	 * @return the timestamp of the last aggregate, or {@link Instant#EPOCH} if there's none.
+	 */
+	public synchronized Instant getLastTimestamp() {
+		return Instant.ofEpochMilli(this.lastTimestamp);
+	}
+
+	/**
+	 * Deletes the segments whose aggregates are all older than the retention.
+	 *
+	 * @param now the current time.
+	 * @throws IOException if a segment cannot be deleted.
+	 */
+	public synchronized void deleteExpired(Instant now) throws IOException {
+		long oldestSecond = now.getEpochSecond() - this.retentionSeconds;
+		Iterator<Map.Entry<Long, Path>> entries = this.files.entrySet().iterator();
+		while (entries.hasNext()) {
+			Map.Entry<Long, Path> entry = entries.next();
+			if (entry.getKey() + this.segmentSeconds > oldestSecond
+					|| (Objects.nonNull(this.current) && this.current.getStartSecond() == entry.getKey())) {
+				break;
+			}
+			entries.remove();
+			this.segments.remove(entry.getKey());
+			Files.deleteIfExists(entry.getValue());
+			Files.deleteIfExists(Segment.dataFileOf(entry.getValue()));
+		}
+	}
+
+	/**
+	 * Writes the index of the current segment to the disk.
+	 */
+	@Override
+	public synchronized void close() {
+		if (Objects.nonNull(this.current)) {
+			this.current.force();
+		}
+	}
+
+	private Segment segmentOf(long startSecond) throws IOException {
+		Segment segment = this.segments.get(startSecond);
+		if (Objects.isNull(segment)) {
+			segment = Segment.open(this.files.get(startSecond));
+			this.segments.put(startSecond, segment);
+		}
+		return segment;
+	}
+}
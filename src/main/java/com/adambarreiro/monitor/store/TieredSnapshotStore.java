@@ -0,0 +1,178 @@
+package com.adambarreiro.monitor.store;
+
+import com.adambarreiro.monitor.stats.Aggregate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Store of the metrics at several resolutions, like the aggregate of every interval, of every minute and of every
+ * hour, every one kept for its own time in a {@link SnapshotStore}. Hence, the storage of the old metrics doesn't
+ * grow with the number of intervals, and reading a long time range reads a few coarse aggregates instead of lots of
+ * fine ones.
+ *
+ * The coarse aggregates are merged from the ones of the next finer tier, read back from the disk once their period is
+ * over, like the minutes of an hour when the hour ends. The histograms and the distinct counters are merged too, so
+ * the percentiles and the distinct counts of a coarse aggregate are the ones of its whole period, and the periods that
+ * were over while the monitor was down are rolled up when it's back. It's thread safe.
+ */
+public final class TieredSnapshotStore implements Closeable {
+
+	private static final long AGGREGATES_PER_SEGMENT = 360L;
+	private static final String ROLLUP_DIRECTORY_PREFIX = "rollup-";
+	private static final long NO_PERIOD = Long.MIN_VALUE;
+
+	private final List<RollupTier> tiers;
+	private final List<SnapshotStore> stores;
+	private final long[] nextPeriods;
+
+	private TieredSnapshotStore(List<RollupTier> tiers, List<SnapshotStore> stores) throws IOException {
+		this.tiers = List.copyOf(tiers);
+		this.stores = List.copyOf(stores);
+		this.nextPeriods = new long[tiers.size()];
+		for (int i = 1; i < tiers.size(); i++) {
+			int resolutionSeconds = tiers.get(i).getResolutionSeconds();
+			Instant lastTimestamp = stores.get(i).getLastTimestamp();
+			Instant firstFineTimestamp = stores.get(i - 1).getFirstTimestamp();
+			if (!Instant.EPOCH.equals(lastTimestamp)) {
+				// the last one rolled up ends where the next one starts
+				this.nextPeriods[i] = Math.floorDiv(lastTimestamp.getEpochSecond(), resolutionSeconds);
+			} else if (!Instant.EPOCH.equals(firstFineTimestamp)) {
+				this.nextPeriods[i] = periodOf(firstFineTimestamp, resolutionSeconds);
+			} else {
+				this.nextPeriods[i] = NO_PERIOD;
+			}
+		}
+	}
+
+	/**
+	 * Creates a store in the given directory. The aggregates of every interval are kept right in it, like a
+	 * {@link SnapshotStore} does, and the ones of every rollup tier in a directory of their own.
+	 *
+	 * @param directory the directory of the store. It's created if it doesn't exist.
+	 * @param interval  the tier of the aggregates of every interval.
+	 * @param rollups   the coarser tiers.
+	 * @return An instance of this class
+	 *
+	 * @throws IOException if a directory cannot be created or a segment cannot be read.
+	 * @throws IllegalArgumentException if a rollup tier is not coarser than the interval.
+	 */
+	public static TieredSnapshotStore of(Path directory, RollupTier interval, List<RollupTier> rollups)
+			throws IOException {
+		List<RollupTier> tiers = new ArrayList<>(rollups);
+		tiers.sort(Comparator.comparingInt(RollupTier::getResolutionSeconds));
+		for (RollupTier rollup : tiers) {
+			if (rollup.getResolutionSeconds() <= interval.getResolutionSeconds()) {
+				throw new IllegalArgumentException("A rollup of " + rollup.getResolutionSeconds()
+						+ "s is not coarser than the interval of " + interval.getResolutionSeconds() + "s");
+			}
+		}
+		tiers.add(0, interval);
+		List<SnapshotStore> stores = new ArrayList<>();
+		stores.add(SnapshotStore.of(directory, interval.getResolutionSeconds(), interval.getRetentionSeconds()));
+		for (RollupTier rollup : tiers.subList(1, tiers.size())) {
+			stores.add(SnapshotStore.of(directory.resolve(ROLLUP_DIRECTORY_PREFIX + rollup.getResolutionSeconds()),
+					rollup.getResolutionSeconds(), rollup.getResolutionSeconds() * AGGREGATES_PER_SEGMENT,
+					rollup.getRetentionSeconds()));
+		}
+		return new TieredSnapshotStore(tiers, stores);
+	}
+
+	/**
+	 * Appends the aggregate of an interval and, for every rollup tier whose periods are over, the aggregates of those
+	 * periods, merged from the ones of the next finer tier.
+	 *
+	 * @param timestamp the end of the interval.
+	 * @param aggregate the aggregate of the interval.
+	 * @return whether the aggregate of the interval was appended: the ones not newer than the last one are not.
+	 * @throws IOException if an aggregate cannot be written or read.
+	 */
+	public synchronized boolean append(Instant timestamp, Aggregate aggregate) throws IOException {
+		if (!this.stores.get(0).append(timestamp, aggregate)) {
+			return false;
+		}
+		for (int i = 1; i < this.tiers.size(); i++) {
+			long period = periodOf(timestamp, this.tiers.get(i).getResolutionSeconds());
+			if (this.nextPeriods[i] != NO_PERIOD && period > this.nextPeriods[i]) {
+				rollUp(i, this.nextPeriods[i], period);
+			}
+			this.nextPeriods[i] = Math.max(this.nextPeriods[i], period);
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the aggregates of a time range at the coarsest resolution that is at least as fine as the given one.
+	 *
+	 * @param from              when the range starts, included.
+	 * @param to                when the range ends, included.
+	 * @param resolutionSeconds the coarsest resolution wanted. A finer one than the interval reads every interval.
+	 * @return the aggregates, stamped with the end of their periods, in time order.
+	 * @throws IOException if a segment cannot be read.
+	 */
+	public synchronized List<AggregateRecord> read(Instant from, Instant to, int resolutionSeconds) throws IOException {
+		int tier = 0;
+		while (tier + 1 < this.tiers.size() && this.tiers.get(tier + 1).getResolutionSeconds() <= resolutionSeconds) {
+			tier++;
+		}
+		return this.stores.get(tier).read(from, to);
+	}
+
+	/**
+	 * Gets the tiers of the store.
+	 *
+	 * @return the tiers, from the finest one, which is the interval.
+	 */
+	public List<RollupTier> getTiers() {
+		return this.tiers;
+	}
+
+	/**
+	 * Writes the index of the current segments to the disk.
+	 */
+	@Override
+	public synchronized void close() {
+		this.stores.forEach(SnapshotStore::close);
+	}
+
+	/**
+	 * Merges the aggregates of the next finer tier into the ones of the periods of a tier that are over. The periods
+	 * without aggregates, like the ones while the monitor was down, are skipped.
+	 *
+	 * @param tier the tier.
+	 * @param from the first period that is over, included.
+	 * @param to   the current period, excluded.
+	 * @throws IOException if an aggregate cannot be read or written.
+	 */
+	private void rollUp(int tier, long from, long to) throws IOException {
+		int resolutionSeconds = this.tiers.get(tier).getResolutionSeconds();
+		Map<Long, List<Aggregate>> periods = new TreeMap<>();
+		for (AggregateRecord record : this.stores.get(tier - 1).read(Instant.ofEpochSecond(from * resolutionSeconds + 1),
+				Instant.ofEpochSecond(to * resolutionSeconds + 1).minusMillis(1))) {
+			periods.computeIfAbsent(periodOf(record.getTimestamp(), resolutionSeconds), period -> new ArrayList<>())
+					.add(record.getAggregate());
+		}
+		for (Map.Entry<Long, List<Aggregate>> period : periods.entrySet()) {
+			this.stores.get(tier).append(Instant.ofEpochSecond((period.getKey() + 1) * resolutionSeconds),
+					Aggregate.rollUp(resolutionSeconds, period.getValue()));
+		}
+	}
+
+	/**
+	 * Gets the period of a tier an aggregate belongs to, aligned to the epoch: the one its interval ends in.
+	 *
+	 * @param timestamp         the end of the interval of the aggregate.
+	 * @param resolutionSeconds the resolution of the tier.
+	 * @return the number of the period since the epoch.
+	 */
+	private static long periodOf(Instant timestamp, int resolutionSeconds) {
+		return Math.floorDiv(timestamp.getEpochSecond() - 1, resolutionSeconds);
+	}
+}
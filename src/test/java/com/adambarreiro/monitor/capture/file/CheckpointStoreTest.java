@@ -0,0 +1,36 @@
+package com.adambarreiro.monitor.capture.file;
+
+import com.adambarreiro.monitor.capture.Checkpoint;
+import com.adambarreiro.monitor.capture.CheckpointStore;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class CheckpointStoreTest {
+
+	@TempDir
+	Path folder;
+
+	@Test
+	@DisplayName("A saved checkpoint is loaded again")
+	public void aSavedCheckpointIsLoadedAgainTest() throws IOException {
+		Path file = folder.resolve("checkpoint");
+		Checkpoint checkpoint = new Checkpoint("(dev=803,ino=1234)", 4096L, 81, 3735928559L);
+		CheckpointStore store = CheckpointStore.of(file);
+		store.put(Path.of("/var/log/access.log"), checkpoint);
+		store.save();
+		Assertions.assertEquals(checkpoint, CheckpointStore.of(file).get(Path.of("/var/log/access.log")).orElseThrow());
+		Assertions.assertTrue(CheckpointStore.of(file).get(Path.of("/var/log/other.log")).isEmpty());
+	}
+
+	@Test
+	@DisplayName("A checkpoint survives separators in its file key")
+	public void aCheckpointSurvivesSeparatorsInItsFileKeyTest() {
+		Checkpoint checkpoint = new Checkpoint("a|b", 1L, 2, 3L);
+		Assertions.assertEquals(checkpoint, Checkpoint.parse(checkpoint.toString()));
+	}
+}
@@ -1,19 +1,39 @@
 package com.adambarreiro.monitor.capture.file;
 
+import com.adambarreiro.monitor.capture.BackpressurePolicy;
+import com.adambarreiro.monitor.capture.CaptureMetrics;
 import com.adambarreiro.monitor.capture.FileObserver;
+import com.adambarreiro.monitor.capture.FileObserverConfig;
+import com.adambarreiro.monitor.capture.TailMode;
+import com.adambarreiro.monitor.capture.vo.LineBatch;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FileObserverTest {
 
 	private static final String FILE_NAME = "fooTest.txt";
 	private String logPath;
 
+	@TempDir
+	Path folder;
+
 	@BeforeEach
 	public void setup() {
 		logPath = Objects.requireNonNull(getClass().getClassLoader().getResource(FILE_NAME)).getPath();
@@ -31,4 +51,217 @@ public class FileObserverTest {
 		Assertions.assertEquals("Hello World", builder.toString());
 	}
 
+	/**
+	 * The maximum idle time is way higher than the timeout, so the line can only arrive on time if the observer
+	 * is woken up by the file system.
+	 */
+	@Test
+	@DisplayName("An appended line is emitted right away when the file is watched")
+	public void anAppendedLineIsEmittedRightAwayWhenTheFileIsWatchedTest() throws Exception {
+		assertAppendedLineIsEmittedBefore(TailMode.WATCH, Duration.ofSeconds(3));
+	}
+
+	@Test
+	@DisplayName("An appended line is emitted when the file is polled")
+	public void anAppendedLineIsEmittedWhenTheFileIsPolledTest() throws Exception {
+		assertAppendedLineIsEmittedBefore(TailMode.POLL, Duration.ofSeconds(3));
+	}
+
+	@Test
+	@DisplayName("A line written in two parts is emitted whole when the file is watched")
+	public void aLineWrittenInTwoPartsIsEmittedWholeWhenTheFileIsWatchedTest() throws Exception {
+		assertLineWrittenInTwoPartsIsEmittedWhole(TailMode.WATCH);
+	}
+
+	@Test
+	@DisplayName("A line written in two parts is emitted whole when the file is polled")
+	public void aLineWrittenInTwoPartsIsEmittedWholeWhenTheFileIsPolledTest() throws Exception {
+		assertLineWrittenInTwoPartsIsEmittedWhole(TailMode.POLL);
+	}
+
+	/**
+	 * The new file is bigger than the rotated one, so it can only be read from the beginning if the rotation
+	 * is detected by its file key and not by its length.
+	 */
+	@Test
+	@DisplayName("A renamed and recreated file is drained and then followed from the beginning")
+	public void aRenamedAndRecreatedFileIsDrainedAndFollowedTest() throws Exception {
+		Path file = Files.writeString(folder.resolve("access.log"), "first\n", StandardCharsets.UTF_8);
+		FileObserver fileObserver = FileObserver.of(file.toString(),
+				FileObserverConfig.builder().tailMode(TailMode.POLL).maxIdleTimeMillis(50L).build());
+		BlockingQueue<Object> lines = new LinkedBlockingQueue<>();
+		Thread observer = new Thread(() -> fileObserver.observe(lines::add));
+		observer.start();
+		try {
+			Assertions.assertEquals("first", lines.poll(3, TimeUnit.SECONDS));
+			Files.writeString(file, "last of the rotated file\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+			Files.move(file, folder.resolve("access.log.1"));
+			String newLine = "x".repeat(100);
+			Files.writeString(file, newLine + "\n", StandardCharsets.UTF_8);
+			Assertions.assertEquals("last of the rotated file", lines.poll(3, TimeUnit.SECONDS));
+			Assertions.assertEquals(newLine, lines.poll(3, TimeUnit.SECONDS));
+		} finally {
+			fileObserver.stop();
+		}
+	}
+
+	@Test
+	@DisplayName("A restarted file observer resumes from its checkpoint")
+	public void aRestartedFileObserverResumesFromItsCheckpointTest() throws Exception {
+		Path file = Files.writeString(folder.resolve("access.log"), "first\nsecond\n", StandardCharsets.UTF_8);
+		FileObserverConfig config = FileObserverConfig.builder().tailMode(TailMode.POLL).maxIdleTimeMillis(50L)
+				.checkpointFile(folder.resolve("checkpoint").toString()).checkpointIntervalMillis(60_000L).build();
+		BlockingQueue<Object> lines = new LinkedBlockingQueue<>();
+
+		FileObserver firstRun = FileObserver.of(file.toString(), config);
+		Thread observer = new Thread(() -> firstRun.observe(lines::add));
+		observer.start();
+		Assertions.assertEquals("first", lines.poll(3, TimeUnit.SECONDS));
+		Assertions.assertEquals("second", lines.poll(3, TimeUnit.SECONDS));
+		firstRun.stop();
+		observer.join(TimeUnit.SECONDS.toMillis(3));
+
+		Files.writeString(file, "third\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+		FileObserver secondRun = FileObserver.of(file.toString(), config);
+		observer = new Thread(() -> secondRun.observe(lines::add));
+		observer.start();
+		try {
+			Assertions.assertEquals("third", lines.poll(3, TimeUnit.SECONDS));
+		} finally {
+			secondRun.stop();
+		}
+	}
+
+	@Test
+	@DisplayName("The lines of the file are delivered in batches bounded by the batch size")
+	public void theLinesAreDeliveredInBoundedBatchesTest() throws Exception {
+		Path file = writeLines(10);
+		FileObserver fileObserver = FileObserver.of(file.toString(),
+				FileObserverConfig.builder().tailMode(TailMode.POLL).maxIdleTimeMillis(50L).batchSize(4).build());
+		BlockingQueue<LineBatch> batches = new LinkedBlockingQueue<>();
+		Thread observer = new Thread(() -> fileObserver.observeBatches(batches::add));
+		observer.start();
+		try {
+			Assertions.assertArrayEquals(new String[]{"line 0", "line 1", "line 2", "line 3"}, batches.poll(3, TimeUnit.SECONDS).getLines());
+			Assertions.assertArrayEquals(new String[]{"line 4", "line 5", "line 6", "line 7"}, batches.poll(3, TimeUnit.SECONDS).getLines());
+			Assertions.assertArrayEquals(new String[]{"line 8", "line 9"}, batches.poll(3, TimeUnit.SECONDS).getLines());
+		} finally {
+			fileObserver.stop();
+		}
+	}
+
+	/**
+	 * The consumer is stuck with the first batch it gets, so the queue fills up and the rest of the batches must be
+	 * dropped instead of buffered.
+	 */
+	@Test
+	@DisplayName("The oldest batches are dropped when the consumer falls behind")
+	public void theOldestBatchesAreDroppedWhenTheConsumerFallsBehindTest() throws Exception {
+		Path file = writeLines(100);
+		FileObserver fileObserver = FileObserver.of(file.toString(), FileObserverConfig.builder()
+				.tailMode(TailMode.POLL).maxIdleTimeMillis(50L).batchSize(10)
+				.backpressurePolicy(BackpressurePolicy.DROP_OLDEST).queueCapacity(20).build());
+		CountDownLatch release = new CountDownLatch(1);
+		BlockingQueue<LineBatch> batches = new LinkedBlockingQueue<>();
+		Thread observer = new Thread(() -> fileObserver.observeBatches(batch -> {
+			batches.add(batch);
+			release.await();
+		}));
+		observer.start();
+		try {
+			CaptureMetrics metrics = fileObserver.getMetrics();
+			Assertions.assertTimeoutPreemptively(Duration.ofSeconds(3), () -> {
+				while (batches.isEmpty() || metrics.getDroppedLines() + metrics.getQueueDepth() < 90) {
+					Thread.sleep(10L);
+				}
+			});
+			Assertions.assertTrue(metrics.getQueueDepth() <= 20);
+			Assertions.assertTrue(metrics.getDroppedLines() >= 70);
+			release.countDown();
+			LineBatch last = batches.poll(3, TimeUnit.SECONDS);
+			for (LineBatch next = last; next != null; next = batches.poll(500L, TimeUnit.MILLISECONDS)) {
+				last = next;
+			}
+			Assertions.assertEquals("line 90", last.getLines()[0]);
+		} finally {
+			release.countDown();
+			fileObserver.stop();
+		}
+	}
+
+	@Test
+	@DisplayName("The reader waits for a slow consumer without losing lines")
+	public void theReaderWaitsForASlowConsumerTest() throws Exception {
+		Path file = writeLines(100);
+		FileObserver fileObserver = FileObserver.of(file.toString(), FileObserverConfig.builder()
+				.tailMode(TailMode.POLL).maxIdleTimeMillis(50L).batchSize(10)
+				.backpressurePolicy(BackpressurePolicy.BLOCK).queueCapacity(20).build());
+		BlockingQueue<Object> lines = new LinkedBlockingQueue<>();
+		AtomicInteger maxDepth = new AtomicInteger();
+		Thread observer = new Thread(() -> fileObserver.observeBatches(batch -> {
+			maxDepth.accumulateAndGet(fileObserver.getMetrics().getQueueDepth(), Math::max);
+			Thread.sleep(5L);
+			lines.addAll(Arrays.asList(batch.getLines()));
+		}));
+		observer.start();
+		try {
+			for (int i = 0; i < 100; i++) {
+				Assertions.assertEquals("line " + i, lines.poll(3, TimeUnit.SECONDS));
+			}
+			Assertions.assertEquals(0, fileObserver.getMetrics().getDroppedLines());
+			Assertions.assertTrue(maxDepth.get() <= 20);
+		} finally {
+			fileObserver.stop();
+		}
+	}
+
+	private Path writeLines(int lines) throws IOException {
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < lines; i++) {
+			content.append("line ").append(i).append('\n');
+		}
+		return Files.writeString(folder.resolve("access.log"), content.toString(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * The second part is written well within the maximum idle time, which is the grace period of a line without line
+	 * break, so the first part must not be emitted as a line of its own.
+	 */
+	private void assertLineWrittenInTwoPartsIsEmittedWhole(TailMode tailMode) throws Exception {
+		Path file = Files.writeString(folder.resolve("access.log"), "first\n", StandardCharsets.UTF_8);
+		FileObserver fileObserver = FileObserver.of(file.toString(),
+				FileObserverConfig.builder().tailMode(tailMode).maxIdleTimeMillis(1000L).build());
+		BlockingQueue<Object> lines = new LinkedBlockingQueue<>();
+		Thread observer = new Thread(() -> fileObserver.observe(lines::add));
+		observer.start();
+		try {
+			Assertions.assertEquals("first", lines.poll(3, TimeUnit.SECONDS));
+			Files.writeString(file, "first half", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+			// Long enough for the first part to be read, well within the grace period
+			Thread.sleep(300L);
+			Files.writeString(file, " second half\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+			Assertions.assertEquals("first half second half", lines.poll(3, TimeUnit.SECONDS));
+			Assertions.assertNull(lines.poll(200, TimeUnit.MILLISECONDS));
+		} finally {
+			fileObserver.stop();
+		}
+	}
+
+	private void assertAppendedLineIsEmittedBefore(TailMode tailMode, Duration timeout) throws Exception {
+		Path file = Files.writeString(folder.resolve("access.log"), "first\n", StandardCharsets.UTF_8);
+		FileObserver fileObserver = FileObserver.of(file.toString(),
+				FileObserverConfig.builder().tailMode(tailMode).maxIdleTimeMillis(60_000L).build());
+		BlockingQueue<Object> lines = new LinkedBlockingQueue<>();
+		Thread observer = new Thread(() -> fileObserver.observe(lines::add));
+		observer.start();
+		try {
+			Assertions.assertEquals("first", lines.poll(timeout.toMillis(), TimeUnit.MILLISECONDS));
+			// Let the observer become idle before appending
+			Thread.sleep(200L);
+			Files.writeString(file, "second\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+			Assertions.assertEquals("second", lines.poll(timeout.toMillis(), TimeUnit.MILLISECONDS));
+		} finally {
+			fileObserver.stop();
+		}
+	}
 }
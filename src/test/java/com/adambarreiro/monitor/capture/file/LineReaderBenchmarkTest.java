@@ -0,0 +1,82 @@
+package com.adambarreiro.monitor.capture.file;
+
+import com.adambarreiro.monitor.capture.LineReader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput comparison between the {@link LineReader} and the former {@link RandomAccessFile#readLine()} approach.
+ * It's not run by default, as it takes a while and its results depend on the machine. To run it:
+ *
+ * ./mvnw test -Dbenchmark=true -Dtest=LineReaderBenchmarkTest
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class LineReaderBenchmarkTest {
+
+	private static final String LINE = "127.0.0.1 - james [09/May/2018:16:00:39 +0000] \"GET /report HTTP/1.0\" 200 123\n";
+	private static final int LINES = 200_000;
+	private static final int ROUNDS = 5;
+
+	@TempDir
+	Path folder;
+
+	@Test
+	@DisplayName("The chunked reader is faster than RandomAccessFile.readLine")
+	public void theChunkedReaderIsFasterThanReadLineTest() throws IOException {
+		Path file = folder.resolve("access.log");
+		try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			for (int i = 0; i < LINES; i++) {
+				writer.write(LINE);
+			}
+		}
+		double readLine = 0;
+		double chunked = 0;
+		double mapped = 0;
+		for (int i = 0; i < ROUNDS; i++) {
+			readLine = Math.max(readLine, measureReadLine(file));
+			chunked = Math.max(chunked, measure(file, LineReader.of(LineReader.DEFAULT_BUFFER_SIZE, false)));
+			mapped = Math.max(mapped, measure(file, LineReader.of(LineReader.DEFAULT_BUFFER_SIZE, true)));
+		}
+		System.out.printf("RandomAccessFile.readLine: %.0f lines/s%n", readLine);
+		System.out.printf("LineReader (buffered):     %.0f lines/s%n", chunked);
+		System.out.printf("LineReader (mapped):       %.0f lines/s%n", mapped);
+		Assertions.assertTrue(chunked > readLine);
+	}
+
+	private double measureReadLine(Path file) throws IOException {
+		long lines = 0;
+		long start = System.nanoTime();
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file.toFile(), "r")) {
+			while (randomAccessFile.readLine() != null) {
+				lines++;
+			}
+		}
+		return linesPerSecond(lines, start);
+	}
+
+	private double measure(Path file, LineReader reader) throws IOException {
+		AtomicLong lines = new AtomicLong();
+		long start = System.nanoTime();
+		try (FileChannel channel = FileChannel.open(file)) {
+			reader.read(channel, 0L, line -> lines.incrementAndGet());
+		}
+		return linesPerSecond(lines.get(), start);
+	}
+
+	private double linesPerSecond(long lines, long start) {
+		Assertions.assertEquals(LINES, lines);
+		return lines / ((System.nanoTime() - start) / 1e9);
+	}
+}
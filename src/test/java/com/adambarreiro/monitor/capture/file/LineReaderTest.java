@@ -0,0 +1,87 @@
+package com.adambarreiro.monitor.capture.file;
+
+import com.adambarreiro.monitor.capture.LineReader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class LineReaderTest {
+
+	@TempDir
+	Path folder;
+
+	@Test
+	@DisplayName("Lines that span several buffers are read entirely")
+	public void linesThatSpanSeveralBuffersAreReadEntirelyTest() throws IOException {
+		Path file = write("first line\nsecond line\nthird\n");
+		List<String> lines = readAll(LineReader.of(4, false), file);
+		Assertions.assertEquals(List.of("first line", "second line", "third"), lines);
+	}
+
+	@Test
+	@DisplayName("Multi-byte UTF-8 characters are decoded even if they're split between buffers")
+	public void multiByteCharactersAreDecodedTest() throws IOException {
+		Path file = write("GET /café ☃\nGET /🚀\n");
+		List<String> lines = readAll(LineReader.of(3, false), file);
+		Assertions.assertEquals(List.of("GET /café ☃", "GET /🚀"), lines);
+	}
+
+	@Test
+	@DisplayName("Carriage returns are removed from the lines")
+	public void carriageReturnsAreRemovedTest() throws IOException {
+		Path file = write("foo\r\nbar\r\n");
+		Assertions.assertEquals(List.of("foo", "bar"), readAll(LineReader.of(1024, false), file));
+	}
+
+	@Test
+	@DisplayName("A line without terminator is kept pending until it's finished or flushed")
+	public void aLineWithoutTerminatorIsKeptPendingTest() throws IOException {
+		Path file = write("foo\nba");
+		LineReader reader = LineReader.of(1024, false);
+		List<String> lines = new ArrayList<>();
+		try (FileChannel channel = FileChannel.open(file)) {
+			long position = reader.read(channel, 0L, lines::add);
+			Assertions.assertEquals(List.of("foo"), lines);
+			Assertions.assertEquals(2, reader.getPendingLength());
+			Files.writeString(file, "foo\nbar\nbaz", StandardCharsets.UTF_8);
+			reader.read(channel, position, lines::add);
+			Assertions.assertEquals(List.of("foo", "bar"), lines);
+			reader.flushPendingLine(lines::add);
+			Assertions.assertEquals(List.of("foo", "bar", "baz"), lines);
+			Assertions.assertFalse(reader.hasPendingLine());
+		}
+	}
+
+	@Test
+	@DisplayName("The memory-mapped mode reads the same lines")
+	public void theMemoryMappedModeReadsTheSameLinesTest() throws IOException {
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			content.append("line ").append(i).append('\n');
+		}
+		Path file = write(content.toString());
+		Assertions.assertEquals(readAll(LineReader.of(64, false), file), readAll(LineReader.of(64, true), file));
+		Assertions.assertEquals(1000, readAll(LineReader.of(64, true), file).size());
+	}
+
+	private Path write(String content) throws IOException {
+		return Files.writeString(folder.resolve("test.log"), content, StandardCharsets.UTF_8);
+	}
+
+	private List<String> readAll(LineReader reader, Path file) throws IOException {
+		List<String> lines = new ArrayList<>();
+		try (FileChannel channel = FileChannel.open(file)) {
+			reader.read(channel, 0L, lines::add);
+		}
+		return lines;
+	}
+}
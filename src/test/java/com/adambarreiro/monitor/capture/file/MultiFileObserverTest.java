@@ -0,0 +1,144 @@
+package com.adambarreiro.monitor.capture.file;
+
+import com.adambarreiro.monitor.capture.FileObserverConfig;
+import com.adambarreiro.monitor.capture.MultiFileObserver;
+import com.adambarreiro.monitor.capture.TailMode;
+import com.adambarreiro.monitor.capture.vo.SourcedLine;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class MultiFileObserverTest {
+
+	@TempDir
+	Path folder;
+
+	@Test
+	@DisplayName("All the files of a directory are observed and every line is tagged with its file")
+	public void allTheFilesOfADirectoryAreObservedTest() throws Exception {
+		Files.writeString(folder.resolve("a.log"), "a1\na2\n", StandardCharsets.UTF_8);
+		Files.writeString(folder.resolve("b.log"), "b1\n", StandardCharsets.UTF_8);
+		MultiFileObserver observer = MultiFileObserver.of(folder.toString(), config(TailMode.WATCH), 2);
+		BlockingQueue<Object> lines = new LinkedBlockingQueue<>();
+		new Thread(() -> observer.observe(lines::add)).start();
+		try {
+			Assertions.assertEquals(Set.of("a.log:a1", "a.log:a2", "b.log:b1"), take(lines, 3));
+			Files.writeString(folder.resolve("c.log"), "c1\n", StandardCharsets.UTF_8);
+			Assertions.assertEquals(Set.of("c.log:c1"), take(lines, 1));
+		} finally {
+			observer.stop();
+		}
+	}
+
+	@Test
+	@DisplayName("Only the files that match the glob pattern are observed")
+	public void onlyTheFilesThatMatchTheGlobPatternAreObservedTest() throws Exception {
+		Files.writeString(folder.resolve("site.access.log"), "access\n", StandardCharsets.UTF_8);
+		Files.writeString(folder.resolve("site.error.log"), "error\n", StandardCharsets.UTF_8);
+		MultiFileObserver observer = MultiFileObserver.of(folder.resolve("*.access.log").toString(), config(TailMode.POLL), 1);
+		BlockingQueue<Object> lines = new LinkedBlockingQueue<>();
+		new Thread(() -> observer.observe(lines::add)).start();
+		try {
+			Assertions.assertEquals(Set.of("site.access.log:access"), take(lines, 1));
+			Assertions.assertNull(lines.poll(300, TimeUnit.MILLISECONDS));
+			Assertions.assertEquals(Set.of(folder.resolve("site.access.log")), observer.getObservedFiles());
+		} finally {
+			observer.stop();
+		}
+	}
+
+	@Test
+	@DisplayName("A busy file doesn't starve the rest when there's a single reader thread")
+	public void aBusyFileDoesNotStarveTheRestTest() throws Exception {
+		Files.writeString(folder.resolve("busy.log"), "x".repeat(99).concat("\n").repeat(100_000), StandardCharsets.UTF_8);
+		Files.writeString(folder.resolve("quiet.log"), "quiet\n", StandardCharsets.UTF_8);
+		MultiFileObserver observer = MultiFileObserver.of(folder.toString(), config(TailMode.POLL), 1);
+		BlockingQueue<Object> lines = new LinkedBlockingQueue<>();
+		new Thread(() -> observer.observe(lines::add)).start();
+		try {
+			int position = 0;
+			Object line = lines.poll(3, TimeUnit.SECONDS);
+			while (line != null && !"quiet".equals(line.toString())) {
+				position++;
+				line = lines.poll(3, TimeUnit.SECONDS);
+			}
+			Assertions.assertNotNull(line);
+			Assertions.assertTrue(position < 100_000, "The quiet file was read after the whole busy file");
+		} finally {
+			observer.stop();
+		}
+	}
+
+	@Test
+	@DisplayName("A line written in two parts is emitted whole")
+	public void aLineWrittenInTwoPartsIsEmittedWholeTest() throws Exception {
+		Path file = Files.writeString(folder.resolve("a.log"), "first\n", StandardCharsets.UTF_8);
+		MultiFileObserver observer = MultiFileObserver.of(folder.toString(),
+				FileObserverConfig.builder().tailMode(TailMode.POLL).maxIdleTimeMillis(1000L).build(), 1);
+		BlockingQueue<Object> lines = new LinkedBlockingQueue<>();
+		new Thread(() -> observer.observe(lines::add)).start();
+		try {
+			Assertions.assertEquals(Set.of("a.log:first"), take(lines, 1));
+			Files.writeString(file, "first half", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+			// Long enough for the first part to be read, well within the grace period
+			Thread.sleep(300L);
+			Files.writeString(file, " second half\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+			Assertions.assertEquals(Set.of("a.log:first half second half"), take(lines, 1));
+			Assertions.assertNull(lines.poll(200, TimeUnit.MILLISECONDS));
+		} finally {
+			observer.stop();
+		}
+	}
+
+	/**
+	 * We move a file out of the directory, so it's closed, and back under another name, like a new file reusing its
+	 * inode, and check it's observed again instead of being taken for a rotated copy.
+	 */
+	@Test
+	@DisplayName("A file that reuses the key of a closed file is observed")
+	public void aFileThatReusesTheKeyOfAClosedFileIsObservedTest() throws Exception {
+		Files.writeString(folder.resolve("a.log"), "a1\n", StandardCharsets.UTF_8);
+		Path archive = Files.createDirectory(folder.resolve("archive"));
+		MultiFileObserver observer = MultiFileObserver.of(folder.toString(), config(TailMode.POLL), 1);
+		BlockingQueue<Object> lines = new LinkedBlockingQueue<>();
+		new Thread(() -> observer.observe(lines::add)).start();
+		try {
+			Assertions.assertEquals(Set.of("a.log:a1"), take(lines, 1));
+			Files.move(folder.resolve("a.log"), archive.resolve("a.log"));
+			long deadline = System.currentTimeMillis() + 3000L;
+			while (!observer.getObservedFiles().isEmpty() && System.currentTimeMillis() < deadline) {
+				Thread.sleep(50L);
+			}
+			Assertions.assertEquals(Set.of(), observer.getObservedFiles());
+			Files.move(archive.resolve("a.log"), folder.resolve("b.log"));
+			Assertions.assertEquals(Set.of("b.log:a1"), take(lines, 1));
+		} finally {
+			observer.stop();
+		}
+	}
+
+	private FileObserverConfig config(TailMode tailMode) {
+		return FileObserverConfig.builder().tailMode(tailMode).maxIdleTimeMillis(100L).build();
+	}
+
+	private Set<String> take(BlockingQueue<Object> lines, int count) throws InterruptedException {
+		Set<String> taken = new HashSet<>();
+		for (int i = 0; i < count; i++) {
+			SourcedLine line = (SourcedLine) lines.poll(3, TimeUnit.SECONDS);
+			Assertions.assertNotNull(line);
+			taken.add(line.getSource() + ":" + line.getContent());
+		}
+		return taken;
+	}
+}
@@ -7,6 +7,7 @@ import org.junit.jupiter.api.Test;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.List;
 
 public class ConfigurationContainerTest {
 
@@ -29,9 +30,38 @@ public class ConfigurationContainerTest {
 	public void anEmptySetOfArgumentsJustLeavesTheDefaultValuesTest() {
 		configurationContainer.add();
 		Assertions.assertEquals("/tmp/access.log", configurationContainer.getLogfile());
+		Assertions.assertEquals("", configurationContainer.getLogFormat());
 		Assertions.assertEquals(120, configurationContainer.getAlertIntervalSeconds());
 		Assertions.assertEquals(10.0f, configurationContainer.getRequestRateAlertThreshold());
 		Assertions.assertEquals(10, configurationContainer.getScheduleIntervalSeconds());
+		Assertions.assertEquals(256 * 1024, configurationContainer.getReadBufferSize());
+		Assertions.assertFalse(configurationContainer.isMemoryMapped());
+		Assertions.assertEquals("watch", configurationContainer.getTailMode());
+		Assertions.assertEquals(1000L, configurationContainer.getMaxIdleTimeMillis());
+		Assertions.assertEquals("", configurationContainer.getCheckpointFile());
+		Assertions.assertEquals(5, configurationContainer.getCheckpointIntervalSeconds());
+		Assertions.assertEquals(2, configurationContainer.getReaderThreads());
+		Assertions.assertEquals(512, configurationContainer.getBatchSize());
+		Assertions.assertEquals(100L, configurationContainer.getBatchDelayMillis());
+		Assertions.assertEquals("block", configurationContainer.getBackpressure());
+		Assertions.assertEquals(65536, configurationContainer.getQueueCapacity());
+		Assertions.assertEquals(10, configurationContainer.getSampleRate());
+		Assertions.assertEquals(List.of(10, 60, 300, 3600), configurationContainer.getWindowsSeconds());
+		Assertions.assertEquals(3, configurationContainer.getTopSites());
+		Assertions.assertEquals(0.01, configurationContainer.getTopSitesError());
+		Assertions.assertEquals(List.of("statusClass", "verb", "site", "source"), configurationContainer.getGroupBy());
+		Assertions.assertEquals("processing", configurationContainer.getTimeMode());
+		Assertions.assertEquals(2, configurationContainer.getAllowedLatenessSeconds());
+		Assertions.assertEquals("", configurationContainer.getStoreDirectory());
+		Assertions.assertEquals(168, configurationContainer.getStoreRetentionHours());
+		Assertions.assertEquals(List.of("60:720", "3600:8760"), configurationContainer.getStoreRollups());
+		Assertions.assertEquals("", configurationContainer.getAggregator());
+		Assertions.assertEquals("", configurationContainer.getPeerAggregator());
+		Assertions.assertEquals("", configurationContainer.getPeerName());
+		Assertions.assertEquals(1, configurationContainer.getShards());
+		Assertions.assertEquals(0, configurationContainer.getParseThreads());
+		Assertions.assertEquals(1024, configurationContainer.getRingSize());
+		Assertions.assertEquals("blocking", configurationContainer.getWaitStrategy());
 	}
 
 	@Test
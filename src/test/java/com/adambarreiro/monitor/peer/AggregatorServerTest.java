@@ -0,0 +1,85 @@
+package com.adambarreiro.monitor.peer;
+
+import com.adambarreiro.monitor.export.PeerExporter;
+import com.adambarreiro.monitor.process.log.vo.LogData;
+import com.adambarreiro.monitor.stats.Aggregate;
+import com.adambarreiro.monitor.stats.DummyStats;
+import com.adambarreiro.monitor.stats.MergedStats;
+import com.adambarreiro.monitor.stats.ScheduledStats;
+import com.adambarreiro.monitor.stats.Stats;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * These are the tests for the aggregator of several monitors, all of them on this machine.
+ */
+public class AggregatorServerTest {
+
+	/**
+	 * Two monitors push the aggregates of their interval to an aggregator listening at a free port, twice, and a third
+	 * client queries the merged view, which only counts the last aggregate of every monitor.
+	 */
+	@Test
+	@DisplayName("The aggregator serves the merged aggregates pushed by several monitors")
+	public void theAggregatorServesTheMergedAggregatesPushedBySeveralMonitorsTest() throws IOException {
+		MergedStats merged = new MergedStats(10, 3);
+		try (AggregatorServer server = AggregatorServer.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), merged);
+			 PeerClient first = new PeerClient(server.getAddress());
+			 PeerClient second = new PeerClient(server.getAddress());
+			 PeerClient query = new PeerClient(server.getAddress())) {
+			for (int i = 0; i < 2; i++) {
+				first.push("first", monitor("/ships", 5).getAggregate(10));
+				second.push("second", monitor("/shops", 7).getAggregate(10));
+			}
+			Aggregate aggregate = query.query();
+			Assertions.assertEquals(12L, aggregate.getRequests());
+			Assertions.assertEquals(12L, aggregate.getBytes());
+			Assertions.assertEquals(Set.of("first", "second"), merged.getPeers());
+			Assertions.assertEquals(Set.of("/ships", "/shops"), aggregate.toSnapshot(3).getTopSites().getByHits().keySet());
+		}
+	}
+
+	/**
+	 * The monitor has published the aggregate of its last interval, while its live window already counts other lines.
+	 * The exporter pushes the published one, so the aggregator gets every interval once.
+	 */
+	@Test
+	@DisplayName("The exporter pushes the aggregate of the last interval, not the live window")
+	public void theExporterPushesTheAggregateOfTheLastIntervalTest() throws IOException {
+		MergedStats merged = new MergedStats(10, 3);
+		Stats monitor = new DummyStats("/", 0, 0, 0) {
+			@Override
+			public Aggregate getAggregate() {
+				return monitor("/ships", 5).getAggregate(10);
+			}
+
+			@Override
+			public Aggregate getAggregate(int windowSeconds) {
+				return monitor("/shops", 7).getAggregate(10);
+			}
+		};
+		try (AggregatorServer server = AggregatorServer.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), merged);
+			 PeerClient client = new PeerClient(server.getAddress());
+			 PeerClient query = new PeerClient(server.getAddress())) {
+			new PeerExporter(client, "first").exportStatistics(monitor);
+			Aggregate aggregate = query.query();
+			Assertions.assertEquals(5L, aggregate.getRequests());
+			Assertions.assertEquals(Set.of("/ships"), aggregate.toSnapshot(3).getTopSites().getByHits().keySet());
+		}
+	}
+
+	private static Stats monitor(String site, int requests) {
+		Stats stats = new ScheduledStats(10);
+		for (int i = 0; i < requests; i++) {
+			stats.add(new LogData("1.2.3.4", "-", "han solo", Instant.now(), new LogData.Request("GET", site, "HTTP/1.0"), 200, 1));
+		}
+		return stats;
+	}
+}
@@ -0,0 +1,67 @@
+package com.adambarreiro.monitor.pipeline;
+
+import com.adambarreiro.monitor.capture.vo.LineBatch;
+import com.adambarreiro.monitor.process.log.CommonLogFormatLogProcessor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * These are the tests for the ring-buffer pipeline between the observer and the stats.
+ */
+public class RingPipelineTest {
+
+	/**
+	 * We put 500 batches of two files through a ring of 8 slots parsed by 3 threads, with a line that cannot be parsed
+	 * in every batch, and check that every record reaches the stats in the order its file was read, with every wait
+	 * strategy.
+	 */
+	@Test
+	@DisplayName("The lines of every source reach the stats in the order they were read")
+	public void theLinesOfEverySourceReachTheStatsInOrderTest() throws InterruptedException {
+		for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+			assertOrderedPipeline(waitStrategy);
+		}
+	}
+
+	private static void assertOrderedPipeline(WaitStrategy waitStrategy) throws InterruptedException {
+		Map<String, List<Integer>> sizes = new HashMap<>();
+		PipelineConfig config = PipelineConfig.builder()
+				.parseThreads(3)
+				.ringSize(8)
+				.waitStrategy(waitStrategy)
+				.build();
+		try (RingPipeline pipeline = RingPipeline.start(config, new CommonLogFormatLogProcessor(), record ->
+				sizes.computeIfAbsent(record.getSource(), source -> new ArrayList<>()).add(record.getSize()))) {
+			for (int i = 0; i < 500; i++) {
+				String[] lines = new String[4];
+				for (int j = 0; j < 3; j++) {
+					lines[j] = "127.0.0.1 - james [09/May/2018:16:00:39 +0000] \"GET /report HTTP/1.0\" 200 " + (i * 3 + j);
+				}
+				lines[3] = "not a log line";
+				pipeline.publish(new LineBatch(i % 2 == 0 ? "a.log" : "b.log", lines));
+			}
+			Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+				while (pipeline.getAggregatedLines() < 1500) {
+					Thread.sleep(10);
+				}
+			});
+			Assertions.assertEquals(2000L, pipeline.getReadLines());
+			Assertions.assertEquals(2000L, pipeline.getParsedLines());
+			Assertions.assertEquals(0, pipeline.getOccupancy());
+			Assertions.assertEquals(8, pipeline.getCapacity());
+		}
+		for (List<Integer> sourceSizes : sizes.values()) {
+			Assertions.assertEquals(750, sourceSizes.size());
+			for (int i = 1; i < sourceSizes.size(); i++) {
+				Assertions.assertTrue(sourceSizes.get(i - 1) < sourceSizes.get(i));
+			}
+		}
+	}
+}
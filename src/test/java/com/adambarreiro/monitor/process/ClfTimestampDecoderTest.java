@@ -0,0 +1,59 @@
+package com.adambarreiro.monitor.process;
+
+import com.adambarreiro.monitor.process.log.ClfTimestampDecoder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+public class ClfTimestampDecoderTest {
+
+	private ClfTimestampDecoder decoder;
+
+	@BeforeEach
+	public void setup() {
+		decoder = new ClfTimestampDecoder();
+	}
+
+	@Test
+	@DisplayName("The offset of the timestamp is honored")
+	public void theOffsetIsHonoredTest() {
+		Assertions.assertEquals(Instant.parse("2018-05-09T16:00:39Z"), decoder.decode("09/May/2018:16:00:39 +0000"));
+		Assertions.assertEquals(Instant.parse("2018-05-09T14:00:39Z"), decoder.decode("09/May/2018:16:00:39 +0200"));
+		Assertions.assertEquals(Instant.parse("2018-05-10T00:30:39Z"), decoder.decode("09/May/2018:16:00:39 -0830"));
+	}
+
+	@Test
+	@DisplayName("The fixed layout decoding agrees with the Java time API")
+	public void theFixedLayoutAgreesWithTheJavaTimeApiTest() {
+		DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.US);
+		OffsetDateTime date = OffsetDateTime.parse("28/Feb/1968:23:59:59 +0100", formatter);
+		for (int i = 0; i < 2000; i++) {
+			date = date.plusHours(i * 7L).plusSeconds(i);
+			Assertions.assertEquals(date.toInstant(), decoder.decode(formatter.format(date)));
+		}
+	}
+
+	@Test
+	@DisplayName("Lines of the same second reuse the decoded timestamp")
+	public void linesOfTheSameSecondReuseTheDecodedTimestampTest() {
+		Instant first = decoder.decode("127.0.0.1 [09/May/2018:16:00:39 +0000]", 11, 37);
+		Instant second = decoder.decode("10.0.0.1 [09/May/2018:16:00:39 +0000]", 10, 36);
+		Assertions.assertSame(first, second);
+		Assertions.assertEquals(Instant.parse("2018-05-09T16:00:40Z"), decoder.decode("09/May/2018:16:00:40 +0000"));
+	}
+
+	@Test
+	@DisplayName("Timestamps out of the fixed layout are still decoded, and invalid ones are rejected")
+	public void timestampsOutOfTheLayoutTest() {
+		Assertions.assertEquals(Instant.parse("2018-05-09T16:00:39Z"), decoder.decode("09/MAY/2018:16:00:39 +0000"));
+		Assertions.assertThrows(DateTimeParseException.class, () -> decoder.decode("09/May/2018:25:00:39 +0000"));
+		Assertions.assertThrows(DateTimeParseException.class, () -> decoder.decode("yesterday"));
+	}
+}
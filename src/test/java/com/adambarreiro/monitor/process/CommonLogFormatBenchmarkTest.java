@@ -0,0 +1,121 @@
+package com.adambarreiro.monitor.process;
+
+import com.adambarreiro.monitor.process.log.CommonLogFormatLogProcessor;
+import com.adambarreiro.monitor.process.log.CustomLogProcessor;
+import com.adambarreiro.monitor.process.log.LogProcessor;
+import com.adambarreiro.monitor.process.log.vo.LogData;
+import com.adambarreiro.monitor.process.log.vo.LogRecord;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatterBuilder;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Throughput comparison between the {@link CommonLogFormatLogProcessor}, the former one, based on a regular
+ * expression, a {@link CustomLogProcessor} compiled from the common format and the
+ * parsing into a reusable {@link LogRecord}. It's not run by default, as it takes a while and its results depend on the machine. To run it:
+ *
+ * ./mvnw test -Dbenchmark=true -Dtest=CommonLogFormatBenchmarkTest
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class CommonLogFormatBenchmarkTest {
+
+	private static final DateTimeFormatterBuilder builder = new DateTimeFormatterBuilder().parseCaseInsensitive()
+			.appendPattern(CommonLogFormatLogProcessor.STRFTIME_FORMAT);
+	private static final Pattern CLF_PATTERN = Pattern.compile("^(.+) (.+) (.+) \\[(.+)] \"(.+) (.+) (.+)\" (.+) (.+)$");
+	private static final String[] LINES = {
+			"127.0.0.1 - james [09/May/2018:16:00:39 +0000] \"GET /report HTTP/1.0\" 200 123",
+			"10.0.12.254 - - [09/May/2018:16:00:39 +0000] \"POST /api/user/42/settings HTTP/1.1\" 201 5120",
+			"192.168.1.1 - jill [09/May/2018:16:00:39 +0000] \"GET /static/css/main.min.css?v=20180509 HTTP/1.1\" 304 0"
+	};
+	private static final int ITERATIONS = 500_000;
+	private static final int ROUNDS = 5;
+
+	@Test
+	@DisplayName("The delimiter scanner is faster than the regular expression")
+	public void theScannerIsFasterThanTheRegularExpressionTest() {
+		LogProcessor logProcessor = new CommonLogFormatLogProcessor();
+		double regex = 0;
+		double scanner = 0;
+		double compiled = 0;
+		double record = 0;
+		LogRecord reusableRecord = new LogRecord();
+		LogProcessor compiledLogProcessor = CustomLogProcessor.of("common");
+		for (int i = 0; i < ROUNDS; i++) {
+			regex = Math.max(regex, measure(() -> {
+				long fields = 0;
+				for (int j = 0; j < ITERATIONS; j++) {
+					fields += processWithRegex(LINES[j % LINES.length])
+							.map(data -> data.getClient().length() + data.getRequest().getPath().length() + data.getStatusCode() + data.getSize())
+							.orElse(0);
+				}
+				return fields;
+			}));
+			scanner = Math.max(scanner, measure(() -> {
+				long fields = 0;
+				for (int j = 0; j < ITERATIONS; j++) {
+					fields += logProcessor.process(LINES[j % LINES.length])
+							.map(data -> data.getClient().length() + data.getRequest().getPath().length() + data.getStatusCode() + data.getSize())
+							.orElse(0);
+				}
+				return fields;
+			}));
+			compiled = Math.max(compiled, measure(() -> {
+				long fields = 0;
+				for (int j = 0; j < ITERATIONS; j++) {
+					fields += compiledLogProcessor.process(LINES[j % LINES.length])
+							.map(data -> data.getClient().length() + data.getRequest().getPath().length() + data.getStatusCode() + data.getSize())
+							.orElse(0);
+				}
+				return fields;
+			}));
+			record = Math.max(record, measure(() -> {
+				long fields = 0;
+				for (int j = 0; j < ITERATIONS; j++) {
+					if (logProcessor.parse(LINES[j % LINES.length], reusableRecord)) {
+						fields += reusableRecord.getPathEnd() - reusableRecord.getPathStart() + reusableRecord.getStatusCode() + reusableRecord.getSize();
+					}
+				}
+				return fields;
+			}));
+		}
+		System.out.printf("Regular expression: %.0f lines/s%n", regex);
+		System.out.printf("Delimiter scanner:  %.0f lines/s%n", scanner);
+		System.out.printf("Compiled format:    %.0f lines/s%n", compiled);
+		System.out.printf("Reusable record:    %.0f lines/s%n", record);
+		Assertions.assertTrue(scanner > regex);
+	}
+
+	/**
+	 * The former implementation of {@link CommonLogFormatLogProcessor#process(String)}.
+	 */
+	private Optional<LogData> processWithRegex(String logEntry) {
+		Matcher matcher = CLF_PATTERN.matcher(logEntry);
+		if (!matcher.matches()) {
+			return Optional.empty();
+		}
+		return Optional.of(new LogData(
+				matcher.group(1),
+				matcher.group(2),
+				matcher.group(3),
+				LocalDateTime.parse(matcher.group(4), builder.toFormatter(Locale.US)).atZone(ZoneId.systemDefault()).toInstant(),
+				new LogData.Request(matcher.group(5), matcher.group(6), matcher.group(7)),
+				Integer.parseInt(matcher.group(8)),
+				Integer.parseInt(matcher.group(9))));
+	}
+
+	private double measure(LongSupplier run) {
+		long start = System.nanoTime();
+		Assertions.assertTrue(run.getAsLong() > 0);
+		return ITERATIONS / ((System.nanoTime() - start) / 1e9);
+	}
+}
@@ -4,11 +4,16 @@ package com.adambarreiro.monitor.process;
 import com.adambarreiro.monitor.process.log.CommonLogFormatLogProcessor;
 import com.adambarreiro.monitor.process.log.LogProcessor;
 import com.adambarreiro.monitor.process.log.vo.LogData;
+import com.adambarreiro.monitor.process.log.vo.LogField;
+import com.adambarreiro.monitor.process.log.vo.LogRecord;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Optional;
 
 public class CommonLogFormatLogProcessorTest {
@@ -53,7 +58,7 @@ public class CommonLogFormatLogProcessorTest {
 	@DisplayName("The timestamp is obtained from the log when processed")
 	public void timestampIsObtainedWhenLogIsProcessedTest() {
 		Optional<LogData> data = logProcessor.process(LOG_OK);
-		Assertions.assertEquals("2018-05-09T14:00:39Z", data.orElseThrow().getTimestamp().toString());
+		Assertions.assertEquals("2018-05-09T16:00:39Z", data.orElseThrow().getTimestamp().toString());
 	}
 
 	@Test
@@ -90,4 +95,86 @@ public class CommonLogFormatLogProcessorTest {
 		Optional<LogData> data = logProcessor.process(LOG_OK);
 		Assertions.assertEquals(123, data.orElseThrow().getSize());
 	}
+
+	@Test
+	@DisplayName("Sizes of a GB or more are processed, capped to the largest int")
+	public void sizesOfAGigabyteOrMoreAreProcessedTest() {
+		LogData data = logProcessor.process("127.0.0.1 - james [09/May/2018:16:00:39 +0000] \"GET /iso HTTP/1.0\" 200 1073741824").orElseThrow();
+		Assertions.assertEquals(1_073_741_824, data.getSize());
+		data = logProcessor.process("127.0.0.1 - james [09/May/2018:16:00:39 +0000] \"GET /iso HTTP/1.0\" 200 53687091200").orElseThrow();
+		Assertions.assertEquals(Integer.MAX_VALUE, data.getSize());
+	}
+
+	@Test
+	@DisplayName("A batch of logs is processed skipping the invalid ones")
+	public void aBatchOfLogsIsProcessedSkippingTheInvalidOnesTest() {
+		List<LogData> processed = new ArrayList<>();
+		int count = logProcessor.process("access.log", new String[]{LOG_OK, "ksdhgakgdshagsdjsad", LOG_OK}, processed::add);
+		Assertions.assertEquals(2, count);
+		Assertions.assertEquals(2, processed.size());
+		Assertions.assertEquals("access.log", processed.get(0).getSource());
+	}
+
+	@Test
+	@DisplayName("Lines with missing or malformed fields are not processed")
+	public void malformedLogsAreNotProcessedTest() {
+		Assertions.assertTrue(logProcessor.process("").isEmpty());
+		Assertions.assertTrue(logProcessor.process("127.0.0.1 - james [09/May/2018:16:00:39 +0000] \"GET /report HTTP/1.0\" 200").isEmpty());
+		Assertions.assertTrue(logProcessor.process("127.0.0.1 - james [09/May/2018:16:00:39 +0000] \"GET /report HTTP/1.0\" OK 123").isEmpty());
+		Assertions.assertTrue(logProcessor.process("127.0.0.1 - james 09/May/2018:16:00:39 +0000 \"GET /report HTTP/1.0\" 200 123").isEmpty());
+		Assertions.assertTrue(logProcessor.process("127.0.0.1 - james [09/May/2018:16:00:39 +0000] \"GET\" 200 123").isEmpty());
+		Assertions.assertTrue(logProcessor.process("127.0.0.1 - james [yesterday] \"GET /report HTTP/1.0\" 200 123").isEmpty());
+	}
+
+	@Test
+	@DisplayName("Paths with spaces and empty sizes are processed")
+	public void pathsWithSpacesAndEmptySizesAreProcessedTest() {
+		LogData data = logProcessor.process("127.0.0.1 - - [09/May/2018:16:00:39 +0000] \"GET /my report HTTP/1.1\" 304 -").orElseThrow();
+		Assertions.assertEquals("/my report", data.getRequest().getPath());
+		Assertions.assertEquals("HTTP/1.1", data.getRequest().getVersion());
+		Assertions.assertEquals("-", data.getUserId());
+		Assertions.assertEquals(304, data.getStatusCode());
+		Assertions.assertEquals(0, data.getSize());
+	}
+
+	@Test
+	@DisplayName("A log is parsed into a reusable record without copying its fields")
+	public void aLogIsParsedIntoAReusableRecordTest() {
+		LogRecord record = new LogRecord();
+		Assertions.assertTrue(logProcessor.parse(LOG_OK, record));
+		Assertions.assertSame(LOG_OK, record.getLine());
+		Assertions.assertEquals("/report", LOG_OK.substring(record.getPathStart(), record.getPathEnd()));
+		Assertions.assertEquals(1525881639L, record.getEpochSecond());
+		Assertions.assertEquals(200, record.getStatusCode());
+		Assertions.assertEquals(123, record.getSize());
+		Assertions.assertEquals("james", record.getUserId());
+		Assertions.assertFalse(logProcessor.parse("ksdhgakgdshagsdjsad", record));
+	}
+
+	@Test
+	@DisplayName("A batch of logs is parsed into the same record tagged with its source and weight")
+	public void aBatchOfLogsIsParsedIntoTheSameRecordTest() {
+		LogRecord record = new LogRecord();
+		List<String> sources = new ArrayList<>();
+		int count = logProcessor.parse("access.log", new String[]{LOG_OK, "ksdhgakgdshagsdjsad", LOG_OK}, 10, record, parsed -> {
+			Assertions.assertSame(record, parsed);
+			Assertions.assertEquals(10, parsed.getWeight());
+			sources.add(parsed.getSource());
+		});
+		Assertions.assertEquals(2, count);
+		Assertions.assertEquals(List.of("access.log", "access.log"), sources);
+	}
+
+	@Test
+	@DisplayName("A projected processor doesn't decode the fields that are not required")
+	public void aProjectedProcessorDoesNotDecodeTheFieldsThatAreNotRequiredTest() {
+		LogProcessor projected = logProcessor.project(EnumSet.of(LogField.PATH, LogField.STATUS_CODE));
+		LogRecord record = new LogRecord();
+		Assertions.assertTrue(projected.parse("127.0.0.1 - james [yesterday] \"GET /report HTTP/1.0\" 200 123", record));
+		Assertions.assertEquals("/report", record.getPath());
+		Assertions.assertEquals(200, record.getStatusCode());
+		Assertions.assertEquals(0L, record.getEpochSecond());
+		Assertions.assertEquals(0, record.getSize());
+		Assertions.assertFalse(projected.parse("127.0.0.1 - james [yesterday] \"GET /report HTTP/1.0\" OK 123", record));
+	}
 }
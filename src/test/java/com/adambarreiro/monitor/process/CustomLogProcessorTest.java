@@ -0,0 +1,91 @@
+package com.adambarreiro.monitor.process;
+
+import com.adambarreiro.monitor.process.log.CommonLogFormatLogProcessor;
+import com.adambarreiro.monitor.process.log.CustomLogProcessor;
+import com.adambarreiro.monitor.process.log.LogProcessor;
+import com.adambarreiro.monitor.process.log.vo.LogData;
+import com.adambarreiro.monitor.process.log.vo.LogField;
+import com.adambarreiro.monitor.process.log.vo.LogRecord;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+
+public class CustomLogProcessorTest {
+
+	private static final String COMBINED_LOG = "10.0.0.1 - jill [09/May/2018:16:00:39 +0200] \"POST /api/users HTTP/1.1\" 201 512 \"https://example.com/\" \"Mozilla/5.0 (X11; Linux x86_64)\" 0.012 0.010, 0.002";
+
+	@Test
+	@DisplayName("An nginx format with custom fields is compiled and processed")
+	public void anNginxFormatWithCustomFieldsIsProcessedTest() {
+		CustomLogProcessor logProcessor = CustomLogProcessor.of(CustomLogProcessor.COMBINED + " $request_time $upstream_response_time");
+		LogData data = logProcessor.process(COMBINED_LOG).orElseThrow();
+		Assertions.assertEquals("10.0.0.1", data.getClient());
+		Assertions.assertEquals("jill", data.getUserId());
+		Assertions.assertEquals("2018-05-09T14:00:39Z", data.getTimestamp().toString());
+		Assertions.assertEquals("POST", data.getRequest().getVerb());
+		Assertions.assertEquals("/api/users", data.getRequest().getPath());
+		Assertions.assertEquals("HTTP/1.1", data.getRequest().getVersion());
+		Assertions.assertEquals(201, data.getStatusCode());
+		Assertions.assertEquals(512, data.getSize());
+		Assertions.assertEquals(12_000L, data.getRequestTimeMicros());
+	}
+
+	@Test
+	@DisplayName("An Apache format is compiled and processed")
+	public void anApacheFormatIsProcessedTest() {
+		CustomLogProcessor logProcessor = CustomLogProcessor.of("%h %l %u %t \"%r\" %>s %b \"%{Referer}i\" %D");
+		LogData data = logProcessor.process("127.0.0.1 - frank [10/Oct/2000:13:55:36 -0700] \"GET /apache_pb.gif HTTP/1.0\" 200 2326 \"-\" 1500").orElseThrow();
+		Assertions.assertEquals("frank", data.getUserId());
+		Assertions.assertEquals("2000-10-10T20:55:36Z", data.getTimestamp().toString());
+		Assertions.assertEquals("/apache_pb.gif", data.getRequest().getPath());
+		Assertions.assertEquals(2326, data.getSize());
+		Assertions.assertEquals(1500L, data.getRequestTimeMicros());
+	}
+
+	@Test
+	@DisplayName("The common format gives the same data as the Common Log Format processor")
+	public void theCommonFormatGivesTheSameDataTest() {
+		LogData expected = new CommonLogFormatLogProcessor().process(CommonLogFormatLogProcessorTest.LOG_OK).orElseThrow();
+		LogData data = CustomLogProcessor.of("common").process(CommonLogFormatLogProcessorTest.LOG_OK).orElseThrow();
+		Assertions.assertEquals(expected.getClient(), data.getClient());
+		Assertions.assertEquals(expected.getIdentity(), data.getIdentity());
+		Assertions.assertEquals(expected.getUserId(), data.getUserId());
+		Assertions.assertEquals(expected.getTimestamp(), data.getTimestamp());
+		Assertions.assertEquals(expected.getRequest().getPath(), data.getRequest().getPath());
+		Assertions.assertEquals(expected.getStatusCode(), data.getStatusCode());
+		Assertions.assertEquals(expected.getSize(), data.getSize());
+		Assertions.assertEquals(LogData.NO_REQUEST_TIME, data.getRequestTimeMicros());
+	}
+
+	@Test
+	@DisplayName("Lines that don't follow the format are not processed")
+	public void linesThatDontFollowTheFormatAreNotProcessedTest() {
+		CustomLogProcessor logProcessor = CustomLogProcessor.of("combined");
+		Assertions.assertTrue(logProcessor.process(CommonLogFormatLogProcessorTest.LOG_OK).isEmpty());
+		Assertions.assertTrue(logProcessor.process("").isEmpty());
+		Assertions.assertTrue(logProcessor.process("10.0.0.1 - jill [09/May/2018:16:00:39 +0200] \"POST /api/users HTTP/1.1\" OK 512 \"-\" \"-\"").isEmpty());
+	}
+
+	@Test
+	@DisplayName("Formats that cannot be parsed unambiguously are rejected")
+	public void ambiguousFormatsAreRejectedTest() {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> CustomLogProcessor.of("$remote_addr$remote_user [$time_local]"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> CustomLogProcessor.of("$remote_addr \"$request\" $status"));
+	}
+
+	@Test
+	@DisplayName("A projected format only extracts the required fields")
+	public void aProjectedFormatOnlyExtractsTheRequiredFieldsTest() {
+		LogProcessor logProcessor = CustomLogProcessor.of(CustomLogProcessor.COMBINED + " $request_time $upstream_response_time")
+				.project(EnumSet.of(LogField.PATH, LogField.STATUS_CODE));
+		LogRecord record = new LogRecord();
+		Assertions.assertTrue(logProcessor.parse(COMBINED_LOG, record));
+		Assertions.assertEquals("/api/users", record.getPath());
+		Assertions.assertEquals(201, record.getStatusCode());
+		Assertions.assertEquals("-", record.getClient());
+		Assertions.assertEquals(0, record.getSize());
+		Assertions.assertEquals(LogData.NO_REQUEST_TIME, record.getRequestTimeMicros());
+	}
+}
@@ -0,0 +1,74 @@
+package com.adambarreiro.monitor.stats;
+
+import com.adambarreiro.monitor.process.log.vo.LogData;
+import com.adambarreiro.monitor.stats.vo.Dimension;
+import com.adambarreiro.monitor.stats.vo.StatsSnapshot;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * These are the tests for the aggregates that several monitors merge.
+ */
+public class AggregateTest {
+
+	/**
+	 * We serialize the aggregate of a window and read it back, so it gives the same metrics.
+	 */
+	@Test
+	@DisplayName("An aggregate is read back from its bytes")
+	public void anAggregateIsReadBackFromItsBytesTest() throws IOException {
+		Aggregate aggregate = monitor("a.log", 0, 50).getAggregate(60);
+		Aggregate readBack = Aggregate.fromBytes(aggregate.toBytes());
+		assertSameMetrics(aggregate.toSnapshot(3), readBack.toSnapshot(3));
+		Assertions.assertArrayEquals(aggregate.toBytes(), readBack.toBytes());
+		Assertions.assertThrows(IOException.class, () -> Aggregate.fromBytes(new byte[]{1, 2, 3, 4, 5}));
+	}
+
+	/**
+	 * We merge the aggregates of three monitors whose clients overlap, in two different orders, and check that the
+	 * counters are summed and the distinct clients are counted once.
+	 */
+	@Test
+	@DisplayName("Merging the aggregates of several monitors gives the metrics of all their requests, in any order")
+	public void mergingTheAggregatesOfSeveralMonitorsGivesTheMetricsOfAllTheirRequestsTest() {
+		Aggregate a = monitor("a.log", 0, 100).getAggregate(60);
+		Aggregate b = monitor("b.log", 50, 150).getAggregate(60);
+		Aggregate c = monitor("c.log", 100, 200).getAggregate(60);
+		StatsSnapshot merged = a.merge(b).merge(c).toSnapshot(3);
+		assertSameMetrics(merged, c.merge(a.merge(b)).toSnapshot(3));
+		Assertions.assertEquals(300L, a.merge(b).merge(c).getRequests());
+		Assertions.assertEquals(300f / 60, merged.getRequestsRate());
+		Assertions.assertEquals(300L, merged.getTotalTransmittedData());
+		Assertions.assertEquals(200, merged.getDistinctClients(), 4);
+		Assertions.assertEquals(Map.of("a.log", 100, "b.log", 100, "c.log", 100), merged.getSourceHits());
+		Assertions.assertEquals(300L, merged.getGroups(Set.of(Dimension.STATUS_CLASS)).get(0).getHits());
+		Assertions.assertThrows(IllegalArgumentException.class, () -> a.merge(Aggregate.empty(10)));
+	}
+
+	private static Stats monitor(String source, int firstClient, int lastClient) {
+		Stats stats = new ScheduledStats(60);
+		for (int i = firstClient; i < lastClient; i++) {
+			stats.add(new LogData(source, "10.0." + (i / 256) + "." + (i % 256), "-", "han solo", Instant.now(),
+					new LogData.Request("GET", "/ships/" + i, "HTTP/1.0"), 200, 1));
+		}
+		return stats;
+	}
+
+	private static void assertSameMetrics(StatsSnapshot expected, StatsSnapshot actual) {
+		Assertions.assertEquals(expected.getRequestsRate(), actual.getRequestsRate());
+		Assertions.assertEquals(expected.getErrorRate(), actual.getErrorRate());
+		Assertions.assertEquals(expected.getTotalTransmittedData(), actual.getTotalTransmittedData());
+		Assertions.assertEquals(expected.getTopSites().getByHits(), actual.getTopSites().getByHits());
+		Assertions.assertEquals(expected.getSourceHits(), actual.getSourceHits());
+		Assertions.assertEquals(expected.getSizePercentiles().getP99(), actual.getSizePercentiles().getP99());
+		Assertions.assertEquals(expected.getDistinctClients(), actual.getDistinctClients());
+		Assertions.assertEquals(expected.getDistinctPaths(), actual.getDistinctPaths());
+		Assertions.assertEquals(expected.getGroups().size(), actual.getGroups().size());
+	}
+}
@@ -0,0 +1,102 @@
+package com.adambarreiro.monitor.stats;
+
+import com.adambarreiro.monitor.process.log.vo.LogData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * These are the tests for the ring of per-second buckets. The clock is passed to the ring, so we can move it at will.
+ */
+public class BucketRingTest {
+
+	private static final long NOW = 1_000_000L;
+
+	/**
+	 * We count a line per second during a minute and read several windows as time goes by, so the running totals of
+	 * the windows are rolled and the old seconds leave them.
+	 */
+	@Test
+	@DisplayName("Every sliding window counts the lines of its own seconds")
+	public void everySlidingWindowCountsTheLinesOfItsOwnSecondsTest() {
+		BucketRing ring = new BucketRing(new int[]{10, 60, 1}, 5, 2, 100);
+		for (long second = NOW - 59; second <= NOW; second++) {
+			ring.add(second, second, "/ships", "a.log", second % 2 == 0, 100, LogData.NO_REQUEST_TIME, 0L, 1);
+			Assertions.assertEquals(Math.min(10, second - NOW + 60), ring.read(second, 10).getRequests());
+		}
+		Assertions.assertEquals(1, ring.read(NOW, 1).getRequests());
+		Assertions.assertEquals(10, ring.read(NOW, 10).getRequests());
+		Assertions.assertEquals(5, ring.read(NOW, 10).getErrors());
+		Assertions.assertEquals(60, ring.read(NOW, 60).getRequests());
+		Assertions.assertEquals(6000, ring.read(NOW, 60).getBytes());
+		Assertions.assertEquals(60, (long) ring.read(NOW, 60).getTopSites(1).getByHits().get("/ships"));
+		Assertions.assertEquals(30, ring.read(NOW + 30, 60).getRequests());
+		Assertions.assertEquals(0, ring.read(NOW + 30, 10).getRequests());
+		Assertions.assertTrue(ring.read(NOW + 60, 60).getTopSites(1).getByHits().isEmpty());
+	}
+
+	/**
+	 * We count lines of seconds already rolled into the windows and check they're added to the windows that hold
+	 * those seconds, and subtracted when they leave them. A line older than the longest window is dropped.
+	 */
+	@Test
+	@DisplayName("Late lines are counted in the windows holding their second, older ones are dropped")
+	public void lateLinesAreCountedInTheWindowsHoldingTheirSecondTest() {
+		BucketRing ring = new BucketRing(new int[]{10, 60}, 5, 2, 100);
+		ring.add(NOW, NOW, "/ships", "a.log", false, 1, LogData.NO_REQUEST_TIME, 0L, 1);
+		ring.read(NOW, 60);
+		ring.add(NOW, NOW - 30, "/shops", "a.log", false, 1, LogData.NO_REQUEST_TIME, 0L, 3);
+		ring.add(NOW, NOW - 5, "/shops", "a.log", false, 1, LogData.NO_REQUEST_TIME, 0L, 1);
+		Assertions.assertEquals(5, ring.read(NOW, 60).getRequests());
+		Assertions.assertEquals(2, ring.read(NOW, 10).getRequests());
+		Assertions.assertEquals(4, ring.getLateLines());
+		ring.add(NOW, NOW - 60, "/shops", "a.log", false, 1, LogData.NO_REQUEST_TIME, 0L, 1);
+		Assertions.assertEquals(1, ring.getDroppedLines());
+		Assertions.assertEquals(5, ring.read(NOW + 20, 60).getRequests());
+		Assertions.assertEquals(2, ring.read(NOW + 40, 60).getRequests());
+		Assertions.assertEquals(0, ring.read(NOW + 40, 10).getRequests());
+		Assertions.assertEquals(0, ring.read(NOW + 120, 60).getRequests());
+	}
+
+	/**
+	 * Four threads add the lines of the same second while the second is rolled into the windows, so some lines check
+	 * the watermark before the second is frozen and are added after. Every line is counted anyway, live or late. The
+	 * race is short, so it's run a hundred times.
+	 */
+	@Test
+	@DisplayName("The lines added while their second is frozen are still counted")
+	public void theLinesAddedWhileTheirSecondIsFrozenAreStillCountedTest() throws InterruptedException {
+		for (int run = 0; run < 100; run++) {
+			BucketRing ring = new BucketRing(new int[]{60}, 5, 2, 100);
+			List<Thread> threads = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				Thread thread = new Thread(() -> {
+					for (int i = 0; i < 5_000; i++) {
+						ring.add(NOW, NOW, "/ships", "a.log", false, 1, LogData.NO_REQUEST_TIME, 0L, 1);
+					}
+				});
+				thread.start();
+				threads.add(thread);
+			}
+			while (ring.read(NOW, 60).getRequests() < 1_000) {
+				Thread.onSpinWait();
+			}
+			ring.read(NOW + 2, 60);
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			Assertions.assertEquals(20_000, ring.read(NOW + 2, 60).getRequests());
+			Assertions.assertEquals(20_000, ring.read(NOW + 2, 60).getBytes());
+		}
+	}
+
+	@Test
+	@DisplayName("A window shorter than a second is rejected")
+	public void aWindowShorterThanASecondIsRejectedTest() {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new BucketRing(new int[]{0, 10}, 5, 2, 100));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new BucketRing(new int[]{10}, 5, 2, 100).read(NOW, 60));
+	}
+}
@@ -0,0 +1,32 @@
+package com.adambarreiro.monitor.stats;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * These are the tests for the ids of the values of the grouped dimensions.
+ */
+public class DictionaryTest {
+
+	/**
+	 * Once every id is taken, a new value is counted as any other one until the values seen last are old enough to
+	 * give their ids away, while the ones still seen keep their ids.
+	 */
+	@Test
+	@DisplayName("The ids of the values not seen for long are given to the new ones")
+	public void theIdsOfTheValuesNotSeenForLongAreGivenToTheNewOnesTest() {
+		Dictionary dictionary = new Dictionary(3, 10L);
+		int ships = dictionary.idOf("/ships", 0L);
+		int shops = dictionary.idOf("/shops", 0L);
+		Assertions.assertEquals(3, dictionary.idOf("/planes", 5L));
+		Assertions.assertEquals(Dictionary.OTHER, dictionary.valueOf(3));
+		Assertions.assertEquals(ships, dictionary.idOf("/ships", 8L));
+		Assertions.assertEquals(shops, dictionary.idOf("/planes", 11L));
+		Assertions.assertEquals("/planes", dictionary.valueOf(shops));
+		Assertions.assertEquals(3, dictionary.idOf("/boats", 11L));
+		Assertions.assertEquals(ships, dictionary.idOf("/boats", 19L));
+		Assertions.assertEquals(3, dictionary.idOf("/shops", 19L));
+		Assertions.assertEquals(shops, dictionary.idOf("/planes", 19L));
+	}
+}
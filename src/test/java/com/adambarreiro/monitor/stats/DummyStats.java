@@ -1,7 +1,7 @@
 package com.adambarreiro.monitor.stats;
 
 import com.adambarreiro.monitor.export.Exporter;
-import com.adambarreiro.monitor.process.log.vo.LogData;
+import com.adambarreiro.monitor.process.log.vo.LogRecord;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -21,7 +21,7 @@ public class DummyStats implements Stats {
 	}
 
 	@Override
-	public void add(LogData data) {
+	public void add(LogRecord record) {
 
 	}
 
@@ -30,6 +30,11 @@ public class DummyStats implements Stats {
 		return this.hits;
 	}
 
+	@Override
+	public Map<String, Integer> getSourceHits() {
+		return this.hits;
+	}
+
 	@Override
 	public float getRequestsRate() {
 		return this.requestDate;
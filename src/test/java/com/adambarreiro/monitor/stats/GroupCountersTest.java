@@ -0,0 +1,47 @@
+package com.adambarreiro.monitor.stats;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * These are the tests for the hash table of the counters of the groups.
+ */
+public class GroupCountersTest {
+
+	@Test
+	@DisplayName("The counters of many groups survive the growth of the table")
+	public void theCountersOfManyGroupsSurviveTheGrowthTest() {
+		GroupCounters counters = new GroupCounters();
+		for (long key = 0; key < 10_000; key++) {
+			counters.add(key << 16, 1, key);
+			counters.add(key << 16, 1, key);
+		}
+		Map<Long, long[]> groups = new HashMap<>();
+		counters.forEach((key, hits, bytes) -> groups.put(key, new long[]{hits, bytes}));
+		Assertions.assertEquals(10_000, groups.size());
+		Assertions.assertArrayEquals(new long[]{2, 2 * 9_999}, groups.get(9_999L << 16));
+	}
+
+	/**
+	 * We subtract some groups, like a sliding window does with the second leaving it, and project the rest on the
+	 * lowest 16 bits, like a query on a single dimension.
+	 */
+	@Test
+	@DisplayName("Groups can be subtracted and merged by some dimensions")
+	public void groupsCanBeSubtractedAndMergedTest() {
+		GroupCounters window = new GroupCounters();
+		GroupCounters leaving = new GroupCounters();
+		window.add(0x1_0002L, 5, 500);
+		window.add(0x2_0002L, 1, 100);
+		window.add(0x2_0003L, 2, 200);
+		leaving.add(0x2_0002L, 1, 100);
+		window.add(leaving, -1);
+		Map<Long, Long> hits = new HashMap<>();
+		window.project(0xFFFFL).forEach((key, groupHits, bytes) -> hits.put(key, groupHits));
+		Assertions.assertEquals(Map.of(2L, 5L, 3L, 2L), hits);
+	}
+}
@@ -0,0 +1,87 @@
+package com.adambarreiro.monitor.stats;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * These are the tests for the HyperLogLog counter of distinct values.
+ */
+public class HyperLogLogTest {
+
+	@Test
+	@DisplayName("Few distinct values are counted nearly exactly, and repeated ones only once")
+	public void fewDistinctValuesAreCountedNearlyExactlyTest() {
+		HyperLogLog counter = new HyperLogLog();
+		Assertions.assertEquals(0, counter.estimate());
+		for (int i = 0; i < 3; i++) {
+			for (int client = 0; client < 500; client++) {
+				counter.add(hash("10.0.0." + client));
+			}
+		}
+		Assertions.assertEquals(500, counter.estimate(), 5);
+	}
+
+	/**
+	 * We count a DDoS of a million different clients and check the estimation is within three standard errors.
+	 */
+	@Test
+	@DisplayName("Many distinct values are counted within the error")
+	public void manyDistinctValuesAreCountedWithinTheErrorTest() {
+		HyperLogLog counter = new HyperLogLog();
+		for (int client = 0; client < 1_000_000; client++) {
+			counter.add(hash("client-" + client));
+		}
+		Assertions.assertEquals(1_000_000, counter.estimate(), 1_000_000 * 0.05);
+	}
+
+	/**
+	 * We count from 3000 to 15000 distinct clients, where the classic estimation is biased and linear counting gets
+	 * loose, several times each, and check the mean estimation has no noticeable bias.
+	 */
+	@Test
+	@DisplayName("Distinct values between linear counting and the classic estimation are counted without bias")
+	public void distinctValuesBetweenLinearCountingAndTheClassicEstimationAreCountedWithoutBiasTest() {
+		int trials = 10;
+		for (int clients = 3000; clients <= 15000; clients += 1000) {
+			long estimations = 0;
+			for (int trial = 0; trial < trials; trial++) {
+				HyperLogLog counter = new HyperLogLog();
+				for (int client = 0; client < clients; client++) {
+					counter.add(hash("client-" + trial + "-" + client));
+				}
+				Assertions.assertEquals(clients, counter.estimate(), clients * 0.05);
+				estimations += counter.estimate();
+			}
+			Assertions.assertEquals(clients, (double) estimations / trials, clients * 0.02);
+		}
+	}
+
+	/**
+	 * We count overlapping clients in a sparse counter and in a dense one, like two seconds of a window, and check
+	 * their merge counts the shared clients once.
+	 */
+	@Test
+	@DisplayName("Counters are merged counting the shared values once")
+	public void countersAreMergedCountingTheSharedValuesOnceTest() {
+		HyperLogLog sparse = new HyperLogLog();
+		HyperLogLog dense = new HyperLogLog();
+		for (int client = 0; client < 100; client++) {
+			sparse.add(hash("client-" + client));
+		}
+		for (int client = 50; client < 20_050; client++) {
+			dense.add(hash("client-" + client));
+		}
+		HyperLogLog window = new HyperLogLog();
+		window.merge(sparse);
+		Assertions.assertEquals(100, window.estimate(), 1);
+		window.merge(dense);
+		Assertions.assertEquals(20_050, window.estimate(), 20_050 * 0.05);
+		dense.merge(sparse);
+		Assertions.assertEquals(window.estimate(), dense.estimate());
+	}
+
+	private static long hash(String value) {
+		return HyperLogLog.hash(value, 0, value.length());
+	}
+}
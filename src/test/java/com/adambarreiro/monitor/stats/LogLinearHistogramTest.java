@@ -0,0 +1,62 @@
+package com.adambarreiro.monitor.stats;
+
+import com.adambarreiro.monitor.stats.vo.Percentiles;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * These are the tests for the log-linear histogram of sizes and request times.
+ */
+public class LogLinearHistogramTest {
+
+	@Test
+	@DisplayName("Every value falls in a bucket starting below it and narrower than a sixteenth of it")
+	public void everyValueFallsInItsBucketTest() {
+		for (long value = 0; value < 1_000_000; value += 7) {
+			int index = LogLinearHistogram.indexOf(value);
+			Assertions.assertTrue(LogLinearHistogram.lowestValueOf(index) <= value);
+			Assertions.assertTrue(LogLinearHistogram.lowestValueOf(index + 1) > value);
+			Assertions.assertTrue(LogLinearHistogram.lowestValueOf(index + 1) - LogLinearHistogram.lowestValueOf(index) <= Math.max(1, value / 16));
+		}
+		Assertions.assertEquals(527, LogLinearHistogram.indexOf(LogLinearHistogram.MAX_VALUE));
+	}
+
+	/**
+	 * We count the sizes from 1 to 100000 bytes, so every percentile is known, and check they're within 3%.
+	 */
+	@Test
+	@DisplayName("The percentiles are within 3% of the true ones")
+	public void thePercentilesAreWithinTheErrorTest() {
+		LogLinearHistogram histogram = new LogLinearHistogram();
+		for (int size = 1; size <= 100_000; size++) {
+			histogram.record(size, 1);
+		}
+		histogram.record(-1, 1);
+		Percentiles percentiles = histogram.getPercentiles();
+		Assertions.assertEquals(100_000, percentiles.getCount());
+		Assertions.assertEquals(50_000, percentiles.getP50(), 50_000 * 0.03);
+		Assertions.assertEquals(90_000, percentiles.getP90(), 90_000 * 0.03);
+		Assertions.assertEquals(99_000, percentiles.getP99(), 99_000 * 0.03);
+		Assertions.assertEquals(99_900, percentiles.getP999(), 99_900 * 0.03);
+		Assertions.assertEquals(100_000, percentiles.getMax(), 100_000 * 0.03);
+	}
+
+	@Test
+	@DisplayName("Histograms can be added and subtracted")
+	public void histogramsCanBeAddedAndSubtractedTest() {
+		LogLinearHistogram small = new LogLinearHistogram();
+		small.record(10, 3);
+		LogLinearHistogram large = new LogLinearHistogram();
+		large.record(10_000, 1);
+		LogLinearHistogram sum = new LogLinearHistogram();
+		sum.add(small, 1);
+		sum.add(large, 1);
+		Assertions.assertEquals(4, sum.getPercentiles().getCount());
+		Assertions.assertEquals(10, sum.getPercentiles().getP50());
+		sum.add(small, -1);
+		Assertions.assertEquals(10_000, sum.getPercentiles().getP50(), 10_000 * 0.03);
+		sum.add(large, -1);
+		Assertions.assertSame(Percentiles.NONE, sum.getPercentiles());
+	}
+}
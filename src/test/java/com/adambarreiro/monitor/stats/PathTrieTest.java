@@ -0,0 +1,103 @@
+package com.adambarreiro.monitor.stats;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * These are the tests for the trie of the visited paths.
+ */
+public class PathTrieTest {
+
+	@Test
+	@DisplayName("The site is the first level of the path, without the query string")
+	public void theSiteIsTheFirstLevelOfThePathTest() {
+		PathTrie trie = new PathTrie(100, 100, 10);
+		String line = "GET /report?section=/pages HTTP/1.0";
+		Assertions.assertEquals("/report", trie.add(line, 4, 26, 1));
+		Assertions.assertEquals("/api", trie.add("/api/v2/users", 0, 13, 1));
+		Assertions.assertEquals("/api", trie.add("//api/", 0, 6, 1));
+		Assertions.assertEquals("/", trie.add("/", 0, 1, 1));
+	}
+
+	/**
+	 * Every visit counts for every prefix of its path, so the top paths can be read at any depth once the interval is
+	 * rotated.
+	 */
+	@Test
+	@DisplayName("The top paths are counted at every depth")
+	public void theTopPathsAreCountedAtEveryDepthTest() {
+		PathTrie trie = new PathTrie(100, 100, 10);
+		for (String path : List.of("/api/v2/users", "/api/v2/users", "/api/v2/orders", "/api/v1/users", "/ships")) {
+			trie.add(path, 0, path.length(), 1);
+		}
+		Assertions.assertEquals(Map.of(), trie.getTopPaths("/", 3));
+		trie.rotate();
+		Assertions.assertEquals(List.of("/api", "/ships"), List.copyOf(trie.getTopPaths("/", 3).keySet()));
+		Assertions.assertEquals(4L, trie.getTopPaths("/", 3).get("/api"));
+		Assertions.assertEquals(Map.of("/api/v2", 3L), trie.getTopPaths("/api", 1));
+		Assertions.assertEquals(List.of("/api/v2/users", "/api/v2/orders"), List.copyOf(trie.getTopPaths("/api/v2/", 3).keySet()));
+		Assertions.assertEquals(Map.of(), trie.getTopPaths("/missing", 3));
+	}
+
+	@Test
+	@DisplayName("The paths without visits are pruned, and the new ones are bounded")
+	public void thePathsWithoutVisitsArePrunedTest() {
+		PathTrie trie = new PathTrie(1, 100, 10);
+		trie.add("/api/v2", 0, 7, 1);
+		// the trie is full, so it's counted by its site
+		Assertions.assertEquals("/ships", trie.add("/ships/boats", 0, 12, 1));
+		trie.rotate();
+		Assertions.assertEquals(Map.of(), trie.getTopPaths("/ships", 3));
+		trie.rotate();
+		Assertions.assertEquals(Map.of(), trie.getTopPaths("/", 3));
+		Assertions.assertEquals("/ships", trie.add("/ships", 0, 6, 1));
+	}
+
+	/**
+	 * Once the trie is full, a new site still gets its own node, and the paths below it are counted by the site, also
+	 * when they come from the cache of the hot paths.
+	 */
+	@Test
+	@DisplayName("A new site is counted by itself once the trie is full")
+	public void aNewSiteIsCountedByItselfOnceTheTrieIsFullTest() {
+		PathTrie trie = new PathTrie(2, 100, 10);
+		trie.add("/api/v2/users", 0, 13, 1);
+		for (int i = 0; i < 2; i++) {
+			Assertions.assertEquals("/ships", trie.add("/ships/boats", 0, 12, 1));
+		}
+		Assertions.assertEquals("/planes", trie.add("/planes", 0, 7, 1));
+		trie.rotate();
+		Assertions.assertEquals(Map.of("/ships", 2L, "/api", 1L, "/planes", 1L), trie.getTopPaths("/", 3));
+		Assertions.assertEquals(Map.of(), trie.getTopPaths("/ships", 3));
+		Assertions.assertEquals(Map.of("/api/v2", 1L), trie.getTopPaths("/api", 3));
+	}
+
+	/**
+	 * Once there are as many sites as allowed, the new ones are counted together, without a node of their own, but
+	 * their own site is still given back.
+	 */
+	@Test
+	@DisplayName("The new sites are counted together once there are too many")
+	public void theNewSitesAreCountedTogetherOnceThereAreTooManyTest() {
+		PathTrie trie = new PathTrie(100, 2, 10);
+		trie.add("/api/v2", 0, 7, 1);
+		trie.add("/ships", 0, 6, 1);
+		for (int i = 0; i < 1000; i++) {
+			String path = "/crawl" + i + "/page";
+			Assertions.assertEquals("/crawl" + i, trie.add(path, 0, path.length(), 1));
+		}
+		trie.rotate();
+		Assertions.assertEquals(Map.of("/*", 1000L, "/api", 1L, "/ships", 1L), trie.getTopPaths("/", 3));
+		Assertions.assertEquals(Map.of(), trie.getTopPaths("/crawl1", 3));
+		// once a site is pruned, there's room for a new one
+		trie.add("/api/v2", 0, 7, 1);
+		trie.rotate();
+		Assertions.assertEquals("/planes", trie.add("/planes", 0, 7, 1));
+		trie.rotate();
+		Assertions.assertEquals(Map.of("/planes", 1L), trie.getTopPaths("/", 3));
+	}
+}
@@ -3,12 +3,26 @@ package com.adambarreiro.monitor.stats;
 
 import com.adambarreiro.monitor.exporter.DummyExporter;
 import com.adambarreiro.monitor.process.log.vo.LogData;
+import com.adambarreiro.monitor.process.log.vo.LogRecord;
+import com.adambarreiro.monitor.stats.vo.Dimension;
+import com.adambarreiro.monitor.stats.vo.Group;
+import com.adambarreiro.monitor.stats.vo.Percentiles;
+import com.adambarreiro.monitor.stats.vo.StatsSnapshot;
+import com.adambarreiro.monitor.stats.vo.TopSites;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
@@ -88,6 +102,331 @@ public class ScheduledStatsTest {
 		});
 	}
 
+	/**
+	 * We create some dummy log entries and wait for the first snapshot, which holds all the metrics of the interval
+	 * and cannot be modified by its readers.
+	 */
+	@Test
+	@DisplayName("Every interval publishes a single immutable snapshot")
+	public void everyIntervalPublishesASingleImmutableSnapshotTest() {
+		Stats stats = new ScheduledStats(10);
+		generateDummyData(5, stats, "/ships", 200);
+		stats.expose(new DummyExporter());
+		Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			while (stats.getSnapshot() == StatsSnapshot.NONE) {
+			}
+		});
+		StatsSnapshot snapshot = stats.getSnapshot();
+		Assertions.assertEquals(5, snapshot.getTotalTransmittedData());
+		Assertions.assertEquals(0.5f, snapshot.getRequestsRate());
+		Assertions.assertEquals(Map.of("/ships", 5), snapshot.getTopSiteHits());
+		Assertions.assertEquals(5L, snapshot.getGroups(Set.of(Dimension.STATUS_CLASS)).get(0).getHits());
+		Assertions.assertThrows(UnsupportedOperationException.class, () -> snapshot.getTopSiteHits().clear());
+		Assertions.assertSame(snapshot, stats.getSnapshot());
+	}
+
+	/**
+	 * We create a stats provider that never refreshes (the interval is 9999).
+	 * We create log entries coming from two different files and check the hits of each one.
+	 */
+	@Test
+	@DisplayName("Hits are aggregated per source")
+	public void hitsAreAggregatedPerSourceTest() {
+		Stats stats = new ScheduledStats(9999);
+		Stream.generate(() -> new LogData("a.log", "1.2.3.4", "-", "han solo", Instant.now(), new LogData.Request("GET", "/ships", "HTTP/1.0"), 200, 1))
+				.limit(3)
+				.forEach(stats::add);
+		Stream.generate(() -> new LogData("b.log", "1.2.3.4", "-", "han solo", Instant.now(), new LogData.Request("GET", "/ships", "HTTP/1.0"), 200, 1))
+				.limit(2)
+				.forEach(stats::add);
+		stats.expose(new DummyExporter());
+		Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			while (stats.getSourceHits().isEmpty()) {
+			}
+		});
+		Assertions.assertEquals(3, (int) stats.getSourceHits().get("a.log"));
+		Assertions.assertEquals(2, (int) stats.getSourceHits().get("b.log"));
+	}
+
+	/**
+	 * We create a stats provider that never refreshes (the interval is 9999).
+	 * We create sampled log entries that stand for 10 entries each and check they're counted as such.
+	 */
+	@Test
+	@DisplayName("Sampled entries are counted as many times as their weight")
+	public void sampledEntriesAreCountedAsManyTimesAsTheirWeightTest() {
+		Stats stats = new ScheduledStats(9999);
+		Stream.generate(() -> new LogData("a.log", "1.2.3.4", "-", "han solo", Instant.now(), new LogData.Request("GET", "/ships", "HTTP/1.0"), 200, 1).withWeight(10))
+				.limit(3)
+				.forEach(stats::add);
+		stats.expose(new DummyExporter());
+		Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			while (stats.getSourceHits().isEmpty()) {
+			}
+		});
+		Assertions.assertEquals(30, (int) stats.getSourceHits().get("a.log"));
+		Assertions.assertEquals(30, (int) stats.getTopSiteHits().get("/ships"));
+		Assertions.assertEquals(30, stats.getTotalTransmittedData());
+	}
+
+	/**
+	 * We create a stats provider that never refreshes (the interval is 9999).
+	 * We ingest several lines through the same reusable record and check they're all counted, and that the sites
+	 * are cut at the first directory.
+	 */
+	@Test
+	@DisplayName("Records are aggregated when ingested, so the same record can be reused")
+	public void recordsAreAggregatedWhenIngestedTest() {
+		Stats stats = new ScheduledStats(9999);
+		LogRecord record = new LogRecord();
+		for (String path : new String[]{"/ships/1", "/ships/2", "/", "/shops"}) {
+			record.set(new LogData("a.log", "1.2.3.4", "-", "han solo", Instant.now(), new LogData.Request("GET", path, "HTTP/1.0"), 200, 1));
+			stats.add(record);
+		}
+		stats.expose(new DummyExporter());
+		Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			while (stats.getSourceHits().isEmpty()) {
+			}
+		});
+		Assertions.assertEquals(4, (int) stats.getSourceHits().get("a.log"));
+		Assertions.assertEquals(2, (int) stats.getTopSiteHits().get("/ships"));
+		Assertions.assertEquals(1, (int) stats.getTopSiteHits().get("/"));
+		Assertions.assertEquals(1, (int) stats.getTopSiteHits().get("/shops"));
+	}
+
+	/**
+	 * We create a stats provider that never refreshes (the interval is 60).
+	 * We ingest lines from several threads at the same time, plus some lines older than the interval, and check that
+	 * only the recent ones are counted, all of them.
+	 */
+	@Test
+	@DisplayName("Lines ingested concurrently are all counted and the old ones are discarded")
+	public void linesIngestedConcurrentlyAreAllCountedTest() throws InterruptedException {
+		Stats stats = new ScheduledStats(60);
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(() -> {
+				generateDummyData(1000, stats, "/ships", 200);
+				Stream.generate(() -> new LogData("1.2.3.4", "-", "han solo", Instant.now().minusSeconds(120), new LogData.Request("GET", "/old", "HTTP/1.0"), 200, 1))
+						.limit(10)
+						.forEach(stats::add);
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		stats.expose(new DummyExporter());
+		Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			while (stats.getTopSiteHits().isEmpty()) {
+			}
+		});
+		Assertions.assertEquals(4000, (int) stats.getTopSiteHits().get("/ships"));
+		Assertions.assertFalse(stats.getTopSiteHits().containsKey("/old"));
+		Assertions.assertEquals(4000, stats.getTotalTransmittedData());
+	}
+
+	/**
+	 * We create a stats provider that never refreshes (the interval is 9999) and reports the top 2 sites.
+	 * We create requests of different sizes and check the top sites by hits and by bytes are not the same.
+	 */
+	@Test
+	@DisplayName("Top sites are ranked by hits and by bytes")
+	public void topSitesAreRankedByHitsAndByBytesTest() {
+		Stats stats = new ScheduledStats(9999, List.of(), 2, 0.01);
+		Stream.generate(() -> new LogData("1.2.3.4", "-", "han solo", Instant.now(), new LogData.Request("GET", "/ships", "HTTP/1.0"), 200, 10))
+				.limit(5)
+				.forEach(stats::add);
+		Stream.generate(() -> new LogData("1.2.3.4", "-", "han solo", Instant.now(), new LogData.Request("GET", "/videos", "HTTP/1.0"), 200, 1000))
+				.limit(2)
+				.forEach(stats::add);
+		Stream.generate(() -> new LogData("1.2.3.4", "-", "han solo", Instant.now(), new LogData.Request("GET", "/shops", "HTTP/1.0"), 200, 1))
+				.limit(3)
+				.forEach(stats::add);
+		TopSites topSites = stats.getTopSites(9999);
+		Assertions.assertEquals(List.of("/ships", "/shops"), List.copyOf(topSites.getByHits().keySet()));
+		Assertions.assertEquals(List.of("/videos", "/ships"), List.copyOf(topSites.getByBytes().keySet()));
+		Assertions.assertEquals(2000L, topSites.getByBytes().get("/videos"));
+		Assertions.assertEquals(0L, topSites.getHitsError());
+	}
+
+	/**
+	 * We create requests of 10 bytes but one of 1000 bytes, which also took a second, and check the percentiles of the
+	 * sizes and the request times of the window.
+	 */
+	@Test
+	@DisplayName("Percentiles of the sizes and request times are calculated per window")
+	public void percentilesAreCalculatedPerWindowTest() {
+		Stats stats = new ScheduledStats(9999);
+		Stream.generate(() -> new LogData(LogData.NO_SOURCE, "1.2.3.4", "-", "han solo", Instant.now(), new LogData.Request("GET", "/ships", "HTTP/1.0"), 200, 10, 1, 2_000))
+				.limit(99)
+				.forEach(stats::add);
+		stats.add(new LogData(LogData.NO_SOURCE, "1.2.3.4", "-", "han solo", Instant.now(), new LogData.Request("GET", "/videos", "HTTP/1.0"), 200, 1000, 1, 1_000_000));
+		Percentiles sizes = stats.getSizePercentiles(9999);
+		Assertions.assertEquals(100, sizes.getCount());
+		Assertions.assertEquals(10, sizes.getP50());
+		Assertions.assertEquals(10, sizes.getP99());
+		Assertions.assertEquals(1000, sizes.getP999(), 1000 * 0.03);
+		Percentiles requestTimes = stats.getRequestTimePercentiles(9999);
+		Assertions.assertEquals(2_000, requestTimes.getP90(), 2_000 * 0.03);
+		Assertions.assertEquals(1_000_000, requestTimes.getMax(), 1_000_000 * 0.03);
+		Assertions.assertSame(Percentiles.NONE, stats.getSizePercentiles());
+	}
+
+	@Test
+	@DisplayName("Distinct clients and paths are estimated per window")
+	public void distinctClientsAndPathsAreEstimatedPerWindowTest() {
+		Stats stats = new ScheduledStats(9999);
+		for (int i = 0; i < 1000; i++) {
+			stats.add(new LogData("10.0.0." + (i % 200), "-", "han solo", Instant.now(), new LogData.Request("GET", "/ships/" + (i % 30) + "?page=" + i, "HTTP/1.0"), 200, 10));
+		}
+		Assertions.assertEquals(200, stats.getDistinctClients(9999), 2);
+		Assertions.assertEquals(30, stats.getDistinctPaths(9999));
+		Assertions.assertEquals(0, stats.getDistinctClients());
+		StatsSnapshot window = stats.getSnapshot(9999);
+		Assertions.assertEquals(200, window.getDistinctClients(), 2);
+		Assertions.assertEquals(10_000, window.getTotalTransmittedData());
+	}
+
+	/**
+	 * We create requests of several verbs and status codes to a couple of sites, grouped by status class, verb and
+	 * site, and query the groups by some of those dimensions.
+	 */
+	@Test
+	@DisplayName("Requests are grouped by any subset of the dimensions")
+	public void requestsAreGroupedByAnySubsetOfTheDimensionsTest() {
+		Stats stats = new ScheduledStats(9999, List.of(), StatsConfig.builder()
+				.groupBy(EnumSet.of(Dimension.STATUS_CLASS, Dimension.VERB, Dimension.SITE))
+				.build());
+		generateDummyData(5, stats, "/ships", 200);
+		generateDummyData(3, stats, "/ships", 503);
+		generateDummyData(3, stats, "/shops/cart", 404);
+		stats.add(new LogData("1.2.3.4", "-", "han solo", Instant.now(), new LogData.Request("POST", "/shops", "HTTP/1.0"), 500, 7));
+		List<Group> byStatusClass = stats.getGroups(EnumSet.of(Dimension.STATUS_CLASS), 9999);
+		Assertions.assertEquals(List.of("2xx", "5xx", "4xx"), byStatusClass.stream().map(group -> group.getValue(Dimension.STATUS_CLASS)).collect(Collectors.toList()));
+		Assertions.assertEquals(List.of(5L, 4L, 3L), byStatusClass.stream().map(Group::getHits).collect(Collectors.toList()));
+		List<Group> bySiteAndVerb = stats.getGroups(EnumSet.of(Dimension.SITE, Dimension.VERB, Dimension.SOURCE), 9999);
+		Assertions.assertEquals(3, bySiteAndVerb.size());
+		Group shopsPost = bySiteAndVerb.stream().filter(group -> "POST".equals(group.getValue(Dimension.VERB))).findFirst().orElseThrow();
+		Assertions.assertEquals(Map.of(Dimension.SITE, "/shops", Dimension.VERB, "POST"), shopsPost.getValues());
+		Assertions.assertEquals(7L, shopsPost.getBytes());
+	}
+
+	/**
+	 * We replay a minute of log lines from an hour ago, which the wall clock drops, while the clock of the event mode
+	 * follows them. Then, a line behind the watermark is counted late, and one older than the windows is dropped.
+	 */
+	@Test
+	@DisplayName("The event time windows follow the timestamps of a replay")
+	public void theEventTimeWindowsFollowTheTimestampsOfAReplayTest() {
+		Stats processingStats = new ScheduledStats(10, List.of(60));
+		Stats eventStats = new ScheduledStats(10, List.of(60), StatsConfig.builder()
+				.timeMode(TimeMode.EVENT)
+				.allowedLatenessSeconds(5)
+				.build());
+		Instant anHourAgo = Instant.now().minusSeconds(3600);
+		for (int second = 59; second >= 0; second--) {
+			LogData data = new LogData("1.2.3.4", "-", "han solo", anHourAgo.minusSeconds(second), new LogData.Request("GET", "/ships", "HTTP/1.0"), second % 4 == 0 ? 500 : 200, 1);
+			processingStats.add(data);
+			eventStats.add(data);
+		}
+		Assertions.assertEquals(0, processingStats.getRequestsRate(60));
+		Assertions.assertEquals(60, processingStats.getDroppedEvents());
+		Assertions.assertEquals(1, eventStats.getRequestsRate(60));
+		Assertions.assertEquals(1, eventStats.getRequestsRate(10));
+		Assertions.assertEquals(30, eventStats.getErrorRate(10), 0.01);
+		Assertions.assertEquals(0, eventStats.getLateEvents());
+		eventStats.add(new LogData("1.2.3.4", "-", "han solo", anHourAgo.minusSeconds(30), new LogData.Request("GET", "/ships", "HTTP/1.0"), 200, 1));
+		eventStats.add(new LogData("1.2.3.4", "-", "han solo", anHourAgo.minusSeconds(90), new LogData.Request("GET", "/ships", "HTTP/1.0"), 200, 1));
+		Assertions.assertEquals(61, eventStats.getTotalTransmittedData(60));
+		Assertions.assertEquals(1, eventStats.getLateEvents());
+		Assertions.assertEquals(1, eventStats.getDroppedEvents());
+	}
+
+	/**
+	 * We replay a minute of log lines, aligned to the interval, and a line a few seconds later, and check every interval
+	 * the clock passed by the allowed lateness is exported with its own snapshot, stamped with its end.
+	 */
+	@Test
+	@DisplayName("Every interval the event time passes gets a snapshot stamped with its end")
+	public void everyIntervalTheEventTimePassesGetsASnapshotTest() throws InterruptedException {
+		ScheduledStats stats = new ScheduledStats(10, List.of(120), StatsConfig.builder()
+				.timeMode(TimeMode.EVENT)
+				.allowedLatenessSeconds(5)
+				.build());
+		long start = (Instant.now().getEpochSecond() - 3600) / 10 * 10;
+		for (int second = 0; second < 60; second++) {
+			stats.add(new LogData("1.2.3.4", "-", "han solo", Instant.ofEpochSecond(start + second), new LogData.Request("GET", "/ships", "HTTP/1.0"), 200, 1));
+		}
+		stats.add(new LogData("1.2.3.4", "-", "han solo", Instant.ofEpochSecond(start + 65), new LogData.Request("GET", "/ships", "HTTP/1.0"), 200, 1));
+		BlockingQueue<StatsSnapshot> snapshots = new LinkedBlockingQueue<>();
+		stats.expose(new DummyExporter() {
+			@Override
+			public void exportStatistics(Stats statistics) {
+				snapshots.add(statistics.getSnapshot());
+			}
+		});
+		for (int end = 10; end <= 60; end += 10) {
+			StatsSnapshot snapshot = snapshots.poll(5, TimeUnit.SECONDS);
+			Assertions.assertNotNull(snapshot);
+			Assertions.assertEquals(Instant.ofEpochSecond(start + end), snapshot.getTimestamp());
+			Assertions.assertEquals(1, snapshot.getRequestsRate());
+			Assertions.assertEquals(1, snapshot.getDistinctClients());
+		}
+		Assertions.assertNull(snapshots.poll(500, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * We replay two minutes of log lines before the first interval is closed, with a window of half a minute, and check
+	 * the intervals whose seconds are gone by then are counted as skipped, next to the ones still reported.
+	 */
+	@Test
+	@DisplayName("The intervals passed by more than the longest window are counted as skipped")
+	public void theIntervalsOutOfTheWindowsAreCountedAsSkippedTest() throws InterruptedException {
+		ScheduledStats stats = new ScheduledStats(10, List.of(30), StatsConfig.builder()
+				.timeMode(TimeMode.EVENT)
+				.allowedLatenessSeconds(5)
+				.build());
+		long start = (Instant.now().getEpochSecond() - 3600) / 10 * 10;
+		for (int second = 0; second < 120; second++) {
+			stats.add(new LogData("1.2.3.4", "-", "han solo", Instant.ofEpochSecond(start + second), new LogData.Request("GET", "/ships", "HTTP/1.0"), 200, 1));
+		}
+		BlockingQueue<StatsSnapshot> snapshots = new LinkedBlockingQueue<>();
+		stats.expose(new DummyExporter() {
+			@Override
+			public void exportStatistics(Stats statistics) {
+				snapshots.add(statistics.getSnapshot());
+			}
+		});
+		for (int end = 100; end <= 110; end += 10) {
+			StatsSnapshot snapshot = snapshots.poll(5, TimeUnit.SECONDS);
+			Assertions.assertNotNull(snapshot);
+			Assertions.assertEquals(Instant.ofEpochSecond(start + end), snapshot.getTimestamp());
+			Assertions.assertEquals(9, snapshot.getSkippedIntervals());
+		}
+		Assertions.assertEquals(9, stats.getSkippedIntervals());
+	}
+
+	/**
+	 * We read a line of an hour ago and nothing else, and check the clock of the event mode goes on once the allowed
+	 * lateness has passed, so the window empties.
+	 */
+	@Test
+	@DisplayName("The event time goes on with the wall clock when the log is quiet")
+	public void theEventTimeGoesOnWhenTheLogIsQuietTest() {
+		Stats stats = new ScheduledStats(1, List.of(), StatsConfig.builder()
+				.timeMode(TimeMode.EVENT)
+				.allowedLatenessSeconds(1)
+				.build());
+		stats.add(new LogData("1.2.3.4", "-", "han solo", Instant.now().minusSeconds(3600), new LogData.Request("GET", "/ships", "HTTP/1.0"), 200, 1));
+		Assertions.assertEquals(1, stats.getRequestsRate(1));
+		Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+			while (stats.getRequestsRate(1) > 0) {
+				Thread.sleep(50L);
+			}
+		});
+	}
+
 	private void generateDummyData(int requests, Stats stats, String path, int statusCode) {
 		Stream.generate(() -> new LogData("1.2.3.4", "-", "han solo", Instant.now(), new LogData.Request("GET", path, "HTTP/1.0"), statusCode, 1))
 				.limit(requests)
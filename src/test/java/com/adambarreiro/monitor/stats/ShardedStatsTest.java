@@ -0,0 +1,112 @@
+package com.adambarreiro.monitor.stats;
+
+import com.adambarreiro.monitor.exporter.DummyExporter;
+import com.adambarreiro.monitor.process.log.vo.LogData;
+import com.adambarreiro.monitor.process.log.vo.LogRecord;
+import com.adambarreiro.monitor.stats.vo.StatsSnapshot;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * These are the tests for the stats spread over several shards.
+ */
+public class ShardedStatsTest {
+
+	/**
+	 * Four threads add the requests of eight sites to four shards at the same time. Once the shards have ingested them,
+	 * the merged metrics count every request, and the top sites and paths are the ones of all the shards, also once
+	 * the interval is published.
+	 */
+	@Test
+	@DisplayName("The shards ingested by several threads are merged into the metrics of all the requests")
+	public void theShardsAreMergedIntoTheMetricsOfAllTheRequestsTest() throws InterruptedException {
+		Stats stats = new ShardedStats(60, List.of(), StatsConfig.defaults(), 4);
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			Thread thread = new Thread(() -> {
+				LogRecord record = new LogRecord();
+				for (int i = 0; i < 1000; i++) {
+					int site = i % 8;
+					record.set(new LogData("1.2.3." + i % 100, "-", "han solo", Instant.now(),
+							new LogData.Request("GET", "/site" + site + "/page" + i % (site + 1), "HTTP/1.0"), 200, site));
+					stats.add(record);
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			while (stats.getAggregate(60).getRequests() < 4000) {
+				Thread.sleep(10);
+			}
+		});
+		StatsSnapshot snapshot = stats.getSnapshot(60);
+		Assertions.assertEquals(4000L / 8 * (0 + 1 + 2 + 3 + 4 + 5 + 6 + 7), snapshot.getTotalTransmittedData());
+		Assertions.assertEquals(100, snapshot.getDistinctClients(), 2);
+		Assertions.assertEquals(Set.of("/site7", "/site6", "/site5"), snapshot.getTopSites().getByBytes().keySet());
+		Assertions.assertEquals(500L, snapshot.getTopSites().getByHits().values().iterator().next());
+		Assertions.assertEquals(0L, stats.getDroppedEvents());
+		stats.expose(new DummyExporter());
+		Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			while (stats.getSnapshot() == StatsSnapshot.NONE) {
+				Thread.sleep(10);
+			}
+		});
+		Assertions.assertEquals(4000f / 60, stats.getRequestsRate());
+		Assertions.assertEquals(Map.of("/site7/page7", 500L), stats.getTopPaths("/site7", 10));
+		Assertions.assertEquals(8, stats.getTopPaths("/", 10).size());
+	}
+
+	/**
+	 * We replay the requests of two sites, in two shards, where one of them goes quiet after ten seconds. As both
+	 * shards follow the same clock, the quiet site leaves the last seconds, and every interval is merged from the same
+	 * interval of both shards.
+	 */
+	@Test
+	@DisplayName("The shards follow the same event time")
+	public void theShardsFollowTheSameEventTimeTest() throws InterruptedException {
+		Stats stats = new ShardedStats(10, List.of(60), StatsConfig.builder().timeMode(TimeMode.EVENT).build(), 2);
+		long start = (Instant.now().getEpochSecond() - 3600) / 10 * 10;
+		LogRecord record = new LogRecord();
+		for (int second = 0; second < 60; second++) {
+			for (String site : second < 10 ? List.of("/quiet", "/busy") : List.of("/busy")) {
+				record.set(new LogData("1.2.3.4", "-", "han solo", Instant.ofEpochSecond(start + second),
+						new LogData.Request("GET", site, "HTTP/1.0"), 200, 1));
+				stats.add(record);
+			}
+		}
+		Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			while (stats.getAggregate(60).getRequests() < 70) {
+				Thread.sleep(10);
+			}
+		});
+		Assertions.assertEquals(Set.of("/busy"), stats.getSnapshot(10).getTopSites().getByHits().keySet());
+		BlockingQueue<StatsSnapshot> snapshots = new LinkedBlockingQueue<>();
+		stats.expose(new DummyExporter() {
+			@Override
+			public void exportStatistics(Stats statistics) {
+				snapshots.add(statistics.getSnapshot());
+			}
+		});
+		for (int end = 10; end <= 50; end += 10) {
+			StatsSnapshot snapshot = snapshots.poll(5, TimeUnit.SECONDS);
+			Assertions.assertNotNull(snapshot);
+			Assertions.assertEquals(Instant.ofEpochSecond(start + end), snapshot.getTimestamp());
+			Assertions.assertEquals(end == 10 ? 20 : 10, snapshot.getTotalTransmittedData());
+		}
+	}
+}
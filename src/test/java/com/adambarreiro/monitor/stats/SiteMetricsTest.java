@@ -0,0 +1,36 @@
+package com.adambarreiro.monitor.stats;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * These are the tests for the metrics of the heaviest sites.
+ */
+public class SiteMetricsTest {
+
+	/**
+	 * The room is taken by two light sites before a heavy one arrives, and then a crawler visits a hundred sites once.
+	 * The heavy site gets the metrics anyway, and keeps them.
+	 */
+	@Test
+	@DisplayName("The heaviest sites get the metrics, not the first ones seen")
+	public void theHeaviestSitesGetTheMetricsTest() {
+		SiteMetrics metrics = new SiteMetrics(2);
+		metrics.record("/light", 100, -1L, 1L, 1);
+		metrics.record("/lighter", 100, -1L, 2L, 1);
+		for (int i = 0; i < 1000; i++) {
+			String path = "/heavy/" + i;
+			metrics.record("/heavy", 1000, -1L, HyperLogLog.hash(path, 0, path.length()), 1);
+		}
+		for (int i = 0; i < 100; i++) {
+			metrics.record("/crawled" + i, 10, -1L, i, 1);
+		}
+		metrics.rotate();
+		Assertions.assertEquals(1000L, metrics.getSizePercentiles("/heavy").getCount());
+		Assertions.assertTrue(metrics.getDistinctPaths("/heavy") >= 990L);
+		Assertions.assertEquals(0L, metrics.getSizePercentiles("/light").getCount());
+		Assertions.assertEquals(1L, metrics.getSizePercentiles("/crawled99").getCount());
+		Assertions.assertEquals(0L, metrics.getSizePercentiles("/crawled0").getCount());
+	}
+}
@@ -0,0 +1,74 @@
+package com.adambarreiro.monitor.stats;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * These are the tests for the Space-Saving summary of the heaviest keys.
+ */
+public class SpaceSavingTest {
+
+	/**
+	 * We simulate a crawler visiting a million different paths among the regular traffic of a few sites, and check
+	 * that the few sites are still tracked, with counts within the error bound.
+	 */
+	@Test
+	@DisplayName("The heavy sites are found among a flood of unique ones, within the error bound")
+	public void theHeavySitesAreFoundAmongAFloodOfUniqueOnesTest() {
+		SpaceSaving summary = new SpaceSaving(100);
+		for (int i = 0; i < 1_000_000; i++) {
+			summary.add("/crawled/" + i, 1);
+			if (i % 10 == 0) {
+				summary.add("/ships", 1);
+			}
+			if (i % 20 == 0) {
+				summary.add("/shops", 2);
+			}
+		}
+		Map<String, Long> counts = new HashMap<>();
+		summary.forEach(counts::put);
+		Assertions.assertEquals(100, counts.size());
+		long error = summary.getMaxError();
+		Assertions.assertTrue(error <= 1_200_000 / 100);
+		Assertions.assertTrue(counts.get("/ships") >= 100_000 && counts.get("/ships") <= 100_000 + error);
+		Assertions.assertTrue(counts.get("/shops") >= 100_000 && counts.get("/shops") <= 100_000 + error);
+	}
+
+	@Test
+	@DisplayName("The counts are exact while the summary isn't full")
+	public void theCountsAreExactWhileTheSummaryIsNotFullTest() {
+		SpaceSaving summary = new SpaceSaving(3);
+		summary.add("/ships", 5);
+		summary.add("/shops", 2);
+		summary.add("/ships", 1);
+		summary.add("/empty", 0);
+		Map<String, Long> counts = new HashMap<>();
+		summary.forEach(counts::put);
+		Assertions.assertEquals(Map.of("/ships", 6L, "/shops", 2L), counts);
+		Assertions.assertEquals(0, summary.getMaxError());
+	}
+
+	/**
+	 * We fill a summary with keys of ascending and of descending weights, then add a light new key, which must replace
+	 * the lightest key and never the heaviest one, whatever the order they arrived in.
+	 */
+	@Test
+	@DisplayName("A new key replaces the lightest key, whatever the order the keys arrived in")
+	public void aNewKeyReplacesTheLightestKeyTest() {
+		for (long[] weights : new long[][]{{1, 5, 10}, {10, 5, 1}, {5, 1, 10}}) {
+			SpaceSaving summary = new SpaceSaving(3);
+			for (long weight : weights) {
+				summary.add("/site" + weight, weight);
+			}
+			summary.add("/new", 1);
+			Map<String, Long> counts = new HashMap<>();
+			summary.forEach(counts::put);
+			Assertions.assertEquals(Map.of("/site10", 10L, "/site5", 5L, "/new", 2L), counts);
+			Assertions.assertEquals(2L, summary.getMaxError());
+		}
+	}
+}
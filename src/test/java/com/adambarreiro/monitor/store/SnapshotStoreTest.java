@@ -0,0 +1,97 @@
+package com.adambarreiro.monitor.store;
+
+import com.adambarreiro.monitor.process.log.vo.LogData;
+import com.adambarreiro.monitor.process.log.vo.LogRecord;
+import com.adambarreiro.monitor.stats.Aggregate;
+import com.adambarreiro.monitor.stats.ScheduledStats;
+import com.adambarreiro.monitor.stats.Stats;
+import com.adambarreiro.monitor.stats.StatsConfig;
+import com.adambarreiro.monitor.stats.vo.StatsSnapshot;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * These are the tests for the store of the aggregates of every interval.
+ */
+public class SnapshotStoreTest {
+
+	private static final Instant START = Instant.parse("2020-06-01T03:00:00Z");
+
+	@TempDir
+	Path folder;
+
+	/**
+	 * We append an aggregate every 10 seconds for half an hour, in segments of 10 minutes, and read a time range across
+	 * two of them, also after opening the store again.
+	 */
+	@Test
+	@DisplayName("The aggregates of a time range are read back, also after a restart")
+	public void theAggregatesOfATimeRangeAreReadBackTest() throws IOException {
+		SnapshotStore store = SnapshotStore.of(this.folder, 10, 600, 86400);
+		for (int i = 0; i < 180; i++) {
+			Assertions.assertTrue(store.append(START.plusSeconds(i * 10L), aggregate(i)));
+		}
+		Assertions.assertFalse(store.append(START, aggregate(1)));
+		store.close();
+		for (SnapshotStore reopened : List.of(store, SnapshotStore.of(this.folder, 10, 600, 86400))) {
+			List<AggregateRecord> records = reopened.read(START.plusSeconds(590), START.plusSeconds(620));
+			Assertions.assertEquals(List.of(START.plusSeconds(590), START.plusSeconds(600), START.plusSeconds(610), START.plusSeconds(620)),
+					records.stream().map(AggregateRecord::getTimestamp).collect(Collectors.toList()));
+			StatsSnapshot snapshot = records.get(1).toSnapshot(3);
+			Assertions.assertEquals(START.plusSeconds(600), snapshot.getTimestamp());
+			Assertions.assertEquals(6f, snapshot.getRequestsRate());
+			Assertions.assertEquals(10f, snapshot.getErrorRate());
+			Assertions.assertEquals(6000L, snapshot.getTotalTransmittedData());
+			Assertions.assertEquals(60L, snapshot.getDistinctClients());
+			Assertions.assertEquals(List.of("/site60"), List.copyOf(snapshot.getTopSites().getByHits().keySet()));
+			Assertions.assertEquals(180, reopened.read(START, START.plusSeconds(3600)).size());
+		}
+	}
+
+	/**
+	 * We append an aggregate every minute for two hours, in segments of 10 minutes, with a retention of an hour, so
+	 * only the segments of the last hour are left.
+	 */
+	@Test
+	@DisplayName("The segments older than the retention are deleted")
+	public void theSegmentsOlderThanTheRetentionAreDeletedTest() throws IOException {
+		SnapshotStore store = SnapshotStore.of(this.folder, 60, 600, 3600);
+		for (int i = 0; i <= 120; i++) {
+			store.append(START.plusSeconds(i * 60L), aggregate(1));
+		}
+		List<AggregateRecord> records = store.read(START, START.plusSeconds(7200));
+		Assertions.assertEquals(START.plusSeconds(3600), records.get(0).getTimestamp());
+		Assertions.assertEquals(START.plusSeconds(7200), records.get(records.size() - 1).getTimestamp());
+		try (Stream<Path> files = Files.list(this.folder)) {
+			Assertions.assertEquals(7, files.filter(file -> file.toString().endsWith(Segment.EXTENSION)).count());
+		}
+		try (Stream<Path> files = Files.list(this.folder)) {
+			Assertions.assertEquals(7, files.filter(file -> file.toString().endsWith(Segment.DATA_EXTENSION)).count());
+		}
+	}
+
+	/**
+	 * Counts the given number of requests of 100 bytes in an interval of 10 seconds, from as many clients, to the same
+	 * site, and a tenth of them failed.
+	 */
+	private static Aggregate aggregate(int requests) {
+		Stats stats = new ScheduledStats(10, List.of(), StatsConfig.defaults());
+		LogRecord record = new LogRecord();
+		for (int i = 0; i < requests; i++) {
+			record.set(new LogData("10.0.0." + i, "-", "han solo", Instant.now(),
+					new LogData.Request("GET", "/site" + requests + "/page", "HTTP/1.0"), i % 10 == 0 ? 500 : 200, 100));
+			stats.add(record);
+		}
+		return stats.getAggregate(10);
+	}
+}
@@ -0,0 +1,85 @@
+package com.adambarreiro.monitor.store;
+
+import com.adambarreiro.monitor.process.log.vo.LogData;
+import com.adambarreiro.monitor.process.log.vo.LogRecord;
+import com.adambarreiro.monitor.stats.Aggregate;
+import com.adambarreiro.monitor.stats.ScheduledStats;
+import com.adambarreiro.monitor.stats.Stats;
+import com.adambarreiro.monitor.stats.StatsConfig;
+import com.adambarreiro.monitor.stats.vo.StatsSnapshot;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * These are the tests for the store of the metrics at several resolutions.
+ */
+public class TieredSnapshotStoreTest {
+
+	private static final Instant START = Instant.parse("2020-06-01T03:00:00Z");
+
+	@TempDir
+	Path folder;
+
+	/**
+	 * We append the aggregate of every 10 seconds for two hours, from the middle of the first minute, with a tier per
+	 * minute and another one per hour, and restart the store in the middle of the first minute of the second hour.
+	 * Every interval has its own five clients, so the distinct clients of an hour are the ones of all its intervals.
+	 * The reads pick the coarsest tier fine enough.
+	 */
+	@Test
+	@DisplayName("The aggregates are rolled up into every tier, also across a restart, and read from the coarsest one fine enough")
+	public void theAggregatesAreRolledUpIntoEveryTierTest() throws IOException {
+		List<RollupTier> rollups = List.of(new RollupTier(3600, 86400), new RollupTier(60, 7200));
+		TieredSnapshotStore store = TieredSnapshotStore.of(this.folder, new RollupTier(10, 86400), rollups);
+		for (int i = 3; i <= 721; i++) {
+			if (i == 365) {
+				store.close();
+				store = TieredSnapshotStore.of(this.folder, new RollupTier(10, 86400), rollups);
+			}
+			Assertions.assertTrue(store.append(START.plusSeconds(i * 10L), aggregate(i * 5, 5)));
+		}
+		Instant end = START.plusSeconds(7200);
+		List<AggregateRecord> intervals = store.read(START, end, 1);
+		List<AggregateRecord> minutes = store.read(START, end, 600);
+		List<AggregateRecord> hours = store.read(START, end, 86400);
+		Assertions.assertEquals(718, intervals.size());
+		Assertions.assertEquals(120, minutes.size());
+		Assertions.assertEquals(2, hours.size());
+		// the first minute only has its last four intervals
+		StatsSnapshot minute = minutes.get(0).toSnapshot(3);
+		Assertions.assertEquals(START.plusSeconds(60), minute.getTimestamp());
+		Assertions.assertEquals(2000L, minute.getTotalTransmittedData());
+		Assertions.assertEquals(20f / 60, minute.getRequestsRate());
+		StatsSnapshot firstHour = hours.get(0).toSnapshot(3);
+		Assertions.assertEquals(START.plusSeconds(3600), firstHour.getTimestamp());
+		Assertions.assertEquals(1790 * 100L, firstHour.getTotalTransmittedData());
+		Assertions.assertEquals(1790, firstHour.getDistinctClients(), 1790 * 0.02);
+		StatsSnapshot secondHour = hours.get(1).toSnapshot(3);
+		Assertions.assertEquals(START.plusSeconds(7200), secondHour.getTimestamp());
+		Assertions.assertEquals(0.5f, secondHour.getRequestsRate());
+		Assertions.assertEquals(1800, secondHour.getDistinctClients(), 1800 * 0.02);
+		Assertions.assertThrows(IllegalArgumentException.class,
+				() -> TieredSnapshotStore.of(this.folder, new RollupTier(60, 3600), List.of(new RollupTier(60, 7200))));
+	}
+
+	/**
+	 * Counts a request of 100 bytes from each of the given clients in an interval of 10 seconds.
+	 */
+	private static Aggregate aggregate(int firstClient, int clients) {
+		Stats stats = new ScheduledStats(10, List.of(), StatsConfig.defaults());
+		LogRecord record = new LogRecord();
+		for (int client = firstClient; client < firstClient + clients; client++) {
+			record.set(new LogData("10.0." + client / 256 + "." + client % 256, "-", "han solo", Instant.now(),
+					new LogData.Request("GET", "/ships", "HTTP/1.0"), 200, 100));
+			stats.add(record);
+		}
+		return stats.getAggregate(10);
+	}
+}